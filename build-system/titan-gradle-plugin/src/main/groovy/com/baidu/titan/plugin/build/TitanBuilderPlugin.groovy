@@ -21,6 +21,8 @@ import com.android.build.gradle.tasks.PackageApplication
 import com.baidu.titan.core.instrument.InstrumentFilter
 import com.baidu.titan.core.instrument.InstrumentMain
 import com.baidu.titan.core.instrument.InstrumentType
+import com.baidu.titan.core.patch.light.BaseFingerprintStore
+import com.baidu.titan.core.util.PhaseTelemetry
 import com.baidu.titan.dex.DexType
 import com.baidu.titan.dex.MultiDexFileBytes
 import com.baidu.titan.plugin.build.extensions.BuildExtension
@@ -238,9 +240,38 @@ public class TitanBuilderPlugin implements Plugin<Project> {
 
         instruArg.setFileterMeizuPush(buildConfig.filterMeizuPush)
 
+        instruArg.setInstrumentParallelism(buildConfig.instrumentParallelism)
+
+        instruArg.setDexWriterThreadCount(buildConfig.dexWriterThreadCount)
+
+        instruArg.setLibraryDexCacheDir(new File(buildBaseDir, "library-dex-cache"))
+
+        instruArg.setLazyLibraryLoading(buildConfig.lazyLibraryLoading)
+
+        instruArg.setSpecialParasBudget(buildConfig.specialParasBudget)
+
+        instruArg.setInterceptStub(buildConfig.interceptStub)
+
+        if (buildConfig.incrementalInstrument) {
+            instruArg.setIncrementalCacheDir(
+                    new File(buildBaseDir, "instrument-cache/${variant.dirName}"))
+        }
+
+        // 插桩信息与org dex放在一起，生成patch时不用再解析old-instrumented dex
+        File instrumentInfoFile = BaseFingerprintStore.getInstrumentInfoFile(orgDexDir)
+        instruArg.setInstrumentInfoFile(instrumentInfoFile)
+
         InstrumentMain instrument = new InstrumentMain(instruArg)
         MultiDexFileBytes outDexBytes = instrument.doInstrument()
         outDexBytes.writeToDir(dexOutDir)
+        project.logger.error("titan instrument telemetry = "
+                + new File(buildBaseDir, PhaseTelemetry.INSTRUMENT_FILE_NAME))
+
+        File instrumentInfoOutputFile = BaseFingerprintStore.getInstrumentInfoFile(orgDexOutputDir)
+        instrumentInfoOutputFile.delete()
+        if (instrumentInfoFile.exists()) {
+            Files.copy(instrumentInfoFile, instrumentInfoOutputFile)
+        }
     }
 
     /**
@@ -48,4 +48,22 @@ public class BuildExtension {
     /** 是否过滤meizu push sdk，不对其进行插桩 */
     boolean filterMeizuPush = true
 
+    /** 按类并发插桩的线程数，小于等于1时单线程插桩 */
+    int instrumentParallelism = Runtime.getRuntime().availableProcessors()
+
+    /** 并发写入dex的线程数，小于等于1时单线程写入 */
+    int dexWriterThreadCount = Runtime.getRuntime().availableProcessors()
+
+    /** 是否开启增量插桩，未变化的类复用上次的插桩结果 */
+    boolean incrementalInstrument = false
+
+    /** 是否按需解析boot class path中的类 */
+    boolean lazyLibraryLoading = false
+
+    /** 按应用统计生成的invokeXX方法个数上限，小于等于0时使用titan-sdk中默认的参数列表 */
+    int specialParasBudget = 0
+
+    /** 是否将invokeCommon的参数数组构造外置到每个dex共享的桩方法中，以减小插桩后的dex体积 */
+    boolean interceptStub = false
+
 }
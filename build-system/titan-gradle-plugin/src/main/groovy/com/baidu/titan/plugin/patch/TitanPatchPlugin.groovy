@@ -18,6 +18,8 @@ package com.baidu.titan.plugin.patch
 
 import com.baidu.titan.core.patch.PatchArgument
 import com.baidu.titan.core.patch.PatchPolicy
+import com.baidu.titan.core.patch.light.BaseFingerprintStore
+import com.baidu.titan.core.util.PhaseTelemetry
 import com.baidu.titan.core.util.TitanLogger
 import com.baidu.titan.sdk.common.TitanConstant
 import com.baidu.titan.core.patch.PatchMain
@@ -358,9 +360,21 @@ public class TitanPatchPlugin implements Plugin<Project> {
                 .setBootClassPath(patchConfig.bootClassPath.call())
                 .setDexOutDir(patchDexOutDir)
                 .setSmaliOutDir(smaliOutDir)
+                .setDexWriterThreadCount(patchConfig.dexWriterThreadCount)
+                .setLibraryDexCacheDir(new File(titanIntermediates, "library-dex-cache"))
+                .setLazyLibraryLoading(patchConfig.lazyLibraryLoading)
+                .setDiffParallelism(patchConfig.diffParallelism)
+                .setGenerateParallelism(patchConfig.generateParallelism)
+
+        if (patchArg.getWorkDir() != null) {
+            // 同一个base多次生成patch时复用old dex的分析结果
+            patchArg.setBaseFingerprintDir(new File(patchArg.getWorkDir(), "base-fingerprint"))
+        }
 
         patchArg.oldProject.setOldOrgDexs(MultiDexFileBytes.createFromDirectory(oldOrgDexDir))
 
+        patchArg.oldProject.setInstrumentInfoFile(BaseFingerprintStore.getInstrumentInfoFile(oldOrgDexDir))
+
         patchArg.oldProject.setOldApkFile(patchConfig.oldApkFile.call(applicationVariant))
 
         patchArg.oldProject.setManifestFromOldApk(true)
@@ -420,6 +434,10 @@ public class TitanPatchPlugin implements Plugin<Project> {
         patchArg.setLoadPolicy(loadPolicy)
 
         PatchMain.doPatch(patchArg)
+        if (patchArg.getWorkDir() != null) {
+            project.logger.error("titan patch telemetry = "
+                    + new File(patchArg.getWorkDir(), PhaseTelemetry.PATCH_FILE_NAME))
+        }
 
 //        fos.close()
 
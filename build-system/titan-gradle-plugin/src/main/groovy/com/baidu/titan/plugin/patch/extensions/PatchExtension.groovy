@@ -59,4 +59,24 @@ public class PatchExtension {
      */
     Closure classPatchFilter
 
+    /**
+     * 并发写入patch dex的线程数
+     */
+    int dexWriterThreadCount = Runtime.getRuntime().availableProcessors()
+
+    /**
+     * 是否按需解析boot class path中的类
+     */
+    boolean lazyLibraryLoading = false
+
+    /**
+     * 并发diff的线程数
+     */
+    int diffParallelism = Runtime.getRuntime().availableProcessors()
+
+    /**
+     * 并发生成patch类的线程数
+     */
+    int generateParallelism = Runtime.getRuntime().availableProcessors()
+
 }
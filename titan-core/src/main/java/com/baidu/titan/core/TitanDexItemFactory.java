@@ -99,6 +99,40 @@ public class TitanDexItemFactory extends DexItemFactory {
     /** Ljava/lang/Class 类型相关声明*/
     public final JavaLangClass javaLangClass = new JavaLangClass();
 
+    /**
+     * 并发插桩时多个线程会共用同一个factory，这里对所有创建及池化的入口加锁，保证池化后的实例唯一。
+     * 锁只覆盖单次创建，调用方（如MethodAnalyzer）的分析过程不需要持有factory的锁
+     */
+    @Override
+    public synchronized DexString createString(String value) {
+        return super.createString(value);
+    }
+
+    @Override
+    public synchronized DexType createType(String typeDesc) {
+        return super.createType(typeDesc);
+    }
+
+    @Override
+    public synchronized DexType createArrayType(DexType elementType) {
+        return super.createArrayType(elementType);
+    }
+
+    @Override
+    public synchronized DexTypeList createTypes(DexType[] types) {
+        return super.createTypes(types);
+    }
+
+    @Override
+    public synchronized DexTypeList createTypesVariable(DexType... types) {
+        return super.createTypesVariable(types);
+    }
+
+    @Override
+    public synchronized DexTypeList intern(DexTypeList typeList) {
+        return super.intern(typeList);
+    }
+
     public class InterceptableClass {
 
         static final String TYPE_DESC = "Lcom/baidu/titan/sdk/runtime/Interceptable;";
@@ -125,6 +159,12 @@ public class TitanDexItemFactory extends DexItemFactory {
                         objectClass.type,
                         createArrayType(objectClass.type)));
 
+        public DexConst.ConstMethodRef hasCommonInterceptMethod = DexConst.ConstMethodRef.make(
+                type,
+                createString("hasCommonIntercept"),
+                booleanClass.primitiveType,
+                createTypesVariable(integerClass.primitiveType));
+
 
         public DexConst.ConstMethodRef invokeInitBodyMethod = DexConst.ConstMethodRef.make(
                 type,
@@ -260,6 +300,18 @@ public class TitanDexItemFactory extends DexItemFactory {
                 type,
                 interceptableClass.type,
                 createString("delegate"));
+
+        public final DexConst.ConstMethodRef waitLoadMethod = DexConst.ConstMethodRef.make(
+                type,
+                createString("waitLoad"),
+                booleanClass.primitiveType,
+                DexTypeList.empty());
+
+        public final DexConst.ConstMethodRef onAppliedMethod = DexConst.ConstMethodRef.make(
+                type,
+                createString("onApplied"),
+                voidClass.primitiveType,
+                DexTypeList.empty());
     }
 
 
@@ -729,6 +781,12 @@ public class TitanDexItemFactory extends DexItemFactory {
                         type,
                         classClinitInterceptableClass.type,
                         createString("delegate"));
+
+        public final DexConst.ConstMethodRef onAppliedMethod = DexConst.ConstMethodRef.make(
+                type,
+                createString("onApplied"),
+                voidClass.primitiveType,
+                DexTypeList.empty());
     }
 
     public class PatchBaseLoaderClass {
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.component;
+
+import com.baidu.titan.core.util.Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 直接从apk中读取二进制格式的AndroidManifest.xml，解析四大组件的类名，不需要使用Apktool反编译apk
+ *
+ * 只解析 /manifest/application 下直接声明的activity、service、receiver、provider，
+ * 与解析Apktool输出的AndroidManifest.xml结果一致。
+ *
+ * @since 2026/10/18
+ */
+public class BinaryManifestReader {
+
+    private static final String MANIFEST_ENTRY = "AndroidManifest.xml";
+
+    private static final int RES_STRING_POOL_TYPE = 0x0001;
+
+    private static final int RES_XML_TYPE = 0x0003;
+
+    private static final int RES_XML_START_ELEMENT_TYPE = 0x0102;
+
+    private static final int RES_XML_END_ELEMENT_TYPE = 0x0103;
+
+    private static final int RES_XML_RESOURCE_MAP_TYPE = 0x0180;
+
+    private static final int UTF8_FLAG = 1 << 8;
+
+    private static final int NO_INDEX = 0xFFFFFFFF;
+
+    private static final int TYPE_STRING = 0x03;
+
+    /** android:name的资源id */
+    private static final int ATTR_NAME_RES_ID = 0x01010003;
+
+    private static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+
+    private final ByteBuffer mBuffer;
+
+    private String[] mStrings = new String[0];
+
+    /** 属性名字符串index -> 资源id，没有resource map时为null */
+    private int[] mResourceIds;
+
+    private BinaryManifestReader(byte[] manifestBytes) {
+        this.mBuffer = ByteBuffer.wrap(manifestBytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * 读取apk中声明的组件
+     *
+     * @param apkFile apk文件
+     * @param components 组件类型 -> 组件type descriptor列表，组件类型为activity、service、receiver、provider
+     * @return 读取是否成功
+     */
+    public static boolean fillComponentsInfo(File apkFile, Map<String, List<String>> components) {
+        byte[] manifestBytes;
+        try (ZipFile zipFile = new ZipFile(apkFile)) {
+            ZipEntry entry = zipFile.getEntry(MANIFEST_ENTRY);
+            if (entry == null) {
+                return false;
+            }
+            try (InputStream in = zipFile.getInputStream(entry)) {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                byte[] buffer = new byte[16 * 1024];
+                int len;
+                while ((len = in.read(buffer)) > 0) {
+                    baos.write(buffer, 0, len);
+                }
+                manifestBytes = baos.toByteArray();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        try {
+            Map<String, List<String>> result = new BinaryManifestReader(manifestBytes).parse();
+            components.putAll(result);
+            return true;
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private Map<String, List<String>> parse() {
+        Map<String, List<String>> result = new HashMap<>();
+        result.put("activity", new ArrayList<>());
+        result.put("service", new ArrayList<>());
+        result.put("receiver", new ArrayList<>());
+        result.put("provider", new ArrayList<>());
+
+        int fileType = mBuffer.getShort(0) & 0xFFFF;
+        if (fileType != RES_XML_TYPE) {
+            throw new IllegalStateException("not a binary xml, type = " + fileType);
+        }
+        int fileHeaderSize = mBuffer.getShort(2) & 0xFFFF;
+        int fileSize = Math.min(mBuffer.getInt(4), mBuffer.limit());
+
+        List<String> elementPath = new ArrayList<>();
+        String packageName = null;
+        int offset = fileHeaderSize;
+        while (offset + 8 <= fileSize) {
+            int chunkType = mBuffer.getShort(offset) & 0xFFFF;
+            int chunkHeaderSize = mBuffer.getShort(offset + 2) & 0xFFFF;
+            int chunkSize = mBuffer.getInt(offset + 4);
+            if (chunkSize <= 0) {
+                break;
+            }
+            switch (chunkType) {
+                case RES_STRING_POOL_TYPE: {
+                    readStringPool(offset);
+                    break;
+                }
+                case RES_XML_RESOURCE_MAP_TYPE: {
+                    int count = (chunkSize - chunkHeaderSize) / 4;
+                    mResourceIds = new int[count];
+                    for (int i = 0; i < count; i++) {
+                        mResourceIds[i] = mBuffer.getInt(offset + chunkHeaderSize + i * 4);
+                    }
+                    break;
+                }
+                case RES_XML_START_ELEMENT_TYPE: {
+                    int extOffset = offset + chunkHeaderSize;
+                    String elementName = getString(mBuffer.getInt(extOffset + 4));
+                    elementPath.add(elementName);
+                    int depth = elementPath.size();
+                    if (depth == 1 && "manifest".equals(elementName)) {
+                        packageName = getAttributeValue(extOffset, "package", false);
+                    } else if (depth == 3 && "manifest".equals(elementPath.get(0))
+                            && "application".equals(elementPath.get(1))
+                            && result.containsKey(elementName)) {
+                        String className = getAttributeValue(extOffset, "name", true);
+                        if (className != null) {
+                            if (className.startsWith(".") && packageName != null) {
+                                className = packageName + className;
+                            }
+                            result.get(elementName).add(Utils.classNameToTypeDesc(className));
+                        }
+                    }
+                    break;
+                }
+                case RES_XML_END_ELEMENT_TYPE: {
+                    if (!elementPath.isEmpty()) {
+                        elementPath.remove(elementPath.size() - 1);
+                    }
+                    break;
+                }
+                default: {
+                    break;
+                }
+            }
+            offset += chunkSize;
+        }
+        return result;
+    }
+
+    private void readStringPool(int chunkOffset) {
+        int stringCount = mBuffer.getInt(chunkOffset + 8);
+        int flags = mBuffer.getInt(chunkOffset + 16);
+        int stringsStart = mBuffer.getInt(chunkOffset + 20);
+        int headerSize = mBuffer.getShort(chunkOffset + 2) & 0xFFFF;
+        boolean utf8 = (flags & UTF8_FLAG) != 0;
+
+        mStrings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            int stringOffset = chunkOffset + stringsStart
+                    + mBuffer.getInt(chunkOffset + headerSize + i * 4);
+            mStrings[i] = utf8 ? readUtf8String(stringOffset) : readUtf16String(stringOffset);
+        }
+    }
+
+    private String readUtf8String(int offset) {
+        // utf16长度，跳过
+        int b = mBuffer.get(offset) & 0xFF;
+        offset += (b & 0x80) != 0 ? 2 : 1;
+        // utf8字节数
+        b = mBuffer.get(offset) & 0xFF;
+        int length = b;
+        if ((b & 0x80) != 0) {
+            length = ((b & 0x7F) << 8) | (mBuffer.get(offset + 1) & 0xFF);
+            offset += 2;
+        } else {
+            offset += 1;
+        }
+        return new String(mBuffer.array(), offset, length, StandardCharsets.UTF_8);
+    }
+
+    private String readUtf16String(int offset) {
+        int length = mBuffer.getShort(offset) & 0xFFFF;
+        if ((length & 0x8000) != 0) {
+            length = ((length & 0x7FFF) << 16) | (mBuffer.getShort(offset + 2) & 0xFFFF);
+            offset += 4;
+        } else {
+            offset += 2;
+        }
+        return new String(mBuffer.array(), offset, length * 2, StandardCharsets.UTF_16LE);
+    }
+
+    private String getString(int index) {
+        if (index == NO_INDEX || index < 0 || index >= mStrings.length) {
+            return null;
+        }
+        return mStrings[index];
+    }
+
+    /**
+     * @param extOffset ResXMLTree_attrExt的偏移
+     * @param androidNs 属性是否属于android命名空间
+     */
+    private String getAttributeValue(int extOffset, String attrName, boolean androidNs) {
+        int attributeStart = mBuffer.getShort(extOffset + 8) & 0xFFFF;
+        int attributeSize = mBuffer.getShort(extOffset + 10) & 0xFFFF;
+        int attributeCount = mBuffer.getShort(extOffset + 12) & 0xFFFF;
+        for (int i = 0; i < attributeCount; i++) {
+            int attrOffset = extOffset + attributeStart + i * attributeSize;
+            int nameIndex = mBuffer.getInt(attrOffset + 4);
+            if (!isAttribute(mBuffer.getInt(attrOffset), nameIndex, attrName, androidNs)) {
+                continue;
+            }
+            int rawValue = mBuffer.getInt(attrOffset + 8);
+            if (rawValue != NO_INDEX) {
+                return getString(rawValue);
+            }
+            int dataType = mBuffer.get(attrOffset + 15) & 0xFF;
+            if (dataType == TYPE_STRING) {
+                return getString(mBuffer.getInt(attrOffset + 16));
+            }
+            return null;
+        }
+        return null;
+    }
+
+    private boolean isAttribute(int nsIndex, int nameIndex, String attrName, boolean androidNs) {
+        // 资源混淆后属性名可能被移除，优先使用资源id匹配android:name
+        if (androidNs && "name".equals(attrName) && mResourceIds != null
+                && nameIndex >= 0 && nameIndex < mResourceIds.length) {
+            return mResourceIds[nameIndex] == ATTR_NAME_RES_ID;
+        }
+        if (!attrName.equals(getString(nameIndex))) {
+            return false;
+        }
+        String ns = getString(nsIndex);
+        return androidNs ? ANDROID_NS.equals(ns) : ns == null;
+    }
+
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.instrument;
+
+import com.baidu.titan.core.Constant;
+import com.baidu.titan.core.component.AndroidComponentFlag;
+import com.baidu.titan.core.component.AndroidComponentMarker;
+import com.baidu.titan.core.pool.DexClassPoolFiller;
+import com.baidu.titan.dex.DexAccessFlags;
+import com.baidu.titan.dex.DexFileVersion;
+import com.baidu.titan.dex.DexItemFactory;
+import com.baidu.titan.dex.DexType;
+import com.baidu.titan.dex.MultiDexFileBytes;
+import com.baidu.titan.dex.extensions.DexSuperClassHierarchyFiller;
+import com.baidu.titan.dex.node.DexClassNode;
+import com.baidu.titan.dex.node.DexClassPoolNode;
+import com.baidu.titan.dex.node.DexMethodNode;
+import com.baidu.titan.dex.node.MultiDexFileNode;
+import com.baidu.titan.dex.reader.MultiDexFileReader;
+import com.baidu.titan.dex.visitor.DexClassPoolNodeVisitor;
+import com.baidu.titan.dex.visitor.DexClassVisitor;
+import com.baidu.titan.dex.visitor.DexClassVisitorInfo;
+import com.baidu.titan.dex.writer.DexFileWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 增量插桩缓存
+ *
+ * 为每个program class计算指纹，指纹覆盖以下插桩输入：
+ * <li>修改access flags之后的类内容</li>
+ * <li>父类链及接口</li>
+ * <li>Android组件标记</li>
+ * <li>类及方法的禁止插桩标记</li>
+ * <li>作为父类或接口的program class的指纹，父类或接口变化时子类及实现类一起重新插桩</li>
+ * 指纹与上次插桩时一致的类直接复用上次的插桩结果，不再执行插桩transformation。
+ * 缓存目录下保存指纹索引及上次的插桩输出，插桩参数变化时缓存整体失效。
+ *
+ * @since 2026/10/18
+ */
+public class IncrementalInstrumentCache {
+
+    /** 缓存格式版本，插桩逻辑或缓存格式变化时需要修改 */
+    private static final int CACHE_VERSION = 1;
+
+    private static final String INDEX_FILE_NAME = "class-fingerprints.txt";
+
+    private static final String DEX_DIR_NAME = "instrumented-dex";
+
+    private static final String CONFIG_PREFIX = "config ";
+
+    private final File mCacheDir;
+
+    private final String mConfigKey;
+
+    /** 上次插桩时的指纹，type descriptor -> fingerprint */
+    private final Map<String, String> mCachedFingerprints = new HashMap<>();
+
+    /** 本次插桩中只包含类自身内容的指纹 */
+    private final Map<String, String> mClassFingerprints = new ConcurrentHashMap<>();
+
+    /** 本次插桩中每个类的直接父类及接口 */
+    private final Map<String, List<String>> mDependencies = new ConcurrentHashMap<>();
+
+    /** 本次插桩的指纹，包含父类及接口的指纹 */
+    private final Map<String, String> mFingerprints = new HashMap<>();
+
+    /** 可以复用的插桩结果 */
+    private final Map<DexType, DexClassNode> mReusableClasses = new HashMap<>();
+
+    /**
+     * @param cacheDir 缓存目录
+     * @param configKey 影响插桩结果的全局参数，变化时缓存整体失效
+     */
+    public IncrementalInstrumentCache(File cacheDir, String configKey) {
+        this.mCacheDir = cacheDir;
+        this.mConfigKey = CACHE_VERSION + ":" + configKey;
+    }
+
+    /**
+     * 读取上次插桩的指纹索引，格式不符或参数变化时忽略
+     */
+    public void load() {
+        File indexFile = new File(mCacheDir, INDEX_FILE_NAME);
+        if (!indexFile.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(indexFile), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            if (line == null || !line.equals(CONFIG_PREFIX + mConfigKey)) {
+                return;
+            }
+            while ((line = reader.readLine()) != null) {
+                int sep = line.lastIndexOf(' ');
+                if (sep > 0) {
+                    mCachedFingerprints.put(line.substring(0, sep), line.substring(sep + 1));
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            mCachedFingerprints.clear();
+        }
+    }
+
+    /**
+     * 计算每个类自身的指纹，需要在所有marker执行完成之后、插桩transformation之前调用。
+     * 不修改类本身，可以并发访问。包含父类及接口的指纹在prepareReusableClasses中计算。
+     */
+    public DexClassPoolNodeVisitor newFingerprintVisitor() {
+        return new DexClassPoolNodeVisitor() {
+            @Override
+            public void visitClass(DexClassNode dcn) {
+                String typeDesc = dcn.type.toTypeDescriptor();
+                mClassFingerprints.put(typeDesc, computeFingerprint(dcn));
+                List<String> dependencies = new ArrayList<>();
+                if (dcn.superType != null) {
+                    dependencies.add(dcn.superType.toTypeDescriptor());
+                }
+                if (dcn.interfaces != null) {
+                    for (DexType itf : dcn.interfaces.types()) {
+                        dependencies.add(itf.toTypeDescriptor());
+                    }
+                }
+                mDependencies.put(typeDesc, dependencies);
+            }
+
+            @Override
+            public void classPoolVisitEnd() {
+            }
+        };
+    }
+
+    /**
+     * 对比指纹，从上次的插桩输出中加载可以复用的类
+     *
+     * @param factory 与本次插桩相同的factory
+     * @return 可以复用的类个数
+     */
+    public int prepareReusableClasses(DexItemFactory factory) {
+        for (String typeDesc : mClassFingerprints.keySet()) {
+            getFingerprint(typeDesc, new HashSet<>());
+        }
+        boolean anyMatched = mFingerprints.entrySet().stream()
+                .anyMatch(e -> e.getValue().equals(mCachedFingerprints.get(e.getKey())));
+        File dexDir = new File(mCacheDir, DEX_DIR_NAME);
+        if (!anyMatched || !dexDir.exists()) {
+            return 0;
+        }
+        MultiDexFileBytes cachedDexs;
+        try {
+            cachedDexs = MultiDexFileBytes.createFromDirectory(dexDir);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 0;
+        }
+        if (cachedDexs == null || !cachedDexs.isValid()) {
+            return 0;
+        }
+        MultiDexFileReader mdfr = new MultiDexFileReader(factory);
+        cachedDexs.forEach((dexId, dexFileBytes) ->
+                mdfr.addDexContent(dexId, dexFileBytes.getDexFileBytes()));
+        MultiDexFileNode mdfn = new MultiDexFileNode();
+        mdfr.accept(mdfn.asVisitor());
+        DexClassPoolNode cachedPool = new DexClassPoolNode();
+        mdfn.accept(new DexClassPoolFiller(cachedPool));
+
+        cachedPool.forEach(dcn -> {
+            String typeDesc = dcn.type.toTypeDescriptor();
+            String fingerprint = mFingerprints.get(typeDesc);
+            if (fingerprint != null && fingerprint.equals(mCachedFingerprints.get(typeDesc))) {
+                mReusableClasses.put(dcn.type, dcn);
+            }
+        });
+        return mReusableClasses.size();
+    }
+
+    /**
+     * @return 本次需要重新插桩的类，即指纹与上次插桩不一致的类
+     */
+    public Set<String> getReinstrumentedTypes() {
+        Set<String> types = new TreeSet<>(mFingerprints.keySet());
+        mReusableClasses.keySet().forEach(type -> types.remove(type.toTypeDescriptor()));
+        return types;
+    }
+
+    /**
+     * 包装插桩transformation，跳过可以复用的类
+     */
+    public DexClassPoolNodeVisitor skipReusable(DexClassPoolNodeVisitor delegate) {
+        return new DexClassPoolNodeVisitor() {
+            @Override
+            public void visitClass(DexClassNode dcn) {
+                if (!mReusableClasses.containsKey(dcn.type)) {
+                    delegate.visitClass(dcn);
+                }
+            }
+
+            @Override
+            public void classPoolVisitEnd() {
+                delegate.classPoolVisitEnd();
+            }
+        };
+    }
+
+    /**
+     * 将插桩后的类输出到classPool，可以复用的类替换为上次的插桩结果
+     */
+    public DexClassPoolNodeVisitor collectOutput(DexClassPoolNode classPool) {
+        return new DexClassPoolNodeVisitor() {
+            @Override
+            public void visitClass(DexClassNode dcn) {
+                DexClassNode cached = mReusableClasses.get(dcn.type);
+                if (cached != null) {
+                    cached.setExtraInfo(Constant.EXTRA_KEY_DEX_ID,
+                            dcn.getExtraInfo(Constant.EXTRA_KEY_DEX_ID, -1));
+                    classPool.addClass(cached);
+                } else {
+                    classPool.addClass(dcn);
+                }
+            }
+
+            @Override
+            public void classPoolVisitEnd() {
+            }
+        };
+    }
+
+    /**
+     * 保存本次插桩的指纹及输出，供下次插桩复用
+     */
+    public void save(MultiDexFileBytes instrumentedDexs) {
+        File dexDir = new File(mCacheDir, DEX_DIR_NAME);
+        File indexFile = new File(mCacheDir, INDEX_FILE_NAME);
+        // 先删除索引，避免写入中断时索引与dex不一致
+        indexFile.delete();
+        deleteDir(dexDir);
+        dexDir.mkdirs();
+        try {
+            instrumentedDexs.writeToDir(dexDir);
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(indexFile), StandardCharsets.UTF_8))) {
+                writer.write(CONFIG_PREFIX + mConfigKey);
+                writer.newLine();
+                for (Map.Entry<String, String> entry : new TreeMap<>(mFingerprints).entrySet()) {
+                    writer.write(entry.getKey() + " " + entry.getValue());
+                    writer.newLine();
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            indexFile.delete();
+        }
+    }
+
+    /**
+     * 在类自身指纹的基础上加入作为父类及接口的program class的指纹
+     *
+     * @param visiting 正在计算的类，用于在异常的循环继承中终止递归
+     */
+    private String getFingerprint(String typeDesc, Set<String> visiting) {
+        String fingerprint = mFingerprints.get(typeDesc);
+        if (fingerprint != null) {
+            return fingerprint;
+        }
+        String classFingerprint = mClassFingerprints.get(typeDesc);
+        // 非program class的类名已经包含在子类的指纹中
+        if (classFingerprint == null || !visiting.add(typeDesc)) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(classFingerprint);
+        for (String dependency : mDependencies.get(typeDesc)) {
+            String dependencyFingerprint = getFingerprint(dependency, visiting);
+            if (dependencyFingerprint != null) {
+                sb.append('|').append(dependencyFingerprint);
+            }
+        }
+        visiting.remove(typeDesc);
+        fingerprint = toHex(sha256(sb.toString().getBytes(StandardCharsets.UTF_8)));
+        mFingerprints.put(typeDesc, fingerprint);
+        return fingerprint;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] sha256(byte[] content) {
+        return newDigest().digest(content);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static String computeFingerprint(DexClassNode dcn) {
+        MessageDigest digest = newDigest();
+        digest.update(getClassBytes(dcn));
+
+        // 父类链
+        StringBuilder hierarchy = new StringBuilder();
+        DexClassNode superClass = dcn;
+        while ((superClass = superClass.getExtraInfo(
+                DexSuperClassHierarchyFiller.EXTRA_KEY_SUPERCLASSES, null)) != null) {
+            hierarchy.append(superClass.type.toTypeDescriptor()).append(';');
+            appendInterfaces(hierarchy, superClass);
+        }
+        hierarchy.append('|');
+        appendInterfaces(hierarchy, dcn);
+
+        // 组件标记
+        hierarchy.append('|');
+        AndroidComponentFlag componentFlag = AndroidComponentMarker.getComponentFlag(dcn);
+        if (componentFlag != null) {
+            for (int type = AndroidComponentFlag.TYPE_APPLICATION;
+                 type <= AndroidComponentFlag.TYPE_CONTENT_PROVIDER; type++) {
+                hierarchy.append(componentFlag.getFlag(type)).append(',');
+            }
+        }
+
+        // 禁止插桩标记
+        hierarchy.append('|').append(DisableInterceptMarker.getInterceptDisable(dcn));
+        for (DexMethodNode dmn : dcn.getMethods()) {
+            hierarchy.append(DisableInterceptMarker.getInterceptDisable(dmn) ? '1' : '0');
+        }
+        digest.update(hierarchy.toString().getBytes(StandardCharsets.UTF_8));
+        return toHex(digest.digest());
+    }
+
+    private static void appendInterfaces(StringBuilder sb, DexClassNode dcn) {
+        if (dcn.interfaces == null) {
+            return;
+        }
+        for (DexType itf : dcn.interfaces.types()) {
+            sb.append(itf.toTypeDescriptor()).append(',');
+        }
+    }
+
+    private static byte[] getClassBytes(DexClassNode dcn) {
+        DexFileWriter dfw = new DexFileWriter();
+        dfw.visitBegin();
+        dfw.visitDexVersion(DexFileVersion.LATEST_VERSION);
+        DexClassVisitor dcv = dfw.visitClass(
+                new DexClassVisitorInfo(
+                        dcn.type,
+                        dcn.superType,
+                        dcn.interfaces,
+                        new DexAccessFlags(dcn.accessFlags)));
+        dcn.accept(dcv);
+        dfw.visitEnd();
+        return dfw.toByteArray();
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (f.isDirectory()) {
+                    deleteDir(f);
+                } else {
+                    f.delete();
+                }
+            }
+        }
+        dir.delete();
+    }
+
+}
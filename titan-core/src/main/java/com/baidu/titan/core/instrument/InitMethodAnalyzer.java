@@ -74,6 +74,7 @@ public class InitMethodAnalyzer {
         });
 
         try {
+            // 并发插桩时分析过程不加锁，共用factory的创建及池化入口自身是同步的
             boolean success = analyzer.analyze();
 
             if (success) {
@@ -16,27 +16,31 @@
 
 package com.baidu.titan.core.instrument;
 
-import com.baidu.titan.apktool.Apktool;
+import com.baidu.titan.core.Constant;
 import com.baidu.titan.core.TitanDexItemFactory;
 import com.baidu.titan.core.component.AndroidComponentFlag;
 import com.baidu.titan.core.component.AndroidComponentMarker;
+import com.baidu.titan.core.component.BinaryManifestReader;
 import com.baidu.titan.core.filters.ComponentClassFilter;
 import com.baidu.titan.core.filters.DisableInterceptClassNodePoolVisitorFilter;
 import com.baidu.titan.core.filters.MeizuPushFilter;
+import com.baidu.titan.core.patch.light.BaseFingerprintStore;
 import com.baidu.titan.core.pool.ApplicationDexPool;
+import com.baidu.titan.core.pool.LibraryDexCache;
 import com.baidu.titan.core.transforms.AccessFlagsTransformation;
 import com.baidu.titan.core.transforms.StaticInitMethodFiller;
+import com.baidu.titan.core.util.ConcurrentMultiDexWriter;
+import com.baidu.titan.core.util.PhaseTelemetry;
+import com.baidu.titan.core.util.TitanHashs;
 import com.baidu.titan.core.util.Utils;
 import com.baidu.titan.dex.DexType;
 import com.baidu.titan.dex.MultiDexFileBytes;
 import com.baidu.titan.dex.extensions.BestEffortMultiDexSplitter;
 import com.baidu.titan.dex.extensions.DexClassKindMarker;
-import com.baidu.titan.dex.extensions.DexInterfacesHierarchyFiller;
-import com.baidu.titan.dex.extensions.DexSubClassHierarchyFiller;
-import com.baidu.titan.dex.extensions.DexSuperClassHierarchyFiller;
+import com.baidu.titan.dex.node.DexClassNode;
 import com.baidu.titan.dex.node.DexClassPoolNode;
 import com.baidu.titan.dex.node.MultiDexFileNode;
-import com.baidu.titan.dex.writer.MultiDexFileWriter;
+import com.baidu.titan.dex.visitor.DexClassPoolNodeVisitor;
 import com.baidu.titan.sdk.runtime.InteceptParameters;
 
 import org.dom4j.Document;
@@ -44,17 +48,17 @@ import org.dom4j.Element;
 import org.dom4j.Node;
 import org.dom4j.io.SAXReader;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -70,6 +74,11 @@ public class InstrumentMain {
      */
     private Argument mArgument;
 
+    private final PhaseTelemetry mTelemetry = new PhaseTelemetry("instrument");
+
+    /** 增量插桩缓存，未开启增量插桩时为null */
+    private IncrementalInstrumentCache mIncrementalCache;
+
     /**
      * 插桩参数信息
      */
@@ -112,6 +121,30 @@ public class InstrumentMain {
 
         private boolean makeVirtualMethodToPublic = true;
 
+        /** 按类并发插桩的线程数，小于等于1时使用单线程插桩 */
+        private int instrumentParallelism = 1;
+
+        /** 并发写入dex的线程数，小于等于1时单线程写入 */
+        private int dexWriterThreadCount = 1;
+
+        /** 增量插桩缓存目录，为null时不开启增量插桩 */
+        private File incrementalCacheDir;
+
+        /** boot class path的dex缓存目录，为null时每次都解析boot class path中的jar */
+        private File libraryDexCacheDir;
+
+        /** 是否按需解析library class */
+        private boolean lazyLibraryLoading = false;
+
+        /** 按应用统计生成的invokeXX方法个数上限，小于等于0时使用设定的参数列表 */
+        private int specialParasBudget = 0;
+
+        /** 是否将invokeCommon的参数数组构造外置到每个dex共享的桩方法中 */
+        private boolean interceptStub = false;
+
+        /** 插桩信息输出文件，为null时不输出 */
+        private File instrumentInfoFile;
+
         public void setWorkDir(File workDir) {
             this.workDir = workDir;
         }
@@ -171,6 +204,102 @@ public class InstrumentMain {
             this.mainDexList = mainDexList;
         }
 
+        /**
+         * 设置按类并发插桩的线程数，并发插桩的输出与单线程插桩保持一致
+         *
+         * @param parallelism 线程数，小于等于1时使用单线程插桩
+         */
+        public void setInstrumentParallelism(int parallelism) {
+            this.instrumentParallelism = parallelism;
+        }
+
+        public int getInstrumentParallelism() {
+            return instrumentParallelism;
+        }
+
+        /**
+         * 设置并发写入dex的线程数，每个dex在独立的线程中编码，输出与单线程写入一致
+         *
+         * @param threadCount 线程数，小于等于1时单线程写入
+         */
+        public void setDexWriterThreadCount(int threadCount) {
+            this.dexWriterThreadCount = threadCount;
+        }
+
+        public int getDexWriterThreadCount() {
+            return dexWriterThreadCount;
+        }
+
+        /**
+         * 设置增量插桩缓存目录，仅对方法级插桩生效，未变化的类直接复用上次的插桩结果
+         *
+         * @param cacheDir 缓存目录，为null时不开启增量插桩
+         */
+        public void setIncrementalCacheDir(File cacheDir) {
+            this.incrementalCacheDir = cacheDir;
+        }
+
+        public File getIncrementalCacheDir() {
+            return incrementalCacheDir;
+        }
+
+        public void setLibraryDexCacheDir(File dexCacheDir) {
+            this.libraryDexCacheDir = dexCacheDir;
+        }
+
+        /**
+         * 设置是否按需解析library class，仅对方法级插桩生效
+         *
+         * @param lazy 为true时只建立boot class path的索引，library class在第一次被引用时才解析
+         */
+        public void setLazyLibraryLoading(boolean lazy) {
+            this.lazyLibraryLoading = lazy;
+        }
+
+        /**
+         * 设置invokeXX方法个数上限，仅对方法级插桩生效。
+         * 开启后根据当前应用方法的参数列表分布选择invokeXX方法，并生成对应的Interceptable、
+         * SimpleInterceptor、InterceptableDelegate替换titan-sdk中的默认版本
+         *
+         * @param budget invokeXX方法个数上限，小于等于0时使用setInterceptInvokeSpecialParas设定的参数列表
+         */
+        public void setSpecialParasBudget(int budget) {
+            this.specialParasBudget = budget;
+        }
+
+        public int getSpecialParasBudget() {
+            return specialParasBudget;
+        }
+
+        /**
+         * 设置是否使用外置桩方法，仅对方法级插桩生效。
+         * 开启后未命中invokeXX的方法不再内联参数数组的构造及装箱，而是调用所在dex中按参数列表共享的桩方法，
+         * 以减小插桩后的dex体积
+         *
+         * @param interceptStub 是否使用外置桩方法
+         */
+        public void setInterceptStub(boolean interceptStub) {
+            this.interceptStub = interceptStub;
+        }
+
+        public boolean isInterceptStub() {
+            return interceptStub;
+        }
+
+        /**
+         * 设置插桩信息输出文件，仅对方法级插桩生效。
+         * 插桩信息包括method id以及插桩后的access flags，生成patch时使用插桩信息代替old-instrumented dex
+         *
+         * @param infoFile 插桩信息文件，为null时不输出
+         */
+        public void setInstrumentInfoFile(File infoFile) {
+            this.instrumentInfoFile = infoFile;
+        }
+
+        public File getInstrumentInfoFile() {
+            return instrumentInfoFile;
+        }
+
         /**
          * 设置是否过滤meizu push sdk
          *
@@ -186,61 +315,54 @@ public class InstrumentMain {
         this.mArgument = argument;
     }
 
+    /**
+     * @return 插桩各阶段的统计信息，doInstrument结束后同时输出到工作目录
+     */
+    public PhaseTelemetry getTelemetry() {
+        return mTelemetry;
+    }
+
+    /**
+     * @return doInstrument使用的增量插桩缓存，未开启增量插桩时为null
+     */
+    public IncrementalInstrumentCache getIncrementalCache() {
+        return mIncrementalCache;
+    }
+
     private boolean fillApplicationPool(ApplicationDexPool appPool, Argument argument) {
 
         // convert dex files to class pool
+        PhaseTelemetry.Phase phase = mTelemetry.begin("parse-program-dex");
         appPool.fillProgramDexs(mArgument.orgDexs);
+        phase.end(getProgramClassCount(appPool));
 
-        for (File libraryFile: mArgument.bootClassPath) {
-            JarInputStream jarInput = null;
-            try {
-                jarInput = new JarInputStream(new FileInputStream(libraryFile));
-                JarEntry jarEntry = null;
-                while ((jarEntry = jarInput.getNextJarEntry()) != null) {
-                    if (jarEntry.isDirectory()) {
-                        continue;
-                    }
-                    if (!jarEntry.getName().endsWith(".class")) {
-                        continue;
-                    }
-
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    byte[] buffer = new byte[16 * 1024];
-                    int len;
-
-                    while ((len = jarInput.read(buffer)) > 0) {
-                        baos.write(buffer, 0, len);
-                    }
-
-                    appPool.fillLibraryClass(baos.toByteArray());
-                }
-
-            } catch (IOException e) {
-                e.printStackTrace();
-                return false;
-            } finally {
-                try {
-                    if (jarInput != null) {
-                        jarInput.close();
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-
+        phase = mTelemetry.begin("load-library");
+        try {
+            // 全量插桩需要遍历所有library class构建组件层级，不支持按需解析
+            if (mArgument.lazyLibraryLoading
+                    && mArgument.getInstrumentType() == InstrumentType.METHOD) {
+                return appPool.fillLibraryLazily(mArgument.bootClassPath);
             }
-
+            return LibraryDexCache.fillLibraryPool(appPool, mArgument.bootClassPath,
+                    mArgument.libraryDexCacheDir);
+        } finally {
+            phase.end();
         }
-        return true;
+    }
+
+    private static long getProgramClassCount(ApplicationDexPool appPool) {
+        return appPool.getProgramClassPool().stream().count();
     }
 
     private void setupProject(ApplicationDexPool appPool, Argument argument) {
         // fill library and program class pool
         fillApplicationPool(appPool, argument);
 
+        PhaseTelemetry.Phase phase = mTelemetry.begin("setup-components");
+
         // setup component info
         if (argument.fromApkFile) {
-            File projectApkToolDir = new File(argument.workDir, "instrumentApkToolDir");
-            fillComponentInfoFromApk(projectApkToolDir, argument.apkFile, argument.components);
+            BinaryManifestReader.fillComponentsInfo(argument.apkFile, argument.components);
         } else {
             if (argument.manifestFile != null) {
                 fillComponentsInfo(argument.manifestFile, argument.components);
@@ -255,19 +377,7 @@ public class InstrumentMain {
         appPool.acceptLibrary(
                 new DexClassKindMarker(DexClassKindMarker.ClassKind.CLASS_KIND_LIBRARY));
 
-
-    }
-
-    private static boolean fillComponentInfoFromApk(File apktoolDir, File apkPath,
-                                                    Map<String, List<String>> components) {
-        if (!apktoolDir.exists()) {
-            if (!Apktool.decodeApk(apkPath, apktoolDir, Apktool.FLAG_NO_SOURCE)) {
-                return false;
-            }
-        }
-
-        File manifestFile = new File(apktoolDir, "apktool-out/AndroidManifest.xml");
-        return fillComponentsInfo(manifestFile, components);
+        phase.end();
     }
 
     private static boolean fillComponentsInfo(File manifestFile,
@@ -323,6 +433,22 @@ public class InstrumentMain {
         }
     }
 
+    /**
+     * 对program class pool中的每个类执行互相独立的transformation，每一轮结束后才会进入下一轮，
+     * 因此同一轮中只会修改当前类，对其他类只有读操作。
+     *
+     * @param forkJoinPool 为null时单线程执行
+     */
+    private static void acceptProgramPerClass(ApplicationDexPool appPool,
+                                              ForkJoinPool forkJoinPool,
+                                              Supplier<DexClassPoolNodeVisitor> visitorFactory) {
+        if (forkJoinPool == null) {
+            appPool.acceptProgram(visitorFactory.get());
+        } else {
+            appPool.acceptProgramParallel(visitorFactory, forkJoinPool);
+        }
+    }
+
     /**
      * 执行插桩逻辑
      *
@@ -334,15 +460,26 @@ public class InstrumentMain {
 
         ApplicationDexPool appPool = new ApplicationDexPool(factory);
 
+        try {
+            return doInstrument(appPool, factory);
+        } finally {
+            // 关闭按需解析library class时打开的jar
+            appPool.close();
+        }
+    }
+
+    private MultiDexFileBytes doInstrument(ApplicationDexPool appPool,
+                                           TitanDexItemFactory factory) {
         this.mArgument.workDir.mkdirs();
 
         setupProject(appPool, this.mArgument);
 
         // setup for class hierarchy
-        appPool.acceptAll(new DexSuperClassHierarchyFiller(appPool::findClassFromAll));
-        appPool.acceptAll(new DexSubClassHierarchyFiller(appPool::findClassFromAll));
-        appPool.acceptAll(new DexInterfacesHierarchyFiller(appPool::findClassFromAll));
+        PhaseTelemetry.Phase phase = mTelemetry.begin("fill-hierarchy");
+        appPool.fillClassHierarchy();
+        phase.end(getProgramClassCount(appPool));
 
+        phase = mTelemetry.begin("prepare");
         if (this.mArgument.filterMeizuPush) {
             appPool.acceptProgram(new MeizuPushMarker());
         }
@@ -398,51 +535,188 @@ public class InstrumentMain {
             appPool.acceptProgram(new ComponentClassFilter(new StaticInitMethodFiller(factory)));
         }
 
-        // 对于方法级热修复，是否支持新增字段的修复能力
-        boolean supportAddField = true;
-        if (supportAddField) {
-            appPool.acceptProgram(
-                    new DisableInterceptClassNodePoolVisitorFilter(
-                            new FieldSupportTransformation(factory), true));
+        // 按应用方法的参数列表分布选择invokeXX方法，需要在增量插桩之前确定
+        List<DexClassNode> interceptableClasses = null;
+        if (mArgument.getSpecialParasBudget() > 0
+                && mArgument.getInstrumentType() == InstrumentType.METHOD
+                && appPool.getProgramClassPool().getClass(factory.interceptableClass.type) != null) {
+            SpecialParameterAnalyzer analyzer =
+                    new SpecialParameterAnalyzer(mArgument.getSpecialParasBudget());
+            appPool.acceptProgram(analyzer);
+            String[] specialParas = analyzer.getSpecialParameters();
+            mArgument.setInterceptInvokeSpecialParas(specialParas);
+            interceptableClasses = new InterceptableGenerator(factory, specialParas).generate();
+            mTelemetry.setCounter("special-parameter-count", specialParas.length);
+            mTelemetry.setCounter("special-parameter-covered-methods",
+                    analyzer.getCoveredMethodCount(specialParas));
+            mTelemetry.setCounter("special-parameter-total-methods", analyzer.getMethodCount());
         }
 
-        // 添加拦截器字段
-        appPool.acceptProgram(
-                new DisableInterceptClassNodePoolVisitorFilter(
-                        new AddInterceptorFieldTransformation(factory), true));
+        phase.end(getProgramClassCount(appPool));
 
-        // do real instrument
-        appPool.acceptProgram(
-                new DisableInterceptClassNodePoolVisitorFilter(
-                        new InstrumentTransformation(
-                                factory,
-                                true,
-                                mArgument.getInstrumentType(),
-                                appPool,
-                                mArgument.getInterceptInvokeSpecialPars()),
-                        true));
+        phase = mTelemetry.begin("transform");
+        ForkJoinPool forkJoinPool = mArgument.getInstrumentParallelism() > 1
+                ? new ForkJoinPool(mArgument.getInstrumentParallelism()) : null;
+        IncrementalInstrumentCache instrumentCache = null;
+        try {
+            // 增量插桩，指纹未变化的类跳过后续transformation
+            if (mArgument.getIncrementalCacheDir() != null
+                    && mArgument.getInstrumentType() == InstrumentType.METHOD) {
+                instrumentCache = new IncrementalInstrumentCache(
+                        mArgument.getIncrementalCacheDir(), getInstrumentConfigKey());
+                instrumentCache.load();
+                acceptProgramPerClass(appPool, forkJoinPool, instrumentCache::newFingerprintVisitor);
+                mTelemetry.setCounter("incremental-reused-classes",
+                        instrumentCache.prepareReusableClasses(factory));
+                mTelemetry.setCounter("incremental-reinstrumented-classes",
+                        instrumentCache.getReinstrumentedTypes().size());
+            }
+            final IncrementalInstrumentCache cache = instrumentCache;
+            Function<DexClassPoolNodeVisitor, DexClassPoolNodeVisitor> skipReusable =
+                    visitor -> cache == null ? visitor : cache.skipReusable(visitor);
+
+            // 对于方法级热修复，是否支持新增字段的修复能力
+            boolean supportAddField = true;
+            if (supportAddField) {
+                acceptProgramPerClass(appPool, forkJoinPool, () -> skipReusable.apply(
+                        new DisableInterceptClassNodePoolVisitorFilter(
+                                new FieldSupportTransformation(factory), true)));
+            }
+
+            // 添加拦截器字段
+            acceptProgramPerClass(appPool, forkJoinPool, () -> skipReusable.apply(
+                    new DisableInterceptClassNodePoolVisitorFilter(
+                            new AddInterceptorFieldTransformation(factory), true)));
+
+            // do real instrument
+            acceptProgramPerClass(appPool, forkJoinPool, () -> skipReusable.apply(
+                    new DisableInterceptClassNodePoolVisitorFilter(
+                            new InstrumentTransformation(
+                                    factory,
+                                    true,
+                                    mArgument.getInstrumentType(),
+                                    appPool,
+                                    mArgument.getInterceptInvokeSpecialPars(),
+                                    isInterceptStubEnabled()),
+                            true)));
+        } finally {
+            if (forkJoinPool != null) {
+                forkJoinPool.shutdown();
+            }
+        }
+        mIncrementalCache = instrumentCache;
+        phase.end(getProgramClassCount(appPool));
 
         // ApplicationDexPool.programPool => DexClassPoolNode
+        phase = mTelemetry.begin("collect-output");
         DexClassPoolNode classPool = new DexClassPoolNode();
-        appPool.acceptProgram(classPool.asVisitor());
+        DexClassPoolNodeVisitor outputVisitor = instrumentCache != null
+                ? instrumentCache.collectOutput(classPool) : classPool.asVisitor();
+        if (interceptableClasses != null) {
+            outputVisitor = replaceClasses(outputVisitor, interceptableClasses);
+        }
+        appPool.acceptProgram(outputVisitor);
 
         Set<DexType> mainDexList = mArgument.mainDexList == null
                 ? Collections.emptySet() : mArgument.mainDexList;
+
+        // 根据插桩结果中引用的桩方法生成桩类，桩类与引用它的类使用相同的dex id
+        if (isInterceptStubEnabled()) {
+            int stubCount = new InterceptStubGenerator(factory).generate(classPool);
+            mTelemetry.setCounter("intercept-stub-methods", stubCount);
+            // main dex中的类引用的桩类同样需要放入main dex
+            Set<DexType> mainDexStubTypes =
+                    InterceptStubGenerator.getReferencedStubTypes(classPool, mainDexList);
+            if (!mainDexStubTypes.isEmpty()) {
+                mainDexList = new HashSet<>(mainDexList);
+                mainDexList.addAll(mainDexStubTypes);
+            }
+            mTelemetry.setCounter("intercept-stub-main-dex-classes", mainDexStubTypes.size());
+        }
+        phase.end(classPool.stream().count());
+
         // multidex分包策略
         // TODO 后继根据DexLayout进行关联度分析进行分包
+        phase = mTelemetry.begin("multidex-split");
         BestEffortMultiDexSplitter multiDexSplitter =
                 new BestEffortMultiDexSplitter(classPool, mainDexList, false);
         multiDexSplitter.split();
+        phase.end(classPool.stream().count());
 
         // 写入后端文件
+        phase = mTelemetry.begin("write-dex");
         MultiDexFileNode mdfn = multiDexSplitter.getMultiDexFileNode();
-        MultiDexFileWriter writer = new MultiDexFileWriter();
-//        ExecutorService executors =
-//                Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-//        mdfn.accept(writer, executors);
-        mdfn.accept(writer);
-//        executors.shutdown();
-
-        return writer.getMultiDexFileBytes();
+        MultiDexFileBytes outBytes =
+                ConcurrentMultiDexWriter.write(mdfn, mArgument.getDexWriterThreadCount());
+        phase.end();
+
+        phase = mTelemetry.begin("save-cache");
+        if (instrumentCache != null) {
+            instrumentCache.save(outBytes);
+        }
+        if (mArgument.getInstrumentInfoFile() != null && mArgument.orgDexs != null
+                && mArgument.getInstrumentType() == InstrumentType.METHOD) {
+            DexClassNode interceptableClass = classPool.getClass(factory.interceptableClass.type);
+            try {
+                BaseFingerprintStore.writeInstrumentInfo(mArgument.getInstrumentInfoFile(),
+                        mArgument.orgDexs, outBytes, classPool,
+                        interceptableClass == null ? null
+                                : SpecialParameterAnalyzer.readFromInterceptable(interceptableClass));
+            } catch (IOException e) {
+                // 插桩信息是指定的输出，写入失败时中止，避免生成patch时使用不完整的插桩信息
+                throw new IllegalStateException("write instrument info failed", e);
+            }
+        }
+        phase.end();
+
+        mTelemetry.writeTo(new File(mArgument.workDir, PhaseTelemetry.INSTRUMENT_FILE_NAME));
+        return outBytes;
+    }
+
+    /**
+     * 输出时使用生成的类替换同名的program class，并保留原有的dex id
+     */
+    private static DexClassPoolNodeVisitor replaceClasses(DexClassPoolNodeVisitor delegate,
+                                                          List<DexClassNode> newClasses) {
+        Map<DexType, DexClassNode> replacements = new HashMap<>();
+        newClasses.forEach(dcn -> replacements.put(dcn.type, dcn));
+        return new DexClassPoolNodeVisitor() {
+            @Override
+            public void visitClass(DexClassNode dcn) {
+                DexClassNode newClass = replacements.get(dcn.type);
+                if (newClass == null) {
+                    delegate.visitClass(dcn);
+                    return;
+                }
+                DexClassKindMarker.setClassKind(newClass,
+                        DexClassKindMarker.ClassKind.CLASS_KIND_PROGRAM);
+                newClass.setExtraInfo(Constant.EXTRA_KEY_DEX_ID,
+                        dcn.getExtraInfo(Constant.EXTRA_KEY_DEX_ID, -1));
+                delegate.visitClass(newClass);
+            }
+
+            @Override
+            public void classPoolVisitEnd() {
+                delegate.classPoolVisitEnd();
+            }
+        };
+    }
+
+    private boolean isInterceptStubEnabled() {
+        return mArgument.isInterceptStub() && mArgument.getInstrumentType() == InstrumentType.METHOD;
+    }
+
+    /**
+     * 影响所有类插桩结果的参数，变化时增量插桩缓存整体失效。
+     * boot class path变化（如升级compileSdk）会影响library类的解析结果，也包含在内
+     */
+    private String getInstrumentConfigKey() {
+        String[] specialParas = mArgument.getInterceptInvokeSpecialPars();
+        return mArgument.getInstrumentType()
+                + ";" + (specialParas == null ? "" : String.join(",", specialParas))
+                + ";" + mArgument.isMakeVirtualMethodToPublic()
+                + ";" + mArgument.filterMeizuPush
+                + ";" + isInterceptStubEnabled()
+                + ";" + TitanHashs.classPathHash(mArgument.bootClassPath);
     }
 }
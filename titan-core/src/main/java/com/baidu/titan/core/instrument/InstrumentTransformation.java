@@ -16,6 +16,7 @@
 
 package com.baidu.titan.core.instrument;
 
+import com.baidu.titan.core.Constant;
 import com.baidu.titan.core.TitanDexItemFactory;
 import com.baidu.titan.core.component.AndroidComponentFlag;
 import com.baidu.titan.core.component.AndroidComponentMarker;
@@ -60,13 +61,26 @@ public class InstrumentTransformation implements DexClassPoolNodeVisitor, DexCla
 
     private ApplicationDexPool mAppPool;
 
+    /** 普通方法是否通过外置桩方法调用invokeCommon */
+    private final boolean mInterceptStub;
+
 
     public InstrumentTransformation(TitanDexItemFactory factory,
                                     boolean instrumentInitMethod,
                                     InstrumentType instrumentType,
                                     ApplicationDexPool appPool,
                                     String[] invokeSpecialParas) {
+        this(factory, instrumentInitMethod, instrumentType, appPool, invokeSpecialParas, false);
+    }
+
+    public InstrumentTransformation(TitanDexItemFactory factory,
+                                    boolean instrumentInitMethod,
+                                    InstrumentType instrumentType,
+                                    ApplicationDexPool appPool,
+                                    String[] invokeSpecialParas,
+                                    boolean interceptStub) {
         this.mFactory = factory;
+        this.mInterceptStub = interceptStub;
         this.mInstrumentInitMethod = instrumentInitMethod;
         this.mInstrumentType = instrumentType;
         this.mAppPool = appPool;
@@ -213,7 +227,10 @@ public class InstrumentTransformation implements DexClassPoolNodeVisitor, DexCla
                             mCurrentClassNode,
                             dmn,
                             mFactory,
-                            mSpecialParameterSet)));
+                            mSpecialParameterSet,
+                            mInterceptStub ? InterceptStubGenerator.getStubType(mFactory,
+                                    mCurrentClassNode.getExtraInfo(Constant.EXTRA_KEY_DEX_ID, -1))
+                                    : null)));
             dmn.setCode(newDcn);
             DexCodeRegisterCalculator.autoSetRegisterCountForMethodNode(dmn);
         }
@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.instrument;
+
+import com.baidu.titan.core.Constant;
+import com.baidu.titan.core.TitanDexItemFactory;
+import com.baidu.titan.dex.DexAccessFlags;
+import com.baidu.titan.dex.DexConst;
+import com.baidu.titan.dex.DexRegister;
+import com.baidu.titan.dex.DexRegisterList;
+import com.baidu.titan.dex.DexType;
+import com.baidu.titan.dex.DexTypeList;
+import com.baidu.titan.dex.Dops;
+import com.baidu.titan.dex.extensions.DexClassKindMarker;
+import com.baidu.titan.dex.extensions.DexCodeFormatVerifier;
+import com.baidu.titan.dex.extensions.DexCodeRegisterCalculator;
+import com.baidu.titan.dex.node.DexClassNode;
+import com.baidu.titan.dex.node.DexClassPoolNode;
+import com.baidu.titan.dex.node.DexCodeNode;
+import com.baidu.titan.dex.node.DexMethodNode;
+import com.baidu.titan.dex.node.insn.DexConstInsnNode;
+import com.baidu.titan.dex.visitor.DexLabel;
+import com.baidu.titan.dex.visitor.DexMethodVisitor;
+import com.baidu.titan.dex.visitor.DexMethodVisitorInfo;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * invokeCommon的外置桩方法
+ *
+ * 开启后，插桩方法不再内联构造参数数组及装箱，而是通过一条invoke-static/range调用同一个dex中的桩方法：
+ * <pre>
+ * static InterceptResult invokeCommon(Interceptable ic, int methodId, Object thisObj, ...);
+ * </pre>
+ * 相同参数列表(引用类型统一为Object)的方法共享一个桩方法，桩方法中先调用hasCommonIntercept，
+ * 命中后才构造参数数组并调用invokeCommon。
+ *
+ * 桩方法按插桩后实际引用的方法引用生成，因此增量插桩复用的类同样适用。
+ *
+ * @since 2026/10/18
+ */
+public class InterceptStubGenerator {
+
+    private static final String STUB_TYPE_PREFIX = "Lcom/baidu/titan/sdk/runtime/InterceptStub";
+
+    private static final String STUB_METHOD_NAME = "invokeCommon";
+
+    /** 桩方法使用的local寄存器个数，见generateStubMethod */
+    private static final int STUB_LOCAL_REG_COUNT = 3;
+
+    /** aput-object等非range指令只能访问v0-v255 */
+    private static final int MAX_STUB_FRAME_REG_COUNT = 256;
+
+    private final TitanDexItemFactory mFactory;
+
+    public InterceptStubGenerator(TitanDexItemFactory factory) {
+        this.mFactory = factory;
+    }
+
+    /**
+     * @param dexId 插桩类所在的dex id
+     * @return 该dex中桩方法所在的类
+     */
+    public static DexType getStubType(TitanDexItemFactory factory, int dexId) {
+        return factory.createType(STUB_TYPE_PREFIX + Math.max(dexId, 0) + ";");
+    }
+
+    /**
+     * @param parameters 插桩方法的参数列表
+     * @return 插桩方法对应的桩方法引用
+     */
+    public static DexConst.ConstMethodRef getStubMethod(TitanDexItemFactory factory,
+                                                         DexType stubType,
+                                                         DexTypeList parameters) {
+        DexTypeList.Builder paraTypesBuilder = DexTypeList.newBuilder();
+        paraTypesBuilder.addType(factory.interceptableClass.type);
+        paraTypesBuilder.addType(factory.integerClass.primitiveType);
+        paraTypesBuilder.addType(factory.objectClass.type);
+        for (DexType type : parameters.types()) {
+            paraTypesBuilder.addType(type.isPrimitiveType() ? type : factory.objectClass.type);
+        }
+        return DexConst.ConstMethodRef.make(
+                stubType,
+                factory.createString(STUB_METHOD_NAME),
+                factory.interceptResultClass.type,
+                paraTypesBuilder.build());
+    }
+
+    /**
+     * 桩方法在local寄存器之后依次存放参数，并通过非range的aput-object直接访问参数寄存器，
+     * 因此整个frame（local + 参数）不能超过256个寄存器，超出时插桩方法需要使用内联的invokeCommon
+     *
+     * @param stubParaRegCount 桩方法参数占用的寄存器个数，即插桩方法调用桩方法的invoke-range寄存器个数
+     * @return 是否可以生成对应的桩方法
+     */
+    public static boolean canGenerateStub(int stubParaRegCount) {
+        return stubParaRegCount + STUB_LOCAL_REG_COUNT <= MAX_STUB_FRAME_REG_COUNT;
+    }
+
+    private static boolean isStubType(DexType type) {
+        return type.toTypeDescriptor().startsWith(STUB_TYPE_PREFIX);
+    }
+
+    private static int getStubDexId(DexType stubType) {
+        String desc = stubType.toTypeDescriptor();
+        return Integer.parseInt(desc.substring(STUB_TYPE_PREFIX.length(), desc.length() - 1));
+    }
+
+    /**
+     * 扫描插桩后的类中引用的桩方法，生成桩类并添加到classPool中
+     *
+     * @return 生成的桩方法个数
+     */
+    public int generate(DexClassPoolNode classPool) {
+        // stub type -> (参数描述 -> 桩方法引用)，排序保证输出稳定
+        Map<DexType, Map<String, DexConst.ConstMethodRef>> stubMethods =
+                new TreeMap<>((t1, t2) -> t1.toTypeDescriptor().compareTo(t2.toTypeDescriptor()));
+        classPool.forEach(dcn -> forEachStubMethod(dcn, methodRef -> stubMethods
+                .computeIfAbsent(methodRef.getOwner(), t -> new TreeMap<>())
+                .putIfAbsent(getParameterKey(methodRef.getParameterTypes()), methodRef)));
+
+        int[] stubCount = new int[1];
+        stubMethods.forEach((stubType, methods) -> {
+            DexClassNode stubClass = new DexClassNode(
+                    stubType,
+                    new DexAccessFlags(DexAccessFlags.ACC_PUBLIC | DexAccessFlags.ACC_FINAL
+                            | DexAccessFlags.ACC_SYNTHETIC),
+                    mFactory.objectClass.type,
+                    DexTypeList.empty());
+            methods.values().forEach(methodRef -> {
+                stubClass.addMethod(generateStubMethod(methodRef));
+                stubCount[0]++;
+            });
+            DexClassKindMarker.setClassKind(stubClass,
+                    DexClassKindMarker.ClassKind.CLASS_KIND_PROGRAM);
+            stubClass.setExtraInfo(Constant.EXTRA_KEY_DEX_ID, getStubDexId(stubType));
+            classPool.addClass(stubClass);
+        });
+        return stubCount[0];
+    }
+
+    /**
+     * 获取指定的类引用的桩类。桩类需要与引用它的类一起放入main dex，
+     * 否则main dex中的类在secondary dex加载之前执行插桩代码时会找不到桩类。
+     *
+     * @param classPool 插桩后的class pool
+     * @param types 引用桩类的类，例如mainDexList
+     * @return 引用的桩类
+     */
+    public static Set<DexType> getReferencedStubTypes(DexClassPoolNode classPool,
+                                                      Set<DexType> types) {
+        Set<DexType> stubTypes = new HashSet<>();
+        for (DexType type : types) {
+            DexClassNode dcn = classPool.getClass(type);
+            if (dcn != null) {
+                forEachStubMethod(dcn, methodRef -> stubTypes.add(methodRef.getOwner()));
+            }
+        }
+        return stubTypes;
+    }
+
+    private static void forEachStubMethod(DexClassNode dcn,
+                                          Consumer<DexConst.ConstMethodRef> consumer) {
+        dcn.getMethods().forEach(dmn -> {
+            DexCodeNode codeNode = dmn.getCode();
+            if (codeNode == null) {
+                return;
+            }
+            codeNode.getInsns().stream()
+                    .filter(node -> node instanceof DexConstInsnNode)
+                    .map(node -> (DexConstInsnNode) node)
+                    .filter(node -> node.getOpcode() == Dops.INVOKE_STATIC_RANGE)
+                    .map(node -> (DexConst.ConstMethodRef) node.getConst())
+                    .filter(methodRef -> isStubType(methodRef.getOwner()))
+                    .forEach(consumer);
+        });
+    }
+
+    private static String getParameterKey(DexTypeList parameters) {
+        StringBuilder key = new StringBuilder();
+        for (DexType type : parameters.types()) {
+            key.append(type.toTypeDescriptor());
+        }
+        return key.toString();
+    }
+
+    /**
+     * <pre>
+     * if (!ic.hasCommonIntercept(methodId)) {
+     *     return null;
+     * }
+     * return ic.invokeCommon(methodId, thisObj, new Object[] {arg0, arg1, ...});
+     * </pre>
+     *
+     * <pre>
+     * v0             v1         v2           p0    p1          p2        p3 ... pn
+     * [para array] [array idx] [boxed arg]  [ic]  [method id] [thisObj] [args]
+     * </pre>
+     */
+    private DexMethodNode generateStubMethod(DexConst.ConstMethodRef methodRef) {
+        DexMethodNode dmn = new DexMethodNode(new DexMethodVisitorInfo(
+                methodRef.getOwner(),
+                methodRef.getName(),
+                methodRef.getParameterTypes(),
+                methodRef.getReturnType(),
+                new DexAccessFlags(DexAccessFlags.ACC_PUBLIC | DexAccessFlags.ACC_STATIC
+                        | DexAccessFlags.ACC_SYNTHETIC)));
+
+        DexMethodVisitor methodVisitor = dmn.asVisitor();
+        DexCodeRegisterCalculator codeVisitor = new DexCodeRegisterCalculator(
+                true,
+                dmn.parameters,
+                new DexCodeFormatVerifier(methodVisitor.visitCode()));
+        codeVisitor.visitBegin();
+
+        final int vParaArrayReg = 0;
+        final int vArrayIdxReg = 1;
+        final int vBoxedReg = 2;
+        final int pInterceptorReg = 0;
+        final int pMethodIdReg = 1;
+        final int pThisObjReg = 2;
+        final int pFirstArgReg = 3;
+
+        // 未命中时直接返回null
+        DexLabel interceptLabel = new DexLabel();
+        codeVisitor.visitConstInsn(Dops.INVOKE_INTERFACE,
+                DexRegisterList.make(
+                        DexRegister.makeParameterReg(pInterceptorReg),
+                        DexRegister.makeParameterReg(pMethodIdReg)),
+                mFactory.interceptableClass.hasCommonInterceptMethod);
+        codeVisitor.visitSimpleInsn(Dops.MOVE_RESULT,
+                DexRegisterList.make(DexRegister.makeLocalReg(vParaArrayReg)));
+        codeVisitor.visitTargetInsn(Dops.IF_NEZ,
+                DexRegisterList.make(DexRegister.makeLocalReg(vParaArrayReg)), interceptLabel);
+        codeVisitor.visitConstInsn(Dops.CONST_4,
+                DexRegisterList.make(DexRegister.makeLocalReg(vParaArrayReg)),
+                DexConst.LiteralBits32.make(0));
+        codeVisitor.visitSimpleInsn(Dops.RETURN_OBJECT,
+                DexRegisterList.make(DexRegister.makeLocalReg(vParaArrayReg)));
+
+        codeVisitor.visitLabel(interceptLabel);
+
+        DexType[] paraTypes = methodRef.getParameterTypes().types();
+        int argCount = paraTypes.length - pFirstArgReg;
+        codeVisitor.visitConstInsn(Dops.CONST_16,
+                DexRegisterList.make(DexRegister.makeLocalReg(vParaArrayReg)),
+                DexConst.LiteralBits32.make(argCount));
+        codeVisitor.visitConstInsn(Dops.NEW_ARRAY,
+                DexRegisterList.make(
+                        DexRegister.makeLocalReg(vParaArrayReg),
+                        DexRegister.makeLocalReg(vParaArrayReg)),
+                DexConst.ConstType.make(mFactory.createArrayType(mFactory.objectClass.type)));
+
+        int pNextArgReg = pFirstArgReg;
+        for (int argIdx = 0; argIdx < argCount; argIdx++) {
+            DexType type = paraTypes[pFirstArgReg + argIdx];
+            codeVisitor.visitConstInsn(Dops.CONST_16,
+                    DexRegisterList.make(DexRegister.makeLocalReg(vArrayIdxReg)),
+                    DexConst.LiteralBits32.make(argIdx));
+            DexRegister valueReg;
+            if (type.isPrimitiveType()) {
+                // 对基本类型，要通过其包装类的valueOf方法进行装箱(box)
+                codeVisitor.visitConstInsn(Dops.INVOKE_STATIC_RANGE,
+                        DexRegisterList.make(type.isWideType() ?
+                                DexRegister.makeDoubleParameterReg(pNextArgReg) :
+                                DexRegister.makeParameterReg(pNextArgReg)),
+                        mFactory.methods.valueOfMethodForType(type));
+                codeVisitor.visitSimpleInsn(Dops.MOVE_RESULT_OBJECT,
+                        DexRegisterList.make(DexRegister.makeLocalReg(vBoxedReg)));
+                valueReg = DexRegister.makeLocalReg(vBoxedReg);
+            } else {
+                valueReg = DexRegister.makeParameterReg(pNextArgReg);
+            }
+            codeVisitor.visitSimpleInsn(Dops.APUT_OBJECT, DexRegisterList.make(
+                    valueReg,
+                    DexRegister.makeLocalReg(vParaArrayReg),
+                    DexRegister.makeLocalReg(vArrayIdxReg)));
+            pNextArgReg += type.isWideType() ? 2 : 1;
+        }
+
+        codeVisitor.visitConstInsn(Dops.INVOKE_INTERFACE,
+                DexRegisterList.make(
+                        DexRegister.makeParameterReg(pInterceptorReg),
+                        DexRegister.makeParameterReg(pMethodIdReg),
+                        DexRegister.makeParameterReg(pThisObjReg),
+                        DexRegister.makeLocalReg(vParaArrayReg)),
+                mFactory.interceptableClass.invokeCommonMethod);
+        codeVisitor.visitSimpleInsn(Dops.MOVE_RESULT_OBJECT,
+                DexRegisterList.make(DexRegister.makeLocalReg(vParaArrayReg)));
+        codeVisitor.visitSimpleInsn(Dops.RETURN_OBJECT,
+                DexRegisterList.make(DexRegister.makeLocalReg(vParaArrayReg)));
+
+        codeVisitor.fillRegisterCount();
+        codeVisitor.visitEnd();
+        methodVisitor.visitEnd();
+        return dmn;
+    }
+
+}
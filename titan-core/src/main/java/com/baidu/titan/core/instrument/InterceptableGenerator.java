@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.instrument;
+
+import com.baidu.titan.core.TitanDexItemFactory;
+import com.baidu.titan.dex.DexAccessFlags;
+import com.baidu.titan.dex.DexConst;
+import com.baidu.titan.dex.DexRegister;
+import com.baidu.titan.dex.DexRegisterList;
+import com.baidu.titan.dex.DexType;
+import com.baidu.titan.dex.DexTypeList;
+import com.baidu.titan.dex.Dops;
+import com.baidu.titan.dex.extensions.DexCodeFormatVerifier;
+import com.baidu.titan.dex.extensions.DexCodeRegisterCalculator;
+import com.baidu.titan.dex.node.DexClassNode;
+import com.baidu.titan.dex.node.DexFieldNode;
+import com.baidu.titan.dex.node.DexMethodNode;
+import com.baidu.titan.dex.visitor.DexLabel;
+import com.baidu.titan.dex.visitor.DexMethodVisitor;
+import com.baidu.titan.dex.visitor.DexMethodVisitorInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 根据invokeXX参数列表集合生成运行时的Interceptable、SimpleInterceptor、InterceptableDelegate，
+ * 用于替换titan-sdk中按默认titan_paras生成的版本，生成逻辑与titan-sdk/runtime/build.gradle相同。
+ * 修改其中一处时需要同步修改另一处，InterceptableGeneratorTest会检查两者生成的类声明是否一致。
+ *
+ * @since 2026/10/18
+ */
+public class InterceptableGenerator {
+
+    static final String INVOKE_COMMON_NAME = "Common";
+
+    static final String INVOKE_UNINIT_NAME = "UnInit";
+
+    static final String INVOKE_INIT_BODY_NAME = "InitBody";
+
+    private final TitanDexItemFactory mFactory;
+
+    private final String[] mSpecialParas;
+
+    public InterceptableGenerator(TitanDexItemFactory factory, String[] specialParas) {
+        this.mFactory = factory;
+        this.mSpecialParas = specialParas;
+    }
+
+    /**
+     * Interceptable中的所有方法
+     */
+    private List<DexConst.ConstMethodRef> getInterceptMethods() {
+        List<DexConst.ConstMethodRef> methods = new ArrayList<>();
+        methods.add(mFactory.interceptableClass.invokeUnInitMethod);
+        methods.add(mFactory.interceptableClass.invokeInitBodyMethod);
+        methods.add(mFactory.interceptableClass.invokeCommonMethod);
+        methods.add(mFactory.interceptableClass.hasCommonInterceptMethod);
+        for (String para : mSpecialParas) {
+            methods.add(mFactory.interceptableClass.getInvokeSpecialMethod(para));
+        }
+        return methods;
+    }
+
+    /**
+     * @return Interceptable、SimpleInterceptor、InterceptableDelegate
+     */
+    public List<DexClassNode> generate() {
+        List<DexClassNode> classes = new ArrayList<>();
+        classes.add(generateInterceptable());
+        classes.add(generateSimpleInterceptor());
+        classes.add(generateInterceptableDelegate());
+        return classes;
+    }
+
+    private DexClassNode generateInterceptable() {
+        DexClassNode dcn = new DexClassNode(
+                mFactory.interceptableClass.type,
+                new DexAccessFlags(DexAccessFlags.ACC_PUBLIC | DexAccessFlags.ACC_INTERFACE
+                        | DexAccessFlags.ACC_ABSTRACT),
+                mFactory.objectClass.type,
+                DexTypeList.empty());
+        for (DexConst.ConstMethodRef methodRef : getInterceptMethods()) {
+            dcn.addMethod(new DexMethodNode(new DexMethodVisitorInfo(
+                    dcn.type,
+                    methodRef.getName(),
+                    methodRef.getParameterTypes(),
+                    methodRef.getReturnType(),
+                    new DexAccessFlags(DexAccessFlags.ACC_PUBLIC | DexAccessFlags.ACC_ABSTRACT))));
+        }
+        return dcn;
+    }
+
+    private DexClassNode generateSimpleInterceptor() {
+        DexClassNode dcn = new DexClassNode(
+                mFactory.simpleInterceptorClass.type,
+                new DexAccessFlags(DexAccessFlags.ACC_PUBLIC),
+                mFactory.objectClass.type,
+                mFactory.createTypesVariable(mFactory.interceptableClass.type));
+        dcn.addMethod(generateInitMethod(dcn.type));
+        for (DexConst.ConstMethodRef methodRef : getInterceptMethods()) {
+            DexMethodNode dmn = new DexMethodNode(new DexMethodVisitorInfo(
+                    dcn.type,
+                    methodRef.getName(),
+                    methodRef.getParameterTypes(),
+                    methodRef.getReturnType(),
+                    new DexAccessFlags(DexAccessFlags.ACC_PUBLIC)));
+            DexMethodVisitor methodVisitor = dmn.asVisitor();
+            DexCodeRegisterCalculator codeVisitor = beginCode(dmn, methodVisitor);
+            // hasCommonIntercept默认返回true，由invokeCommon自行判断
+            writeReturnConstant(codeVisitor, methodRef.getReturnType(),
+                    methodRef == mFactory.interceptableClass.hasCommonInterceptMethod);
+            endCode(methodVisitor, codeVisitor);
+            dcn.addMethod(dmn);
+        }
+        return dcn;
+    }
+
+    private DexClassNode generateInterceptableDelegate() {
+        DexType delegateType = mFactory.delegateInterceptorClass.type;
+        DexClassNode dcn = new DexClassNode(
+                delegateType,
+                new DexAccessFlags(DexAccessFlags.ACC_PUBLIC | DexAccessFlags.ACC_ABSTRACT),
+                mFactory.objectClass.type,
+                mFactory.createTypesVariable(mFactory.interceptableClass.type));
+
+        DexConst.ConstFieldRef delegateField = mFactory.delegateInterceptorClass.interceptorField;
+        // patch异步加载时由加载线程赋值，其他线程读取，与ClassClinitInterceptorDelegate一致使用volatile
+        dcn.addField(new DexFieldNode(
+                delegateField.getName(),
+                delegateField.getType(),
+                delegateType,
+                new DexAccessFlags(DexAccessFlags.ACC_PUBLIC | DexAccessFlags.ACC_VOLATILE)));
+
+        dcn.addMethod(generateInitMethod(delegateType));
+
+        DexConst.ConstMethodRef waitLoadMethod = mFactory.delegateInterceptorClass.waitLoadMethod;
+        dcn.addMethod(new DexMethodNode(new DexMethodVisitorInfo(
+                delegateType,
+                waitLoadMethod.getName(),
+                waitLoadMethod.getParameterTypes(),
+                waitLoadMethod.getReturnType(),
+                new DexAccessFlags(DexAccessFlags.ACC_PUBLIC | DexAccessFlags.ACC_ABSTRACT))));
+
+        // patch apply中该类就绪后调用，默认实现为空，由LoaderManager中的子类通知等待的线程
+        DexConst.ConstMethodRef onAppliedMethod = mFactory.delegateInterceptorClass.onAppliedMethod;
+        DexMethodNode onAppliedNode = new DexMethodNode(new DexMethodVisitorInfo(
+                delegateType,
+                onAppliedMethod.getName(),
+                onAppliedMethod.getParameterTypes(),
+                onAppliedMethod.getReturnType(),
+                new DexAccessFlags(DexAccessFlags.ACC_PUBLIC)));
+        DexMethodVisitor methodVisitor = onAppliedNode.asVisitor();
+        DexCodeRegisterCalculator codeVisitor = beginCode(onAppliedNode, methodVisitor);
+        codeVisitor.visitSimpleInsn(Dops.RETURN_VOID, DexRegisterList.EMPTY);
+        endCode(methodVisitor, codeVisitor);
+        dcn.addMethod(onAppliedNode);
+
+        for (DexConst.ConstMethodRef methodRef : getInterceptMethods()) {
+            dcn.addMethod(generateDelegateMethod(delegateType, methodRef));
+        }
+        return dcn;
+    }
+
+    /**
+     * <pre>
+     * if (delegate == null) {
+     *     waitLoad();
+     * }
+     * if (delegate == null) {
+     *     return null;
+     * }
+     * return delegate.invokeXX(methodId, thisObj, ...);
+     * </pre>
+     */
+    private DexMethodNode generateDelegateMethod(DexType delegateType,
+                                                 DexConst.ConstMethodRef methodRef) {
+        DexType returnType = methodRef.getReturnType();
+        DexMethodNode dmn = new DexMethodNode(new DexMethodVisitorInfo(
+                delegateType,
+                methodRef.getName(),
+                methodRef.getParameterTypes(),
+                returnType,
+                new DexAccessFlags(DexAccessFlags.ACC_PUBLIC)));
+
+        DexMethodVisitor methodVisitor = dmn.asVisitor();
+        DexCodeRegisterCalculator codeVisitor = beginCode(dmn, methodVisitor);
+
+        final int vDelegateReg = 0;
+        final int pThisReg = 0;
+
+        DexLabel invokeLabel = new DexLabel();
+        DexRegisterList getDelegateRegs = DexRegisterList.make(
+                DexRegister.makeLocalReg(vDelegateReg),
+                DexRegister.makeParameterReg(pThisReg));
+        DexRegisterList checkDelegateRegs = DexRegisterList.make(
+                DexRegister.makeLocalReg(vDelegateReg));
+
+        codeVisitor.visitConstInsn(Dops.IGET_OBJECT, getDelegateRegs,
+                mFactory.delegateInterceptorClass.interceptorField);
+        codeVisitor.visitTargetInsn(Dops.IF_NEZ, checkDelegateRegs, invokeLabel);
+
+        codeVisitor.visitConstInsn(Dops.INVOKE_VIRTUAL,
+                DexRegisterList.make(DexRegister.makeParameterReg(pThisReg)),
+                mFactory.delegateInterceptorClass.waitLoadMethod);
+
+        codeVisitor.visitConstInsn(Dops.IGET_OBJECT, getDelegateRegs,
+                mFactory.delegateInterceptorClass.interceptorField);
+        codeVisitor.visitTargetInsn(Dops.IF_NEZ, checkDelegateRegs, invokeLabel);
+
+        writeReturnConstant(codeVisitor, returnType, false);
+
+        codeVisitor.visitLabel(invokeLabel);
+
+        // invoke-interface/range要求寄存器连续，this寄存器之后不再使用，将delegate放到this寄存器中
+        codeVisitor.visitSimpleInsn(Dops.MOVE_OBJECT, DexRegisterList.make(
+                DexRegister.makeParameterReg(pThisReg),
+                DexRegister.makeLocalReg(vDelegateReg)));
+
+        DexRegisterList.Builder invokeRegsBuilder = DexRegisterList.newBuilder();
+        invokeRegsBuilder.addReg(DexRegister.makeParameterReg(pThisReg));
+        int pNextParaReg = pThisReg + 1;
+        for (DexType type : methodRef.getParameterTypes().types()) {
+            if (type.isWideType()) {
+                invokeRegsBuilder.addReg(DexRegister.makeDoubleParameterReg(pNextParaReg));
+                pNextParaReg += 2;
+            } else {
+                invokeRegsBuilder.addReg(DexRegister.makeParameterReg(pNextParaReg));
+                pNextParaReg += 1;
+            }
+        }
+        codeVisitor.visitConstInsn(Dops.INVOKE_INTERFACE_RANGE, invokeRegsBuilder.build(),
+                methodRef);
+
+        if (returnType.isVoidType()) {
+            codeVisitor.visitSimpleInsn(Dops.RETURN_VOID, DexRegisterList.EMPTY);
+        } else {
+            DexRegisterList resultRegs = DexRegisterList.make(
+                    DexRegister.makeLocalReg(vDelegateReg));
+            codeVisitor.visitSimpleInsn(
+                    mFactory.dops.getMoveResultOpForType(returnType).opcode, resultRegs);
+            codeVisitor.visitSimpleInsn(
+                    mFactory.dops.getReturnOpForType(returnType).opcode, resultRegs);
+        }
+
+        endCode(methodVisitor, codeVisitor);
+        return dmn;
+    }
+
+    private DexMethodNode generateInitMethod(DexType owner) {
+        DexMethodNode dmn = new DexMethodNode(new DexMethodVisitorInfo(
+                owner,
+                mFactory.methods.initMethodName,
+                DexTypeList.empty(),
+                mFactory.voidClass.primitiveType,
+                new DexAccessFlags(DexAccessFlags.ACC_PUBLIC | DexAccessFlags.ACC_CONSTRUCTOR)));
+
+        DexMethodVisitor methodVisitor = dmn.asVisitor();
+        DexCodeRegisterCalculator codeVisitor = beginCode(dmn, methodVisitor);
+        codeVisitor.visitConstInsn(
+                Dops.INVOKE_DIRECT,
+                DexRegisterList.make(DexRegister.makeParameterReg(0)),
+                DexConst.ConstMethodRef.make(
+                        mFactory.objectClass.type,
+                        mFactory.methods.initMethodName,
+                        mFactory.voidClass.primitiveType,
+                        DexTypeList.empty()));
+        codeVisitor.visitSimpleInsn(Dops.RETURN_VOID, DexRegisterList.EMPTY);
+        endCode(methodVisitor, codeVisitor);
+        return dmn;
+    }
+
+    /**
+     * void方法直接返回，boolean及引用类型返回0(false/null)或1(true)
+     */
+    private void writeReturnConstant(DexCodeRegisterCalculator codeVisitor, DexType returnType,
+                                     boolean value) {
+        if (returnType.isVoidType()) {
+            codeVisitor.visitSimpleInsn(Dops.RETURN_VOID, DexRegisterList.EMPTY);
+            return;
+        }
+        final int vResultReg = 0;
+        DexRegisterList resultRegs = DexRegisterList.make(DexRegister.makeLocalReg(vResultReg));
+        codeVisitor.visitConstInsn(Dops.CONST_4, resultRegs,
+                DexConst.LiteralBits32.make(value ? 1 : 0));
+        codeVisitor.visitSimpleInsn(mFactory.dops.getReturnOpForType(returnType).opcode,
+                resultRegs);
+    }
+
+    private static DexCodeRegisterCalculator beginCode(DexMethodNode dmn,
+                                                       DexMethodVisitor methodVisitor) {
+        DexCodeRegisterCalculator codeVisitor = new DexCodeRegisterCalculator(
+                false,
+                dmn.parameters,
+                new DexCodeFormatVerifier(methodVisitor.visitCode()));
+        codeVisitor.visitBegin();
+        return codeVisitor;
+    }
+
+    private static void endCode(DexMethodVisitor methodVisitor,
+                                DexCodeRegisterCalculator codeVisitor) {
+        codeVisitor.fillRegisterCount();
+        codeVisitor.visitEnd();
+        methodVisitor.visitEnd();
+    }
+
+}
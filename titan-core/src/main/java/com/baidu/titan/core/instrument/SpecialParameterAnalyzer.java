@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.instrument;
+
+import com.baidu.titan.dex.DexItemFactory;
+import com.baidu.titan.dex.DexType;
+import com.baidu.titan.dex.DexTypeList;
+import com.baidu.titan.dex.node.DexClassNode;
+import com.baidu.titan.dex.node.DexMethodNode;
+import com.baidu.titan.dex.visitor.DexClassPoolNodeVisitor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 统计当前应用中需要插桩的方法的参数列表分布，选出invokeXX方法的参数列表集合
+ *
+ * 每个参数列表对应Interceptable中的一个invokeXX方法，不在集合中的方法通过invokeCommon拦截，
+ * 需要构造参数数组。在invokeXX方法个数不超过budget的前提下，选择覆盖方法数最多的参数列表。
+ *
+ * 需要在DisableInterceptMarker之后执行。
+ *
+ * @since 2026/10/18
+ */
+public class SpecialParameterAnalyzer implements DexClassPoolNodeVisitor {
+
+    private static final String INVOKE_PREFIX = "invoke";
+
+    /** invoke-range最多255个寄存器，除去interceptor、method id、thisObj */
+    private static final int MAX_PARAMETER_REGS = 255 - 3;
+
+    private final int mBudget;
+
+    /** 参数列表 -> 方法个数 */
+    private final Map<String, Integer> mHistogram = new HashMap<>();
+
+    private int mMethodCount;
+
+    /**
+     * @param budget invokeXX方法个数上限
+     */
+    public SpecialParameterAnalyzer(int budget) {
+        this.mBudget = budget;
+    }
+
+    /**
+     * 参数列表的短描述，与插桩时的规则一致：无参数为V，数组按引用类型处理
+     */
+    public static String getShortParameterDesc(DexTypeList parameters) {
+        if (parameters.count() == 0) {
+            return String.valueOf(DexItemFactory.VoidClass.SHORT_DESCRIPTOR);
+        }
+        StringBuilder descBuilder = new StringBuilder();
+        for (DexType type : parameters.types()) {
+            char shortType = type.toShortDescriptor();
+            if (shortType == DexItemFactory.ArrayType.SHORT_DESCRIPTOR) {
+                shortType = DexItemFactory.ReferenceType.SHORT_DESCRIPTOR;
+            }
+            descBuilder.append(shortType);
+        }
+        return descBuilder.toString();
+    }
+
+    /**
+     * 从Interceptable类中读取invokeXX方法对应的参数列表，用于Patch阶段与插桩结果保持一致
+     *
+     * @param interceptableClass 插桩后apk中的Interceptable类
+     * @return 参数列表集合
+     */
+    public static Set<String> readFromInterceptable(DexClassNode interceptableClass) {
+        Set<String> paras = new LinkedHashSet<>();
+        for (DexMethodNode dmn : interceptableClass.getMethods()) {
+            String name = dmn.name.toString();
+            if (!name.startsWith(INVOKE_PREFIX)) {
+                continue;
+            }
+            String desc = name.substring(INVOKE_PREFIX.length());
+            if (InterceptableGenerator.INVOKE_COMMON_NAME.equals(desc)
+                    || InterceptableGenerator.INVOKE_UNINIT_NAME.equals(desc)
+                    || InterceptableGenerator.INVOKE_INIT_BODY_NAME.equals(desc)) {
+                continue;
+            }
+            paras.add(desc);
+        }
+        return paras;
+    }
+
+    @Override
+    public void visitClass(DexClassNode dcn) {
+        if (DisableInterceptMarker.getInterceptDisable(dcn)) {
+            return;
+        }
+        for (DexMethodNode dmn : dcn.getMethods()) {
+            if (DisableInterceptMarker.getInterceptDisable(dmn)
+                    || dmn.isInstanceInitMethod() || dmn.isStaticInitMethod()) {
+                continue;
+            }
+            String desc = getShortParameterDesc(dmn.parameters);
+            if (getParameterRegCount(desc) > MAX_PARAMETER_REGS) {
+                continue;
+            }
+            mHistogram.merge(desc, 1, Integer::sum);
+            mMethodCount++;
+        }
+    }
+
+    @Override
+    public void classPoolVisitEnd() {
+
+    }
+
+    private static int getParameterRegCount(String desc) {
+        int count = 0;
+        for (int i = 0; i < desc.length(); i++) {
+            char c = desc.charAt(i);
+            if (c == DexItemFactory.LongClass.SHORT_DESCRIPTOR
+                    || c == DexItemFactory.DoubleClass.SHORT_DESCRIPTOR) {
+                count += 2;
+            } else if (c != DexItemFactory.VoidClass.SHORT_DESCRIPTOR) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 每个invokeXX方法的成本相同，按方法个数降序取前budget个即为覆盖最多方法的集合，
+     * 个数相同时按参数列表排序，保证结果稳定
+     *
+     * @return 选中的参数列表
+     */
+    public String[] getSpecialParameters() {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(mHistogram.entrySet());
+        entries.sort((e1, e2) -> {
+            int cmp = Integer.compare(e2.getValue(), e1.getValue());
+            return cmp != 0 ? cmp : e1.getKey().compareTo(e2.getKey());
+        });
+        int count = Math.min(mBudget, entries.size());
+        String[] result = new String[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = entries.get(i).getKey();
+        }
+        return result;
+    }
+
+    /**
+     * @return 选中的参数列表覆盖的方法个数
+     */
+    public int getCoveredMethodCount(String[] specialParas) {
+        int covered = 0;
+        for (String para : specialParas) {
+            covered += mHistogram.getOrDefault(para, 0);
+        }
+        return covered;
+    }
+
+    public int getMethodCount() {
+        return mMethodCount;
+    }
+
+}
@@ -17,6 +17,7 @@
 package com.baidu.titan.core.instrument.transforms;
 
 import com.baidu.titan.core.TitanDexItemFactory;
+import com.baidu.titan.core.instrument.InterceptStubGenerator;
 import com.baidu.titan.dex.DexAccessFlags;
 import com.baidu.titan.dex.DexConst;
 import com.baidu.titan.dex.DexItemFactory;
@@ -64,16 +65,32 @@ public class NormalMethodTransformation extends DexCodeVisitor {
 
     private final Set<String> mSpecialParameterSet;
 
+    /** 外置桩方法所在的类，为null时内联构造参数数组 */
+    private final DexType mStubType;
+
+    /** invoke-range最多255个寄存器 */
+    private static final int MAX_INVOKE_RANGE_REG_COUNT = 255;
+
     public NormalMethodTransformation(DexCodeVisitor delegate,
                                       DexClassNode dexClassNode,
                                       DexMethodNode dexMethodNode,
                                       TitanDexItemFactory factory,
                                       Set<String> specialParameterSet) {
+        this(delegate, dexClassNode, dexMethodNode, factory, specialParameterSet, null);
+    }
+
+    public NormalMethodTransformation(DexCodeVisitor delegate,
+                                      DexClassNode dexClassNode,
+                                      DexMethodNode dexMethodNode,
+                                      TitanDexItemFactory factory,
+                                      Set<String> specialParameterSet,
+                                      DexType stubType) {
         super(delegate);
         this.mDexClassNode = dexClassNode;
         this.mDexMethodNode = dexMethodNode;
         this.mFactory = factory;
         this.mSpecialParameterSet = specialParameterSet;
+        this.mStubType = stubType;
     }
 
     @Override
@@ -105,9 +122,13 @@ public class NormalMethodTransformation extends DexCodeVisitor {
     /**
      * invoke prototype:
      * <pre>
+     * boolean hasCommonIntercept(int methodId);
      * InterceptResult invokeCommon(int methodId, Object thisObj, Object[] args);
      * </pre>
      *
+     * 先通过hasCommonIntercept判断当前方法是否被拦截，未被拦截时直接执行原始逻辑，
+     * 不再创建参数数组以及对基本类型装箱
+     *
      * <pre>
      * v0             v1           v2          v3     ...  vn  p0  ... pm
      * [invoke this] [method id] [this]  [para array]
@@ -120,6 +141,29 @@ public class NormalMethodTransformation extends DexCodeVisitor {
         DexTypeList paraTypes = mDexMethodNode.parameters;
         int paraArraySize = paraTypes.count();
 
+        // method id
+        int methodId = MethodIdAssigner.getMethodId(mDexMethodNode);
+
+        DexConst.LiteralBits32 methodConstant = DexConst.LiteralBits32.make(methodId);
+
+        int vMethodIdReg = 1;
+        super.visitConstInsn(Dops.CONST_16,
+                DexRegisterList.make(DexRegister.makeLocalReg(vMethodIdReg)),
+                methodConstant);
+
+        int vHasInterceptReg = 2;
+        super.visitConstInsn(Dops.INVOKE_INTERFACE,
+                DexRegisterList.make(
+                        DexRegister.makeLocalReg(mInterceptorReg),
+                        DexRegister.makeLocalReg(vMethodIdReg)),
+                mFactory.interceptableClass.hasCommonInterceptMethod);
+        super.visitSimpleInsn(Dops.MOVE_RESULT,
+                DexRegisterList.make(DexRegister.makeLocalReg(vHasInterceptReg)));
+
+        // 如果当前方法没有被拦截，则跳转到原始逻辑
+        super.visitTargetInsn(Dops.IF_EQZ,
+                DexRegisterList.make(DexRegister.makeLocalReg(vHasInterceptReg)), mOriginLabel);
+
         // 设置参数数组Size
         int vArraySizeReg = 3;
         super.visitConstInsn(Dops.CONST_16,
@@ -170,12 +214,7 @@ public class NormalMethodTransformation extends DexCodeVisitor {
             }
         }
 
-        // method id
-        int methodId = MethodIdAssigner.getMethodId(mDexMethodNode);
-
-        DexConst.LiteralBits32 methodConstant = DexConst.LiteralBits32.make(methodId);
-
-        int vMethodIdReg = 1;
+        // method id，参数数组填充时vMethodIdReg被用作索引寄存器，需要重新赋值
         super.visitConstInsn(Dops.CONST_16,
                 DexRegisterList.make(DexRegister.makeLocalReg(vMethodIdReg)),
                 methodConstant);
@@ -236,9 +275,12 @@ public class NormalMethodTransformation extends DexCodeVisitor {
      *             [invoke this]  [method id]  [this=null]  [para regs]
      * </pre>
      *
-     * @param shortParamDesc
+     * 外置桩方法与invokeXX方法的寄存器布局一致，只是改为invoke-static/range调用
+     *
+     * @param invokeOp invoke-interface/range或invoke-static/range
+     * @param invokeMethod 调用的invokeXX方法或桩方法
      */
-    private void writeSpecialInterceptor(String shortParamDesc) {
+    private void writeRangeInterceptor(int invokeOp, DexConst.ConstMethodRef invokeMethod) {
         // 最后一个local reg索引
         int vLastLocalReg = mLocalRegCount - 1;
 
@@ -318,11 +360,19 @@ public class NormalMethodTransformation extends DexCodeVisitor {
             }
         }
 
-        DexConst.ConstMethodRef invokeSpecialMethod =
-                mFactory.interceptableClass.getInvokeSpecialMethod(shortParamDesc);
+        super.visitConstInsn(invokeOp, invokeRegListBuilder.build(), invokeMethod);
+    }
 
-        super.visitConstInsn(Dops.INVOKE_INTERFACE_RANGE,
-                invokeRegListBuilder.build(), invokeSpecialMethod);
+    private boolean canUseInterceptStub() {
+        if (mStubType == null) {
+            return false;
+        }
+        boolean staticMethod = mDexMethodNode.accessFlags.containsOneOf(
+                DexAccessFlags.ACC_STATIC);
+        // invoke this + method id + this obj(static方法为null) + para regs
+        int invokeRegCount = mParamRegCount + (staticMethod ? 3 : 2);
+        return invokeRegCount <= MAX_INVOKE_RANGE_REG_COUNT
+                && InterceptStubGenerator.canGenerateStub(invokeRegCount);
     }
 
     @Override
@@ -347,7 +397,12 @@ public class NormalMethodTransformation extends DexCodeVisitor {
         String shortParaDesc = shortDescBuilder.toString();
 
         if (mSpecialParameterSet.contains(shortParaDesc)) {
-            writeSpecialInterceptor(shortParaDesc);
+            writeRangeInterceptor(Dops.INVOKE_INTERFACE_RANGE,
+                    mFactory.interceptableClass.getInvokeSpecialMethod(shortParaDesc));
+        } else if (canUseInterceptStub()) {
+            // 参数数组的构造与装箱放到同一dex中共享的桩方法中，这里只保留一次调用
+            writeRangeInterceptor(Dops.INVOKE_STATIC_RANGE,
+                    InterceptStubGenerator.getStubMethod(mFactory, mStubType, paraTypes));
         } else {
             writeCommonInterceptor();
         }
@@ -16,6 +16,7 @@
 
 package com.baidu.titan.core.patch;
 
+import com.baidu.titan.core.util.PhaseTelemetry;
 import com.baidu.titan.core.util.TitanLogger;
 import com.baidu.titan.dex.MultiDexFileBytes;
 import com.baidu.titan.sdk.common.TitanConstant;
@@ -69,6 +70,20 @@ public class PatchArgument {
     private TitanLogger extraLogger;
     /** patch 加载策略*/
     private int mLoadPolicy = TitanConstant.PATCH_LOAD_POLICY_BOOT;
+    /** 并发写入patch dex的线程数*/
+    private int mDexWriterThreadCount = 1;
+    /** boot class path的dex缓存目录*/
+    private File mLibraryDexCacheDir;
+    /** 是否按需解析library class*/
+    private boolean mLazyLibraryLoading = false;
+    /** 并发diff的线程数*/
+    private int mDiffParallelism = 1;
+    /** 并发生成patch类的线程数*/
+    private int mGenerateParallelism = 1;
+    /** base持久化指纹目录*/
+    private File mBaseFingerprintDir;
+    /** patch生成各阶段的统计信息*/
+    private final PhaseTelemetry mTelemetry = new PhaseTelemetry("patch");
 
 
     /**
@@ -153,6 +168,22 @@ public class PatchArgument {
 
         private Set<String> mInstrumentSpecialParas;
 
+        private File mInstrumentInfoFile;
+
+        /**
+         * 设置插桩时输出的插桩信息文件，存在且与old dex匹配时不再解析old-instrumented dex
+         *
+         * @param instrumentInfoFile 插桩信息文件
+         */
+        public OldProjectInfo setInstrumentInfoFile(File instrumentInfoFile) {
+            this.mInstrumentInfoFile = instrumentInfoFile;
+            return this;
+        }
+
+        public File getInstrumentInfoFile() {
+            return mInstrumentInfoFile;
+        }
+
         public OldProjectInfo setInstrumentSpecialParas(Set<String> specialParas) {
             this.mInstrumentSpecialParas = specialParas;
             return this;
@@ -352,4 +383,133 @@ public class PatchArgument {
     public File getSmaliOutDir() {
         return this.smaliOutDir;
     }
+
+    /**
+     * 设置并发写入patch dex的线程数
+     *
+     * @param threadCount 线程数，小于等于1时单线程写入
+     * @return this
+     */
+    public PatchArgument setDexWriterThreadCount(int threadCount) {
+        this.mDexWriterThreadCount = threadCount;
+        return this;
+    }
+
+    /**
+     * 获取并发写入patch dex的线程数
+     *
+     * @return 线程数
+     */
+    public int getDexWriterThreadCount() {
+        return mDexWriterThreadCount;
+    }
+
+    /**
+     * 设置boot class path的dex缓存目录，为null时每次都解析boot class path中的jar
+     *
+     * @param dexCacheDir 缓存目录
+     * @return this
+     */
+    public PatchArgument setLibraryDexCacheDir(File dexCacheDir) {
+        this.mLibraryDexCacheDir = dexCacheDir;
+        return this;
+    }
+
+    /**
+     * 获取boot class path的dex缓存目录
+     *
+     * @return 缓存目录
+     */
+    public File getLibraryDexCacheDir() {
+        return mLibraryDexCacheDir;
+    }
+
+    /**
+     * 设置是否按需解析library class，为true时只建立boot class path的索引，不使用dex缓存
+     *
+     * @param lazy 是否按需解析
+     * @return this
+     */
+    public PatchArgument setLazyLibraryLoading(boolean lazy) {
+        this.mLazyLibraryLoading = lazy;
+        return this;
+    }
+
+    /**
+     * 是否按需解析library class
+     *
+     * @return 是否按需解析
+     */
+    public boolean isLazyLibraryLoading() {
+        return mLazyLibraryLoading;
+    }
+
+    /**
+     * 设置light patch阶段并发diff的线程数，并发diff的结果与单线程diff保持一致
+     *
+     * @param parallelism 线程数，小于等于1时单线程diff
+     * @return this
+     */
+    public PatchArgument setDiffParallelism(int parallelism) {
+        this.mDiffParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * 获取并发diff的线程数
+     *
+     * @return 线程数
+     */
+    public int getDiffParallelism() {
+        return mDiffParallelism;
+    }
+
+    /**
+     * 设置light patch阶段按类并发生成patch的线程数，生成结果与单线程生成保持一致
+     *
+     * @param parallelism 线程数，小于等于1时单线程生成
+     * @return this
+     */
+    public PatchArgument setGenerateParallelism(int parallelism) {
+        this.mGenerateParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * 获取并发生成patch的线程数
+     *
+     * @return 线程数
+     */
+    public int getGenerateParallelism() {
+        return mGenerateParallelism;
+    }
+
+    /**
+     * 设置base持久化指纹目录，为null时每次都解析old-instrumented dex并重新计算old-org类的指纹
+     *
+     * @param fingerprintDir 持久化指纹目录
+     * @return this
+     */
+    public PatchArgument setBaseFingerprintDir(File fingerprintDir) {
+        this.mBaseFingerprintDir = fingerprintDir;
+        return this;
+    }
+
+    /**
+     * 获取base持久化指纹目录
+     *
+     * @return 持久化指纹目录
+     */
+    public File getBaseFingerprintDir() {
+        return mBaseFingerprintDir;
+    }
+
+    /**
+     * 获取patch生成各阶段的统计信息，PatchMain.doPatch结束后输出到工作目录
+     *
+     * @return 统计信息
+     */
+    public PhaseTelemetry getTelemetry() {
+        return mTelemetry;
+    }
 }
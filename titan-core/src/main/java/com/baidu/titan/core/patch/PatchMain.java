@@ -18,8 +18,10 @@ package com.baidu.titan.core.patch;
 
 import com.baidu.titan.core.patch.full.FullPatch;
 import com.baidu.titan.core.patch.light.LightPatch;
+import com.baidu.titan.core.util.ConcurrentMultiDexWriter;
+import com.baidu.titan.core.util.PhaseTelemetry;
+import com.baidu.titan.core.util.TitanLogger;
 import com.baidu.titan.dex.node.MultiDexFileNode;
-import com.baidu.titan.dex.writer.MultiDexFileWriter;
 
 import org.json.JSONObject;
 
@@ -37,6 +39,8 @@ import java.io.IOException;
 
 public class PatchMain {
 
+    private static final String TAG = "PatchMain";
+
     public static void doPatch(PatchArgument argument) {
         if (argument.getWorkDir() == null) {
             throw new IllegalArgumentException();
@@ -53,76 +57,92 @@ public class PatchMain {
         FullPatch fullPatch = null;
         LightPatch lightPatch = null;
 
-        switch (patchPolicy) {
-            case PATCH_POLICY_FULL_ONLY : {
-                doLightPatch = false;
-                doFullPatch = true;
-                break;
-            }
-            case PATCH_POLICY_LIGHT_ONLY: {
-                lightPatch = new LightPatch(argument);
-                boolean success = lightPatch.analyze();
-                if (!success) {
-                    throw new IllegalStateException("patch fail, incompatiable change exists, " +
-                            "check logs for detail!");
+        try {
+            switch (patchPolicy) {
+                case PATCH_POLICY_FULL_ONLY : {
+                    doLightPatch = false;
+                    doFullPatch = true;
+                    break;
                 }
-                doLightPatch = true;
-                doFullPatch = false;
-                break;
-            }
-            case PATCH_POLICY_LIGHT_THEN_FULL: {
-                lightPatch = new LightPatch(argument);
-                boolean success = lightPatch.analyze();
-                if (success) {
+                case PATCH_POLICY_LIGHT_ONLY: {
+                    lightPatch = new LightPatch(argument);
+                    boolean success = lightPatch.analyze();
+                    if (!success) {
+                        throw new IllegalStateException("patch fail, incompatiable change exists, " +
+                                "check logs for detail!");
+                    }
                     doLightPatch = true;
                     doFullPatch = false;
-                } else {
-                    doLightPatch = false;
-                    doFullPatch = true;
+                    break;
                 }
+                case PATCH_POLICY_LIGHT_THEN_FULL: {
+                    lightPatch = new LightPatch(argument);
+                    boolean success = lightPatch.analyze();
+                    if (success) {
+                        doLightPatch = true;
+                        doFullPatch = false;
+                    } else {
+                        doLightPatch = false;
+                        doFullPatch = true;
+                    }
 
-                break;
-            }
-            default: {
-                break;
-            }
-        }
-
-        if (doLightPatch) {
-            lightPatch.doPatch();
-            MultiDexFileNode dexs = lightPatch.getOutputs();
-            MultiDexFileWriter fileWriter = new MultiDexFileWriter();
-            dexs.accept(fileWriter);
-            try {
-                fileWriter.getMultiDexFileBytes().writeToDir(argument.getDexOutDir());
-            } catch (IOException e) {
-                e.printStackTrace();
-                throw new RuntimeException(e);
+                    break;
+                }
+                default: {
+                    break;
+                }
             }
 
-            JSONObject classInfo = lightPatch.getClassInfo();
-            File classInfoFile = new File(argument.getWorkDir(), "classInfo.json");
-            FileWriter fw = null;
-            try {
-                fw = new FileWriter(classInfoFile);
-                fw.write(classInfo.toString());
-            } catch (IOException e) {
-                e.printStackTrace();
-            } finally {
-                if (fw != null) {
-                    try {
-                        fw.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
+            if (doLightPatch) {
+                lightPatch.doPatch();
+                MultiDexFileNode dexs = lightPatch.getOutputs();
+                PhaseTelemetry.Phase phase = argument.getTelemetry().begin("write-dex");
+                try {
+                    ConcurrentMultiDexWriter.write(dexs, argument.getDexWriterThreadCount())
+                            .writeToDir(argument.getDexOutDir());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    throw new RuntimeException(e);
+                }
+                phase.end();
+
+                JSONObject classInfo = lightPatch.getClassInfo();
+                File classInfoFile = new File(argument.getWorkDir(), "classInfo.json");
+                FileWriter fw = null;
+                try {
+                    fw = new FileWriter(classInfoFile);
+                    fw.write(classInfo.toString());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    if (fw != null) {
+                        try {
+                            fw.close();
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
                     }
                 }
             }
+        } finally {
+            if (lightPatch != null) {
+                lightPatch.close();
+            }
         }
 
         if (doFullPatch) {
             fullPatch = new FullPatch(argument);
             fullPatch.doPatch();
         }
+
+        PhaseTelemetry telemetry = argument.getTelemetry();
+        if (argument.getWorkDir() != null) {
+            telemetry.writeTo(new File(argument.getWorkDir(), PhaseTelemetry.PATCH_FILE_NAME));
+        }
+        TitanLogger extraLogger = argument.getExtraLogger();
+        if (extraLogger != null) {
+            extraLogger.i(TAG, telemetry.toString());
+        }
     }
 
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.patch.common;
+
+import com.baidu.titan.dex.DexRegisterList;
+import com.baidu.titan.dex.Dops;
+import com.baidu.titan.dex.visitor.DexCodeVisitor;
+import com.baidu.titan.dex.visitor.DexLabel;
+
+/**
+ * 生成分派用的switch指令，根据key的分布选择packed-switch或sparse-switch。
+ *
+ * packed-switch通过跳转表O(1)定位，sparse-switch需要二分查找。key足够密集时使用packed-switch，
+ * 中间缺失的key跳转到switch之后的下一条指令，与sparse-switch未命中时的行为一致。
+ *
+ * @since 2026/10/18
+ */
+public final class SwitchInsnHelper {
+
+    /** case数小于该值时编译器会生成比较跳转，两种switch没有区别，保持sparse-switch */
+    public static final int PACKED_SWITCH_MIN_CASES = 3;
+
+    /** case数与key范围的比值不小于该值时使用packed-switch，此时payload不大于sparse-switch */
+    public static final double PACKED_SWITCH_MIN_DENSITY = 0.5;
+
+    private SwitchInsnHelper() {
+    }
+
+    /**
+     * @param keys switch key
+     * @return 是否使用packed-switch，key需要严格递增
+     */
+    public static boolean shouldUsePackedSwitch(int[] keys) {
+        if (keys.length < PACKED_SWITCH_MIN_CASES) {
+            return false;
+        }
+        for (int i = 1; i < keys.length; i++) {
+            if (keys[i] <= keys[i - 1]) {
+                return false;
+            }
+        }
+        long range = (long) keys[keys.length - 1] - keys[0] + 1;
+        return keys.length >= range * PACKED_SWITCH_MIN_DENSITY;
+    }
+
+    /**
+     * 访问switch指令，未命中时继续执行switch之后的指令
+     *
+     * @param codeVisitor code visitor
+     * @param regs switch的寄存器
+     * @param keys switch key，需要严格递增
+     * @param targets 各key对应的跳转label
+     */
+    public static void visitSwitch(DexCodeVisitor codeVisitor, DexRegisterList regs,
+                                   int[] keys, DexLabel[] targets) {
+        if (!shouldUsePackedSwitch(keys)) {
+            codeVisitor.visitSwitch(Dops.SPARSE_SWITCH, regs, keys, targets);
+            return;
+        }
+
+        int range = keys[keys.length - 1] - keys[0] + 1;
+        if (range == keys.length) {
+            codeVisitor.visitSwitch(Dops.PACKED_SWITCH, regs, keys, targets);
+            return;
+        }
+
+        // 补齐缺失的key，跳转到switch的下一条指令
+        DexLabel defaultLabel = new DexLabel();
+        int[] packedKeys = new int[range];
+        DexLabel[] packedTargets = new DexLabel[range];
+        for (int i = 0, j = 0; i < range; i++) {
+            packedKeys[i] = keys[0] + i;
+            if (packedKeys[i] == keys[j]) {
+                packedTargets[i] = targets[j++];
+            } else {
+                packedTargets[i] = defaultLabel;
+            }
+        }
+        codeVisitor.visitSwitch(Dops.PACKED_SWITCH, regs, packedKeys, packedTargets);
+        codeVisitor.visitLabel(defaultLabel);
+    }
+
+}
@@ -16,14 +16,15 @@
 
 package com.baidu.titan.core.patch.full;
 
-import com.baidu.titan.apktool.Apktool;
 import com.baidu.titan.core.TitanDexItemFactory;
 import com.baidu.titan.core.component.AndroidComponentFlag;
 import com.baidu.titan.core.component.AndroidComponentMarker;
+import com.baidu.titan.core.component.BinaryManifestReader;
 import com.baidu.titan.core.instrument.InstrumentMain;
 import com.baidu.titan.core.patch.PatchArgument;
 import com.baidu.titan.core.patch.PatchException;
 import com.baidu.titan.core.pool.ApplicationDexPool;
+import com.baidu.titan.core.util.PhaseTelemetry;
 import com.baidu.titan.dex.DexType;
 import com.baidu.titan.dex.analyze.MethodAnalyzer;
 import com.baidu.titan.dex.extensions.BestEffortMultiDexSplitter;
@@ -85,7 +86,10 @@ public class FullPatch {
 
         ApplicationDexPool finalFullPatchPool = new ApplicationDexPool(factory);
 
+        PhaseTelemetry telemetry = mArgument.getTelemetry();
+
         // old class pool
+        PhaseTelemetry.Phase phase = telemetry.begin("full-setup-old-project");
         setupForOldProject(oldAppPool, mArgument);
 
         PatchGenesisClassHierarchy patchGenesisClassHierarchy =
@@ -108,10 +112,15 @@ public class FullPatch {
                 AndroidComponentFlag.TYPE_CONTENT_PROVIDER);
 
         patchGenesisClassHierarchy.fillAppPool();
+        phase.end(getProgramClassCount(oldAppPool));
 
 
         // new class pool
+        phase = telemetry.begin("full-setup-new-project");
         setupForNewProject(newAppPool, mArgument);
+        phase.end(getProgramClassCount(newAppPool));
+
+        phase = telemetry.begin("full-transform");
 
         PatchBuddyClassHierarchy patchBuddyClassHierarchy = new PatchBuddyClassHierarchy(
                 patchGenesisClassHierarchy, buddyClassPool, changedClassPool);
@@ -145,6 +154,9 @@ public class FullPatch {
                 loaderClassPool, factory);
 
 
+        phase.end(getProgramClassCount(newAppPool));
+
+        phase = telemetry.begin("full-verify");
         fullPatchPool.getProgramClassPool().forEach(dcn -> {
             if (!dcn.type.toTypeDescriptor().startsWith("Lcom/baidu/titan/sdk/")) {
                 finalFullPatchPool.addProgramClass(dcn);
@@ -201,10 +213,15 @@ public class FullPatch {
         });
 
 
+        long patchClassCount = getProgramClassCount(finalFullPatchPool);
+        phase.end(patchClassCount);
+
+        phase = telemetry.begin("full-multidex-split");
         MultiDexSplitter multiDexSplitter =
                 new BestEffortMultiDexSplitter(finalFullPatchPool.getProgramClassPool(), null, false);
 
         multiDexSplitter.split();
+        phase.end(patchClassCount);
 
 //        MultiDexFileWriter mdfw = new MultiDexFileWriter();
 
@@ -227,22 +244,13 @@ public class FullPatch {
         return mMultiDexFileNode;
     }
 
-
-    private static String classNameToTypeDesc(String className) {
-        return "L" + className.replace('.', '/') + ";";
+    private static long getProgramClassCount(ApplicationDexPool appPool) {
+        return appPool.getProgramClassPool().stream().count();
     }
 
-    private static boolean fillComponentsInfoFromApkFile(File apktoolDir, File apkPath,
-                                                         Map<String, List<String>> components) {
 
-        if (!apktoolDir.exists()) {
-            if (!Apktool.decodeApk(apkPath, apktoolDir,
-                    Apktool.FLAG_NO_SOURCE | Apktool.FLAG_FORCE)) {
-                return false;
-            }
-         }
-        File manifestFile = new File(apktoolDir, "apktool-out/AndroidManifest.xml");
-        return fillComponentsInfoFromManifestFile(manifestFile, components);
+    private static String classNameToTypeDesc(String className) {
+        return "L" + className.replace('.', '/') + ";";
     }
 
 
@@ -355,8 +363,7 @@ public class FullPatch {
                 new DexClassKindMarker(DexClassKindMarker.ClassKind.CLASS_KIND_LIBRARY));
 
         if (argument.oldProject.isManifestFromOldApk()) {
-            File oldProjectApktoolDir = new File(argument.getWorkDir(), "oldApkToolDir");
-            fillComponentsInfoFromApkFile(oldProjectApktoolDir, argument.oldProject.getOldApkFile(),
+            BinaryManifestReader.fillComponentsInfo(argument.oldProject.getOldApkFile(),
                     argument.oldProject.getComponents());
         } else {
             fillComponentsInfoFromManifestFile(argument.oldProject.getManifestFile(),
@@ -444,9 +451,7 @@ public class FullPatch {
                 new DexClassKindMarker(DexClassKindMarker.ClassKind.CLASS_KIND_LIBRARY));
 
         if (argument.newProject.isManifestFromNewApkFile()) {
-            File newProjectApktoolDir = new File(argument.getWorkDir(), "newApkToolDir");
-
-            fillComponentsInfoFromApkFile(newProjectApktoolDir, argument.newProject.getNewApkFile(),
+            BinaryManifestReader.fillComponentsInfo(argument.newProject.getNewApkFile(),
                     argument.newProject.getComponents());
         } else {
             fillComponentsInfoFromManifestFile(argument.newProject.getManifestFile(),
@@ -33,9 +33,11 @@ import com.baidu.titan.dex.node.DexClassNode;
 import com.baidu.titan.dex.node.DexMethodNode;
 import com.baidu.titan.dex.node.DexNamedProtoNode;
 import com.baidu.titan.dex.visitor.DexClassVisitor;
+import com.baidu.titan.dex.visitor.DexLabel;
 import com.baidu.titan.dex.visitor.DexMethodVisitor;
 import com.baidu.titan.dex.visitor.DexMethodVisitorInfo;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -227,6 +229,7 @@ public abstract class InterceptorGenerator {
             switch (im.getInvokeKind()) {
                 case InvokeMethod.INVOKE_KIND_COMMON: {
                     generateForInvokeCommon(interceptorClassNode, classVisitor, im);
+                    generateForHasCommonIntercept(interceptorClassNode, classVisitor, im);
                     break;
                 }
                 case InvokeMethod.INVOKE_KIND_SPECIAL: {
@@ -286,6 +289,72 @@ public abstract class InterceptorGenerator {
 
     }
 
+    /**
+     * 生成hasCommonIntercept方法，只有invokeCommon中处理的method id返回true
+     */
+    protected void generateForHasCommonIntercept(DexClassNode interceptorClassNode,
+                                                 DexClassVisitor classVisitor,
+                                                 InvokeMethod invokeMethod) {
+        DexConst.ConstMethodRef hasInterceptMethod =
+                factory.interceptableClass.hasCommonInterceptMethod;
+        DexMethodVisitorInfo methodVisitorInfo = new DexMethodVisitorInfo(
+                interceptorType,
+                hasInterceptMethod.getName(),
+                hasInterceptMethod.getParameterTypes(),
+                hasInterceptMethod.getReturnType(),
+                new DexAccessFlags(DexAccessFlags.ACC_PUBLIC));
+
+        DexMethodVisitor methodVisitor = classVisitor.visitMethod(methodVisitorInfo);
+
+        methodVisitor.visitBegin();
+
+        DexCodeRegisterCalculator codeVisitor = new DexCodeRegisterCalculator(
+                false,
+                methodVisitorInfo.parameters,
+                new DexCodeFormatVerifier(methodVisitor.visitCode()));
+
+        codeVisitor.visitBegin();
+        codeVisitor.visitRegisters(1, 2);
+
+        int vResultReg = 0;
+        int pMethodIdReg = 1;
+
+        // sparse-switch要求key递增有序
+        int[] keys = invokeMethod.interceptedMethods.stream()
+                .mapToInt(InterceptedMethod::getMethodId)
+                .sorted()
+                .toArray();
+
+        DexLabel interceptLabel = new DexLabel();
+        DexLabel[] labels = new DexLabel[keys.length];
+        Arrays.fill(labels, interceptLabel);
+
+        codeVisitor.visitSwitch(
+                Dops.SPARSE_SWITCH,
+                DexRegisterList.make(DexRegister.makeParameterReg(pMethodIdReg)),
+                keys,
+                labels);
+
+        codeVisitor.visitConstInsn(Dops.CONST_4,
+                DexRegisterList.make(DexRegister.makeLocalReg(vResultReg)),
+                DexConst.LiteralBits32.make(0));
+        codeVisitor.visitSimpleInsn(Dops.RETURN,
+                DexRegisterList.make(DexRegister.makeLocalReg(vResultReg)));
+
+        codeVisitor.visitLabel(interceptLabel);
+        codeVisitor.visitConstInsn(Dops.CONST_4,
+                DexRegisterList.make(DexRegister.makeLocalReg(vResultReg)),
+                DexConst.LiteralBits32.make(1));
+        codeVisitor.visitSimpleInsn(Dops.RETURN,
+                DexRegisterList.make(DexRegister.makeLocalReg(vResultReg)));
+
+        codeVisitor.fillRegisterCount();
+
+        codeVisitor.visitEnd();
+
+        methodVisitor.visitEnd();
+    }
+
     protected abstract void generateForInvokeInit(DexClassNode interceptorClassNode,
                                          DexClassVisitor classVisitor,
                                          InvokeMethod invokeMethod);
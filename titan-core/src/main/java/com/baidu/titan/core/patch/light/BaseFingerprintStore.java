@@ -0,0 +1,484 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.patch.light;
+
+import com.baidu.titan.core.patch.light.diff.DexNodeFingerprint;
+import com.baidu.titan.dex.MultiDexFileBytes;
+import com.baidu.titan.dex.extensions.MethodIdAssigner;
+import com.baidu.titan.dex.node.DexClassPoolNode;
+import com.baidu.titan.dex.node.DexFieldNode;
+import com.baidu.titan.dex.node.DexMethodNode;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 同一个base apk的持久化类信息
+ *
+ * 对同一个已发布的base反复生成patch时，old-org和old-instrumented dex不会变化。首次生成patch时将
+ * 每个old-org类的指纹、方法指纹、method id以及插桩后的access flags保存下来，后续生成patch时直接
+ * 内存映射读取：不再解析old-instrumented dex，old-org类的指纹也不用重新计算。
+ *
+ * 文件以old-org和old-instrumented dex内容的hash命名，base变化后自然失效。
+ *
+ * 插桩时也会以同样的格式输出一份不含指纹的插桩信息，与org dex放在一起，首次生成patch时也不用解析
+ * old-instrumented dex。
+ *
+ * 文件格式：magic | version | base key | special paras | 类个数 | 索引 (type hash | 偏移)* | 类记录*
+ *
+ * @since 2026/10/18
+ */
+public class BaseFingerprintStore {
+
+    private static final int MAGIC = 0x54465053;
+
+    private static final int VERSION = 1;
+
+    private static final String STORE_PREFIX = "base-";
+
+    private static final String STORE_SUFFIX = ".fingerprints";
+
+    private static final String INSTRUMENT_INFO_SUFFIX = ".instrument-info";
+
+    private static final int FLAG_INSTRUMENTED = 1;
+
+    private static final int FLAG_HAS_FLAGS = 1 << 1;
+
+    private static final int FLAG_HAS_METHOD_ID = 1 << 2;
+
+    private static final int FLAG_HAS_FINGERPRINT = 1 << 3;
+
+    /** 每个索引项：type hash(8) + 偏移(4) */
+    private static final int INDEX_ENTRY_SIZE = 12;
+
+    /**
+     * 类记录
+     */
+    public static class ClassRecord {
+
+        public final String typeDesc;
+        /** old-instrumented中是否有这个类，没有时不包含access flags和method id */
+        public boolean instrumented;
+        /** 插桩后类的access flags */
+        public int accessFlags;
+
+        public DexNodeFingerprint fingerprint;
+        /** field key（见getFieldKey） -> 插桩后的access flags */
+        public final Map<String, Integer> fieldFlags = new LinkedHashMap<>();
+
+        public final List<MethodRecord> methods = new ArrayList<>();
+
+        public ClassRecord(String typeDesc) {
+            this.typeDesc = typeDesc;
+        }
+
+    }
+
+    /**
+     * 方法记录
+     */
+    public static class MethodRecord {
+
+        public final String signature;
+        /** 插桩后方法的access flags，为null时表示old-instrumented中没有这个方法 */
+        public Integer accessFlags;
+
+        public Integer methodId;
+
+        public DexNodeFingerprint fingerprint;
+
+        public MethodRecord(String signature) {
+            this.signature = signature;
+        }
+
+    }
+
+    private final ByteBuffer mBuffer;
+
+    private final Set<String> mSpecialInterceptParas;
+
+    private final int mClassCount;
+
+    private final int mIndexOffset;
+
+    private BaseFingerprintStore(ByteBuffer buffer, Set<String> specialInterceptParas,
+                                 int classCount, int indexOffset) {
+        this.mBuffer = buffer;
+        this.mSpecialInterceptParas = specialInterceptParas;
+        this.mClassCount = classCount;
+        this.mIndexOffset = indexOffset;
+    }
+
+    /**
+     * 计算base的key，old-org或old-instrumented dex变化后key随之变化
+     */
+    public static byte[] computeBaseKey(MultiDexFileBytes oldOrgDexs,
+                                        MultiDexFileBytes oldInstrumentedDexs) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(("v" + VERSION + "." + DexNodeFingerprint.VERSION)
+                .getBytes(StandardCharsets.UTF_8));
+        updateDigest(digest, oldOrgDexs);
+        updateDigest(digest, oldInstrumentedDexs);
+        return digest.digest();
+    }
+
+    private static void updateDigest(MessageDigest digest, MultiDexFileBytes dexs) {
+        Map<Integer, byte[]> dexContents = new TreeMap<>();
+        dexs.forEach((dexId, bytes) -> dexContents.put(dexId, bytes.getDexFileBytes()));
+        digest.update(ByteBuffer.allocate(4).putInt(dexContents.size()).array());
+        for (Map.Entry<Integer, byte[]> entry : dexContents.entrySet()) {
+            digest.update(ByteBuffer.allocate(8)
+                    .putInt(entry.getKey()).putInt(entry.getValue().length).array());
+            digest.update(entry.getValue());
+        }
+    }
+
+    public static File getStoreFile(File storeDir, byte[] baseKey) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : baseKey) {
+            hex.append(String.format("%02x", b));
+        }
+        return new File(storeDir, STORE_PREFIX + hex + STORE_SUFFIX);
+    }
+
+    /**
+     * 插桩信息文件与org dex目录放在同一级，如org-dex/release对应org-dex/release.instrument-info
+     */
+    public static File getInstrumentInfoFile(File orgDexDir) {
+        return new File(orgDexDir.getParentFile(), orgDexDir.getName() + INSTRUMENT_INFO_SUFFIX);
+    }
+
+    /**
+     * 插桩完成后输出插桩信息，包括method id、插桩后的access flags以及invokeXX的参数列表，
+     * 与从old-instrumented dex中得到的信息一致
+     *
+     * @param infoFile 插桩信息文件
+     * @param orgDexs 插桩前的dex
+     * @param instrumentedDexs 插桩后的dex
+     * @param instrumentedPool 插桩后的class pool，需要在写入dex之后调用
+     * @param specialInterceptParas 为null时表示没有Interceptable类
+     */
+    public static void writeInstrumentInfo(File infoFile, MultiDexFileBytes orgDexs,
+                                           MultiDexFileBytes instrumentedDexs,
+                                           DexClassPoolNode instrumentedPool,
+                                           Set<String> specialInterceptParas)
+            throws IOException {
+        List<ClassRecord> records = new ArrayList<>();
+        instrumentedPool.forEach(classNode -> {
+            // 与生成patch时对old-instrumented类的处理保持一致
+            MethodIdAssigner.assignMethodId(classNode);
+            ClassRecord record = new ClassRecord(classNode.type.toTypeDescriptor());
+            record.instrumented = true;
+            record.accessFlags = classNode.accessFlags.getFlags();
+            classNode.getFields().forEach(fieldNode ->
+                    record.fieldFlags.put(getFieldKey(fieldNode), fieldNode.accessFlags.getFlags()));
+            classNode.getMethods().forEach(methodNode -> {
+                MethodRecord methodRecord = new MethodRecord(getMethodSignature(methodNode));
+                methodRecord.accessFlags = methodNode.accessFlags.getFlags();
+                methodRecord.methodId = methodNode.getExtraInfo("_extra_method_id", null);
+                record.methods.add(methodRecord);
+            });
+            records.add(record);
+        });
+        write(infoFile, computeBaseKey(orgDexs, instrumentedDexs), specialInterceptParas, records);
+    }
+
+    /**
+     * 字段以name及type区分，dex中允许同名不同类型的字段
+     */
+    public static String getFieldKey(DexFieldNode fieldNode) {
+        return fieldNode.name.toString() + ":" + fieldNode.type.toTypeDescriptor();
+    }
+
+    public static String getMethodSignature(DexMethodNode methodNode) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(methodNode.owner.toTypeDescriptor());
+        sb.append("->");
+        sb.append(methodNode.name.toString());
+        sb.append("(");
+        if (methodNode.parameters != null) {
+            for (int i = 0; i < methodNode.parameters.count(); i++) {
+                sb.append(methodNode.parameters.getType(i).toTypeDescriptor());
+            }
+        }
+        sb.append(")");
+        sb.append(methodNode.returnType.toTypeDescriptor());
+        return sb.toString();
+    }
+
+    /**
+     * 内存映射读取持久化文件
+     *
+     * @return 文件不存在，或者版本、base key不匹配时返回null
+     * @throws IOException 读取失败或文件内容损坏
+     */
+    public static BaseFingerprintStore load(File storeFile, byte[] baseKey) throws IOException {
+        if (!storeFile.exists()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(storeFile, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            byte[] key = new byte[buffer.getInt()];
+            buffer.get(key);
+            if (!Arrays.equals(key, baseKey)) {
+                return null;
+            }
+            Set<String> specialParas = null;
+            int specialParaCount = buffer.getInt();
+            if (specialParaCount >= 0) {
+                specialParas = new LinkedHashSet<>();
+                for (int i = 0; i < specialParaCount; i++) {
+                    specialParas.add(readString(buffer));
+                }
+            }
+            int classCount = buffer.getInt();
+            return new BaseFingerprintStore(buffer, specialParas, classCount, buffer.position());
+        } catch (RuntimeException e) {
+            throw new IOException("corrupt base fingerprint store " + storeFile, e);
+        }
+    }
+
+    /**
+     * @return 生成时使用的invokeXX参数列表，以old-instrumented中的Interceptable为准
+     */
+    public Set<String> getSpecialInterceptParas() {
+        return mSpecialInterceptParas;
+    }
+
+    public int getClassCount() {
+        return mClassCount;
+    }
+
+    /**
+     * 按类型查找类记录，通过索引二分查找，只解码命中的记录
+     *
+     * @return 没有记录时返回null
+     */
+    public ClassRecord findClass(String typeDesc) {
+        long hash = hashType(typeDesc);
+        int low = 0;
+        int high = mClassCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midHash = mBuffer.getLong(mIndexOffset + mid * INDEX_ENTRY_SIZE);
+            if (midHash < hash) {
+                low = mid + 1;
+            } else if (midHash > hash) {
+                high = mid - 1;
+            } else {
+                // hash相同的记录相邻，向前找到第一个再逐个比较类型
+                int first = mid;
+                while (first > 0 && mBuffer.getLong(
+                        mIndexOffset + (first - 1) * INDEX_ENTRY_SIZE) == hash) {
+                    first--;
+                }
+                for (int i = first; i < mClassCount; i++) {
+                    int entryOffset = mIndexOffset + i * INDEX_ENTRY_SIZE;
+                    if (mBuffer.getLong(entryOffset) != hash) {
+                        break;
+                    }
+                    ClassRecord record = readClassRecord(mBuffer.getInt(entryOffset + 8));
+                    if (record.typeDesc.equals(typeDesc)) {
+                        return record;
+                    }
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private ClassRecord readClassRecord(int offset) {
+        ByteBuffer buffer = mBuffer.duplicate();
+        buffer.position(offset);
+        ClassRecord record = new ClassRecord(readString(buffer));
+        int flags = buffer.get();
+        record.instrumented = (flags & FLAG_INSTRUMENTED) != 0;
+        record.accessFlags = buffer.getInt();
+        if ((flags & FLAG_HAS_FINGERPRINT) != 0) {
+            record.fingerprint = DexNodeFingerprint.valueOf(buffer.getLong(), buffer.getLong());
+        }
+        int fieldCount = buffer.getInt();
+        for (int i = 0; i < fieldCount; i++) {
+            record.fieldFlags.put(readString(buffer), buffer.getInt());
+        }
+        int methodCount = buffer.getInt();
+        for (int i = 0; i < methodCount; i++) {
+            MethodRecord methodRecord = new MethodRecord(readString(buffer));
+            int methodFlags = buffer.get();
+            int accessFlags = buffer.getInt();
+            int methodId = buffer.getInt();
+            if ((methodFlags & FLAG_HAS_FLAGS) != 0) {
+                methodRecord.accessFlags = accessFlags;
+            }
+            if ((methodFlags & FLAG_HAS_METHOD_ID) != 0) {
+                methodRecord.methodId = methodId;
+            }
+            if ((methodFlags & FLAG_HAS_FINGERPRINT) != 0) {
+                methodRecord.fingerprint =
+                        DexNodeFingerprint.valueOf(buffer.getLong(), buffer.getLong());
+            }
+            record.methods.add(methodRecord);
+        }
+        return record;
+    }
+
+    /**
+     * 先写入临时文件再重命名，写入失败时不会留下不完整的文件
+     *
+     * @throws IOException 写入失败
+     */
+    public static void write(File storeFile, byte[] baseKey, Set<String> specialInterceptParas,
+                             List<ClassRecord> records) throws IOException {
+        // 按type hash排序，用于二分查找
+        List<ClassRecord> sortedRecords = new ArrayList<>(records);
+        sortedRecords.sort((r1, r2) -> Long.compare(hashType(r1.typeDesc), hashType(r2.typeDesc)));
+
+        File tmpFile = new File(storeFile.getParentFile(), storeFile.getName() + ".tmp");
+        boolean success = false;
+        try {
+            storeFile.getParentFile().mkdirs();
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(baseKey.length);
+                out.write(baseKey);
+                if (specialInterceptParas == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(specialInterceptParas.size());
+                    for (String para : specialInterceptParas) {
+                        writeString(out, para);
+                    }
+                }
+                out.writeInt(sortedRecords.size());
+
+                List<byte[]> encodedRecords = new ArrayList<>(sortedRecords.size());
+                for (ClassRecord record : sortedRecords) {
+                    encodedRecords.add(encodeClassRecord(record));
+                }
+                int offset = out.size() + sortedRecords.size() * INDEX_ENTRY_SIZE;
+                for (int i = 0; i < sortedRecords.size(); i++) {
+                    out.writeLong(hashType(sortedRecords.get(i).typeDesc));
+                    out.writeInt(offset);
+                    offset += encodedRecords.get(i).length;
+                }
+                for (byte[] encoded : encodedRecords) {
+                    out.write(encoded);
+                }
+            }
+            if (!tmpFile.renameTo(storeFile)) {
+                throw new IOException("rename " + tmpFile + " to " + storeFile + " failed");
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                tmpFile.delete();
+            }
+        }
+    }
+
+    private static byte[] encodeClassRecord(ClassRecord record) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        writeString(out, record.typeDesc);
+        int flags = (record.instrumented ? FLAG_INSTRUMENTED : 0)
+                | (record.fingerprint != null ? FLAG_HAS_FINGERPRINT : 0);
+        out.writeByte(flags);
+        out.writeInt(record.accessFlags);
+        if (record.fingerprint != null) {
+            out.writeLong(record.fingerprint.getHigh());
+            out.writeLong(record.fingerprint.getLow());
+        }
+        out.writeInt(record.fieldFlags.size());
+        for (Map.Entry<String, Integer> entry : record.fieldFlags.entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+        out.writeInt(record.methods.size());
+        for (MethodRecord methodRecord : record.methods) {
+            writeString(out, methodRecord.signature);
+            int methodFlags = (methodRecord.accessFlags != null ? FLAG_HAS_FLAGS : 0)
+                    | (methodRecord.methodId != null ? FLAG_HAS_METHOD_ID : 0)
+                    | (methodRecord.fingerprint != null ? FLAG_HAS_FINGERPRINT : 0);
+            out.writeByte(methodFlags);
+            out.writeInt(methodRecord.accessFlags != null ? methodRecord.accessFlags : 0);
+            out.writeInt(methodRecord.methodId != null ? methodRecord.methodId : 0);
+            if (methodRecord.fingerprint != null) {
+                out.writeLong(methodRecord.fingerprint.getHigh());
+                out.writeLong(methodRecord.fingerprint.getLow());
+            }
+        }
+        out.flush();
+        return bos.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * FNV-1a 64
+     */
+    private static long hashType(String typeDesc) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < typeDesc.length(); i++) {
+            hash ^= typeDesc.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+}
@@ -18,30 +18,30 @@ package com.baidu.titan.core.patch.light;
 
 import com.baidu.titan.core.Constant;
 import com.baidu.titan.core.TitanDexItemFactory;
+import com.baidu.titan.core.instrument.SpecialParameterAnalyzer;
 import com.baidu.titan.core.patch.PatchArgument;
 import com.baidu.titan.core.patch.PatchException;
 import com.baidu.titan.core.patch.PatchUtils;
+import com.baidu.titan.core.patch.light.diff.ChangedClassDiffMarker;
+import com.baidu.titan.core.patch.light.diff.ChangedMethodDiffMarker;
 import com.baidu.titan.core.patch.light.diff.ClassPoolDiffMarker;
+import com.baidu.titan.core.patch.light.diff.DexNodeFingerprint;
 import com.baidu.titan.core.patch.light.diff.DiffContext;
 import com.baidu.titan.core.patch.light.diff.DiffStatus;
 import com.baidu.titan.core.patch.light.generator.LightClassClinitInterceptorGenerator;
 import com.baidu.titan.core.patch.light.generator.LightDexPatchGenerator;
 import com.baidu.titan.core.pool.ApplicationDexPool;
+import com.baidu.titan.core.util.PhaseTelemetry;
 import com.baidu.titan.core.util.TitanLogger;
 import com.baidu.titan.dex.DexAccessFlags;
-import com.baidu.titan.dex.DexItemFactory;
 import com.baidu.titan.dex.DexString;
 import com.baidu.titan.dex.DexType;
 import com.baidu.titan.dex.extensions.BestEffortMultiDexSplitter;
 import com.baidu.titan.dex.extensions.DexClassKindMarker;
-import com.baidu.titan.dex.extensions.DexInterfacesHierarchyFiller;
-import com.baidu.titan.dex.extensions.DexSubClassHierarchyFiller;
-import com.baidu.titan.dex.extensions.DexSuperClassHierarchyFiller;
 import com.baidu.titan.dex.extensions.MethodIdAssigner;
 import com.baidu.titan.dex.extensions.MultiDexSplitter;
 import com.baidu.titan.dex.node.DexClassNode;
 import com.baidu.titan.dex.node.DexClassPoolNode;
-import com.baidu.titan.dex.node.DexMethodNode;
 import com.baidu.titan.dex.node.MultiDexFileNode;
 import com.baidu.titan.dex.visitor.DexClassPoolNodeVisitor;
 import com.baidu.titan.sdk.common.TitanConstant;
@@ -49,16 +49,15 @@ import com.baidu.titan.sdk.common.TitanConstant;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
 
 /**
  * 生成LightPatch（轻量Patch）入口类。
@@ -80,13 +79,20 @@ import java.util.jar.JarInputStream;
  *
  * </p>
  *
+ * <p>使用完毕后需要调用close，释放library class pool打开的boot class path</p>
+ *
  * @author zhangdi07@baidu.com
  * @since 2018/4/30
  */
-public class LightPatch {
+public class LightPatch implements Closeable {
+
+    private static final String TAG = "LightPatch";
 
     private PatchArgument mArgument;
 
+    /** old-org、old-instrumented、new-org共享的library class pool */
+    private ApplicationDexPool mLibraryPool;
+
     private TitanDexItemFactory mDexFactory;
 
     private LightPatchClassPools mClassPools;
@@ -97,7 +103,12 @@ public class LightPatch {
 
     public LightPatch(PatchArgument argument) {
         this.mArgument = argument;
-        setup();
+        try {
+            setup();
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
     }
 
     private void setup() {
@@ -105,23 +116,83 @@ public class LightPatch {
         mDexFactory = factory;
 
         this.mClassPools = new LightPatchClassPools();
+        PhaseTelemetry telemetry = mArgument.getTelemetry();
+
+        // old-org、old-instrumented、new-org共享同一份只读的library class pool
+        PhaseTelemetry.Phase phase = telemetry.begin("light-load-library");
+        ApplicationDexPool libraryPool = ApplicationDexPool.createSharedLibraryPool(
+                factory, mArgument.getBootClassPath(), mArgument.getLibraryDexCacheDir(),
+                mArgument.isLazyLibraryLoading());
+        if (libraryPool == null) {
+            throw new IllegalStateException("load boot class path failed");
+        }
+        mLibraryPool = libraryPool;
+        phase.end();
+
+        // 同一个base的持久化信息，需要在old dex被释放之前计算key
+        byte[] baseKey = null;
+        File baseStoreFile = null;
+        BaseFingerprintStore baseStore = null;
+        BaseFingerprintStore instrumentInfo = null;
+        PatchArgument.OldProjectInfo oldProjectInfo = mArgument.oldProject;
+        if ((mArgument.getBaseFingerprintDir() != null
+                || oldProjectInfo.getInstrumentInfoFile() != null)
+                && oldProjectInfo.getOldOrgDexs() != null
+                && oldProjectInfo.getOldInstrumentedDexs() != null) {
+            phase = telemetry.begin("light-open-base-store");
+            baseKey = BaseFingerprintStore.computeBaseKey(oldProjectInfo.getOldOrgDexs(),
+                    oldProjectInfo.getOldInstrumentedDexs());
+            if (mArgument.getBaseFingerprintDir() != null) {
+                baseStoreFile = BaseFingerprintStore.getStoreFile(
+                        mArgument.getBaseFingerprintDir(), baseKey);
+                baseStore = loadBaseStore(mArgument, baseStoreFile, baseKey);
+            }
+            // 没有持久化信息时，使用插桩时输出的插桩信息
+            if (baseStore == null && oldProjectInfo.getInstrumentInfoFile() != null) {
+                instrumentInfo = loadBaseStore(mArgument,
+                        oldProjectInfo.getInstrumentInfoFile(), baseKey);
+            }
+            phase.end();
+        }
 
         // old org class pool
-        ApplicationDexPool oldOrgDexPool = new ApplicationDexPool(factory);
+        phase = telemetry.begin("light-parse-old-org-dex");
+        ApplicationDexPool oldOrgDexPool = new ApplicationDexPool(libraryPool);
         setupForOldOrgProject(oldOrgDexPool, mArgument);
         mClassPools.oldOrgClassPool = oldOrgDexPool;
+        phase.end(getProgramClassCount(oldOrgDexPool));
 
         // old instrumented class pool
-
-        setupForOldInstrumentedProject(mClassPools.oldOrgClassPool, mArgument, factory);
+        phase = telemetry.begin(baseStore != null ? "light-load-base-fingerprint"
+                : instrumentInfo != null ? "light-load-instrument-info"
+                : "light-parse-old-instrumented-dex");
+        if (baseStore != null) {
+            setupFromBaseFingerprintStore(mClassPools.oldOrgClassPool, mArgument, baseStore);
+        } else {
+            if (instrumentInfo != null) {
+                setupFromBaseFingerprintStore(mClassPools.oldOrgClassPool, mArgument,
+                        instrumentInfo);
+            } else {
+                setupForOldInstrumentedProject(mClassPools.oldOrgClassPool, mArgument,
+                        libraryPool, factory);
+            }
+            // 插桩信息中没有指纹，计算后保存为持久化信息
+            if (baseStoreFile != null) {
+                writeBaseFingerprintStore(mClassPools.oldOrgClassPool, mArgument, baseStoreFile,
+                        baseKey);
+            }
+        }
+        phase.end(getProgramClassCount(oldOrgDexPool));
 //        mClassPools.oldInstrumentedClassPool = oldInstrumentedDexPool;
         // assign method id for old instrumented class
 
 
         // new org class pool
-        ApplicationDexPool newOrgDexPool = new ApplicationDexPool(factory);
+        phase = telemetry.begin("light-parse-new-org-dex");
+        ApplicationDexPool newOrgDexPool = new ApplicationDexPool(libraryPool);
         setupForNewProject(newOrgDexPool, mArgument);
         mClassPools.newOrgClassPool = newOrgDexPool;
+        phase.end(getProgramClassCount(newOrgDexPool));
 
         mClassPools.interceptorClassPool = new ApplicationDexPool(factory);
         mClassPools.changedClassPool = new ApplicationDexPool(factory);
@@ -134,34 +205,24 @@ public class LightPatch {
 
     }
 
-    private static String getMethodSignature(DexMethodNode methodNode) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(methodNode.owner.toTypeDescriptor());
-        sb.append("->");
-        sb.append(methodNode.name.toString());
-        sb.append("(");
-        if (methodNode.parameters != null) {
-            for (int i = 0; i < methodNode.parameters.count(); i++) {
-                sb.append(methodNode.parameters.getType(i).toTypeDescriptor());
-            }
-        }
-        sb.append(")");
-        sb.append(methodNode.returnType.toTypeDescriptor());
-        return sb.toString();
+    private static long getProgramClassCount(ApplicationDexPool appPool) {
+        return appPool.getProgramClassPool().stream().count();
     }
 
     public boolean analyze() {
+        PhaseTelemetry.Phase phase = mArgument.getTelemetry().begin("light-diff");
         DiffContext diffContext = new DiffContext(mClassPools.newOrgClassPool,
                 mClassPools.oldOrgClassPool,
                 mClassPools.rewriteClassPool,
                 mDexFactory, mArgument.isSupportFinalFieldChange(),
                 mArgument.getClassPatchFilter(),
                 mArgument.getLoadPolicy());
-        ClassPoolDiffMarker classPoolDiffMarker = new ClassPoolDiffMarker(diffContext);
+        ClassPoolDiffMarker classPoolDiffMarker = new ClassPoolDiffMarker(diffContext,
+                mArgument.getDiffParallelism());
 
 
         DiffStatus diff = classPoolDiffMarker.diff();
+        phase.end(getProgramClassCount(mClassPools.newOrgClassPool));
 
         System.out.println("class pool diff status " + diff);
 
@@ -187,6 +248,8 @@ public class LightPatch {
     }
 
     public boolean doPatch() {
+        PhaseTelemetry telemetry = mArgument.getTelemetry();
+        PhaseTelemetry.Phase phase = telemetry.begin("light-generate");
         LightDexPatchGenerator lightDexPatchGenerator =
                 new LightDexPatchGenerator(mClassPools, mDexFactory, mArgument);
         lightDexPatchGenerator.generate();
@@ -235,11 +298,18 @@ public class LightPatch {
         this.mClassPools.patchLoaderClassPool.acceptProgram(addToMainListVisitor);
         this.mClassPools.clinitIntercepotroClassPool.acceptProgram(addToMainListVisitor);
 
+        long patchClassCount = patchPool.stream().count();
+        phase.end(patchClassCount);
+
         // 做multidex分包
+        phase = telemetry.begin("light-multidex-split");
         MultiDexSplitter multiDexSplitter = new BestEffortMultiDexSplitter(patchPool,
                 mainDexList, false);
 
-        if (multiDexSplitter.split() != BestEffortMultiDexSplitter.SPLIT_SUCCESS)  {
+        boolean splitSuccess =
+                multiDexSplitter.split() == BestEffortMultiDexSplitter.SPLIT_SUCCESS;
+        phase.end(patchClassCount);
+        if (!splitSuccess)  {
             return false;
         }
 
@@ -261,106 +331,31 @@ public class LightPatch {
         appPool.fillProgramDexs(oldProjectInfo.getOldOrgDexs());
         oldProjectInfo.setOldOrgDexs(null);
 
-        for (File libraryFile: argument.getBootClassPath()) {
-            JarInputStream jarInput = null;
-            try {
-                jarInput = new JarInputStream(new FileInputStream(libraryFile));
-                JarEntry jarEntry = null;
-                while ((jarEntry = jarInput.getNextJarEntry()) != null) {
-                    if (jarEntry.isDirectory()) {
-                        continue;
-                    }
-                    if (!jarEntry.getName().endsWith(".class")) {
-                        continue;
-                    }
-
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    byte[] buffer = new byte[16 * 1024];
-                    int len;
-
-                    while ((len = jarInput.read(buffer)) > 0) {
-                        baos.write(buffer, 0, len);
-                    }
-
-                    appPool.fillLibraryClass(baos.toByteArray());
-                    baos.close();
-                }
-
-            } catch (IOException e) {
-                e.printStackTrace();
-                return false;
-            } finally {
-                try {
-                    if (jarInput != null) {
-                        jarInput.close();
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-
-            }
-
-        }
-
         // setup for class hierarchy
-        appPool.acceptAll(new DexSuperClassHierarchyFiller(appPool::findClassFromAll));
-        appPool.acceptAll(new DexSubClassHierarchyFiller(appPool::findClassFromAll));
-        appPool.acceptAll(new DexInterfacesHierarchyFiller(appPool::findClassFromAll));
+        appPool.fillClassHierarchy();
 
-        // mark class kind
+        // mark class kind, library class在共享的library pool中已经标记
         appPool.acceptProgram(
                 new DexClassKindMarker(DexClassKindMarker.ClassKind.CLASS_KIND_PROGRAM));
-        appPool.acceptLibrary(
-                new DexClassKindMarker(DexClassKindMarker.ClassKind.CLASS_KIND_LIBRARY));
         return true;
     }
 
     private static boolean setupForOldInstrumentedProject(ApplicationDexPool oldOrgPool,
-                                                          PatchArgument argument, DexItemFactory factory) {
-        ApplicationDexPool appPool = new ApplicationDexPool(factory);
+                                                          PatchArgument argument,
+                                                          ApplicationDexPool libraryPool,
+                                                          TitanDexItemFactory factory) {
+        ApplicationDexPool appPool = new ApplicationDexPool(libraryPool);
         PatchArgument.OldProjectInfo oldProjectInfo = argument.oldProject;
 
         appPool.fillProgramDexs(oldProjectInfo.getOldInstrumentedDexs());
         oldProjectInfo.setOldInstrumentedDexs(null);
 
-        for (File libraryFile: argument.getBootClassPath()) {
-            JarInputStream jarInput = null;
-            try {
-                jarInput = new JarInputStream(new FileInputStream(libraryFile));
-                JarEntry jarEntry = null;
-                while ((jarEntry = jarInput.getNextJarEntry()) != null) {
-                    if (jarEntry.isDirectory()) {
-                        continue;
-                    }
-                    if (!jarEntry.getName().endsWith(".class")) {
-                        continue;
-                    }
-
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    byte[] buffer = new byte[16 * 1024];
-                    int len;
-
-                    while ((len = jarInput.read(buffer)) > 0) {
-                        baos.write(buffer, 0, len);
-                    }
-
-                    appPool.fillLibraryClass(baos.toByteArray());
-                    baos.close();
-                }
-
-            } catch (IOException e) {
-                return false;
-            } finally {
-                try {
-                    if (jarInput != null) {
-                        jarInput.close();
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-
-            }
-
+        // 插桩时可能按应用生成了invokeXX方法，以old instrumented apk中的Interceptable为准
+        DexClassNode interceptableClass =
+                appPool.getProgramClassPool().getClass(factory.interceptableClass.type);
+        if (interceptableClass != null) {
+            argument.setSepcialInterceptParas(
+                    SpecialParameterAnalyzer.readFromInterceptable(interceptableClass));
         }
 
         // setup for class hierarchy
@@ -385,8 +380,9 @@ public class LightPatch {
             final HashMap<String, Integer> methodIdMap = new HashMap<>();
 
             classNode.getMethods().forEach(methodNode -> {
-                methodFlagsMap.put(getMethodSignature(methodNode), methodNode.accessFlags);
-                methodIdMap.put(getMethodSignature(methodNode), methodNode.getExtraInfo("_extra_method_id"));
+                String methodSignature = BaseFingerprintStore.getMethodSignature(methodNode);
+                methodFlagsMap.put(methodSignature, methodNode.accessFlags);
+                methodIdMap.put(methodSignature, methodNode.getExtraInfo("_extra_method_id"));
             });
 
             DexClassNode oldOrgClassNode = oldOrgPool.findClassFromAll(classNode.type);
@@ -406,7 +402,7 @@ public class LightPatch {
                 });
 
                 oldOrgClassNode.getMethods().forEach(methodNode -> {
-                    String methodSignature = getMethodSignature(methodNode);
+                    String methodSignature = BaseFingerprintStore.getMethodSignature(methodNode);
                     DexAccessFlags flags = methodFlagsMap.get(methodSignature);
                     if (flags == null) {
                         System.out.println("method " + methodNode + " access flags is null");
@@ -423,62 +419,165 @@ public class LightPatch {
         return true;
     }
 
-    private static boolean setupForNewProject(ApplicationDexPool appPool, PatchArgument argument) {
-        PatchArgument.NewProjectInfo newProjectInfo = argument.newProject;
-
-        appPool.fillProgramDexs(newProjectInfo.getNewOrgDexs());
-        newProjectInfo.setNewOrgDexs(null);
+    /**
+     * 使用持久化信息或插桩信息代替old-instrumented dex，恢复method id、插桩后的access flags以及
+     * old-org类的指纹（插桩信息中没有指纹）
+     */
+    private static boolean setupFromBaseFingerprintStore(ApplicationDexPool oldOrgPool,
+                                                         PatchArgument argument,
+                                                         BaseFingerprintStore baseStore) {
+        argument.oldProject.setOldInstrumentedDexs(null);
+        TitanLogger extraLogger = argument.getExtraLogger();
+
+        if (baseStore.getSpecialInterceptParas() != null) {
+            argument.setSepcialInterceptParas(baseStore.getSpecialInterceptParas());
+        }
 
-        for (File libraryFile: argument.getBootClassPath()) {
-            JarInputStream jarInput = null;
-            try {
-                jarInput = new JarInputStream(new FileInputStream(libraryFile));
-                JarEntry jarEntry = null;
-                while ((jarEntry = jarInput.getNextJarEntry()) != null) {
-                    if (jarEntry.isDirectory()) {
-                        continue;
-                    }
-                    if (!jarEntry.getName().endsWith(".class")) {
-                        continue;
-                    }
+        oldOrgPool.getProgramClassPool().forEach(oldOrgClassNode -> {
+            BaseFingerprintStore.ClassRecord record =
+                    baseStore.findClass(oldOrgClassNode.type.toTypeDescriptor());
+            if (record == null) {
+                return;
+            }
+            if (record.fingerprint != null) {
+                DexNodeFingerprint.setCached(oldOrgClassNode, DexNodeFingerprint.Mode.CLASS,
+                        record.fingerprint);
+            }
 
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    byte[] buffer = new byte[16 * 1024];
-                    int len;
+            HashMap<String, BaseFingerprintStore.MethodRecord> methodRecords = new HashMap<>();
+            record.methods.forEach(methodRecord ->
+                    methodRecords.put(methodRecord.signature, methodRecord));
 
-                    while ((len = jarInput.read(buffer)) > 0) {
-                        baos.write(buffer, 0, len);
+            if (record.instrumented) {
+                oldOrgClassNode.setExtraInfo(Constant.EXTRA_KEY_INSTRUMENT_ACCESS_FLAGS,
+                        new DexAccessFlags(record.accessFlags));
+                oldOrgClassNode.getFields().forEach(fieldNode -> {
+                    Integer flags =
+                            record.fieldFlags.get(BaseFingerprintStore.getFieldKey(fieldNode));
+                    if (flags == null && extraLogger != null) {
+                        extraLogger.d(TAG, "field " + fieldNode + " access flags is null");
                     }
+                    fieldNode.setExtraInfo(Constant.EXTRA_KEY_INSTRUMENT_ACCESS_FLAGS,
+                            flags == null ? null : new DexAccessFlags(flags));
+                });
+            }
 
-                    appPool.fillLibraryClass(baos.toByteArray());
-                    baos.close();
+            oldOrgClassNode.getMethods().forEach(methodNode -> {
+                BaseFingerprintStore.MethodRecord methodRecord =
+                        methodRecords.get(BaseFingerprintStore.getMethodSignature(methodNode));
+                if (methodRecord != null && methodRecord.fingerprint != null) {
+                    DexNodeFingerprint.setCached(methodNode, DexNodeFingerprint.Mode.METHOD,
+                            methodRecord.fingerprint);
                 }
+                if (!record.instrumented) {
+                    return;
+                }
+                if ((methodRecord == null || methodRecord.accessFlags == null)
+                        && extraLogger != null) {
+                    extraLogger.d(TAG, "method " + methodNode + " access flags is null");
+                }
+                methodNode.setExtraInfo(Constant.EXTRA_KEY_INSTRUMENT_ACCESS_FLAGS,
+                        methodRecord == null || methodRecord.accessFlags == null ?
+                                null : new DexAccessFlags(methodRecord.accessFlags));
+                if (methodRecord != null && methodRecord.methodId != null) {
+                    methodNode.setExtraInfo("_extra_method_id", methodRecord.methodId);
+                }
+            });
+        });
+        return true;
+    }
 
-            } catch (IOException e) {
-                return false;
-            } finally {
-                try {
-                    if (jarInput != null) {
-                        jarInput.close();
+    /**
+     * 保存old-org类的指纹以及从old-instrumented dex中得到的信息，供同一个base后续生成patch时使用。
+     * 计算出的指纹同时设置到old-org类上，本次diff直接使用。
+     */
+    private static void writeBaseFingerprintStore(ApplicationDexPool oldOrgPool,
+                                                  PatchArgument argument, File storeFile,
+                                                  byte[] baseKey) {
+        List<BaseFingerprintStore.ClassRecord> records = new ArrayList<>();
+        oldOrgPool.getProgramClassPool().forEach(oldOrgClassNode -> {
+            BaseFingerprintStore.ClassRecord record =
+                    new BaseFingerprintStore.ClassRecord(oldOrgClassNode.type.toTypeDescriptor());
+            record.fingerprint = ChangedClassDiffMarker.getClassFingerprint(oldOrgClassNode);
+            DexNodeFingerprint.setCached(oldOrgClassNode, DexNodeFingerprint.Mode.CLASS,
+                    record.fingerprint);
+
+            DexAccessFlags classFlags = oldOrgClassNode.getExtraInfo(
+                    Constant.EXTRA_KEY_INSTRUMENT_ACCESS_FLAGS, null);
+            record.instrumented = classFlags != null;
+            if (record.instrumented) {
+                record.accessFlags = classFlags.getFlags();
+                oldOrgClassNode.getFields().forEach(fieldNode -> {
+                    DexAccessFlags flags = fieldNode.getExtraInfo(
+                            Constant.EXTRA_KEY_INSTRUMENT_ACCESS_FLAGS, null);
+                    if (flags != null) {
+                        record.fieldFlags.put(BaseFingerprintStore.getFieldKey(fieldNode),
+                                flags.getFlags());
                     }
-                } catch (IOException e) {
-                    e.printStackTrace();
+                });
+            }
+
+            oldOrgClassNode.getMethods().forEach(methodNode -> {
+                BaseFingerprintStore.MethodRecord methodRecord = new BaseFingerprintStore.MethodRecord(
+                        BaseFingerprintStore.getMethodSignature(methodNode));
+                methodRecord.fingerprint =
+                        ChangedMethodDiffMarker.getMethodFingerprint(oldOrgClassNode, methodNode);
+                DexNodeFingerprint.setCached(methodNode, DexNodeFingerprint.Mode.METHOD,
+                        methodRecord.fingerprint);
+                DexAccessFlags flags = methodNode.getExtraInfo(
+                        Constant.EXTRA_KEY_INSTRUMENT_ACCESS_FLAGS, null);
+                if (flags != null) {
+                    methodRecord.accessFlags = flags.getFlags();
                 }
+                methodRecord.methodId = methodNode.getExtraInfo("_extra_method_id", null);
+                record.methods.add(methodRecord);
+            });
+            records.add(record);
+        });
+        try {
+            BaseFingerprintStore.write(storeFile, baseKey, argument.getSpecialInterceptParas(),
+                    records);
+        } catch (IOException e) {
+            // 持久化信息只用于加速，写入失败不影响本次结果
+            logStoreError(argument, "write base fingerprint store " + storeFile + " failed", e);
+        }
+    }
 
-            }
+    /**
+     * 读取持久化信息或插桩信息，读取失败时回退到解析old-instrumented dex
+     *
+     * @return 文件不存在、无效或读取失败时返回null
+     */
+    private static BaseFingerprintStore loadBaseStore(PatchArgument argument, File storeFile,
+                                                      byte[] baseKey) {
+        try {
+            return BaseFingerprintStore.load(storeFile, baseKey);
+        } catch (IOException e) {
+            logStoreError(argument, "load " + storeFile + " failed", e);
+            return null;
+        }
+    }
 
+    private static void logStoreError(PatchArgument argument, String msg, IOException e) {
+        System.err.println("[titan] " + msg + ": " + e);
+        TitanLogger extraLogger = argument.getExtraLogger();
+        if (extraLogger != null) {
+            extraLogger.e(TAG, msg + ": " + e);
         }
+    }
+
+    private static boolean setupForNewProject(ApplicationDexPool appPool, PatchArgument argument) {
+        PatchArgument.NewProjectInfo newProjectInfo = argument.newProject;
+
+        appPool.fillProgramDexs(newProjectInfo.getNewOrgDexs());
+        newProjectInfo.setNewOrgDexs(null);
 
         // setup for class hierarchy
-        appPool.acceptAll(new DexSuperClassHierarchyFiller(appPool::findClassFromAll));
-        appPool.acceptAll(new DexSubClassHierarchyFiller(appPool::findClassFromAll));
-        appPool.acceptAll(new DexInterfacesHierarchyFiller(appPool::findClassFromAll));
+        appPool.fillClassHierarchy();
 
-        // mark class kind
+        // mark class kind, library class在共享的library pool中已经标记
         appPool.acceptProgram(
                 new DexClassKindMarker(DexClassKindMarker.ClassKind.CLASS_KIND_PROGRAM));
-        appPool.acceptLibrary(
-                new DexClassKindMarker(DexClassKindMarker.ClassKind.CLASS_KIND_LIBRARY));
 
         File newProjectApktoolDir = new File(argument.getWorkDir(), "newApkToolDir");
 
@@ -509,4 +608,14 @@ public class LightPatch {
         classInfo.put(TitanConstant.KEY_INSTANT_INIT_CLASS, instantInitClass);
         return classInfo;
     }
+
+    /**
+     * 关闭共享的library class pool
+     */
+    @Override
+    public void close() {
+        if (mLibraryPool != null) {
+            mLibraryPool.close();
+        }
+    }
 }
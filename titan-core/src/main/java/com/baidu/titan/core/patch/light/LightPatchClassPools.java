@@ -48,6 +48,10 @@ public class LightPatchClassPools {
     public ApplicationDexPool rewriteClassPool;
     /** 可以进行懒加载的类池*/
     public ApplicationDexPool lazyInitClassPool;
+    /** 基于rewrite及new class pool的方法解析缓存，diff完成后创建 */
+    public MethodResolutionCache newMethodResolutionCache;
+    /** 基于old class pool的方法解析缓存 */
+    public MethodResolutionCache oldMethodResolutionCache;
 
 
 
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.patch.light;
+
+import com.baidu.titan.dex.DexConst;
+import com.baidu.titan.dex.DexItemFactory;
+import com.baidu.titan.dex.DexString;
+import com.baidu.titan.dex.DexType;
+import com.baidu.titan.dex.DexTypeList;
+import com.baidu.titan.dex.Dop;
+import com.baidu.titan.dex.linker.ClassLinker;
+import com.baidu.titan.dex.linker.DexClassLoader;
+import com.baidu.titan.dex.node.DexMethodNode;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * invoke指令调用方法的解析缓存，以(invoke类型, owner, 方法原型, 方法名)为key，
+ * 同一个ref在各个类、各个方法中只解析一次。
+ *
+ * 每个实例绑定一个DexClassLoader，要求loader可见的类在缓存的生命周期内不再变化，
+ * 例如diff完成之后的new、old class pool。支持多线程并发访问。
+ *
+ * @since 2026/10/18
+ */
+public class MethodResolutionCache {
+
+    private static final int KIND_DIRECT = 1;
+
+    private static final int KIND_VIRTUAL = 2;
+
+    private static final int KIND_INTERFACE = 3;
+
+    private final DexClassLoader mClassLoader;
+
+    /** ClassLinker不保证线程安全，每个线程使用独立的实例 */
+    private final ThreadLocal<ClassLinker> mLinker;
+
+    /** 未解析到的方法用Optional.empty()表示，同样缓存 */
+    private final Map<MethodKey, Optional<DexMethodNode>> mResolved = new ConcurrentHashMap<>();
+
+    private final LongAdder mHitCount = new LongAdder();
+
+    private final LongAdder mMissCount = new LongAdder();
+
+    public MethodResolutionCache(DexItemFactory dexItemFactory, DexClassLoader classLoader) {
+        this.mClassLoader = classLoader;
+        this.mLinker = ThreadLocal.withInitial(() -> new ClassLinker(dexItemFactory));
+    }
+
+    /**
+     * 按invoke类型解析被调用的方法，与ClassLinker的查找规则一致：
+     * invoke-direct/static对应findDirectMethod，invoke-virtual/super对应findVirtualMethod，
+     * invoke-interface对应findInterfaceMethod
+     *
+     * @param dop invoke指令
+     * @param methodRef 被调用方法
+     * @return 解析到的方法，未找到或不是invoke指令时返回null
+     */
+    public DexMethodNode resolve(Dop dop, DexConst.ConstMethodRef methodRef) {
+        if (dop.isInvokeDirect() || dop.isInvokeStatic()) {
+            return resolve(KIND_DIRECT, methodRef);
+        } else if (dop.isInvokeVirtual() || dop.isInvokeSuper()) {
+            return resolve(KIND_VIRTUAL, methodRef);
+        } else if (dop.isInvokeInterface()) {
+            return resolve(KIND_INTERFACE, methodRef);
+        }
+        return null;
+    }
+
+    public DexMethodNode findDirectMethod(DexConst.ConstMethodRef methodRef) {
+        return resolve(KIND_DIRECT, methodRef);
+    }
+
+    public DexMethodNode findVirtualMethod(DexConst.ConstMethodRef methodRef) {
+        return resolve(KIND_VIRTUAL, methodRef);
+    }
+
+    public DexMethodNode findInterfaceMethod(DexConst.ConstMethodRef methodRef) {
+        return resolve(KIND_INTERFACE, methodRef);
+    }
+
+    private DexMethodNode resolve(int kind, DexConst.ConstMethodRef methodRef) {
+        MethodKey key = new MethodKey(kind, methodRef);
+        Optional<DexMethodNode> resolved = mResolved.get(key);
+        if (resolved != null) {
+            mHitCount.increment();
+            return resolved.orElse(null);
+        }
+        mMissCount.increment();
+        // 并发时同一个key可能被重复解析，结果相同，保留先写入的结果
+        resolved = Optional.ofNullable(doResolve(kind, methodRef));
+        Optional<DexMethodNode> prev = mResolved.putIfAbsent(key, resolved);
+        return (prev != null ? prev : resolved).orElse(null);
+    }
+
+    private DexMethodNode doResolve(int kind, DexConst.ConstMethodRef methodRef) {
+        ClassLinker linker = mLinker.get();
+        switch (kind) {
+            case KIND_DIRECT: {
+                return linker.findDirectMethod(
+                        methodRef.getOwner(),
+                        methodRef.getParameterTypes(),
+                        methodRef.getReturnType(),
+                        methodRef.getName(),
+                        mClassLoader);
+            }
+            case KIND_VIRTUAL: {
+                return linker.findVirtualMethod(
+                        methodRef.getOwner(),
+                        methodRef.getParameterTypes(),
+                        methodRef.getReturnType(),
+                        methodRef.getName(),
+                        mClassLoader);
+            }
+            case KIND_INTERFACE: {
+                return linker.findInterfaceMethod(
+                        methodRef.getOwner(),
+                        methodRef.getParameterTypes(),
+                        methodRef.getReturnType(),
+                        methodRef.getName(),
+                        mClassLoader);
+            }
+            default: {
+                return null;
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return mHitCount.sum();
+    }
+
+    public long getMissCount() {
+        return mMissCount.sum();
+    }
+
+    /**
+     * @return 命中率，没有访问时返回0
+     */
+    public double getHitRate() {
+        long hit = getHitCount();
+        long total = hit + getMissCount();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MethodResolutionCache{size=%d, hit=%d, miss=%d, hitRate=%.2f%%}",
+                mResolved.size(), getHitCount(), getMissCount(), getHitRate() * 100);
+    }
+
+    /**
+     * DexType、DexString由同一个DexItemFactory创建，可直接比较
+     */
+    private static final class MethodKey {
+
+        private final int mKind;
+
+        private final DexType mOwner;
+
+        private final DexString mName;
+
+        private final DexType mReturnType;
+
+        private final DexType[] mParameterTypes;
+
+        private final int mHashCode;
+
+        MethodKey(int kind, DexConst.ConstMethodRef methodRef) {
+            this.mKind = kind;
+            this.mOwner = methodRef.getOwner();
+            this.mName = methodRef.getName();
+            this.mReturnType = methodRef.getReturnType();
+            DexTypeList parameters = methodRef.getParameterTypes();
+            int count = parameters == null ? 0 : parameters.count();
+            this.mParameterTypes = new DexType[count];
+            for (int i = 0; i < count; i++) {
+                mParameterTypes[i] = parameters.getType(i);
+            }
+            int hash = kind;
+            hash = 31 * hash + mOwner.hashCode();
+            hash = 31 * hash + mName.hashCode();
+            hash = 31 * hash + mReturnType.hashCode();
+            hash = 31 * hash + Arrays.hashCode(mParameterTypes);
+            this.mHashCode = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MethodKey)) {
+                return false;
+            }
+            MethodKey other = (MethodKey) o;
+            return mHashCode == other.mHashCode
+                    && mKind == other.mKind
+                    && mOwner.equals(other.mOwner)
+                    && mName.equals(other.mName)
+                    && mReturnType.equals(other.mReturnType)
+                    && Arrays.equals(mParameterTypes, other.mParameterTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+
+}
@@ -16,9 +16,12 @@
 
 package com.baidu.titan.core.patch.light.diff;
 
+import com.baidu.titan.core.pool.ApplicationDexPool;
 import com.baidu.titan.dex.DexAccessFlags;
 import com.baidu.titan.dex.DexConst;
 import com.baidu.titan.dex.DexRegisterList;
+import com.baidu.titan.dex.DexString;
+import com.baidu.titan.dex.DexType;
 import com.baidu.titan.dex.Dop;
 import com.baidu.titan.dex.Dops;
 import com.baidu.titan.dex.linker.ClassLinker;
@@ -30,9 +33,12 @@ import com.baidu.titan.dex.node.DexMethodNode;
 import com.baidu.titan.dex.node.insn.DexConstInsnNode;
 import com.baidu.titan.dex.visitor.DexCodeVisitor;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -45,17 +51,26 @@ import java.util.stream.StreamSupport;
 class AffectedFinalFieldMarker extends DexCodeVisitor {
     private DexClassNode mNewClassNode;
     private DexClassNode mOldClassNode;
-    private List<DexFieldNode> mFinalFieldList;
+    /** final字段按name、type分组，put指令直接查找。DexString及DexType由DexItemFactory统一创建，可直接作为key */
+    private Map<DexString, Map<DexType, List<DexFieldNode>>> mFinalFields = new HashMap<>();
     private Set<DexMethodNode> mChangedOrAddedInitMethods;
 
     AffectedFinalFieldMarker(Set<DexMethodNode> changedOrAddedInitMethods, DexClassNode newClassNode, DexClassNode oldClassNode) {
         mNewClassNode = newClassNode;
         mOldClassNode = oldClassNode;
         mChangedOrAddedInitMethods = changedOrAddedInitMethods;
-        mFinalFieldList = Stream.of(mNewClassNode, mOldClassNode)
+        Stream.of(mNewClassNode, mOldClassNode)
                 .flatMap(dcn -> dcn.getFields().stream())
                 .filter(dfn -> dfn.accessFlags.containsOneOf(DexAccessFlags.ACC_FINAL))
-                .collect(Collectors.toList());
+                .forEach(dfn -> mFinalFields.computeIfAbsent(dfn.name, name -> new HashMap<>())
+                        .computeIfAbsent(dfn.type, type -> new ArrayList<>())
+                        .add(dfn));
+    }
+
+    private List<DexFieldNode> findFinalFields(DexConst.ConstFieldRef fieldRef) {
+        Map<DexType, List<DexFieldNode>> fieldsByType = mFinalFields.get(fieldRef.getName());
+        List<DexFieldNode> fields = fieldsByType == null ? null : fieldsByType.get(fieldRef.getType());
+        return fields == null ? Collections.emptyList() : fields;
     }
 
     @Override
@@ -63,10 +78,8 @@ class AffectedFinalFieldMarker extends DexCodeVisitor {
         Dop dop = Dops.dopFor(op);
         if (dop.isFieldInstancePut() || dop.isFieldStaticPut()) {
             DexConst.ConstFieldRef fieldRef = (DexConst.ConstFieldRef) dexConst;
-            mFinalFieldList.stream()
-                    .filter(dfn -> fieldRef.getName().equals(dfn.name)
-                            && fieldRef.getType().equals(dfn.type))
-                    .map(ChangedClassDiffMarker::getFieldDiffMode)
+            findFinalFields(fieldRef).stream()
+                    .map(ChangedClassDiffMarker::getOrCreateFieldDiffMode)
                     .filter(diffMode -> diffMode.isUnChanged() || diffMode.isAdded())
                     // 将所有符合中要求的filed标记为AFFECT_FINAL_FIELD
                     .forEach(diffMode -> diffMode.markChanged(DiffMode.REASON_FINAL_FIELD_AFFECTED));
@@ -88,15 +101,10 @@ class AffectedFinalFieldMarker extends DexCodeVisitor {
      * final field标记完成后，查找没有修改过的<init>方法，如果其中也有对final字段的操作，也将该<init>方法标记为受影响
      */
     private void markUnchangedInitMethod() {
-        List<DexFieldNode> finalFieldList =
-                Stream.of(mNewClassNode, mOldClassNode).flatMap(dcn -> dcn.getFields().stream())
-                        .filter(dfn -> dfn.accessFlags.containsOneOf(DexAccessFlags.ACC_FINAL))
-                        .collect(Collectors.toList());
-
         Stream.of(mNewClassNode, mOldClassNode)
                 .flatMap(dcn -> dcn.getMethods().stream())
                 .filter(DexMethodNode::isInstanceInitMethod)
-                .filter(dmn -> ChangedClassDiffMarker.getMethodDiffMode(dmn).isUnChanged())
+                .filter(dmn -> ChangedClassDiffMarker.getOrCreateMethodDiffMode(dmn).isUnChanged())
                 .forEach(dmn -> {
                     DexCodeNode codeNode = dmn.getCode();
                     codeNode.getInsns().stream()
@@ -104,66 +112,75 @@ class AffectedFinalFieldMarker extends DexCodeVisitor {
                             .map(node -> (DexConstInsnNode) node)
                             .filter(node -> Dops.dopFor(node.getOpcode()).isFieldInstancePut())
                             .map(node -> (DexConst.ConstFieldRef) node.getConst())
-                            .flatMap(fieldRef -> finalFieldList.stream()
-                                    .filter(f -> fieldRef.getName().equals(f.name)
-                                            && fieldRef.getType().equals(f.type))
-                                    .map(ChangedClassDiffMarker::getFieldDiffMode))
+                            .flatMap(fieldRef -> findFinalFields(fieldRef).stream()
+                                    .map(ChangedClassDiffMarker::getOrCreateFieldDiffMode))
                             .filter(DiffMode::isAffectFinalField)
                             .findAny()
                             .ifPresent( diffMode -> {
-                                DiffMode methodDiffMode = ChangedClassDiffMarker.getMethodDiffMode(dmn);
+                                DiffMode methodDiffMode = ChangedClassDiffMarker.getOrCreateMethodDiffMode(dmn);
                                 methodDiffMode.markChanged(DiffMode.REASON_FINAL_FIELD_AFFECTED);
                             });
                 });
     }
 
     /**
-     * 对类中所有方法进行检查，判断是否有方法受到final field值变化的影响
+     * 对new class pool及old class pool中的方法进行检查，判断是否有方法受到final field值变化的影响。
+     * 先找出值发生变化的final字段，再通过字段引用索引找到访问了同名同类型字段的方法，只对这些方法解析字段引用。
      *
-     * @param diffContext diff中使用到的一些上下文相关环境
-     * @param newClassNode 类结点
+     * @param diffContext diff中使用到的一些上下文相关环境，需要已经构建new class pool的引用索引
      */
-    public static void markAccessFinalField(DiffContext diffContext, DexClassNode newClassNode) {
-        markAccessFinalField(newClassNode, diffContext.linker, diffContext.classLoaderFromNewPool);
-        DexClassNode oldOrgClass = diffContext.oldOrgAppPool.getProgramClassPool().getClass(newClassNode.type);
-        if (oldOrgClass != null) {
-            markAccessFinalField(oldOrgClass, diffContext.linker, diffContext.classLoaderFromOldPool);
-        }
+    public static void markAccessFinalField(DiffContext diffContext) {
+        markAccessFinalField(diffContext.newOrgAppPool, diffContext.getNewUseSiteIndex(),
+                diffContext.getLinker(), diffContext.classLoaderFromNewPool,
+                diffContext.newOrgAppPool);
+        // old class pool中只检查new class pool中也存在的类
+        markAccessFinalField(diffContext.oldOrgAppPool,
+                UseSiteIndex.build(diffContext.oldOrgAppPool, null),
+                diffContext.getLinker(), diffContext.classLoaderFromOldPool,
+                diffContext.newOrgAppPool);
     }
 
-    private static void markAccessFinalField(DexClassNode classNode, ClassLinker linker, DexClassLoader loader) {
-        classNode.getMethods().stream()
-                .filter(dmn -> dmn.accessFlags.containsNoneOf(DexAccessFlags.ACC_ABSTRACT
-                        | DexAccessFlags.ACC_NATIVE))
-                .forEach(dmn -> {
-                    DexCodeNode codeNode = dmn.getCode();
-                    if (codeNode != null && codeNode.getInsns() != null) {
-                        codeNode.getInsns().stream()
-                                .filter(node -> node instanceof DexConstInsnNode)
-                                .map(node -> (DexConstInsnNode) node)
-                                .filter(node -> Dops.dopFor(node.getOpcode()).isFieldAccessKind())
-                                .map(node -> (DexConst.ConstFieldRef) node.getConst())
-                                .map(fieldRef -> {
-                                    DexFieldNode dfn = linker.resolveFieldJLS(loader, fieldRef);
-                                    if (dfn == null) {
-                                        dfn = new DexFieldNode(fieldRef.getName(),
-                                                fieldRef.getType(),
-                                                fieldRef.getOwner(),
-                                                new DexAccessFlags(DexAccessFlags.ACC_PUBLIC));
-                                    }
-                                    return dfn;
-                                })
-                                .map(ChangedClassDiffMarker::getFieldDiffMode)
-                                .filter(DiffMode::isAffectFinalField)
-                                .findAny()
-                                .ifPresent(diffMode -> {
-                                    DiffMode methodDiffMode = ChangedClassDiffMarker.getMethodDiffMode(dmn);
-                                    methodDiffMode.markChanged(DiffMode.REASON_FINAL_FIELD_AFFECTED);
-                                    ClassPoolDiffMarker.getClassDiffMode(classNode)
-                                            .markChanged(DiffMode.REASON_FINAL_FIELD_AFFECTED);
-                                });
-                    }
-                });
+    private static void markAccessFinalField(ApplicationDexPool classPool, UseSiteIndex index,
+                                             ClassLinker linker, DexClassLoader loader,
+                                             ApplicationDexPool newClassPool) {
+        classPool.getProgramClassPool().forEach(dcn -> dcn.getFields().forEach(dfn -> {
+            if (!ChangedClassDiffMarker.getFieldDiffMode(dfn).isAffectFinalField()) {
+                return;
+            }
+            index.getFieldRefUsers(dfn.name, dfn.type).forEach(dmn -> {
+                DexClassNode classNode = classPool.getProgramClassPool().getClass(dmn.owner);
+                if (classNode == null
+                        || newClassPool.getProgramClassPool().getClass(dmn.owner) == null
+                        || dmn.accessFlags.containsOneOf(DexAccessFlags.ACC_ABSTRACT
+                        | DexAccessFlags.ACC_NATIVE)
+                        || !accessField(dmn, dfn, linker, loader)) {
+                    return;
+                }
+                ChangedClassDiffMarker.getOrCreateMethodDiffMode(dmn)
+                        .markChanged(DiffMode.REASON_FINAL_FIELD_AFFECTED);
+                ClassPoolDiffMarker.getOrCreateClassDiffMode(classNode)
+                        .markChanged(DiffMode.REASON_FINAL_FIELD_AFFECTED);
+            });
+        }));
+    }
+
+    /**
+     * @return 方法中是否有字段引用解析到指定字段
+     */
+    private static boolean accessField(DexMethodNode dmn, DexFieldNode dfn, ClassLinker linker,
+                                       DexClassLoader loader) {
+        DexCodeNode codeNode = dmn.getCode();
+        if (codeNode == null || codeNode.getInsns() == null) {
+            return false;
+        }
+        return codeNode.getInsns().stream()
+                .filter(node -> node instanceof DexConstInsnNode)
+                .map(node -> (DexConstInsnNode) node)
+                .filter(node -> Dops.dopFor(node.getOpcode()).isFieldAccessKind())
+                .map(node -> (DexConst.ConstFieldRef) node.getConst())
+                .filter(fieldRef -> fieldRef.getName().equals(dfn.name)
+                        && fieldRef.getType().equals(dfn.type))
+                .anyMatch(fieldRef -> linker.resolveFieldJLS(loader, fieldRef) == dfn);
     }
 
 
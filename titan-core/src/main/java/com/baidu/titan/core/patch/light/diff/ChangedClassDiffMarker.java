@@ -192,10 +192,23 @@ public class ChangedClassDiffMarker implements DexClassNodeVisitor {
 
     private static boolean diffQuickCompare(DexClassNode oldClass, DexClassNode newClass,
                                          boolean ignoreDebugInfo) {
-        byte[] oldClassBytes = getClassNodeBytes(oldClass, ignoreDebugInfo);
-        byte[] newClassBytes = getClassNodeBytes(newClass, ignoreDebugInfo);
+        if (!ignoreDebugInfo) {
+            byte[] oldClassBytes = getClassNodeBytes(oldClass, false);
+            byte[] newClassBytes = getClassNodeBytes(newClass, false);
+            return Arrays.equals(oldClassBytes, newClassBytes);
+        }
+        return getClassFingerprint(oldClass).equals(getClassFingerprint(newClass));
+    }
 
-        return Arrays.equals(oldClassBytes, newClassBytes);
+    /**
+     * 快速对比使用的类指纹
+     *
+     * @param dcn class node
+     * @return 类指纹
+     */
+    public static DexNodeFingerprint getClassFingerprint(DexClassNode dcn) {
+        return DexNodeFingerprint.ofClass(dcn, DexNodeFingerprint.Mode.CLASS,
+                () -> getClassNodeBytes(dcn, true));
     }
 
     public DiffStatus diff() {
@@ -284,14 +297,14 @@ public class ChangedClassDiffMarker implements DexClassNodeVisitor {
 
     private void markAllUnchanged() {
         mNewOrgClass.getMethods()
-                .forEach(dmn -> getMethodDiffMode(dmn).markUnChanged());
+                .forEach(dmn -> getOrCreateMethodDiffMode(dmn).markUnChanged());
         mOldOrgClass.getMethods()
-                .forEach(dmn -> getMethodDiffMode(dmn).markUnChanged());
+                .forEach(dmn -> getOrCreateMethodDiffMode(dmn).markUnChanged());
 
         mNewOrgClass.getFields()
-                .forEach(dfn -> getFieldDiffMode(dfn).markUnChanged());
+                .forEach(dfn -> getOrCreateFieldDiffMode(dfn).markUnChanged());
         mOldOrgClass.getFields()
-                .forEach(dfn -> getFieldDiffMode(dfn).markUnChanged());
+                .forEach(dfn -> getOrCreateFieldDiffMode(dfn).markUnChanged());
     }
 
     public void printDiffStatus(TitanLogger logger) {
@@ -368,7 +381,28 @@ public class ChangedClassDiffMarker implements DexClassNodeVisitor {
 
     }
 
+    /**
+     * 查询字段的diff标记，不修改节点，可在并发生成patch时调用
+     *
+     * @return 没有标记时视为未变化，返回只读的{@link DiffMode#UNCHANGED}
+     */
     public static DiffMode getFieldDiffMode(DexFieldNode dfn) {
+        return dfn.getExtraInfo(EXTRA_KEY_FIELD_DIFF_MODE, DiffMode.UNCHANGED);
+    }
+
+    /**
+     * 查询方法的diff标记，不修改节点，可在并发生成patch时调用
+     *
+     * @return 没有标记时视为未变化，返回只读的{@link DiffMode#UNCHANGED}
+     */
+    public static DiffMode getMethodDiffMode(DexMethodNode dmn) {
+        return dmn.getExtraInfo(EXTRA_KEY_METHOD_DIFF_MODE, DiffMode.UNCHANGED);
+    }
+
+    /**
+     * diff过程中获取字段的diff标记用于修改，没有时创建，只能由处理该字段所在类的线程调用
+     */
+    static DiffMode getOrCreateFieldDiffMode(DexFieldNode dfn) {
         DiffMode diffMode = dfn.getExtraInfo(EXTRA_KEY_FIELD_DIFF_MODE, null);
         if (diffMode == null) {
             diffMode = new DiffMode();
@@ -377,7 +411,10 @@ public class ChangedClassDiffMarker implements DexClassNodeVisitor {
         return diffMode;
     }
 
-    public static DiffMode getMethodDiffMode(DexMethodNode dmn) {
+    /**
+     * diff过程中获取方法的diff标记用于修改，没有时创建，只能由处理该方法所在类的线程调用
+     */
+    static DiffMode getOrCreateMethodDiffMode(DexMethodNode dmn) {
         DiffMode diffMode = dmn.getExtraInfo(EXTRA_KEY_METHOD_DIFF_MODE, null);
         if (diffMode == null) {
             diffMode = new DiffMode();
@@ -420,7 +457,7 @@ public class ChangedClassDiffMarker implements DexClassNodeVisitor {
 
         if (oldMethodNode == null) {
             // new added method
-            getMethodDiffMode(newMethodNode).markAdded();
+            getOrCreateMethodDiffMode(newMethodNode).markAdded();
             AddedMethodDiffMarker addedMethodDiffMarker =
                     new AddedMethodDiffMarker(mDiffContext, mNewOrgClass, newMethodNode);
             DiffStatus addedMethodDiff = addedMethodDiffMarker.diff();
@@ -454,20 +491,20 @@ public class ChangedClassDiffMarker implements DexClassNodeVisitor {
                     if (newMethodNode.isInstanceInitMethod() || newMethodNode.isStaticInitMethod()) {
                         mChangedInitMethods.add(newMethodNode);
                     }
-                    getMethodDiffMode(newMethodNode).markChanged();
-                    getMethodDiffMode(oldMethodNode).markChanged();
+                    getOrCreateMethodDiffMode(newMethodNode).markChanged();
+                    getOrCreateMethodDiffMode(oldMethodNode).markChanged();
                     break;
                 }
                 case UNCHANGED: {
-                    getMethodDiffMode(newMethodNode).markUnChanged();
-                    getMethodDiffMode(oldMethodNode).markUnChanged();
+                    getOrCreateMethodDiffMode(newMethodNode).markUnChanged();
+                    getOrCreateMethodDiffMode(oldMethodNode).markUnChanged();
                     break;
                 }
                 case CHANGED_INCOMPATIBLE: {
                     mIncompatibleChangedMethods.put(new DexNamedProtoNode(newMethodNode),
                             changedMethodDiffMarker);
-                    getMethodDiffMode(newMethodNode).markChanged();
-                    getMethodDiffMode(oldMethodNode).markChanged();
+                    getOrCreateMethodDiffMode(newMethodNode).markChanged();
+                    getOrCreateMethodDiffMode(oldMethodNode).markChanged();
                     break;
                 }
                 default: {
@@ -478,7 +515,7 @@ public class ChangedClassDiffMarker implements DexClassNodeVisitor {
     }
 
     private void visitMethodNodeFromOldClass(DexMethodNode oldMethodNode) {
-        DiffMode oldMethodDiffMode = getMethodDiffMode(oldMethodNode);
+        DiffMode oldMethodDiffMode = getOrCreateMethodDiffMode(oldMethodNode);
         if (!oldMethodDiffMode.isUnChanged() && !oldMethodDiffMode.isChanged()) {
             oldMethodDiffMode.markRemoved();
             RemovedMethodDiffMarker removedMethodDiffMarker =
@@ -521,7 +558,7 @@ public class ChangedClassDiffMarker implements DexClassNodeVisitor {
 
         if (oldFieldNode == null) {
             // new add field
-            getFieldDiffMode(newFieldNode).markAdded();
+            getOrCreateFieldDiffMode(newFieldNode).markAdded();
 
             AddedFieldDiffMarker addedFieldDiff =
                     new AddedFieldDiffMarker(this.mNewOrgClass, newFieldNode);
@@ -546,14 +583,14 @@ public class ChangedClassDiffMarker implements DexClassNodeVisitor {
             int fieldDiff = FieldDiffMarker.diff(mNewOrgClass, mOldOrgClass, newFieldNode, oldFieldNode);
             switch (fieldDiff) {
                 case FieldDiffMarker.DIFF_UNCHANGED: {
-                    getFieldDiffMode(newFieldNode).markUnChanged();
-                    getFieldDiffMode(oldFieldNode).markUnChanged();
+                    getOrCreateFieldDiffMode(newFieldNode).markUnChanged();
+                    getOrCreateFieldDiffMode(oldFieldNode).markUnChanged();
                     break;
                 }
                 case FieldDiffMarker.DIFF_CHANGED_COMPATIBLE_STATIC_FINAL_VALUE_CHANGED: {
                     if (mDiffContext.isSupportFinalFieldChange()) {
-                        getFieldDiffMode(newFieldNode).markChanged(DiffMode.REASON_FINAL_FIELD_AFFECTED);
-                        getFieldDiffMode(oldFieldNode).markChanged(DiffMode.REASON_FINAL_FIELD_AFFECTED);
+                        getOrCreateFieldDiffMode(newFieldNode).markChanged(DiffMode.REASON_FINAL_FIELD_AFFECTED);
+                        getOrCreateFieldDiffMode(oldFieldNode).markChanged(DiffMode.REASON_FINAL_FIELD_AFFECTED);
                     }
                     break;
                 }
@@ -564,7 +601,7 @@ public class ChangedClassDiffMarker implements DexClassNodeVisitor {
     }
 
     private void visitOldClassFieldNode(DexFieldNode oldFieldNode) {
-        DiffMode oldFieldDiffMode = getFieldDiffMode(oldFieldNode);
+        DiffMode oldFieldDiffMode = getOrCreateFieldDiffMode(oldFieldNode);
         if (!oldFieldDiffMode.isChanged() && !oldFieldDiffMode.isUnChanged()) {
             oldFieldDiffMode.markRemoved();
         }
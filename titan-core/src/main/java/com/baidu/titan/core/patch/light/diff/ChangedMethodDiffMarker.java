@@ -25,10 +25,7 @@ import com.baidu.titan.dex.DexRegisterList;
 import com.baidu.titan.dex.DexString;
 import com.baidu.titan.dex.DexType;
 import com.baidu.titan.dex.DexTypeList;
-import com.baidu.titan.dex.Dop;
 import com.baidu.titan.dex.Dops;
-import com.baidu.titan.dex.linker.ClassLinker;
-import com.baidu.titan.dex.linker.DexClassLoader;
 import com.baidu.titan.dex.node.DexClassNode;
 import com.baidu.titan.dex.node.DexCodeNode;
 import com.baidu.titan.dex.node.DexMethodNode;
@@ -45,6 +42,7 @@ import com.baidu.titan.dex.writer.DexFileWriter;
 import com.baidu.titan.sdk.common.TitanConstant;
 
 import java.util.Arrays;
+import java.util.Objects;
 
 /**
  *
@@ -234,10 +232,27 @@ public class ChangedMethodDiffMarker extends DexCodeVisitor {
                                             DexClassNode oldClassNode,
                                             DexMethodNode newMethodNode,
                                             DexMethodNode oldMethodNode) {
-        byte[] oldMethodBytes = generateMethodBytes(oldClassNode, oldMethodNode, true);
-        byte[] newMethodBytes = generateMethodBytes(newClassNode, newMethodNode, true);
-        return Arrays.equals(oldMethodBytes, newMethodBytes);
+        // 方法序列化时带有所在类的类型、父类和接口，这里直接比较
+        if (!newClassNode.type.equals(oldClassNode.type)
+                || !Objects.equals(newClassNode.superType, oldClassNode.superType)
+                || !Arrays.equals(newClassNode.interfaces.types(), oldClassNode.interfaces.types())) {
+            return false;
+        }
+        return getMethodFingerprint(oldClassNode, oldMethodNode)
+                .equals(getMethodFingerprint(newClassNode, newMethodNode));
+
+    }
 
+    /**
+     * 快速对比使用的方法指纹，不包含所在类的信息
+     *
+     * @param dcn 方法所在的类
+     * @param dmn method node
+     * @return 方法指纹
+     */
+    public static DexNodeFingerprint getMethodFingerprint(DexClassNode dcn, DexMethodNode dmn) {
+        return DexNodeFingerprint.ofMethod(dmn, DexNodeFingerprint.Mode.METHOD,
+                () -> generateMethodBytes(dcn, dmn, true));
     }
 
     // dex code visit method begin
@@ -263,67 +278,6 @@ public class ChangedMethodDiffMarker extends DexCodeVisitor {
         super.visitLabel(label);
     }
 
-    @Override
-    public void visitConstInsn(int op, DexRegisterList regs, DexConst dexConst) {
-        Dop dop = Dops.dopFor(op);
-        if (dop.isInvokeKind()) {
-            visitInvokeInsn(op, regs, (DexConst.ConstMethodRef)dexConst);
-        }
-    }
-
-    private static DexMethodNode getMethodNodeByMethodRef(int dop, ClassLinker linker, DexClassLoader loader,
-                                                          DexConst.ConstMethodRef methodRef) {
-        Dop dopObj = Dops.dopFor(dop);
-
-        DexMethodNode dmn = null;
-
-        if (dopObj.isInvokeDirect()) {
-            dmn = linker.findDirectMethod(
-                    methodRef.getOwner(),
-                    methodRef.getParameterTypes(),
-                    methodRef.getReturnType(),
-                    methodRef.getName(),
-                    loader);
-        } else if (dopObj.isInvokeVirtual() || dopObj.isInvokeSuper()) {
-            dmn = linker.findVirtualMethod(
-                    methodRef.getOwner(),
-                    methodRef.getParameterTypes(),
-                    methodRef.getReturnType(),
-                    methodRef.getName(),
-                    loader);
-        } else if (dopObj.isInvokeInterface()) {
-            dmn = linker.findInterfaceMethod(
-                    methodRef.getOwner(),
-                    methodRef.getParameterTypes(),
-                    methodRef.getReturnType(),
-                    methodRef.getName(),
-                    loader);
-        } else {
-            // impossible
-        }
-        return dmn;
-    }
-
-    private void visitInvokeInsn(int dop,
-                                 DexRegisterList regs,
-                                 DexConst.ConstMethodRef calledMethodRef) {
-        boolean callSelf = calledMethodRef.getOwner().equals(this.mNewOrgClassNode.type);
-        if (callSelf) {
-
-            DexMethodNode calledMethodNodeFromOldClass =
-                    getMethodNodeByMethodRef(dop, mDiffContext.linker,
-                            mDiffContext.classLoaderFromOldPool, calledMethodRef);
-            DexMethodNode calledMethodNodeFromNewClass =
-                    getMethodNodeByMethodRef(dop, mDiffContext.linker,
-                            mDiffContext.classLoaderFromNewPool, calledMethodRef);
-
-            boolean callChangedMethod = calledMethodNodeFromOldClass == null;
-
-
-        }
-    }
-
-
     @Override
     public void visitTargetInsn(int op, DexRegisterList regs, DexLabel label) {
         super.visitTargetInsn(op, regs, label);
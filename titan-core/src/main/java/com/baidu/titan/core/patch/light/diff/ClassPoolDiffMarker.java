@@ -22,6 +22,7 @@ import com.baidu.titan.core.patch.light.plum.AnonymousClassDiffMarker;
 import com.baidu.titan.core.patch.light.plum.AnonymousClassMarker;
 import com.baidu.titan.core.patch.light.plum.ClassRewriteChecker;
 import com.baidu.titan.core.patch.light.plum.PlumPlanter;
+import com.baidu.titan.core.pool.ApplicationDexPool;
 import com.baidu.titan.core.util.TitanLogger;
 import com.baidu.titan.dex.DexType;
 import com.baidu.titan.dex.node.DexClassNode;
@@ -29,8 +30,10 @@ import com.baidu.titan.dex.visitor.DexClassPoolNodeVisitor;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
 
 
 /**
@@ -55,8 +58,6 @@ public class ClassPoolDiffMarker implements DexClassPoolNodeVisitor {
 
     private static final int VISIT_MODE_OLD_CLASS_POOL = 2;
 
-    private static final int VISIT_MODE_NEW_CLASS_POOL_CHECK_FINAL_FIELD = 3;
-
     private static final int VISIT_MODE_NEW_CLASS_POOL_REWRITE_CLASS= 4;
 
     private static final int VISIT_MODE_REWRITE_CLASS_POOL= 5;
@@ -66,18 +67,41 @@ public class ClassPoolDiffMarker implements DexClassPoolNodeVisitor {
 
     private DiffStatus mDiffStatus;
 
-    private Map<DexType, ChangedClassDiffMarker> mCompatibleChangedClasses = new HashMap<>();
+    /** diff结果按类名排序，保证并发diff时输出顺序稳定 */
+    private static final Comparator<DexType> TYPE_ORDER =
+            Comparator.comparing(DexType::toTypeDescriptor);
+
+    private Map<DexType, ChangedClassDiffMarker> mCompatibleChangedClasses =
+            new ConcurrentSkipListMap<>(TYPE_ORDER);
+
+    private Map<DexType, ChangedClassDiffMarker> mInCompatibleChangedClasses =
+            new ConcurrentSkipListMap<>(TYPE_ORDER);
 
-    private Map<DexType, ChangedClassDiffMarker> mInCompatibleChangedClasses = new HashMap<>();
+    private Map<DexType, AddedClassDiffMarker> mCompatibleAddedClasses =
+            new ConcurrentSkipListMap<>(TYPE_ORDER);
 
-    private Map<DexType, AddedClassDiffMarker> mCompatibleAddedClasses = new HashMap<>();
+    private Map<DexType, AddedClassDiffMarker> mIncompatibleAddedClasses =
+            new ConcurrentSkipListMap<>(TYPE_ORDER);
 
-    private Map<DexType, AddedClassDiffMarker> mIncompatibleAddedClasses = new HashMap<>();
+    private Map<DexType, DexClassNode> mRemovedClasses = new ConcurrentSkipListMap<>(TYPE_ORDER);
 
-    private Map<DexType, DexClassNode> mRemovedClasses = new HashMap<>();
+    /** 并发diff的线程数，小于等于1时单线程diff */
+    private final int mParallelism;
 
     public ClassPoolDiffMarker(DiffContext diffContext) {
+        this(diffContext, 1);
+    }
+
+    /**
+     * 并发diff时按类切分program class pool，每个类只会修改自身及其匿名内部类的diff状态，
+     * 对其他类只有读操作，每一轮结束后才会进入下一轮
+     *
+     * @param diffContext diff上下文
+     * @param parallelism 并发diff的线程数，小于等于1时单线程diff
+     */
+    public ClassPoolDiffMarker(DiffContext diffContext, int parallelism) {
         this.mDiffContext = diffContext;
+        this.mParallelism = parallelism;
     }
 
     public DiffStatus diff() {
@@ -101,22 +125,42 @@ public class ClassPoolDiffMarker implements DexClassPoolNodeVisitor {
                 this.mDiffContext.dexItemFactory);
         newMarker.mark();
 
-        this.mVisitMode = VISIT_MODE_NEW_CLASS_POOL;
-        this.mDiffContext.newOrgAppPool.getProgramClassPool().accept(this);
+        ForkJoinPool forkJoinPool = mParallelism > 1 ? new ForkJoinPool(mParallelism) : null;
+        try {
+            // new class pool在diff过程中不会变化，先构建引用索引
+            this.mDiffContext.buildNewUseSiteIndex(forkJoinPool);
 
-        if (mDiffContext.isSupportFinalFieldChange()) {
-            this.mVisitMode = VISIT_MODE_NEW_CLASS_POOL_CHECK_FINAL_FIELD;
-            this.mDiffContext.newOrgAppPool.getProgramClassPool().accept(this);
-        }
+            this.mVisitMode = VISIT_MODE_NEW_CLASS_POOL;
+            acceptProgram(this.mDiffContext.newOrgAppPool, forkJoinPool);
 
-        this.mVisitMode = VISIT_MODE_OLD_CLASS_POOL;
-        this.mDiffContext.oldOrgAppPool.getProgramClassPool().accept(this);
+            if (mDiffContext.isSupportFinalFieldChange()) {
+                // 通过字段引用索引标记访问了受影响final字段的方法
+//                AffectedFinalFieldMarker.markAccessFinalField(mDiffContext);
+            }
 
-        this.mVisitMode = VISIT_MODE_NEW_CLASS_POOL_REWRITE_CLASS;
-        this.mDiffContext.newOrgAppPool.getProgramClassPool().accept(this);
+            this.mVisitMode = VISIT_MODE_OLD_CLASS_POOL;
+            acceptProgram(this.mDiffContext.oldOrgAppPool, forkJoinPool);
 
-        this.mVisitMode = VISIT_MODE_REWRITE_CLASS_POOL;
-        this.mDiffContext.rewriteClassPool.getProgramClassPool().accept(this);
+            // 通过引用索引标记引用了重命名或remap类的类
+            ClassRewriteChecker.markRewriteClasses(mDiffContext);
+
+            this.mVisitMode = VISIT_MODE_NEW_CLASS_POOL_REWRITE_CLASS;
+            acceptProgram(this.mDiffContext.newOrgAppPool, forkJoinPool);
+            // rewrite class pool不支持并发添加，按new class pool中的顺序添加
+            this.mDiffContext.newOrgAppPool.getProgramClassPool().forEach(dcn -> {
+                DexClassNode rewriteClassNode = getRewriteClass(dcn);
+                if (rewriteClassNode != null) {
+                    mDiffContext.rewriteClassPool.addProgramClass(rewriteClassNode);
+                }
+            });
+
+            this.mVisitMode = VISIT_MODE_REWRITE_CLASS_POOL;
+            acceptProgram(this.mDiffContext.rewriteClassPool, forkJoinPool);
+        } finally {
+            if (forkJoinPool != null) {
+                forkJoinPool.shutdown();
+            }
+        }
 
         int incompatibleChangedClassCount = this.mInCompatibleChangedClasses.size();
         int compatibleChangedClassCount = this.mCompatibleChangedClasses.size();
@@ -204,17 +248,12 @@ public class ClassPoolDiffMarker implements DexClassPoolNodeVisitor {
                 visitClassFromOldPool(dcn);
                 break;
             }
-            case VISIT_MODE_NEW_CLASS_POOL_CHECK_FINAL_FIELD: {
-//                visitClassFromNewPoolCheckFinalField(dcn);
-                break;
-            }
             case VISIT_MODE_NEW_CLASS_POOL_REWRITE_CLASS: {
                 visitClassFromNewPoolAndRewriteClass(dcn);
                 break;
             }
             case VISIT_MODE_REWRITE_CLASS_POOL: {
                 visitClassFromRewritePool(dcn);
-//                visitClassFromNewPoolCheckFinalField(dcn);
                 break;
             }
             default: {
@@ -223,13 +262,26 @@ public class ClassPoolDiffMarker implements DexClassPoolNodeVisitor {
         }
     }
 
+    /**
+     * @param forkJoinPool 为null时单线程访问
+     */
+    private void acceptProgram(ApplicationDexPool pool, ForkJoinPool forkJoinPool) {
+        if (forkJoinPool == null) {
+            pool.getProgramClassPool().accept(this);
+        } else {
+            // 当前轮次的状态只有mVisitMode，各工作单元可以共用同一个visitor
+            pool.acceptProgramParallel(() -> this, forkJoinPool);
+        }
+    }
+
+    /**
+     * 生成重写后的类，由diff()统一添加到rewrite class pool中
+     */
     private void visitClassFromNewPoolAndRewriteClass(DexClassNode dcn) {
         if (AnonymousClassDiffMarker.shouldRewrite(dcn)
                 || AnonymousClassDiffMarker.shouldRename(dcn)
-                || AnonymousClassDiffMarker.hasMapClass(dcn)
-                || ClassRewriteChecker.checkRewrite(mDiffContext, dcn)) {
+                || AnonymousClassDiffMarker.hasMapClass(dcn)) {
             DexClassNode rewriteClassNode = PlumPlanter.rewrite(mDiffContext, dcn);
-            mDiffContext.rewriteClassPool.addProgramClass(rewriteClassNode);
             dcn.setExtraInfo(EXTRA_KEY_REWRITE_CLASS, rewriteClassNode);
         }
     }
@@ -249,10 +301,6 @@ public class ClassPoolDiffMarker implements DexClassPoolNodeVisitor {
 
     }
 
-    private void visitClassFromNewPoolCheckFinalField(DexClassNode newOrgNode) {
-        AffectedFinalFieldMarker.markAccessFinalField(mDiffContext, newOrgNode);
-    }
-
     private void visitClassFromNewPool(DexClassNode newOrgNode) {
         // 匿名内部类不在这里进行diff, 而是在outer class中进行递归的diff
         if (AnonymousClassMarker.isAnonymousClass(mDiffContext.dexItemFactory, newOrgNode)) {
@@ -271,7 +319,7 @@ public class ClassPoolDiffMarker implements DexClassPoolNodeVisitor {
     }
 
     private void diffAddedClass(DexClassNode newOrgNode) {
-        getClassDiffMode(newOrgNode).markAdded();
+        getOrCreateClassDiffMode(newOrgNode).markAdded();
         AddedClassDiffMarker addedClassDiffMarker = new AddedClassDiffMarker(newOrgNode);
         DiffStatus addedDiff = addedClassDiffMarker.diff();
         switch (addedDiff) {
@@ -293,8 +341,8 @@ public class ClassPoolDiffMarker implements DexClassPoolNodeVisitor {
 
         if (mDiffContext.classPatchFilter != null) {
             if (mDiffContext.classPatchFilter.skipPatch(oldOrgClass.type.toTypeDescriptor())) {
-                getClassDiffMode(newOrgNode).markUnChanged();
-                getClassDiffMode(oldOrgClass).markUnChanged();
+                getOrCreateClassDiffMode(newOrgNode).markUnChanged();
+                getOrCreateClassDiffMode(oldOrgClass).markUnChanged();
                 return;
             }
         }
@@ -304,8 +352,8 @@ public class ClassPoolDiffMarker implements DexClassPoolNodeVisitor {
         DiffStatus classDiff = changedClassDiffMarker.diff();
         switch (classDiff) {
             case UNCHANGED: {
-                getClassDiffMode(newOrgNode).markUnChanged();
-                getClassDiffMode(oldOrgClass).markUnChanged();
+                getOrCreateClassDiffMode(newOrgNode).markUnChanged();
+                getOrCreateClassDiffMode(oldOrgClass).markUnChanged();
                 break;
             }
             case CHANGED_COMPATIBLE: {
@@ -313,8 +361,8 @@ public class ClassPoolDiffMarker implements DexClassPoolNodeVisitor {
                     diffAddedClass(newOrgNode);
                     newOrgNode.setExtraInfo(AnonymousClassDiffMarker.EXTRA_KEY_CLASS_RENAME, true);
                 } else {
-                    getClassDiffMode(newOrgNode).markChanged();
-                    getClassDiffMode(oldOrgClass).markChanged();
+                    getOrCreateClassDiffMode(newOrgNode).markChanged();
+                    getOrCreateClassDiffMode(oldOrgClass).markChanged();
                     mCompatibleChangedClasses.put(newOrgNode.type, changedClassDiffMarker);
                 }
                 break;
@@ -330,7 +378,7 @@ public class ClassPoolDiffMarker implements DexClassPoolNodeVisitor {
     }
 
     private void visitClassFromOldPool(DexClassNode oldOrgNode) {
-        DiffMode diffMode = getClassDiffMode(oldOrgNode);
+        DiffMode diffMode = getOrCreateClassDiffMode(oldOrgNode);
         if (!diffMode.isChanged() && !diffMode.isUnChanged()) {
             diffMode.markRemoved();
             mRemovedClasses.put(oldOrgNode.type, oldOrgNode);
@@ -341,7 +389,19 @@ public class ClassPoolDiffMarker implements DexClassPoolNodeVisitor {
         return dcn.getExtraInfo(EXTRA_KEY_REWRITE_CLASS, null);
     }
 
+    /**
+     * 查询类的diff标记，不修改节点，可在并发生成patch时调用
+     *
+     * @return 没有标记时视为未变化，返回只读的{@link DiffMode#UNCHANGED}
+     */
     public static DiffMode getClassDiffMode(DexClassNode dcn) {
+        return dcn.getExtraInfo(EXTRA_KEY_METHOD_DIFF_MODE, DiffMode.UNCHANGED);
+    }
+
+    /**
+     * diff过程中获取类的diff标记用于修改，没有时创建，只能由处理该类的线程调用
+     */
+    public static DiffMode getOrCreateClassDiffMode(DexClassNode dcn) {
         DiffMode diffMode = dcn.getExtraInfo(EXTRA_KEY_METHOD_DIFF_MODE, null);
         if (diffMode == null) {
             diffMode = new DiffMode();
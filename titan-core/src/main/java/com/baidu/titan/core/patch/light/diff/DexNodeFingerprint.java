@@ -0,0 +1,687 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.patch.light.diff;
+
+import com.baidu.titan.dex.DexConst;
+import com.baidu.titan.dex.DexRegister;
+import com.baidu.titan.dex.DexRegisterList;
+import com.baidu.titan.dex.DexString;
+import com.baidu.titan.dex.DexType;
+import com.baidu.titan.dex.DexTypeList;
+import com.baidu.titan.dex.Dops;
+import com.baidu.titan.dex.node.DexClassNode;
+import com.baidu.titan.dex.node.DexFieldNode;
+import com.baidu.titan.dex.node.DexMethodNode;
+import com.baidu.titan.dex.visitor.DexAnnotationVisitor;
+import com.baidu.titan.dex.visitor.DexAnnotationVisitorInfo;
+import com.baidu.titan.dex.visitor.DexClassVisitor;
+import com.baidu.titan.dex.visitor.DexCodeVisitor;
+import com.baidu.titan.dex.visitor.DexFieldVisitor;
+import com.baidu.titan.dex.visitor.DexFieldVisitorInfo;
+import com.baidu.titan.dex.visitor.DexLabel;
+import com.baidu.titan.dex.visitor.DexMethodVisitor;
+import com.baidu.titan.dex.visitor.DexMethodVisitorInfo;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 类和方法的128位结构指纹，用于diff时的快速对比
+ *
+ * 原有的快速对比会用DexFileWriter把类或方法序列化成字节后逐字节比较，每次对比都会生成一个完整的dex。
+ * 这里直接遍历节点计算指纹，忽略的内容与原有序列化规则保持一致（见{@link Mode}）。遇到无法按结构描述
+ * 的内容（会被保留的注解、数组数据等非标量常量）时，退回到原有序列化字节上计算指纹，保证结果与逐字节比较一致。
+ *
+ * 字段和方法的指纹按无序累加，与DexFileWriter对成员排序后输出的行为一致。
+ *
+ * 计算结果（包括退回到序列化字节的结果）按模式保存在node上，同一个node只计算一次，
+ * 因此只能对diff过程中不再修改的node计算指纹。
+ *
+ * @since 2026/10/18
+ */
+public final class DexNodeFingerprint {
+
+    /**
+     * 指纹模式，对应原有各处序列化时的忽略规则，三种模式都忽略source file、参数名和行号
+     */
+    public enum Mode {
+        /** ChangedClassDiffMarker：忽略局部变量信息，忽略类、字段、方法注解 */
+        CLASS(false, false, false),
+        /** ChangedMethodDiffMarker：保留局部变量信息，忽略方法注解 */
+        METHOD(true, false, false),
+        /** AnonymousClassDiffMarker：忽略局部变量信息和类注解，保留字段、方法注解 */
+        ANONYMOUS_CLASS(false, true, true);
+
+        /** 预先设置到node上的指纹 */
+        final String extraKey = "_extra_fingerprint_" + name().toLowerCase();
+
+        final boolean keepLocals;
+
+        final boolean keepFieldAnnotations;
+
+        final boolean keepMethodAnnotations;
+
+        Mode(boolean keepLocals, boolean keepFieldAnnotations, boolean keepMethodAnnotations) {
+            this.keepLocals = keepLocals;
+            this.keepFieldAnnotations = keepFieldAnnotations;
+            this.keepMethodAnnotations = keepMethodAnnotations;
+        }
+    }
+
+    /** 指纹算法版本，算法变化后需要升级，使持久化的指纹失效 */
+    public static final int VERSION = 1;
+
+    private static final long SEED_HIGH = 0x9E3779B97F4A7C15L;
+
+    private static final long SEED_LOW = 0xC2B2AE3D27D4EB4FL;
+
+    private static final int TAG_CLASS = 1;
+    private static final int TAG_FIELD = 2;
+    private static final int TAG_METHOD = 3;
+    private static final int TAG_CODE = 4;
+    private static final int TAG_TRY_CATCH = 5;
+    private static final int TAG_LABEL = 6;
+    private static final int TAG_CONST_INSN = 7;
+    private static final int TAG_TARGET_INSN = 8;
+    private static final int TAG_SIMPLE_INSN = 9;
+    private static final int TAG_SWITCH = 10;
+    private static final int TAG_LOCAL = 11;
+    private static final int TAG_LEGACY_BYTES = 12;
+    private static final int TAG_NULL = 13;
+
+    /** toString能完整描述内容的标量常量类型，按字符串内容参与指纹 */
+    private static final Set<Class<?>> sScalarConstTypes = new HashSet<>(Arrays.asList(
+            DexConst.ConstString.class,
+            DexConst.LiteralBits32.class,
+            DexConst.LiteralBits64.class,
+            DexString.class,
+            DexType.class,
+            String.class,
+            Boolean.class,
+            Byte.class,
+            Short.class,
+            Character.class,
+            Integer.class,
+            Long.class,
+            Float.class,
+            Double.class));
+
+    private final long mHigh;
+
+    private final long mLow;
+
+    private DexNodeFingerprint(long high, long low) {
+        this.mHigh = high;
+        this.mLow = low;
+    }
+
+    public static DexNodeFingerprint valueOf(long high, long low) {
+        return new DexNodeFingerprint(high, low);
+    }
+
+    public long getHigh() {
+        return mHigh;
+    }
+
+    public long getLow() {
+        return mLow;
+    }
+
+    /**
+     * 设置类的已知指纹，之后ofClass直接返回该指纹，如从持久化指纹恢复的base类
+     */
+    public static void setCached(DexClassNode dcn, Mode mode, DexNodeFingerprint fingerprint) {
+        dcn.setExtraInfo(mode.extraKey, fingerprint);
+    }
+
+    /**
+     * 设置方法的已知指纹，之后ofMethod直接返回该指纹
+     */
+    public static void setCached(DexMethodNode dmn, Mode mode, DexNodeFingerprint fingerprint) {
+        dmn.setExtraInfo(mode.extraKey, fingerprint);
+    }
+
+    /**
+     * 计算类的指纹
+     *
+     * @param dcn class node
+     * @param mode 指纹模式
+     * @param legacyBytes 无法按结构计算时，原有序列化规则生成的字节
+     */
+    public static DexNodeFingerprint ofClass(DexClassNode dcn, Mode mode,
+                                             Supplier<byte[]> legacyBytes) {
+        DexNodeFingerprint cached = dcn.getExtraInfo(mode.extraKey, null);
+        if (cached != null) {
+            return cached;
+        }
+        DexNodeFingerprint fingerprint = computeClass(dcn, mode, legacyBytes);
+        dcn.setExtraInfo(mode.extraKey, fingerprint);
+        return fingerprint;
+    }
+
+    private static DexNodeFingerprint computeClass(DexClassNode dcn, Mode mode,
+                                                   Supplier<byte[]> legacyBytes) {
+        Hasher hasher = new Hasher();
+        hasher.putInt(TAG_CLASS);
+        hasher.putType(dcn.type);
+        hasher.putType(dcn.superType);
+        hasher.putTypeList(dcn.interfaces);
+        hasher.putInt(dcn.accessFlags.getFlags());
+
+        if (mode.keepFieldAnnotations && hasFieldAnnotations(dcn)) {
+            return ofLegacyBytes(legacyBytes.get());
+        }
+
+        long fieldHigh = 0;
+        long fieldLow = 0;
+        int fieldCount = 0;
+        for (DexFieldNode dfn : dcn.getFields()) {
+            Hasher fieldHasher = new Hasher();
+            fieldHasher.putInt(TAG_FIELD);
+            fieldHasher.putString(dfn.name);
+            fieldHasher.putType(dfn.type);
+            fieldHasher.putInt(dfn.accessFlags.getFlags());
+            if (!fieldHasher.putOpaque(dfn.staticValue)) {
+                return ofLegacyBytes(legacyBytes.get());
+            }
+            DexNodeFingerprint fieldFingerprint = fieldHasher.finish();
+            fieldHigh += fieldFingerprint.mHigh;
+            fieldLow += fieldFingerprint.mLow;
+            fieldCount++;
+        }
+
+        long methodHigh = 0;
+        long methodLow = 0;
+        int methodCount = 0;
+        for (DexMethodNode dmn : dcn.getMethods()) {
+            Hasher methodHasher = new Hasher();
+            if (!hashMethod(methodHasher, dmn, mode)) {
+                return ofLegacyBytes(legacyBytes.get());
+            }
+            DexNodeFingerprint methodFingerprint = methodHasher.finish();
+            methodHigh += methodFingerprint.mHigh;
+            methodLow += methodFingerprint.mLow;
+            methodCount++;
+        }
+
+        hasher.putInt(fieldCount);
+        hasher.putLong(fieldHigh);
+        hasher.putLong(fieldLow);
+        hasher.putInt(methodCount);
+        hasher.putLong(methodHigh);
+        hasher.putLong(methodLow);
+        return hasher.finish();
+    }
+
+    /**
+     * 计算方法的指纹，不包含所在类的信息
+     *
+     * @param dmn method node
+     * @param mode 指纹模式
+     * @param legacyBytes 无法按结构计算时，原有序列化规则生成的字节
+     */
+    public static DexNodeFingerprint ofMethod(DexMethodNode dmn, Mode mode,
+                                              Supplier<byte[]> legacyBytes) {
+        DexNodeFingerprint cached = dmn.getExtraInfo(mode.extraKey, null);
+        if (cached != null) {
+            return cached;
+        }
+        Hasher hasher = new Hasher();
+        DexNodeFingerprint fingerprint = hashMethod(hasher, dmn, mode)
+                ? hasher.finish() : ofLegacyBytes(legacyBytes.get());
+        dmn.setExtraInfo(mode.extraKey, fingerprint);
+        return fingerprint;
+    }
+
+    private static DexNodeFingerprint ofLegacyBytes(byte[] bytes) {
+        Hasher hasher = new Hasher();
+        hasher.putInt(TAG_LEGACY_BYTES);
+        hasher.putBytes(bytes);
+        return hasher.finish();
+    }
+
+    private static boolean hasFieldAnnotations(DexClassNode dcn) {
+        boolean[] found = new boolean[1];
+        dcn.accept(new DexClassVisitor((DexClassVisitor) null) {
+
+            @Override
+            public void visitBegin() {
+
+            }
+
+            @Override
+            public void visitSourceFile(DexString sourceFile) {
+
+            }
+
+            @Override
+            public DexAnnotationVisitor visitAnnotation(DexAnnotationVisitorInfo annotationInfo) {
+                return null;
+            }
+
+            @Override
+            public DexFieldVisitor visitField(DexFieldVisitorInfo fieldInfo) {
+                return new DexFieldVisitor((DexFieldVisitor) null) {
+                    @Override
+                    public DexAnnotationVisitor visitAnnotation(DexAnnotationVisitorInfo annotation) {
+                        found[0] = true;
+                        return null;
+                    }
+                };
+            }
+
+            @Override
+            public DexMethodVisitor visitMethod(DexMethodVisitorInfo methodInfo) {
+                return null;
+            }
+
+            @Override
+            public void visitEnd() {
+
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * @return false表示方法中有无法按结构描述的内容，需要退回到原有序列化字节
+     */
+    private static boolean hashMethod(Hasher hasher, DexMethodNode dmn, Mode mode) {
+        hasher.putInt(TAG_METHOD);
+        hasher.putType(dmn.owner);
+        hasher.putString(dmn.name);
+        hasher.putTypeList(dmn.parameters);
+        hasher.putType(dmn.returnType);
+        hasher.putInt(dmn.accessFlags.getFlags());
+
+        MethodHasher methodHasher = new MethodHasher(hasher, mode);
+        dmn.accept(methodHasher);
+        return !methodHasher.mFallback;
+    }
+
+    private static class MethodHasher extends DexMethodVisitor {
+
+        final Hasher mHasher;
+
+        final Mode mMode;
+
+        final Map<DexLabel, Integer> mLabelIds = new IdentityHashMap<>();
+
+        boolean mFallback;
+
+        MethodHasher(Hasher hasher, Mode mode) {
+            super((DexMethodVisitor) null);
+            this.mHasher = hasher;
+            this.mMode = mode;
+        }
+
+        @Override
+        public void visitBegin() {
+
+        }
+
+        @Override
+        public DexAnnotationVisitor visitAnnotationDefault() {
+            mFallback = true;
+            return null;
+        }
+
+        @Override
+        public DexAnnotationVisitor visitAnnotation(DexAnnotationVisitorInfo annotationInfo) {
+            if (mMode.keepMethodAnnotations) {
+                mFallback = true;
+            }
+            return null;
+        }
+
+        @Override
+        public DexAnnotationVisitor visitParameterAnnotation(int parameter,
+                                                             DexAnnotationVisitorInfo annotationInfo) {
+            mFallback = true;
+            return null;
+        }
+
+        @Override
+        public DexCodeVisitor visitCode() {
+            mHasher.putInt(TAG_CODE);
+            return new DexCodeVisitor((DexCodeVisitor) null) {
+
+                @Override
+                public void visitBegin() {
+
+                }
+
+                @Override
+                public void visitRegisters(int localRegCount, int parameterRegCount) {
+                    mHasher.putInt(localRegCount);
+                    mHasher.putInt(parameterRegCount);
+                }
+
+                @Override
+                public void visitTryCatch(DexLabel start, DexLabel end, DexTypeList types,
+                                          DexLabel[] handlers, DexLabel catchAllHandler) {
+                    mHasher.putInt(TAG_TRY_CATCH);
+                    putLabel(start);
+                    putLabel(end);
+                    mHasher.putTypeList(types);
+                    mHasher.putInt(handlers.length);
+                    for (DexLabel handler : handlers) {
+                        putLabel(handler);
+                    }
+                    putLabel(catchAllHandler);
+                }
+
+                @Override
+                public void visitLabel(DexLabel label) {
+                    mHasher.putInt(TAG_LABEL);
+                    putLabel(label);
+                }
+
+                @Override
+                public void visitConstInsn(int op, DexRegisterList regs, DexConst dexConst) {
+                    if (op == Dops.CONST_STRING) {
+                        op = Dops.CONST_STRING_JUMBO;
+                    }
+                    mHasher.putInt(TAG_CONST_INSN);
+                    mHasher.putInt(op);
+                    putRegs(regs);
+                    if (!mHasher.putConst(dexConst)) {
+                        mFallback = true;
+                    }
+                }
+
+                @Override
+                public void visitTargetInsn(int op, DexRegisterList regs, DexLabel label) {
+                    mHasher.putInt(TAG_TARGET_INSN);
+                    mHasher.putInt(op);
+                    putRegs(regs);
+                    putLabel(label);
+                }
+
+                @Override
+                public void visitSimpleInsn(int op, DexRegisterList regs) {
+                    mHasher.putInt(TAG_SIMPLE_INSN);
+                    mHasher.putInt(op);
+                    putRegs(regs);
+                }
+
+                @Override
+                public void visitSwitch(int op, DexRegisterList regs, int[] keys,
+                                        DexLabel[] targets) {
+                    mHasher.putInt(TAG_SWITCH);
+                    mHasher.putInt(op);
+                    putRegs(regs);
+                    mHasher.putInt(keys.length);
+                    for (int key : keys) {
+                        mHasher.putInt(key);
+                    }
+                    for (DexLabel target : targets) {
+                        putLabel(target);
+                    }
+                }
+
+                @Override
+                public void visitParameters(DexString[] parameters) {
+
+                }
+
+                @Override
+                public void visitLocal(int reg, DexString name, DexType type,
+                                       DexString signature, DexLabel start, DexLabel end) {
+                    if (!mMode.keepLocals) {
+                        return;
+                    }
+                    mHasher.putInt(TAG_LOCAL);
+                    mHasher.putInt(reg);
+                    mHasher.putString(name);
+                    mHasher.putType(type);
+                    mHasher.putString(signature);
+                    putLabel(start);
+                    putLabel(end);
+                }
+
+                @Override
+                public void visitLineNumber(int line, DexLabel start) {
+
+                }
+
+                @Override
+                public void visitEnd() {
+
+                }
+            };
+        }
+
+        @Override
+        public void visitEnd() {
+
+        }
+
+        /**
+         * label按首次出现的顺序编号，与label在指令流中的位置对应
+         */
+        private void putLabel(DexLabel label) {
+            if (label == null) {
+                mHasher.putInt(TAG_NULL);
+                return;
+            }
+            Integer id = mLabelIds.get(label);
+            if (id == null) {
+                id = mLabelIds.size();
+                mLabelIds.put(label, id);
+            }
+            mHasher.putInt(id);
+        }
+
+        private void putRegs(DexRegisterList regs) {
+            int count = regs.count();
+            mHasher.putInt(count);
+            for (int i = 0; i < count; i++) {
+                DexRegister reg = regs.get(i);
+                mHasher.putInt(reg.getReg());
+                mHasher.putInt(reg.getRef());
+            }
+        }
+
+    }
+
+    /**
+     * 双64位通道的流式hash，每个通道使用murmur3的混合函数
+     */
+    private static final class Hasher {
+
+        private static final long C1 = 0x87C37B91114253D5L;
+
+        private static final long C2 = 0x4CF5AD432745937FL;
+
+        private long mH1 = SEED_HIGH;
+
+        private long mH2 = SEED_LOW;
+
+        private long mLength;
+
+        void putLong(long value) {
+            long k1 = value * C1;
+            k1 = Long.rotateLeft(k1, 31) * C2;
+            mH1 ^= k1;
+            mH1 = Long.rotateLeft(mH1, 27) + mH2;
+            mH1 = mH1 * 5 + 0x52DCE729;
+
+            long k2 = value * C2;
+            k2 = Long.rotateLeft(k2, 33) * C1;
+            mH2 ^= k2;
+            mH2 = Long.rotateLeft(mH2, 31) + mH1;
+            mH2 = mH2 * 5 + 0x38495AB5;
+
+            mLength++;
+        }
+
+        void putInt(int value) {
+            putLong(value);
+        }
+
+        void putBytes(byte[] bytes) {
+            putInt(bytes.length);
+            int i = 0;
+            for (; i + 8 <= bytes.length; i += 8) {
+                long value = 0;
+                for (int j = 0; j < 8; j++) {
+                    value = (value << 8) | (bytes[i + j] & 0xFF);
+                }
+                putLong(value);
+            }
+            long tail = 0;
+            for (; i < bytes.length; i++) {
+                tail = (tail << 8) | (bytes[i] & 0xFF);
+            }
+            putLong(tail);
+        }
+
+        void putChars(CharSequence s) {
+            if (s == null) {
+                putInt(-1);
+                return;
+            }
+            int length = s.length();
+            putInt(length);
+            int i = 0;
+            for (; i + 4 <= length; i += 4) {
+                putLong(((long) s.charAt(i) << 48) | ((long) s.charAt(i + 1) << 32)
+                        | ((long) s.charAt(i + 2) << 16) | s.charAt(i + 3));
+            }
+            long tail = 0;
+            for (; i < length; i++) {
+                tail = (tail << 16) | s.charAt(i);
+            }
+            putLong(tail);
+        }
+
+        void putString(DexString s) {
+            putChars(s == null ? null : s.toString());
+        }
+
+        void putType(DexType type) {
+            putChars(type == null ? null : type.toTypeDescriptor());
+        }
+
+        void putTypeList(DexTypeList types) {
+            if (types == null) {
+                putInt(-1);
+                return;
+            }
+            putInt(types.count());
+            for (DexType type : types.types()) {
+                putType(type);
+            }
+        }
+
+        /**
+         * @return false表示常量无法按结构描述
+         */
+        boolean putConst(DexConst dexConst) {
+            if (dexConst instanceof DexConst.ConstType) {
+                putInt(1);
+                putType(((DexConst.ConstType) dexConst).value());
+                return true;
+            } else if (dexConst instanceof DexConst.ConstFieldRef) {
+                DexConst.ConstFieldRef fieldRef = (DexConst.ConstFieldRef) dexConst;
+                putInt(2);
+                putType(fieldRef.getOwner());
+                putString(fieldRef.getName());
+                putType(fieldRef.getType());
+                return true;
+            } else if (dexConst instanceof DexConst.ConstMethodRef) {
+                DexConst.ConstMethodRef methodRef = (DexConst.ConstMethodRef) dexConst;
+                putInt(3);
+                putType(methodRef.getOwner());
+                putString(methodRef.getName());
+                putTypeList(methodRef.getParameterTypes());
+                putType(methodRef.getReturnType());
+                return true;
+            }
+            return putOpaque(dexConst);
+        }
+
+        /**
+         * 其他常量中，字符串、字面量等标量按类名和toString内容参与指纹
+         *
+         * @return false表示常量不是标量（数组数据、encoded array等），toString不一定包含全部内容
+         */
+        boolean putOpaque(Object value) {
+            if (value == null) {
+                putInt(TAG_NULL);
+                return true;
+            }
+            Class<?> valueClass = value.getClass();
+            if (!sScalarConstTypes.contains(valueClass)) {
+                return false;
+            }
+            putChars(valueClass.getName());
+            putChars(value.toString());
+            return true;
+        }
+
+        DexNodeFingerprint finish() {
+            long h1 = mH1 ^ mLength;
+            long h2 = mH2 ^ mLength;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix(h1);
+            h2 = fmix(h2);
+            h1 += h2;
+            h2 += h1;
+            return new DexNodeFingerprint(h1, h2);
+        }
+
+        private static long fmix(long k) {
+            k ^= k >>> 33;
+            k *= 0xFF51AFD7ED558CCDL;
+            k ^= k >>> 33;
+            k *= 0xC4CEB9FE1A85EC53L;
+            k ^= k >>> 33;
+            return k;
+        }
+
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        DexNodeFingerprint that = (DexNodeFingerprint) o;
+        return mHigh == that.mHigh && mLow == that.mLow;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (mHigh ^ (mHigh >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", mHigh, mLow);
+    }
+
+}
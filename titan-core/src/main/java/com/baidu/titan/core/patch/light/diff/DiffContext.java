@@ -24,6 +24,8 @@ import com.baidu.titan.dex.linker.ClassLinker;
 import com.baidu.titan.dex.linker.DexClassLoader;
 import com.baidu.titan.dex.node.DexClassNode;
 
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * Diff上下文相关
  *
@@ -44,10 +46,14 @@ public class DiffContext {
 
     public TitanDexItemFactory dexItemFactory;
 
-    public ClassLinker linker;
+    /** ClassLinker不保证线程安全，并发diff时每个线程使用独立的实例 */
+    private final ThreadLocal<ClassLinker> mLinker;
 
     private boolean supportFinalFieldChange;
 
+    /** new class pool的引用索引 */
+    private UseSiteIndex mNewUseSiteIndex;
+
     /** 不需要patch的类过滤器 */
     public PatchArgument.ClassPatchFilter classPatchFilter;
     /** patch 加载策略 */
@@ -79,7 +85,7 @@ public class DiffContext {
                 return oldOrgAppPool.findClassFromAll(type);
             }
         };
-        linker = new ClassLinker(dexItemFactory);
+        this.mLinker = ThreadLocal.withInitial(() -> new ClassLinker(dexItemFactory));
         this.supportFinalFieldChange = supportFinalFieldChange;
 
         this.classPatchFilter = classPatchFilter;
@@ -87,6 +93,29 @@ public class DiffContext {
         this.loadPolicy = loadPolicy;
     }
 
+    /**
+     * @return 当前线程使用的ClassLinker
+     */
+    public ClassLinker getLinker() {
+        return mLinker.get();
+    }
+
+    /**
+     * 构建new class pool的引用索引，new class pool在diff过程中不会变化，只需要构建一次
+     *
+     * @param forkJoinPool 为null时单线程构建
+     */
+    public void buildNewUseSiteIndex(ForkJoinPool forkJoinPool) {
+        mNewUseSiteIndex = UseSiteIndex.build(newOrgAppPool, forkJoinPool);
+    }
+
+    /**
+     * @return new class pool的引用索引，需要先调用buildNewUseSiteIndex
+     */
+    public UseSiteIndex getNewUseSiteIndex() {
+        return mNewUseSiteIndex;
+    }
+
     public boolean isSupportFinalFieldChange() {
         return supportFinalFieldChange;
     }
@@ -39,15 +39,33 @@ public class DiffMode {
 
     public static final int REASON_FINAL_FIELD_AFFECTED = 2;
 
+    /** 没有diff标记的节点视为未变化，只读，调用mark方法会抛出IllegalStateException */
+    public static final DiffMode UNCHANGED = new DiffMode(MODE_UNCHANGED, true);
+
     private int mDiffReason = 0;
 
     private final Flags mFlags = new Flags();
 
+    private final boolean mReadOnly;
+
     public DiffMode() {
+        this(0, false);
+    }
+
+    private DiffMode(int flags, boolean readOnly) {
         super();
+        this.mFlags.appendFlags(flags);
+        this.mReadOnly = readOnly;
+    }
+
+    private void checkWritable() {
+        if (mReadOnly) {
+            throw new IllegalStateException("read only diff mode");
+        }
     }
 
     public DiffMode markAdded() {
+        checkWritable();
         this.mFlags.appendFlags(MODE_ADDED);
         return this;
     }
@@ -57,6 +75,7 @@ public class DiffMode {
     }
 
     public DiffMode markUnChanged() {
+        checkWritable();
         this.mFlags.appendFlags(MODE_UNCHANGED);
         return this;
     }
@@ -70,6 +89,7 @@ public class DiffMode {
     }
 
     public DiffMode markChanged(int reason) {
+        checkWritable();
         this.mFlags.appendFlags(MODE_CHANGED);
         mDiffReason = reason;
         return this;
@@ -80,6 +100,7 @@ public class DiffMode {
     }
 
     public DiffMode markRemoved() {
+        checkWritable();
         this.mFlags.appendFlags(MODE_REMOVED);
         return this;
     }
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.patch.light.diff;
+
+import com.baidu.titan.core.pool.ApplicationDexPool;
+import com.baidu.titan.dex.DexConst;
+import com.baidu.titan.dex.DexString;
+import com.baidu.titan.dex.DexType;
+import com.baidu.titan.dex.DexTypeList;
+import com.baidu.titan.dex.Dop;
+import com.baidu.titan.dex.Dops;
+import com.baidu.titan.dex.node.DexClassNode;
+import com.baidu.titan.dex.node.DexCodeNode;
+import com.baidu.titan.dex.node.DexMethodNode;
+import com.baidu.titan.dex.node.insn.DexConstInsnNode;
+import com.baidu.titan.dex.visitor.DexClassPoolNodeVisitor;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * program class的引用倒排索引，一次遍历得到每个类型被哪些类引用，代替逐个类扫描代码。
+ *
+ * 记录的引用包括：字段类型，方法返回值及参数类型，代码中字段引用的owner及类型，方法引用的owner、
+ * 返回值及参数类型，以及const-class、new-instance、check-cast等指令中的类型。
+ * 数组类型按原样记录，不展开元素类型。
+ *
+ * 同时记录代码中的字段引用，按字段名及字段类型查找访问该字段的方法。
+ *
+ * @since 2026/10/18
+ */
+public class UseSiteIndex {
+
+    /** type -> 引用该type的类，DexType由同一个DexItemFactory创建，可直接作为key */
+    private final Map<DexType, Set<DexClassNode>> mTypeUsers = new ConcurrentHashMap<>();
+
+    /**
+     * field name -> field type -> 访问该字段引用的方法。owner不作为key，字段引用的owner可能是声明类的子类，
+     * 由调用方按需解析
+     */
+    private final Map<DexString, Map<DexType, Set<DexMethodNode>>> mFieldRefUsers =
+            new ConcurrentHashMap<>();
+
+    private UseSiteIndex() {
+    }
+
+    /**
+     * 构建program class pool的索引
+     *
+     * @param appPool class pool
+     * @param forkJoinPool 为null时单线程构建
+     */
+    public static UseSiteIndex build(ApplicationDexPool appPool, ForkJoinPool forkJoinPool) {
+        UseSiteIndex index = new UseSiteIndex();
+        // 各工作单元只写入并发容器
+        DexClassPoolNodeVisitor visitor = new DexClassPoolNodeVisitor() {
+            @Override
+            public void visitClass(DexClassNode dcn) {
+                index.addClass(dcn);
+            }
+
+            @Override
+            public void classPoolVisitEnd() {
+
+            }
+        };
+        if (forkJoinPool == null) {
+            appPool.acceptProgram(visitor);
+        } else {
+            appPool.acceptProgramParallel(() -> visitor, forkJoinPool);
+        }
+        return index;
+    }
+
+    /**
+     * @param type 类型
+     * @return 引用该类型的类，没有时返回空集合
+     */
+    public Set<DexClassNode> getTypeUsers(DexType type) {
+        Set<DexClassNode> users = mTypeUsers.get(type);
+        return users == null ? Collections.emptySet() : users;
+    }
+
+    /**
+     * @param name 字段名
+     * @param type 字段类型
+     * @return 代码中访问了同名同类型字段引用的方法，没有时返回空集合
+     */
+    public Set<DexMethodNode> getFieldRefUsers(DexString name, DexType type) {
+        Map<DexType, Set<DexMethodNode>> usersByType = mFieldRefUsers.get(name);
+        Set<DexMethodNode> users = usersByType == null ? null : usersByType.get(type);
+        return users == null ? Collections.emptySet() : users;
+    }
+
+    private void addClass(DexClassNode dcn) {
+        dcn.getFields().forEach(dfn -> addTypeUser(dfn.type, dcn));
+        dcn.getMethods().forEach(dmn -> {
+            addTypeUser(dmn.returnType, dcn);
+            addTypeUsers(dmn.parameters, dcn);
+            addCode(dmn, dcn);
+        });
+    }
+
+    private void addCode(DexMethodNode dmn, DexClassNode dcn) {
+        DexCodeNode codeNode = dmn.getCode();
+        if (codeNode == null || codeNode.getInsns() == null) {
+            return;
+        }
+        codeNode.getInsns().forEach(insn -> {
+            if (!(insn instanceof DexConstInsnNode)) {
+                return;
+            }
+            DexConstInsnNode constInsn = (DexConstInsnNode) insn;
+            Dop dop = Dops.dopFor(constInsn.getOpcode());
+            DexConst dexConst = constInsn.getConst();
+            if (dop.isFieldAccessKind()) {
+                DexConst.ConstFieldRef fieldRef = (DexConst.ConstFieldRef) dexConst;
+                addTypeUser(fieldRef.getOwner(), dcn);
+                addTypeUser(fieldRef.getType(), dcn);
+                addFieldRefUser(fieldRef, dmn);
+            } else if (dop.isInvokeKind()) {
+                DexConst.ConstMethodRef methodRef = (DexConst.ConstMethodRef) dexConst;
+                addTypeUser(methodRef.getOwner(), dcn);
+                addTypeUser(methodRef.getReturnType(), dcn);
+                addTypeUsers(methodRef.getParameterTypes(), dcn);
+            } else if (dexConst instanceof DexConst.ConstType) {
+                addTypeUser(((DexConst.ConstType) dexConst).value(), dcn);
+            }
+        });
+    }
+
+    private void addTypeUsers(DexTypeList types, DexClassNode dcn) {
+        if (types == null) {
+            return;
+        }
+        for (int i = 0; i < types.count(); i++) {
+            addTypeUser(types.getType(i), dcn);
+        }
+    }
+
+    private void addTypeUser(DexType type, DexClassNode dcn) {
+        mTypeUsers.computeIfAbsent(type, t -> ConcurrentHashMap.newKeySet()).add(dcn);
+    }
+
+    private void addFieldRefUser(DexConst.ConstFieldRef fieldRef, DexMethodNode dmn) {
+        mFieldRefUsers.computeIfAbsent(fieldRef.getName(), n -> new ConcurrentHashMap<>())
+                .computeIfAbsent(fieldRef.getType(), t -> ConcurrentHashMap.newKeySet())
+                .add(dmn);
+    }
+
+}
@@ -19,6 +19,7 @@ package com.baidu.titan.core.patch.light.generator;
 import com.baidu.titan.core.Constant;
 import com.baidu.titan.core.TitanDexItemFactory;
 import com.baidu.titan.core.patch.PatchUtils;
+import com.baidu.titan.core.patch.common.SwitchInsnHelper;
 import com.baidu.titan.core.patch.light.LightPatchClassPools;
 import com.baidu.titan.core.patch.light.generator.changed.InterceptorProcessor;
 import com.baidu.titan.core.util.TitanHashs;
@@ -276,8 +277,8 @@ public class LightClassClinitInterceptorGenerator {
             }
 
 
-            invokeClinitCodeVisitor.visitSwitch(
-                    Dops.SPARSE_SWITCH,
+            SwitchInsnHelper.visitSwitch(
+                    invokeClinitCodeVisitor,
                     DexRegisterList.make(DexRegister.makeParameterReg(pHashCodeReg)),
                     keys,
                     targets);
@@ -548,8 +549,8 @@ public class LightClassClinitInterceptorGenerator {
                 targets[i] = new DexLabel();
             }
 
-            invokePostClinitCodeVisitor.visitSwitch(
-                    Dops.SPARSE_SWITCH,
+            SwitchInsnHelper.visitSwitch(
+                    invokePostClinitCodeVisitor,
                     DexRegisterList.make(DexRegister.makeParameterReg(pHashCodeReg)),
                     keys,
                     targets);
@@ -19,13 +19,22 @@ package com.baidu.titan.core.patch.light.generator;
 import com.baidu.titan.core.TitanDexItemFactory;
 import com.baidu.titan.core.patch.PatchArgument;
 import com.baidu.titan.core.patch.light.LightPatchClassPools;
+import com.baidu.titan.core.patch.light.MethodResolutionCache;
 import com.baidu.titan.core.patch.light.diff.ClassPoolDiffMarker;
 import com.baidu.titan.core.patch.light.diff.DiffMode;
 import com.baidu.titan.core.patch.light.generator.changed.LightChangedClassGenerator;
+import com.baidu.titan.core.pool.ApplicationDexPool;
+import com.baidu.titan.core.util.PhaseTelemetry;
+import com.baidu.titan.dex.DexType;
 import com.baidu.titan.dex.linker.DexClassLoader;
 import com.baidu.titan.dex.node.DexClassNode;
 import com.baidu.titan.dex.visitor.DexClassPoolNodeVisitor;
 
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 /**
  *
  * Dex Patch生成入口类，该类负责所有新增和修改类的Patch生成逻辑。
@@ -63,22 +72,131 @@ public class LightDexPatchGenerator implements DexClassPoolNodeVisitor {
      * 生成Dex Light Patch，生成过程中将相关类放到具体的Class Pool中
      */
     public void generate() {
-        this.mVisitMode = VISIT_MODE_NEW_CLASS_POOL;
-        this.mClassPools.newOrgClassPool.acceptProgram(this);
-        this.mVisitMode = VISIT_MODE_OLD_CLASS_POOL;
-        this.mClassPools.oldOrgClassPool.acceptProgram(this);
+        setupMethodResolutionCache();
+
+        int parallelism = mPatchArgument.getGenerateParallelism();
+        if (parallelism > 1) {
+            generateParallel(parallelism);
+        } else {
+            this.mVisitMode = VISIT_MODE_NEW_CLASS_POOL;
+            this.mClassPools.newOrgClassPool.acceptProgram(this);
+            this.mVisitMode = VISIT_MODE_OLD_CLASS_POOL;
+            this.mClassPools.oldOrgClassPool.acceptProgram(this);
+        }
 
         // 生成clinit interceptor
         LightClassClinitInterceptorGenerator.generate(mClassPools, mDexFactory);
         // 生成patchloader
         LightPatchLoaderGenerator.generate(mClassPools, mDexFactory);
+
+        recordMethodResolutionCache("new", mClassPools.newMethodResolutionCache);
+        recordMethodResolutionCache("old", mClassPools.oldMethodResolutionCache);
+    }
+
+    /**
+     * 将方法解析缓存的命中、未命中次数记录到patch的构建统计中
+     */
+    private void recordMethodResolutionCache(String name, MethodResolutionCache cache) {
+        PhaseTelemetry telemetry = mPatchArgument.getTelemetry();
+        telemetry.setCounter("method-resolution-" + name + "-hits", cache.getHitCount());
+        telemetry.setCounter("method-resolution-" + name + "-misses", cache.getMissCount());
+    }
+
+    /**
+     * 并发生成各新增、变化类的patch。
+     *
+     * 各类的生成过程只修改自身对应的节点，产物先放到每个类独立的输出class pool中，
+     * 全部完成后再按new class pool中的顺序合并，合并结果与单线程生成一致。
+     *
+     * @param parallelism 线程数
+     */
+    private void generateParallel(int parallelism) {
+        List<DexClassNode> newClasses = mClassPools.newOrgClassPool.getProgramClassPool().stream()
+                .collect(Collectors.toList());
+        LightPatchClassPools[] outputs = new LightPatchClassPools[newClasses.size()];
+
+        ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+        try {
+            forkJoinPool.submit(() -> IntStream.range(0, newClasses.size()).parallel().forEach(i -> {
+                DexClassNode newClassNode = newClasses.get(i);
+                DiffMode diff = ClassPoolDiffMarker.getClassDiffMode(getPatchClass(newClassNode));
+                if (diff.isAdded() || diff.isChanged()) {
+                    outputs[i] = forkClassPools();
+                    visitClassFromNewPool(newClassNode, outputs[i]);
+                }
+            })).join();
+        } finally {
+            forkJoinPool.shutdown();
+        }
+
+        for (LightPatchClassPools output : outputs) {
+            if (output == null) {
+                continue;
+            }
+            mergeProgramClasses(output.changedClassPool, mClassPools.changedClassPool);
+            mergeProgramClasses(output.interceptorClassPool, mClassPools.interceptorClassPool);
+            mergeProgramClasses(output.fieldHolderClassPool, mClassPools.fieldHolderClassPool);
+            mergeProgramClasses(output.addedClassPool, mClassPools.addedClassPool);
+            mergeProgramClasses(output.lazyInitClassPool, mClassPools.lazyInitClassPool);
+        }
+    }
+
+    /**
+     * 与mClassPools共用输入的class pool及方法解析缓存，输出的class pool则单独创建。
+     * patch loader、clinit interceptor在所有类生成完成后统一生成，这里不需要。
+     */
+    private LightPatchClassPools forkClassPools() {
+        LightPatchClassPools classPools = new LightPatchClassPools();
+        classPools.oldOrgClassPool = mClassPools.oldOrgClassPool;
+        classPools.oldInstrumentedClassPool = mClassPools.oldInstrumentedClassPool;
+        classPools.newOrgClassPool = mClassPools.newOrgClassPool;
+        classPools.rewriteClassPool = mClassPools.rewriteClassPool;
+        classPools.newMethodResolutionCache = mClassPools.newMethodResolutionCache;
+        classPools.oldMethodResolutionCache = mClassPools.oldMethodResolutionCache;
+
+        classPools.interceptorClassPool = new ApplicationDexPool(mDexFactory);
+        classPools.changedClassPool = new ApplicationDexPool(mDexFactory);
+        classPools.fieldHolderClassPool = new ApplicationDexPool(mDexFactory);
+        classPools.addedClassPool = new ApplicationDexPool(mDexFactory);
+        classPools.lazyInitClassPool = new ApplicationDexPool(mDexFactory);
+        return classPools;
+    }
+
+    private static void mergeProgramClasses(ApplicationDexPool from, ApplicationDexPool to) {
+        from.getProgramClassPool().forEach(to::addProgramClass);
+    }
+
+    /**
+     * diff完成后rewrite、new、old class pool不再变化，各类的patch生成共用同一份方法解析缓存
+     */
+    private void setupMethodResolutionCache() {
+        mNewClassLoader = new DexClassLoader() {
+            @Override
+            public DexClassNode findClass(DexType type) {
+                DexClassNode rewriteDcn = mClassPools.rewriteClassPool.findClassFromAll(type);
+                if (rewriteDcn != null) {
+                    return rewriteDcn;
+                }
+                return mClassPools.newOrgClassPool.findClassFromAll(type);
+            }
+        };
+
+        mOldClassLoader = new DexClassLoader() {
+            @Override
+            public DexClassNode findClass(DexType type) {
+                return mClassPools.oldOrgClassPool.findClassFromAll(type);
+            }
+        };
+
+        mClassPools.newMethodResolutionCache = new MethodResolutionCache(mDexFactory, mNewClassLoader);
+        mClassPools.oldMethodResolutionCache = new MethodResolutionCache(mDexFactory, mOldClassLoader);
     }
 
     @Override
     public void visitClass(DexClassNode dcn) {
         switch (mVisitMode) {
             case VISIT_MODE_NEW_CLASS_POOL: {
-                visitClassFromNewPool(dcn);
+                visitClassFromNewPool(dcn, mClassPools);
                 break;
             }
             case VISIT_MODE_OLD_CLASS_POOL: {
@@ -95,26 +213,34 @@ public class LightDexPatchGenerator implements DexClassPoolNodeVisitor {
 
     }
 
-    private void visitClassFromNewPool(DexClassNode newClassNode) {
+    /**
+     * @return 存在rewrite class时返回rewrite class，否则返回new class本身
+     */
+    private static DexClassNode getPatchClass(DexClassNode newClassNode) {
         DexClassNode rewriteClassNode = ClassPoolDiffMarker.getRewriteClass(newClassNode);
         if (rewriteClassNode != null) {
             // 替换为rewrite class并生成patch
-            newClassNode = rewriteClassNode;
+            return rewriteClassNode;
         }
+        return newClassNode;
+    }
+
+    private void visitClassFromNewPool(DexClassNode newClassNode, LightPatchClassPools classPools) {
+        newClassNode = getPatchClass(newClassNode);
         DiffMode diff = ClassPoolDiffMarker.getClassDiffMode(newClassNode);
         if (diff.isAdded()) {
             // 新增类
             LightAddedClassGenerator.generate(
                     newClassNode,
-                    mClassPools,
+                    classPools,
                     mDexFactory);
         } else if (diff.isChanged()) {
             // 变化类
             LightChangedClassGenerator changedClassGenerator = new LightChangedClassGenerator(
                     mPatchArgument,
-                    mClassPools.oldOrgClassPool.getProgramClassPool().getClass(newClassNode.type),
+                    classPools.oldOrgClassPool.getProgramClassPool().getClass(newClassNode.type),
                     newClassNode,
-                    this.mClassPools,
+                    classPools,
                     this.mDexFactory);
             changedClassGenerator.generate();
         } else if (diff.isRemoved()) {
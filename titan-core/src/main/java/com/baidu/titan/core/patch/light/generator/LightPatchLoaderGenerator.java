@@ -37,6 +37,10 @@ import com.baidu.titan.dex.visitor.DexLabel;
 import com.baidu.titan.dex.visitor.DexMethodVisitor;
 import com.baidu.titan.dex.visitor.DexMethodVisitorInfo;
 
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 /**
  *
  * 用于生成PatchLoader
@@ -127,7 +131,13 @@ public class LightPatchLoaderGenerator {
 
         applyCodeVisitor.visitBegin();
 
-        generateInitInterceptorCode(applyCodeVisitor, true);
+        // 需要调用$staticInit的类在$staticInit执行之后才通知就绪
+        Set<DexType> staticInitTypes = mClassPools.oldOrgClassPool.getProgramClassPool().stream()
+                .filter(LightClassClinitInterceptorGenerator::shouldCallStaticInit)
+                .map(dcn -> dcn.type)
+                .collect(Collectors.toSet());
+
+        generateInitInterceptorCode(applyCodeVisitor, true, staticInitTypes);
 
         generateLazyLoadApplyCode(applyCodeVisitor);
 
@@ -175,7 +185,7 @@ public class LightPatchLoaderGenerator {
 
         applyInTimeCodeVisitor.visitBegin();
 
-        generateInitInterceptorCode(applyInTimeCodeVisitor, false);
+        generateInitInterceptorCode(applyInTimeCodeVisitor, false, Collections.emptySet());
 
         // applyInTime中不对ClassClinitInterceptorStorage.$ic赋值，即不进行懒加载
 //        generateLazyLoadApplyCode(applyInTimeCodeVisitor);
@@ -193,7 +203,8 @@ public class LightPatchLoaderGenerator {
 
     /**
      * 对需要lazy load的类，生成lazy load指令。原来有<clinit>方法的类被认为可进行lazy load,在类初始化调用<clinit>时，
-     * 从ClassClinitInterceptorStorage.$ic中初始化对应类的$iter实例并保存到对应类的$ic字段中
+     * 从ClassClinitInterceptorStorage.$ic中初始化对应类的$iter实例并保存到对应类的$ic字段中。
+     * 异步加载时$ic为delegate，设置后调用delegate的onApplied通知等待的线程
      * 该方法加入的指令伪代码如下：
      * new-instance v0, Lcom/baidu/titan/patch/ClassClinitInterceptor;
      * invoke-direct v0, Lcom/baidu/titan/patch/ClassClinitInterceptor;-><init>
@@ -244,6 +255,12 @@ public class LightPatchLoaderGenerator {
                 mDexItemFactory.classClinitInterceptorDelegateClass.interceptorField
         );
 
+        // invoke-virtual v1, ClassClinitInterceptorDelegate->onApplied()V
+        applyCodeVisitor.visitConstInsn(
+                Dops.INVOKE_VIRTUAL,
+                DexRegisterList.make(DexRegister.makeLocalReg(vClassClinitDelgater)),
+                mDexItemFactory.classClinitInterceptorDelegateClass.onAppliedMethod);
+
 
         DexLabel lazyLoadEndLabel = new DexLabel();
         applyCodeVisitor.visitTargetInsn(Dops.GOTO, DexRegisterList.empty(), lazyLoadEndLabel);
@@ -267,17 +284,22 @@ public class LightPatchLoaderGenerator {
      * new-instance v0, $iter
      * invoke-direct v0, $iter-><init>()V
      * sput-object v0, orgclass->$ic;
+     * 异步加载时$ic为delegate，改为设置delegate的interceptor字段并调用onApplied通知等待的线程
      *
      * @param applyCodeVisitor code visitor
      * @param checkLazy 是否需要检查懒加载，false不检查，所有interceptor在这里初始化；
      *                  true为检查，可以lazy init的interceptor在对应类初始化方法中初始化
+     * @param staticInitTypes 需要调用$staticInit的类，这些类设置interceptor后不调用delegate的onApplied，
+     *                        在generateInvokeClinitCode中$staticInit执行之后调用
      */
-    private void generateInitInterceptorCode(DexCodeRegisterCalculator applyCodeVisitor, boolean checkLazy) {
+    private void generateInitInterceptorCode(DexCodeRegisterCalculator applyCodeVisitor, boolean checkLazy,
+                                             Set<DexType> staticInitTypes) {
         final int vInterceptorReg = 0;
         final int vDelegateInterceptorReg = 1;
         mClassPools.interceptorClassPool.getProgramClassPool().stream()
                 .filter(dcn -> !checkLazy || !LightClassClinitInterceptorGenerator.isInterceptorLazyInitAble(dcn))
                 .forEach(dcn -> {
+                    DexType orgType = PatchUtils.getOrgTypeFromInterceptorType(dcn.type, mDexItemFactory);
 
                     // new interceptor
                     applyCodeVisitor.visitConstInsn(
@@ -298,7 +320,7 @@ public class LightPatchLoaderGenerator {
                             DexRegisterList.make(
                                     DexRegister.makeLocalReg(vDelegateInterceptorReg)),
                             DexConst.ConstFieldRef.make(
-                                    PatchUtils.getOrgTypeFromInterceptorType(dcn.type, mDexItemFactory),
+                                    orgType,
                                     mDexItemFactory.interceptableClass.type,
                                     mDexItemFactory.instrumentedClass.interceptorFieldName)
                     );
@@ -321,6 +343,14 @@ public class LightPatchLoaderGenerator {
                             mDexItemFactory.delegateInterceptorClass.interceptorField
                     );
 
+                    if (!staticInitTypes.contains(orgType)) {
+                        // invoke-virtual v1, InterceptableDelegate->onApplied()V
+                        applyCodeVisitor.visitConstInsn(
+                                Dops.INVOKE_VIRTUAL,
+                                DexRegisterList.make(DexRegister.makeLocalReg(vDelegateInterceptorReg)),
+                                mDexItemFactory.delegateInterceptorClass.onAppliedMethod);
+                    }
+
 
                     DexLabel setInterceptorEndLabel = new DexLabel();
                     applyCodeVisitor.visitTargetInsn(Dops.GOTO, DexRegisterList.empty(), setInterceptorEndLabel);
@@ -330,7 +360,7 @@ public class LightPatchLoaderGenerator {
                             Dops.SPUT_OBJECT,
                             DexRegisterList.make(DexRegister.makeLocalReg(vInterceptorReg)),
                             DexConst.ConstFieldRef.make(
-                                    PatchUtils.getOrgTypeFromInterceptorType(dcn.type, mDexItemFactory),
+                                    orgType,
                                     mDexItemFactory.interceptableClass.type,
                                     mDexItemFactory.instrumentedClass.interceptorFieldName));
                     applyCodeVisitor.visitLabel(setInterceptorEndLabel);
@@ -344,6 +374,12 @@ public class LightPatchLoaderGenerator {
      * const v1, 0
      * new-array v0, v1, Ljava.lang.Object;
      * invoke-static v0, $chg->$staticInit([Ljava.lang.Object;)V
+     * sget-object v0, orgclass->$ic
+     * instance-of v1, v0, InterceptableDelegate
+     * if-eqz v1, :end
+     * check-cast v0, InterceptableDelegate
+     * invoke-virtual v0, InterceptableDelegate->onApplied()V
+     * :end
      *
      * @param applyCodeVisitor code visitor
      */
@@ -375,6 +411,41 @@ public class LightPatchLoaderGenerator {
                             Dops.INVOKE_STATIC,
                             DexRegisterList.make(DexRegister.makeLocalReg(vParaArrayReg)),
                             staticInitMethodRef);
+
+                    // $staticInit执行之后才通知等待该类的线程，同步加载时$ic为interceptor，不需要通知
+                    int vDelegateReg = 0;
+                    int vIsDelegateReg = 1;
+                    applyCodeVisitor.visitConstInsn(
+                            Dops.SGET_OBJECT,
+                            DexRegisterList.make(DexRegister.makeLocalReg(vDelegateReg)),
+                            DexConst.ConstFieldRef.make(
+                                    dcn.type,
+                                    mDexItemFactory.interceptableClass.type,
+                                    mDexItemFactory.instrumentedClass.interceptorFieldName));
+
+                    applyCodeVisitor.visitConstInsn(
+                            Dops.INSTANCE_OF,
+                            DexRegisterList.make(
+                                    DexRegister.makeLocalReg(vIsDelegateReg),
+                                    DexRegister.makeLocalReg(vDelegateReg)),
+                            DexConst.ConstType.make(mDexItemFactory.delegateInterceptorClass.type));
+
+                    DexLabel notifyEndLabel = new DexLabel();
+                    applyCodeVisitor.visitTargetInsn(
+                            Dops.IF_EQZ,
+                            DexRegisterList.make(DexRegister.makeLocalReg(vIsDelegateReg)),
+                            notifyEndLabel);
+
+                    applyCodeVisitor.visitConstInsn(Dops.CHECK_CAST,
+                            DexRegisterList.make(DexRegister.makeLocalReg(vDelegateReg)),
+                            DexConst.ConstType.make(mDexItemFactory.delegateInterceptorClass.type));
+
+                    applyCodeVisitor.visitConstInsn(
+                            Dops.INVOKE_VIRTUAL,
+                            DexRegisterList.make(DexRegister.makeLocalReg(vDelegateReg)),
+                            mDexItemFactory.delegateInterceptorClass.onAppliedMethod);
+
+                    applyCodeVisitor.visitLabel(notifyEndLabel);
                 });
     }
 
@@ -18,6 +18,7 @@ package com.baidu.titan.core.patch.light.generator.changed;
 
 import com.baidu.titan.core.TitanDexItemFactory;
 import com.baidu.titan.core.patch.PatchArgument;
+import com.baidu.titan.core.patch.common.SwitchInsnHelper;
 import com.baidu.titan.core.patch.light.generator.LightClassClinitInterceptorGenerator;
 import com.baidu.titan.dex.DexAccessFlags;
 import com.baidu.titan.dex.DexConst;
@@ -105,7 +106,7 @@ public class InterceptorProcessor {
         public final boolean staticMethod;
 
         /**
-         * 根据method id 进行排序，因为sparse-switch要求switch-key必须是递增有序的
+         * 根据method id 进行排序，因为sparse-switch要求switch-key必须是递增有序的，packed-switch也按此顺序判断key是否密集
          *
          * @param o
          * @return
@@ -258,7 +259,7 @@ public class InterceptorProcessor {
         if (normalMethods.isEmpty()) {
             return;
         }
-        // 因为sparse-switch opcode的key[]操作数需要递增排序，
+        // 因为switch opcode的key[]操作数需要递增排序，
         // 对每一种Intercept Kind，根据methodId进行排序
         normalMethods.forEach((interceptInvokeKind, methods) -> {
             Collections.sort(methods);
@@ -277,6 +278,10 @@ public class InterceptorProcessor {
                         methods,
                         mInterceptorClassNode,
                         interceptorClassVisitor);
+                generateHasCommonInterceptMethod(
+                        methods,
+                        mInterceptorClassNode,
+                        interceptorClassVisitor);
             }
         });
     }
@@ -470,7 +475,7 @@ public class InterceptorProcessor {
         final int vInterceptResultReg = 0;
         final int vReturnValueMayWideReg = 1;
 
-        // 通过sparse-switch key为method id进行方法派发到$chg类的对应方法
+        // 以method id为switch key进行方法派发到$chg类的对应方法
         DexLabel[] labels = methods.stream()
                 .map(m -> new DexLabel())
                 .toArray(size -> new DexLabel[size]);
@@ -479,13 +484,13 @@ public class InterceptorProcessor {
                 .mapToInt(m -> m.methodId)
                 .toArray();
 
-        codeVisitor.visitSwitch(
-                Dops.SPARSE_SWITCH,
+        SwitchInsnHelper.visitSwitch(
+                codeVisitor,
                 DexRegisterList.make(DexRegister.makeParameterReg(pMethodIdReg)),
                 keys,
                 labels);
 
-        // 当sparse switch没有匹配的方法时，运行到这里，return null
+        // 当switch没有匹配的方法时，运行到这里，return null
         codeVisitor.visitConstInsn(Dops.CONST,
                 DexRegisterList.make(DexRegister.makeLocalReg(vInterceptResultReg)),
                 DexConst.LiteralBits32.make(0));
@@ -630,7 +635,7 @@ public class InterceptorProcessor {
         final int vParaArrayIdxReg = 3;
 
         final int vFirstCallChangedParaReg = 4;
-        // 通过sparse-switch key为method id进行方法派发到$chg类的对应方法
+        // 以method id为switch key进行方法派发到$chg类的对应方法
         DexLabel[] labels = methods.stream()
                 .map(m -> new DexLabel())
                 .toArray(size -> new DexLabel[size]);
@@ -639,13 +644,13 @@ public class InterceptorProcessor {
                 .mapToInt(m -> m.methodId)
                 .toArray();
 
-        codeVisitor.visitSwitch(
-                Dops.SPARSE_SWITCH,
+        SwitchInsnHelper.visitSwitch(
+                codeVisitor,
                 DexRegisterList.make(DexRegister.makeParameterReg(pMethodIdReg)),
                 keys,
                 labels);
 
-        // 当sparse switch没有匹配的方法时，运行到这里，return null
+        // 当switch没有匹配的方法时，运行到这里，return null
         codeVisitor.visitConstInsn(Dops.CONST,
                 DexRegisterList.make(DexRegister.makeLocalReg(vInterceptResultReg)),
                 DexConst.LiteralBits32.make(0));
@@ -810,6 +815,75 @@ public class InterceptorProcessor {
 
     }
 
+    /**
+     * 生成hasCommonIntercept方法，只有invokeCommon中派发的method id返回true
+     *
+     * @param methods 通过invokeCommon派发的方法
+     * @param interceptorClassNode interceptor class node
+     * @param interceptorClassVisitor interceptor class visitor
+     */
+    private void generateHasCommonInterceptMethod(List<DispatchMethodInfo> methods,
+                                                  DexClassNode interceptorClassNode,
+                                                  DexClassVisitor interceptorClassVisitor) {
+        DexConst.ConstMethodRef hasInterceptMethod =
+                mDexItemFactory.interceptableClass.hasCommonInterceptMethod;
+        DexMethodVisitorInfo methodVisitorInfo = new DexMethodVisitorInfo(
+                interceptorClassNode.type,
+                hasInterceptMethod.getName(),
+                hasInterceptMethod.getParameterTypes(),
+                hasInterceptMethod.getReturnType(),
+                new DexAccessFlags(DexAccessFlags.ACC_PUBLIC));
+
+        DexMethodVisitor methodVisitor = interceptorClassVisitor.visitMethod(methodVisitorInfo);
+
+        methodVisitor.visitBegin();
+
+        DexCodeRegisterCalculator codeVisitor = new DexCodeRegisterCalculator(
+                false,
+                methodVisitorInfo.parameters,
+                new DexCodeFormatVerifier(methodVisitor.visitCode()));
+
+        codeVisitor.visitBegin();
+
+        final int pMethodIdReg = 1;
+        final int vResultReg = 0;
+
+        // 所有method id都跳转到同一个label
+        DexLabel interceptLabel = new DexLabel();
+        DexLabel[] labels = methods.stream()
+                .map(m -> interceptLabel)
+                .toArray(size -> new DexLabel[size]);
+
+        int[] keys = methods.stream()
+                .mapToInt(m -> m.methodId)
+                .toArray();
+
+        SwitchInsnHelper.visitSwitch(
+                codeVisitor,
+                DexRegisterList.make(DexRegister.makeParameterReg(pMethodIdReg)),
+                keys,
+                labels);
+
+        codeVisitor.visitConstInsn(Dops.CONST_4,
+                DexRegisterList.make(DexRegister.makeLocalReg(vResultReg)),
+                DexConst.LiteralBits32.make(0));
+        codeVisitor.visitSimpleInsn(Dops.RETURN,
+                DexRegisterList.make(DexRegister.makeLocalReg(vResultReg)));
+
+        codeVisitor.visitLabel(interceptLabel);
+        codeVisitor.visitConstInsn(Dops.CONST_4,
+                DexRegisterList.make(DexRegister.makeLocalReg(vResultReg)),
+                DexConst.LiteralBits32.make(1));
+        codeVisitor.visitSimpleInsn(Dops.RETURN,
+                DexRegisterList.make(DexRegister.makeLocalReg(vResultReg)));
+
+        codeVisitor.fillRegisterCount();
+
+        codeVisitor.visitEnd();
+
+        methodVisitor.visitEnd();
+    }
+
     private void generateUninitMethodInterceptor(List<DispatchMethodInfo> methods,
                                                  DexClassNode interceptorClassNode,
                                                  DexClassVisitor interceptorClassVisitor) {
@@ -837,7 +911,7 @@ public class InterceptorProcessor {
         final int pMethodIdReg = 1;
         final int pInitContextReg = 2;
 
-        // 通过sparse-switch key为method id进行方法派发到$chg类的对应方法
+        // 以method id为switch key进行方法派发到$chg类的对应方法
         DexLabel[] labels = methods.stream()
                 .map(m -> new DexLabel())
                 .toArray(DexLabel[]::new);
@@ -847,13 +921,13 @@ public class InterceptorProcessor {
                 .toArray();
 
         // 根据methodId跳到指定的方法调用
-        codeVisitor.visitSwitch(
-                Dops.SPARSE_SWITCH,
+        SwitchInsnHelper.visitSwitch(
+                codeVisitor,
                 DexRegisterList.make(DexRegister.makeParameterReg(pMethodIdReg)),
                 keys,
                 labels);
 
-        // 当sparse switch没有匹配的方法时，运行到这里，return void
+        // 当switch没有匹配的方法时，运行到这里，return void
 
         codeVisitor.visitSimpleInsn(Dops.RETURN_VOID, DexRegisterList.EMPTY);
 
@@ -1009,7 +1083,7 @@ public class InterceptorProcessor {
         final int pMethodIdReg = 1;
         final int pInitContextReg = 2;
 
-        // 通过sparse-switch key为method id进行方法派发到$chg类的对应方法
+        // 以method id为switch key进行方法派发到$chg类的对应方法
         DexLabel[] labels = methods.stream()
                 .map(m -> new DexLabel())
                 .toArray(DexLabel[]::new);
@@ -1019,13 +1093,13 @@ public class InterceptorProcessor {
                 .toArray();
 
         // 根据methodId跳到指定的方法调用
-        codeVisitor.visitSwitch(
-                Dops.SPARSE_SWITCH,
+        SwitchInsnHelper.visitSwitch(
+                codeVisitor,
                 DexRegisterList.make(DexRegister.makeParameterReg(pMethodIdReg)),
                 keys,
                 labels);
 
-        // 当sparse switch没有匹配的方法时，运行到这里，return void
+        // 当switch没有匹配的方法时，运行到这里，return void
 
         codeVisitor.visitSimpleInsn(Dops.RETURN_VOID, DexRegisterList.EMPTY);
 
@@ -174,56 +174,11 @@ public class StaticInitChangedCodeRewriter extends DexCodeVisitor {
         DexRegisterList newRegs = regs;
         DexConst.ConstMethodRef newCalledMethodRef = calledMethodRef;
 
-        ClassLinker linker = new ClassLinker(mDexItemFactory);
-
-        DexClassLoader loader = mClassLoaderFromNewPool;
-        DexClassLoader oldLoader = mClassLoaderFromOldPool;
-
-        DexMethodNode calledMethodNode = null;
-        DexMethodNode oldCalledMethodNode = null;
-
-        if (dop.isInvokeDirect() || dop.isInvokeStatic()) {
-            calledMethodNode = linker.findDirectMethod(
-                    calledMethodRef.getOwner(),
-                    calledMethodRef.getParameterTypes(),
-                    calledMethodRef.getReturnType(),
-                    calledMethodRef.getName(),
-                    loader);
-            oldCalledMethodNode = linker.findDirectMethod(
-                    calledMethodRef.getOwner(),
-                    calledMethodRef.getParameterTypes(),
-                    calledMethodRef.getReturnType(),
-                    calledMethodRef.getName(),
-                    oldLoader);
-        } else if (dop.isInvokeVirtual() || dop.isInvokeSuper()) {
-            calledMethodNode = linker.findVirtualMethod(
-                    calledMethodRef.getOwner(),
-                    calledMethodRef.getParameterTypes(),
-                    calledMethodRef.getReturnType(),
-                    calledMethodRef.getName(),
-                    loader);
-            oldCalledMethodNode = linker.findVirtualMethod(
-                    calledMethodRef.getOwner(),
-                    calledMethodRef.getParameterTypes(),
-                    calledMethodRef.getReturnType(),
-                    calledMethodRef.getName(),
-                    oldLoader);
-        } else if (dop.isInvokeInterface()) {
-            calledMethodNode = linker.findInterfaceMethod(
-                    calledMethodRef.getOwner(),
-                    calledMethodRef.getParameterTypes(),
-                    calledMethodRef.getReturnType(),
-                    calledMethodRef.getName(),
-                    loader);
-            oldCalledMethodNode = linker.findInterfaceMethod(
-                    calledMethodRef.getOwner(),
-                    calledMethodRef.getParameterTypes(),
-                    calledMethodRef.getReturnType(),
-                    calledMethodRef.getName(),
-                    oldLoader);
-        } else {
-            // impossible
-        }
+        // 同一个ref在各个类中反复出现，使用diff完成后共享的解析缓存
+        DexMethodNode calledMethodNode =
+                mHost.mClassPools.newMethodResolutionCache.resolve(dop, calledMethodRef);
+        DexMethodNode oldCalledMethodNode =
+                mHost.mClassPools.oldMethodResolutionCache.resolve(dop, calledMethodRef);
 
         if (calledMethodNode != null) {
 
@@ -18,6 +18,7 @@ package com.baidu.titan.core.patch.light.plum;
 
 import com.baidu.titan.core.patch.light.diff.ChangedClassDiffMarker;
 import com.baidu.titan.core.patch.light.diff.ClassPoolDiffMarker;
+import com.baidu.titan.core.patch.light.diff.DexNodeFingerprint;
 import com.baidu.titan.core.patch.light.diff.DiffContext;
 import com.baidu.titan.core.patch.light.diff.DiffMode;
 import com.baidu.titan.core.patch.light.diff.DiffStatus;
@@ -44,10 +45,13 @@ import com.baidu.titan.dex.visitor.DexMethodVisitor;
 import com.baidu.titan.dex.visitor.DexMethodVisitorInfo;
 import com.baidu.titan.dex.writer.DexFileWriter;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -85,15 +89,15 @@ public class AnonymousClassDiffMarker {
                 newAnonyTypes.stream()
                         .map(type -> diffContext.newOrgAppPool.findClassFromAll(type))
                         .forEach(dcn -> {
-                            ClassPoolDiffMarker.getClassDiffMode(dcn).markAdded();
+                            ClassPoolDiffMarker.getOrCreateClassDiffMode(dcn).markAdded();
                             dcn.setExtraInfo(EXTRA_KEY_CLASS_RENAME, true);
 
                             if (oldOuterDcn != null) {
-                                ClassPoolDiffMarker.getClassDiffMode(oldOuterDcn).markChanged();
+                                ClassPoolDiffMarker.getOrCreateClassDiffMode(oldOuterDcn).markChanged();
                                 oldOuterDcn.setExtraInfo(ANONYMOUS_CLASS_REWRITE, true);
                             }
 
-                            ClassPoolDiffMarker.getClassDiffMode(newOuterDcn).markChanged();
+                            ClassPoolDiffMarker.getOrCreateClassDiffMode(newOuterDcn).markChanged();
                             newOuterDcn.setExtraInfo(ANONYMOUS_CLASS_REWRITE, true);
 
                             // 递归对两个类的匿名内部类进行diff, oldOuterDcn传空，会走到将所有匿名内部类标记为新增的逻辑
@@ -120,17 +124,18 @@ public class AnonymousClassDiffMarker {
 
         AnonymousClassNodeCache cache = new AnonymousClassNodeCache();
 
+        Map<DexType, DexClassNode> newAnonyDcnMap = new HashMap<>();
+        sortedNewAnonyDcnList.forEach(newDcn -> newAnonyDcnMap.put(newDcn.type, newDcn));
+
         // 检查是否有同名且完全一致的类
         sortedOldAnonyDcnList.forEach(dcn -> {
-            byte[] dcnBytes = cache.getClassNodeBytes(dcn);
-            DexClassNode newAnonyDcn = sortedNewAnonyDcnList.stream()
-                    .filter(newDcn -> newDcn.type.equals(dcn.type))
-                    .findFirst().orElse(null);
+            DexNodeFingerprint dcnFingerprint = cache.getClassFingerprint(dcn);
+            DexClassNode newAnonyDcn = newAnonyDcnMap.get(dcn.type);
             if (newAnonyDcn != null) {
-                byte[] newDcnBytes = cache.getClassNodeBytes(newAnonyDcn);
-                if (Arrays.equals(dcnBytes, newDcnBytes)) {
-                    ClassPoolDiffMarker.getClassDiffMode(dcn).markUnChanged();
-                    ClassPoolDiffMarker.getClassDiffMode(newAnonyDcn).markUnChanged();
+                DexNodeFingerprint newDcnFingerprint = cache.getClassFingerprint(newAnonyDcn);
+                if (dcnFingerprint.equals(newDcnFingerprint)) {
+                    ClassPoolDiffMarker.getOrCreateClassDiffMode(dcn).markUnChanged();
+                    ClassPoolDiffMarker.getOrCreateClassDiffMode(newAnonyDcn).markUnChanged();
                     // 递归对两个类的匿名内部类进行diff
                     diff(diffContext, dcn, newAnonyDcn);
                 }
@@ -138,92 +143,118 @@ public class AnonymousClassDiffMarker {
         });
 
         // 检查是否有名字不同但内容归一之后完全一致的类
-        sortedOldAnonyDcnList.stream()
-                .filter(dcn -> !ClassPoolDiffMarker.getClassDiffMode(dcn).isUnChanged())
+        List<DexClassNode> unmatchedOldAnonyDcnList = sortedOldAnonyDcnList.stream()
+                .filter(dcn -> !ClassPoolDiffMarker.getOrCreateClassDiffMode(dcn).isUnChanged())
                 .sorted(Comparator.comparing(dcn -> dcn.type.toTypeDescriptor()))
-                .forEach(dcn -> {
-                    // 将old dex class node归一化
-                    byte[] normalizedOldDcnBytes = cache.getNormalizedClassNodeBytes(diffContext.oldOrgAppPool,
-                            diffContext.dexItemFactory, dcn);
-
-                    for (DexClassNode newDcn : sortedNewAnonyDcnList) {
-                        DiffMode diffMode = ClassPoolDiffMarker.getClassDiffMode(newDcn);
-                        if (diffMode.isUnChanged() || diffMode.isChanged()) {
-                            continue;
-                        }
-                        // 将 new dex class node归一化
-                        byte[] normalizedNewDcnBytes = cache.getNormalizedClassNodeBytes(diffContext.newOrgAppPool,
-                                diffContext.dexItemFactory, newDcn);
-
-                        if (Arrays.equals(normalizedOldDcnBytes, normalizedNewDcnBytes)) {
-                            ClassPoolDiffMarker.getClassDiffMode(dcn).markChanged();
-                            diffMode.markChanged();
-                            dcn.setExtraInfo(ANONYMOUS_CLASS_MAP, newDcn);
-                            newDcn.setExtraInfo(ANONYMOUS_CLASS_MAP, dcn);
-
-                            ClassPoolDiffMarker.getClassDiffMode(oldOuterDcn).markChanged();
-                            ClassPoolDiffMarker.getClassDiffMode(newOuterDcn).markChanged();
-                            oldOuterDcn.setExtraInfo(ANONYMOUS_CLASS_REWRITE, true);
-                            newOuterDcn.setExtraInfo(ANONYMOUS_CLASS_REWRITE, true);
+                .collect(Collectors.toList());
+        if (!unmatchedOldAnonyDcnList.isEmpty()) {
+            // 按归一后的指纹对new匿名内部类分桶，桶内保持类名顺序
+            Map<DexNodeFingerprint, List<DexClassNode>> newDcnsByFingerprint = new HashMap<>();
+            sortedNewAnonyDcnList.stream()
+                    .filter(newDcn -> !isMarked(newDcn))
+                    .forEach(newDcn -> newDcnsByFingerprint.computeIfAbsent(
+                            cache.getNormalizedClassFingerprint(diffContext.newOrgAppPool,
+                                    diffContext.dexItemFactory, newDcn),
+                            key -> new ArrayList<>()).add(newDcn));
+
+            unmatchedOldAnonyDcnList.forEach(dcn -> {
+                // 将old dex class node归一化
+                DexNodeFingerprint normalizedOldDcnFingerprint =
+                        cache.getNormalizedClassFingerprint(diffContext.oldOrgAppPool,
+                        diffContext.dexItemFactory, dcn);
+
+                List<DexClassNode> candidates = newDcnsByFingerprint.get(normalizedOldDcnFingerprint);
+                if (candidates == null) {
+                    return;
+                }
+                for (DexClassNode newDcn : candidates) {
+                    if (isMarked(newDcn)) {
+                        continue;
+                    }
+                    ClassPoolDiffMarker.getOrCreateClassDiffMode(dcn).markChanged();
+                    ClassPoolDiffMarker.getOrCreateClassDiffMode(newDcn).markChanged();
+                    dcn.setExtraInfo(ANONYMOUS_CLASS_MAP, newDcn);
+                    newDcn.setExtraInfo(ANONYMOUS_CLASS_MAP, dcn);
 
-                            // 递归对两个类的匿名内部类进行diff
-                            diff(diffContext, dcn, newDcn);
+                    ClassPoolDiffMarker.getOrCreateClassDiffMode(oldOuterDcn).markChanged();
+                    ClassPoolDiffMarker.getOrCreateClassDiffMode(newOuterDcn).markChanged();
+                    oldOuterDcn.setExtraInfo(ANONYMOUS_CLASS_REWRITE, true);
+                    newOuterDcn.setExtraInfo(ANONYMOUS_CLASS_REWRITE, true);
 
-                            break;
-                        }
-                    }
-                });
+                    // 递归对两个类的匿名内部类进行diff
+                    diff(diffContext, dcn, newDcn);
 
-        // 在剩下的类中，筛选是否可以被认为是发生修改的类
-        sortedOldAnonyDcnList.stream()
-                .filter(dcn -> !ClassPoolDiffMarker.getClassDiffMode(dcn).isUnChanged()
-                        && !ClassPoolDiffMarker.getClassDiffMode(dcn).isChanged())
-                .forEach(dcn -> {
-                    // 将old dex class node归一化
-                    DexClassNode normalizedOldDcn = cache.getNormalizedClassNode(diffContext.oldOrgAppPool,
-                            diffContext.dexItemFactory, dcn);
-
-                    // 检查是否有可以认为是发生变化的类
-                    for (DexClassNode newDcn : sortedNewAnonyDcnList) {// 将 new dex class node归一化
-                        DiffMode diffMode = ClassPoolDiffMarker.getClassDiffMode(newDcn);
-                        if (diffMode.isUnChanged() || diffMode.isChanged()) {
-                            continue;
-                        }
-                        DexClassNode normalizedNewDcn = cache.getNormalizedClassNode(diffContext.newOrgAppPool,
-                                diffContext.dexItemFactory, newDcn);
-
-                        // 对比两个归一类的差异
-                        ChangedClassDiffMarker changedClassDiffMarker = new ChangedClassDiffMarker(diffContext,
-                                normalizedNewDcn, normalizedOldDcn, true);
-                        DiffStatus classDiff = changedClassDiffMarker.diff();
-                        if (classDiff == DiffStatus.CHANGED_COMPATIBLE
-                                && !changedClassDiffMarker.shouldCopyClass()) {
-                            ClassPoolDiffMarker.getClassDiffMode(dcn).markChanged();
-                            diffMode.markChanged();
-                            dcn.setExtraInfo(ANONYMOUS_CLASS_MAP, newDcn);
-                            newDcn.setExtraInfo(ANONYMOUS_CLASS_MAP, dcn);
-
-                            ClassPoolDiffMarker.getClassDiffMode(oldOuterDcn).markChanged();
-                            ClassPoolDiffMarker.getClassDiffMode(newOuterDcn).markChanged();
-                            oldOuterDcn.setExtraInfo(ANONYMOUS_CLASS_REWRITE, true);
-                            newOuterDcn.setExtraInfo(ANONYMOUS_CLASS_REWRITE, true);
+                    break;
+                }
+            });
+        }
 
-                            diff(diffContext, dcn, newDcn);
-                            break;
-                        }
+        // 在剩下的类中，筛选是否可以被认为是发生修改的类
+        List<DexClassNode> remainingOldAnonyDcnList = sortedOldAnonyDcnList.stream()
+                .filter(dcn -> !isMarked(dcn))
+                .collect(Collectors.toList());
+        if (!remainingOldAnonyDcnList.isEmpty()) {
+            // 父类或接口不同的类一定不兼容，按归一后的父类和接口对new匿名内部类分桶，只在同一个桶内逐个对比
+            Map<String, List<DexClassNode>> newDcnsByShape = new HashMap<>();
+            sortedNewAnonyDcnList.stream()
+                    .filter(newDcn -> !isMarked(newDcn))
+                    .forEach(newDcn -> newDcnsByShape.computeIfAbsent(
+                            getShapeKey(cache.getNormalizedClassNode(diffContext.newOrgAppPool,
+                                    diffContext.dexItemFactory, newDcn)),
+                            key -> new ArrayList<>()).add(newDcn));
+
+            remainingOldAnonyDcnList.forEach(dcn -> {
+                // 将old dex class node归一化
+                DexClassNode normalizedOldDcn = cache.getNormalizedClassNode(diffContext.oldOrgAppPool,
+                        diffContext.dexItemFactory, dcn);
+
+                List<DexClassNode> candidates = newDcnsByShape.get(getShapeKey(normalizedOldDcn));
+                if (candidates == null) {
+                    return;
+                }
+                // 检查是否有可以认为是发生变化的类
+                for (DexClassNode newDcn : candidates) {
+                    DiffMode diffMode = ClassPoolDiffMarker.getOrCreateClassDiffMode(newDcn);
+                    if (diffMode.isUnChanged() || diffMode.isChanged()) {
+                        continue;
                     }
-                });
+                    // 将 new dex class node归一化
+                    DexClassNode normalizedNewDcn = cache.getNormalizedClassNode(diffContext.newOrgAppPool,
+                            diffContext.dexItemFactory, newDcn);
+
+                    // 对比两个归一类的差异
+                    ChangedClassDiffMarker changedClassDiffMarker = new ChangedClassDiffMarker(diffContext,
+                            normalizedNewDcn, normalizedOldDcn, true);
+                    DiffStatus classDiff = changedClassDiffMarker.diff();
+                    if (classDiff == DiffStatus.CHANGED_COMPATIBLE
+                            && !changedClassDiffMarker.shouldCopyClass()) {
+                        ClassPoolDiffMarker.getOrCreateClassDiffMode(dcn).markChanged();
+                        diffMode.markChanged();
+                        dcn.setExtraInfo(ANONYMOUS_CLASS_MAP, newDcn);
+                        newDcn.setExtraInfo(ANONYMOUS_CLASS_MAP, dcn);
+
+                        ClassPoolDiffMarker.getOrCreateClassDiffMode(oldOuterDcn).markChanged();
+                        ClassPoolDiffMarker.getOrCreateClassDiffMode(newOuterDcn).markChanged();
+                        oldOuterDcn.setExtraInfo(ANONYMOUS_CLASS_REWRITE, true);
+                        newOuterDcn.setExtraInfo(ANONYMOUS_CLASS_REWRITE, true);
+
+                        diff(diffContext, dcn, newDcn);
+                        break;
+                    }
+                }
+            });
+        }
 
         // 如果new anony dcn list中还有未标记的类，全部认为是新增类
         sortedNewAnonyDcnList.stream()
-                .filter(dcn -> !ClassPoolDiffMarker.getClassDiffMode(dcn).isUnChanged())
-                .filter(dcn -> !ClassPoolDiffMarker.getClassDiffMode(dcn).isChanged())
+                .filter(dcn -> !ClassPoolDiffMarker.getOrCreateClassDiffMode(dcn).isUnChanged())
+                .filter(dcn -> !ClassPoolDiffMarker.getOrCreateClassDiffMode(dcn).isChanged())
                 .forEach(dcn -> {
-                    ClassPoolDiffMarker.getClassDiffMode(dcn).markAdded();
+                    ClassPoolDiffMarker.getOrCreateClassDiffMode(dcn).markAdded();
                     dcn.setExtraInfo(EXTRA_KEY_CLASS_RENAME, true);
 
-                    ClassPoolDiffMarker.getClassDiffMode(oldOuterDcn).markChanged();
-                    ClassPoolDiffMarker.getClassDiffMode(newOuterDcn).markChanged();
+                    ClassPoolDiffMarker.getOrCreateClassDiffMode(oldOuterDcn).markChanged();
+                    ClassPoolDiffMarker.getOrCreateClassDiffMode(newOuterDcn).markChanged();
                     oldOuterDcn.setExtraInfo(ANONYMOUS_CLASS_REWRITE, true);
                     newOuterDcn.setExtraInfo(ANONYMOUS_CLASS_REWRITE, true);
 
@@ -232,6 +263,40 @@ public class AnonymousClassDiffMarker {
                 });
     }
 
+    private static boolean isMarked(DexClassNode dcn) {
+        DiffMode diffMode = ClassPoolDiffMarker.getOrCreateClassDiffMode(dcn);
+        return diffMode.isUnChanged() || diffMode.isChanged();
+    }
+
+    /**
+     * 父类及接口组成的key，接口与顺序无关，与{@link ChangedClassDiffMarker}中父类及接口的对比一致
+     *
+     * @param dcn 归一后的dexclassnode
+     * @return 父类及接口组成的key
+     */
+    private static String getShapeKey(DexClassNode dcn) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(dcn.superType == null ? "" : dcn.superType.toTypeDescriptor());
+        if (dcn.interfaces != null) {
+            Arrays.stream(dcn.interfaces.types())
+                    .map(DexType::toTypeDescriptor)
+                    .sorted()
+                    .forEach(type -> sb.append('|').append(type));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 计算dexclass node的指纹，用于进行快速对比，与{@link #getClassNodeBytes}的对比结果一致
+     *
+     * @param dcn dexclassnode
+     * @return class的指纹
+     */
+    static DexNodeFingerprint getClassFingerprint(DexClassNode dcn) {
+        return DexNodeFingerprint.ofClass(dcn, DexNodeFingerprint.Mode.ANONYMOUS_CLASS,
+                () -> getClassNodeBytes(dcn, true));
+    }
+
     /**
      * 将dexclass node 转为字节，用于进行快速对比
      *
@@ -17,6 +17,7 @@
 package com.baidu.titan.core.patch.light.plum;
 
 import com.baidu.titan.core.TitanDexItemFactory;
+import com.baidu.titan.core.patch.light.diff.DexNodeFingerprint;
 import com.baidu.titan.core.pool.ApplicationDexPool;
 import com.baidu.titan.dex.node.DexClassNode;
 
@@ -30,31 +31,35 @@ import java.util.HashMap;
  */
 public class AnonymousClassNodeCache {
 
-    private HashMap<DexClassNode, byte[]> classNodeBytesCache = new HashMap<>();
-    private HashMap<DexClassNode, byte[]> normalizedClassNodeBytesCache = new HashMap<>();
+    private HashMap<DexClassNode, DexNodeFingerprint> classFingerprintCache = new HashMap<>();
+    private HashMap<DexClassNode, DexNodeFingerprint> normalizedClassFingerprintCache = new HashMap<>();
     private HashMap<DexClassNode, DexClassNode> normalizedClassNodeCache = new HashMap<>();
 
-    public byte[] getClassNodeBytes(DexClassNode dcn) {
-        byte[] dcnBytes = classNodeBytesCache.getOrDefault(dcn,
-                AnonymousClassDiffMarker.getClassNodeBytes(dcn, true));
-        classNodeBytesCache.putIfAbsent(dcn, dcnBytes);
-        return dcnBytes;
+    public DexNodeFingerprint getClassFingerprint(DexClassNode dcn) {
+        return classFingerprintCache.computeIfAbsent(dcn,
+                AnonymousClassDiffMarker::getClassFingerprint);
     }
 
-    public byte[] getNormalizedClassNodeBytes(ApplicationDexPool dexPool,
-                                              TitanDexItemFactory dexItemFactory, DexClassNode dcn) {
-        DexClassNode normalizedDcn = getNormalizedClassNode(dexPool, dexItemFactory, dcn);
-        byte[] normalizedDcnBytes = normalizedClassNodeBytesCache.getOrDefault(normalizedDcn,
-                AnonymousClassDiffMarker.getClassNodeBytes(normalizedDcn, true));
-        normalizedClassNodeBytesCache.putIfAbsent(dcn, normalizedDcnBytes);
-        return normalizedDcnBytes;
+    public DexNodeFingerprint getNormalizedClassFingerprint(ApplicationDexPool dexPool,
+                                                            TitanDexItemFactory dexItemFactory,
+                                                            DexClassNode dcn) {
+        DexNodeFingerprint normalizedFingerprint = normalizedClassFingerprintCache.get(dcn);
+        if (normalizedFingerprint == null) {
+            normalizedFingerprint = AnonymousClassDiffMarker.getClassFingerprint(
+                    getNormalizedClassNode(dexPool, dexItemFactory, dcn));
+            normalizedClassFingerprintCache.put(dcn, normalizedFingerprint);
+        }
+        return normalizedFingerprint;
     }
 
     public DexClassNode getNormalizedClassNode(ApplicationDexPool dexPool,
                                                TitanDexItemFactory dexItemFactory, DexClassNode dcn) {
-        DexClassNode normalizedDcn = normalizedClassNodeCache.getOrDefault(dcn,
-                AnonymousClassNormalizer.normalizeAnonymousClass(dexPool, dexItemFactory, dcn));
-        normalizedClassNodeCache.putIfAbsent(dcn, normalizedDcn);
+        DexClassNode normalizedDcn = normalizedClassNodeCache.get(dcn);
+        if (normalizedDcn == null) {
+            normalizedDcn = AnonymousClassNormalizer.normalizeAnonymousClass(
+                    dexPool, dexItemFactory, dcn);
+            normalizedClassNodeCache.put(dcn, normalizedDcn);
+        }
         return normalizedDcn;
     }
 }
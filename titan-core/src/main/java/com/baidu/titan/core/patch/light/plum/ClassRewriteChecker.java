@@ -17,18 +17,8 @@
 package com.baidu.titan.core.patch.light.plum;
 
 import com.baidu.titan.core.patch.light.diff.DiffContext;
-import com.baidu.titan.dex.DexConst;
-import com.baidu.titan.dex.DexRegisterList;
+import com.baidu.titan.core.patch.light.diff.UseSiteIndex;
 import com.baidu.titan.dex.DexType;
-import com.baidu.titan.dex.Dop;
-import com.baidu.titan.dex.Dops;
-import com.baidu.titan.dex.node.DexClassNode;
-import com.baidu.titan.dex.visitor.DexClassVisitor;
-import com.baidu.titan.dex.visitor.DexCodeVisitor;
-import com.baidu.titan.dex.visitor.DexFieldVisitor;
-import com.baidu.titan.dex.visitor.DexFieldVisitorInfo;
-import com.baidu.titan.dex.visitor.DexMethodVisitor;
-import com.baidu.titan.dex.visitor.DexMethodVisitorInfo;
 
 /**
  * 用于检查是否要对类进行重写
@@ -39,89 +29,18 @@ import com.baidu.titan.dex.visitor.DexMethodVisitorInfo;
 public class ClassRewriteChecker {
 
     /**
-     * 检查是否需要重写类
+     * 标记所有需要重写的类：字段、方法签名或代码中引用了需要重命名或remap的类。
+     * 先找出rewrite type发生变化的类，再通过引用索引找到引用它们的类，不再逐个类扫描代码。
      *
-     * @param diffContext DiffContext
-     * @param outerDcn 需要检查的类
-     * @return
+     * @param diffContext DiffContext，需要已经构建new class pool的引用索引
      */
-    public static boolean checkRewrite(DiffContext diffContext, DexClassNode outerDcn) {
-
-        outerDcn.accept(new DexClassVisitor() {
-            @Override
-            public DexFieldVisitor visitField(DexFieldVisitorInfo fieldInfo) {
-                DexType remapType = AnonymousClassDiffMarker.getRewriteType(diffContext, fieldInfo.type);
-                if (!remapType.equals(fieldInfo.type)) {
-                    AnonymousClassDiffMarker.markShouldRewrite(outerDcn);
-                }
-                return super.visitField(fieldInfo);
-            }
-
-            @Override
-            public DexMethodVisitor visitMethod(DexMethodVisitorInfo methodInfo) {
-                DexType newReturnType = AnonymousClassDiffMarker.getRewriteType(diffContext, methodInfo.returnType);
-                if (!newReturnType.equals(methodInfo.returnType)) {
-                    AnonymousClassDiffMarker.markShouldRewrite(outerDcn);
-                    return super.visitMethod(methodInfo);
-                }
-                for (DexType type : methodInfo.parameters) {
-                    DexType newParaType = AnonymousClassDiffMarker.getRewriteType(diffContext, type);
-                    if (!newParaType.equals(type)) {
-                        AnonymousClassDiffMarker.markShouldRewrite(outerDcn);
-                        return super.visitMethod(methodInfo);
-                    }
-                }
-                return new DexMethodVisitor(super.visitMethod(methodInfo)) {
-                    @Override
-                    public DexCodeVisitor visitCode() {
-                        return new DexCodeVisitor(super.visitCode()) {
-                            @Override
-                            public void visitConstInsn(int op, DexRegisterList regs, DexConst dexConst) {
-                                Dop dop = Dops.dopFor(op);
-                                if (dop.isFieldAccessKind()) {
-                                    DexConst.ConstFieldRef fieldRef = (DexConst.ConstFieldRef) dexConst;
-                                    DexType remapOwner = AnonymousClassDiffMarker.getRewriteType(diffContext,
-                                            fieldRef.getOwner());
-                                    DexType remapType = AnonymousClassDiffMarker.getRewriteType(diffContext,
-                                            fieldRef.getType());
-                                    if (!remapType.equals(fieldRef.getType())
-                                            || !remapOwner.equals(fieldRef.getOwner())) {
-                                        AnonymousClassDiffMarker.markShouldRewrite(outerDcn);
-                                    }
-                                } else if (dop.isInvokeKind()) {
-                                    DexConst.ConstMethodRef methodRef = (DexConst.ConstMethodRef) dexConst;
-                                    DexType remapOwner = AnonymousClassDiffMarker.getRewriteType(diffContext,
-                                            methodRef.getOwner());
-                                    DexType remapReturnType = AnonymousClassDiffMarker.getRewriteType(diffContext,
-                                            methodRef.getReturnType());
-                                    if (!remapOwner.equals(methodRef.getOwner())
-                                            || !remapReturnType.equals(methodRef.getReturnType())) {
-                                        AnonymousClassDiffMarker.markShouldRewrite(outerDcn);
-                                    }
-                                    for (DexType type : methodRef.getParameterTypes()) {
-                                        DexType newParaType = AnonymousClassDiffMarker
-                                                .getRewriteType(diffContext, type);
-                                        if (!newParaType.equals(type)) {
-                                            AnonymousClassDiffMarker.markShouldRewrite(outerDcn);
-                                            break;
-                                        }
-                                    }
-
-                                } else if (dexConst instanceof DexConst.ConstType) {
-                                    DexConst.ConstType constType = (DexConst.ConstType) dexConst;
-                                    DexType type = constType.value();
-                                    DexType remapType = AnonymousClassDiffMarker.getRewriteType(diffContext, type);
-                                    if (!remapType.equals(type)) {
-                                        AnonymousClassDiffMarker.markShouldRewrite(outerDcn);
-                                    }
-                                }
-                                super.visitConstInsn(op, regs, dexConst);
-                            }
-                        };
-                    }
-                };
+    public static void markRewriteClasses(DiffContext diffContext) {
+        UseSiteIndex index = diffContext.getNewUseSiteIndex();
+        diffContext.newOrgAppPool.getProgramClassPool().forEach(dcn -> {
+            DexType remapType = AnonymousClassDiffMarker.getRewriteType(diffContext, dcn.type);
+            if (!remapType.equals(dcn.type)) {
+                index.getTypeUsers(dcn.type).forEach(AnonymousClassDiffMarker::markShouldRewrite);
             }
         });
-        return AnonymousClassDiffMarker.shouldRewrite(outerDcn);
     }
 }
@@ -22,13 +22,32 @@ import com.baidu.titan.dex.DexType;
 import com.baidu.titan.dex.DexTypeList;
 import com.baidu.titan.dex.MultiDexFileBytes;
 import com.baidu.titan.dex.extensions.DexClassKindMarker;
+import com.baidu.titan.dex.extensions.DexInterfacesHierarchyFiller;
+import com.baidu.titan.dex.extensions.DexSubClassHierarchyFiller;
+import com.baidu.titan.dex.extensions.DexSuperClassHierarchyFiller;
 import com.baidu.titan.dex.node.DexClassNode;
 import com.baidu.titan.dex.node.DexClassPoolNode;
+import com.baidu.titan.dex.node.DexFileNode;
 import com.baidu.titan.dex.node.MultiDexFileNode;
 import com.baidu.titan.dex.reader.MultiDexFileReader;
 import com.baidu.titan.dex.visitor.DexClassPoolNodeVisitor;
+import com.baidu.titan.dex.visitor.MultiDexFileNodeVisitor;
 import com.baidu.titan.jvm.reader.JvmClassFileReader;
 
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.stream.Collectors;
+
 
 /**
  * 用于保存apk中所有class及系统库中的class
@@ -37,7 +56,7 @@ import com.baidu.titan.jvm.reader.JvmClassFileReader;
  * @since 2017/11/4
  */
 
-public class ApplicationDexPool {
+public class ApplicationDexPool implements Closeable {
 
     private DexClassPoolNode mLibraryClassPool;
 
@@ -45,13 +64,144 @@ public class ApplicationDexPool {
 
     private DexItemFactory mFactory;
 
+    /** library class pool是否与其他ApplicationDexPool共享，共享时不能修改library class */
+    private final boolean mSharedLibrary;
+
+    /** 按需解析的library class，为null时library class全部保存在mLibraryClassPool中 */
+    private LazyLibraryClassResolver mLazyLibrary;
+
     public ApplicationDexPool(DexItemFactory factory) {
         this.mFactory = factory;
         this.mLibraryClassPool = new DexClassPoolNode();
         this.mProgramClassPool = new DexClassPoolNode();
+        this.mSharedLibrary = false;
         initPrimitiveTypes();
     }
 
+    /**
+     * 与libraryPool共享同一份library class pool，library class的层级信息在libraryPool中已经填充完成，
+     * 当前pool只持有自己的program class
+     *
+     * @param libraryPool 通过createSharedLibraryPool创建的pool
+     */
+    public ApplicationDexPool(ApplicationDexPool libraryPool) {
+        this.mFactory = libraryPool.mFactory;
+        this.mLibraryClassPool = libraryPool.mLibraryClassPool;
+        this.mLazyLibrary = libraryPool.mLazyLibrary;
+        this.mProgramClassPool = new DexClassPoolNode();
+        this.mSharedLibrary = true;
+    }
+
+    /**
+     * 创建只包含library class的pool，并填充library class之间的层级信息，之后作为只读的library层
+     * 被多个ApplicationDexPool共享
+     *
+     * @param dexCacheDir boot class path的dex缓存目录，可以为null
+     * @return 创建失败时返回null
+     */
+    public static ApplicationDexPool createSharedLibraryPool(DexItemFactory factory,
+                                                             List<File> bootClassPath,
+                                                             File dexCacheDir) {
+        return createSharedLibraryPool(factory, bootClassPath, dexCacheDir, false);
+    }
+
+    /**
+     * @param lazy 是否按需解析library class，为true时忽略dexCacheDir
+     * @see #createSharedLibraryPool(DexItemFactory, List, File)
+     */
+    public static ApplicationDexPool createSharedLibraryPool(DexItemFactory factory,
+                                                             List<File> bootClassPath,
+                                                             File dexCacheDir,
+                                                             boolean lazy) {
+        ApplicationDexPool libraryPool = new ApplicationDexPool(factory);
+        boolean filled = lazy ? libraryPool.fillLibraryLazily(bootClassPath)
+                : LibraryDexCache.fillLibraryPool(libraryPool, bootClassPath, dexCacheDir);
+        if (!filled) {
+            return null;
+        }
+        libraryPool.fillClassHierarchy();
+        libraryPool.acceptLibrary(
+                new DexClassKindMarker(DexClassKindMarker.ClassKind.CLASS_KIND_LIBRARY));
+        return libraryPool;
+    }
+
+    /**
+     * 填充父类、子类及接口层级信息。
+     *
+     * 共享library时只处理program class，父类及接口可以指向library class，
+     * 但library class不会记录program子类，避免多个program pool的子类混在同一个library class上。
+     *
+     * 按需解析library class时，填充完成后之后解析的library class不再修改已有的类，
+     * 之后的transformation可以在acceptProgramParallel中并发查找library class。
+     */
+    public void fillClassHierarchy() {
+        if (!mSharedLibrary && mLazyLibrary != null) {
+            // 按需解析的library class在解析时填充，这里只处理基本类型及program class
+            mLazyLibrary.enableHierarchy();
+            fillEagerClassHierarchy(new DexSuperClassHierarchyFiller(this::findClassFromAll));
+            fillEagerClassHierarchy(new DexSubClassHierarchyFiller(this::findClassFromAll));
+            fillEagerClassHierarchy(new DexInterfacesHierarchyFiller(this::findClassFromAll));
+            mLazyLibrary.publishHierarchy();
+            return;
+        }
+        if (!mSharedLibrary) {
+            acceptAll(new DexSuperClassHierarchyFiller(this::findClassFromAll));
+            acceptAll(new DexSubClassHierarchyFiller(this::findClassFromAll));
+            acceptAll(new DexInterfacesHierarchyFiller(this::findClassFromAll));
+            return;
+        }
+        acceptProgram(new DexSuperClassHierarchyFiller(this::findClassFromAll));
+        acceptProgram(new DexSubClassHierarchyFiller(mProgramClassPool::getClass));
+        acceptProgram(new DexInterfacesHierarchyFiller(this::findClassFromAll));
+    }
+
+    private void fillEagerClassHierarchy(DexClassPoolNodeVisitor filler) {
+        mLibraryClassPool.accept(new NoVisitEndClassPoolVisitor(filler));
+        mProgramClassPool.accept(filler);
+    }
+
+    public boolean isSharedLibrary() {
+        return mSharedLibrary;
+    }
+
+    /**
+     * 只建立boot class path中class的索引，library class在第一次被查找时才解析。
+     * 大部分library class不会被app引用，可以减少解析耗时及内存占用。
+     *
+     * 按需解析模式下，acceptLibrary及acceptAll只会访问已经解析的library class。
+     * boot class path中的jar保持打开，使用完毕后需要调用close关闭。
+     *
+     * @return 建立索引是否成功
+     */
+    public boolean fillLibraryLazily(List<File> bootClassPath) {
+        checkLibraryWritable();
+        LazyLibraryClassResolver lazyLibrary = new LazyLibraryClassResolver(mFactory);
+        for (File libraryFile : bootClassPath) {
+            if (!lazyLibrary.addJar(libraryFile)) {
+                lazyLibrary.close();
+                return false;
+            }
+        }
+        mLazyLibrary = lazyLibrary;
+        return true;
+    }
+
+    /**
+     * 关闭按需解析library class时打开的jar文件，共享library的pool由创建library的pool负责关闭
+     */
+    @Override
+    public void close() {
+        if (!mSharedLibrary && mLazyLibrary != null) {
+            mLazyLibrary.close();
+        }
+    }
+
+    private void checkLibraryWritable() {
+        if (mSharedLibrary) {
+            throw new IllegalStateException("shared library class pool is read-only");
+        }
+    }
+
     private void initPrimitiveTypes() {
         addPrimitiveType(mFactory.booleanClass.primitiveType);
         addPrimitiveType(mFactory.byteClass.primitiveType);
@@ -86,14 +236,39 @@ public class ApplicationDexPool {
         this.mProgramClassPool.accept(visitor);
     }
 
+    /**
+     * 将program class pool切分为多个工作单元，在forkJoinPool上并发访问。
+     *
+     * 每个工作单元通过visitorFactory创建独立的visitor实例，因此visitor内部可以保存当前类的状态，
+     * 但不能修改其他类或共享的可变状态。classPoolVisitEnd不会被回调，不适用于需要汇总结果的visitor。
+     *
+     * @param visitorFactory 为每个工作单元创建visitor
+     * @param forkJoinPool 执行并发任务的线程池
+     */
+    public void acceptProgramParallel(Supplier<DexClassPoolNodeVisitor> visitorFactory,
+                                      ForkJoinPool forkJoinPool) {
+        List<DexClassNode> classes = mProgramClassPool.stream().collect(Collectors.toList());
+        forkJoinPool.invoke(new ClassVisitAction(classes, 0, classes.size(), visitorFactory));
+    }
+
     public void acceptLibrary(DexClassPoolNodeVisitor visitor) {
-        this.mLibraryClassPool.accept(visitor);
+        if (mLazyLibrary == null) {
+            this.mLibraryClassPool.accept(visitor);
+            return;
+        }
+        mLibraryClassPool.accept(new NoVisitEndClassPoolVisitor(visitor));
+        mLazyLibrary.acceptResolved(visitor);
+        visitor.classPoolVisitEnd();
     }
 
     public void acceptAll(DexClassPoolNodeVisitor visitor) {
 
         mLibraryClassPool.accept(new NoVisitEndClassPoolVisitor(visitor));
 
+        if (mLazyLibrary != null) {
+            mLazyLibrary.acceptResolved(visitor);
+        }
+
         mProgramClassPool.accept(new NoVisitEndClassPoolVisitor(visitor));
 
         visitor.classPoolVisitEnd();
@@ -101,6 +276,9 @@ public class ApplicationDexPool {
 
     public DexClassNode findClassFromAll(DexType type) {
         DexClassNode dcn = mLibraryClassPool.getClass(type);
+        if (dcn == null && mLazyLibrary != null) {
+            dcn = mLazyLibrary.findClass(type);
+        }
         if (dcn == null) {
             dcn = mProgramClassPool.getClass(type);
         }
@@ -126,6 +304,42 @@ public class ApplicationDexPool {
         }
     }
 
+    private static class ClassVisitAction extends RecursiveAction {
+
+        /** 单个工作单元处理的类个数上限 */
+        private static final int CLASSES_PER_UNIT = 64;
+
+        private final List<DexClassNode> mClasses;
+
+        private final int mStart;
+
+        private final int mEnd;
+
+        private final Supplier<DexClassPoolNodeVisitor> mVisitorFactory;
+
+        ClassVisitAction(List<DexClassNode> classes, int start, int end,
+                         Supplier<DexClassPoolNodeVisitor> visitorFactory) {
+            this.mClasses = classes;
+            this.mStart = start;
+            this.mEnd = end;
+            this.mVisitorFactory = visitorFactory;
+        }
+
+        @Override
+        protected void compute() {
+            if (mEnd - mStart <= CLASSES_PER_UNIT) {
+                DexClassPoolNodeVisitor visitor = mVisitorFactory.get();
+                for (int i = mStart; i < mEnd; i++) {
+                    visitor.visitClass(mClasses.get(i));
+                }
+                return;
+            }
+            int middle = (mStart + mEnd) >>> 1;
+            invokeAll(new ClassVisitAction(mClasses, mStart, middle, mVisitorFactory),
+                    new ClassVisitAction(mClasses, middle, mEnd, mVisitorFactory));
+        }
+    }
+
     public void addProgramClass(DexClassNode dcn) {
         DexClassKindMarker.setClassKind(dcn, DexClassKindMarker.ClassKind.CLASS_KIND_PROGRAM);
         mProgramClassPool.addClass(dcn);
@@ -148,9 +362,60 @@ public class ApplicationDexPool {
     }
 
     public void fillLibraryClass(byte[] classBytes) {
+        checkLibraryWritable();
         JvmClassFileReader reader = new JvmClassFileReader(classBytes, this.mFactory);
         DexClassNode dcn = reader.read();
         mLibraryClassPool.addClass(dcn);
     }
 
+    /**
+     * 读取jar中的所有class，填充到library class pool
+     *
+     * @return 读取是否成功
+     */
+    public boolean fillLibraryJar(File libraryFile) {
+        try (JarInputStream jarInput = new JarInputStream(new FileInputStream(libraryFile))) {
+            JarEntry jarEntry;
+            byte[] buffer = new byte[16 * 1024];
+            while ((jarEntry = jarInput.getNextJarEntry()) != null) {
+                if (jarEntry.isDirectory()) {
+                    continue;
+                }
+                if (!jarEntry.getName().endsWith(".class")) {
+                    continue;
+                }
+
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                int len;
+                while ((len = jarInput.read(buffer)) > 0) {
+                    baos.write(buffer, 0, len);
+                }
+                fillLibraryClass(baos.toByteArray());
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * 使用dex格式的内容填充library class pool
+     *
+     * @param dexContents dex id -> dex内容
+     */
+    public void fillLibraryDexs(Map<Integer, byte[]> dexContents) {
+        checkLibraryWritable();
+        MultiDexFileReader mdfr = new MultiDexFileReader(this.mFactory);
+        dexContents.forEach(mdfr::addDexContent);
+        MultiDexFileNode mdfn = new MultiDexFileNode();
+        mdfr.accept(mdfn.asVisitor());
+        mdfn.accept(new MultiDexFileNodeVisitor() {
+            @Override
+            public void visitDexFile(int dexId, DexFileNode dfn) {
+                dfn.accept(mLibraryClassPool.asVisitor());
+            }
+        });
+    }
+
 }
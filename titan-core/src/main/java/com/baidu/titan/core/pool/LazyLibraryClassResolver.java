@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.pool;
+
+import com.baidu.titan.dex.DexItemFactory;
+import com.baidu.titan.dex.DexType;
+import com.baidu.titan.dex.extensions.DexClassKindMarker;
+import com.baidu.titan.dex.extensions.DexInterfacesHierarchyFiller;
+import com.baidu.titan.dex.extensions.DexSubClassHierarchyFiller;
+import com.baidu.titan.dex.extensions.DexSuperClassHierarchyFiller;
+import com.baidu.titan.dex.node.DexClassNode;
+import com.baidu.titan.dex.visitor.DexClassPoolNodeVisitor;
+import com.baidu.titan.jvm.reader.JvmClassFileReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 按需解析的library class
+ *
+ * 初始化时只建立 type descriptor -> jar entry 的索引，第一次查找某个类时才解析对应的class文件。
+ * 开启层级信息填充后，新解析的类会立即填充父类、子类及接口信息，由于program class的父类链
+ * 都会被解析，因此未被解析的library class不会影响program class的层级信息。
+ *
+ * 层级信息发布（publishHierarchy）之后，已解析的类可能被其他线程不加锁读取，新解析的类只填充自身的
+ * 父类及接口信息，不再作为子类写入已发布的父类。此时program class的父类链已经全部解析，
+ * 之后解析的library class没有program子类，缺少的子类信息不影响program class的层级。
+ *
+ * 查找可以并发进行，解析过程串行。jar文件在resolver的生命周期内保持打开，由持有者使用完毕后调用close关闭，
+ * 关闭之后不能再解析新的类。
+ *
+ * @since 2026/10/18
+ */
+class LazyLibraryClassResolver implements Closeable {
+
+    private final DexItemFactory mFactory;
+
+    /** type descriptor -> class文件所在位置，初始化之后只读 */
+    private final Map<String, EntryLocation> mIndex = new HashMap<>();
+
+    /** 已解析并填充完成的类 */
+    private final Map<String, DexClassNode> mResolvedClasses = new ConcurrentHashMap<>();
+
+    /** 解析顺序，用于遍历 */
+    private final List<DexClassNode> mResolveOrder = new ArrayList<>();
+
+    /** 正在解析、尚未填充完成的类，只在持有锁时访问 */
+    private final Map<String, DexClassNode> mPendingClasses = new HashMap<>();
+
+    private final List<ZipFile> mJarFiles = new ArrayList<>();
+
+    private boolean mFillHierarchy = false;
+
+    /** 层级信息是否已经发布，发布后不再修改已解析的类，只在持有锁时访问 */
+    private boolean mHierarchyPublished = false;
+
+    private static class EntryLocation {
+
+        final ZipFile jarFile;
+
+        final ZipEntry entry;
+
+        EntryLocation(ZipFile jarFile, ZipEntry entry) {
+            this.jarFile = jarFile;
+            this.entry = entry;
+        }
+    }
+
+    LazyLibraryClassResolver(DexItemFactory factory) {
+        this.mFactory = factory;
+    }
+
+    /**
+     * 建立jar中class的索引，与顺序解析jar一致，后面的jar中的同名类覆盖前面的
+     */
+    boolean addJar(File libraryFile) {
+        try {
+            ZipFile jarFile = new ZipFile(libraryFile);
+            synchronized (this) {
+                mJarFiles.add(jarFile);
+            }
+            Enumeration<? extends ZipEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (entry.isDirectory() || !name.endsWith(".class")) {
+                    continue;
+                }
+                String typeDesc = "L" + name.substring(0, name.length() - ".class".length()) + ";";
+                mIndex.put(typeDesc, new EntryLocation(jarFile, entry));
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    DexClassNode findClass(DexType type) {
+        String typeDesc = type.toTypeDescriptor();
+        DexClassNode dcn = mResolvedClasses.get(typeDesc);
+        if (dcn != null || !mIndex.containsKey(typeDesc)) {
+            return dcn;
+        }
+        return resolve(typeDesc);
+    }
+
+    private synchronized DexClassNode resolve(String typeDesc) {
+        DexClassNode dcn = mResolvedClasses.get(typeDesc);
+        if (dcn == null) {
+            dcn = mPendingClasses.get(typeDesc);
+        }
+        if (dcn != null) {
+            return dcn;
+        }
+
+        EntryLocation location = mIndex.get(typeDesc);
+        try (InputStream in = location.jarFile.getInputStream(location.entry)) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[16 * 1024];
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                baos.write(buffer, 0, len);
+            }
+            dcn = new JvmClassFileReader(baos.toByteArray(), mFactory).read();
+        } catch (IOException e) {
+            throw new IllegalStateException("read library class " + typeDesc + " failed", e);
+        }
+        DexClassKindMarker.setClassKind(dcn, DexClassKindMarker.ClassKind.CLASS_KIND_LIBRARY);
+
+        mPendingClasses.put(typeDesc, dcn);
+        if (mFillHierarchy) {
+            fillHierarchy(dcn);
+        }
+        mPendingClasses.remove(typeDesc);
+
+        mResolvedClasses.put(typeDesc, dcn);
+        mResolveOrder.add(dcn);
+        return dcn;
+    }
+
+    private void fillHierarchy(DexClassNode dcn) {
+        visitSingleClass(new DexSuperClassHierarchyFiller(this::findClass), dcn);
+        // 子类信息写入父类，父类发布后可能正在被其他线程读取
+        if (!mHierarchyPublished) {
+            visitSingleClass(new DexSubClassHierarchyFiller(this::findClass), dcn);
+        }
+        visitSingleClass(new DexInterfacesHierarchyFiller(this::findClass), dcn);
+    }
+
+    private static void visitSingleClass(DexClassPoolNodeVisitor visitor, DexClassNode dcn) {
+        visitor.visitClass(dcn);
+        visitor.classPoolVisitEnd();
+    }
+
+    /**
+     * 开启层级信息填充，已经解析的类会立即补充填充
+     */
+    synchronized void enableHierarchy() {
+        if (mFillHierarchy) {
+            return;
+        }
+        mFillHierarchy = true;
+        new ArrayList<>(mResolveOrder).forEach(this::fillHierarchy);
+    }
+
+    /**
+     * 发布层级信息，需要在program class的层级信息填充完成之后、并发访问之前调用
+     */
+    synchronized void publishHierarchy() {
+        mHierarchyPublished = true;
+    }
+
+    /**
+     * 按解析顺序遍历已经解析的类
+     */
+    void acceptResolved(DexClassPoolNodeVisitor visitor) {
+        List<DexClassNode> resolved;
+        synchronized (this) {
+            resolved = new ArrayList<>(mResolveOrder);
+        }
+        resolved.forEach(visitor::visitClass);
+    }
+
+    synchronized int getResolvedCount() {
+        return mResolveOrder.size();
+    }
+
+    int getIndexedCount() {
+        return mIndex.size();
+    }
+
+    /**
+     * 关闭所有jar文件
+     */
+    @Override
+    public synchronized void close() {
+        for (ZipFile jarFile : mJarFiles) {
+            try {
+                jarFile.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        mJarFiles.clear();
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.pool;
+
+import com.baidu.titan.core.util.ConcurrentMultiDexWriter;
+import com.baidu.titan.core.util.TitanHashs;
+import com.baidu.titan.dex.MultiDexFileBytes;
+import com.baidu.titan.dex.extensions.BestEffortMultiDexSplitter;
+import com.baidu.titan.dex.node.DexClassPoolNode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * boot class path转换为dex之后的缓存
+ *
+ * 首次解析jar之后，将library class pool以dex格式写入缓存文件，后续构建直接解析缓存中的dex，
+ * 省去读取jar及class到dex的转换。缓存中只保存class本身，读取后的class pool与解析jar的结果相同，
+ * 父类、子类及接口层级信息仍由调用方通过ApplicationDexPool.fillClassHierarchy重新计算。
+ *
+ * 缓存文件以boot class path中各文件的路径、长度及修改时间的hash命名，不读取jar的内容，
+ * jar被替换时长度或修改时间随之变化，对应一个新的缓存文件。
+ *
+ * 缓存文件格式：magic | version | dex个数 | (dex id | dex长度 | dex内容)*
+ *
+ * @since 2026/10/18
+ */
+public class LibraryDexCache {
+
+    private static final int MAGIC = 0x544C5053;
+
+    private static final int VERSION = 1;
+
+    private static final String CACHE_PREFIX = "library-";
+
+    private static final String CACHE_SUFFIX = ".dexcache";
+
+    /**
+     * 填充appPool的library class pool，优先使用缓存
+     *
+     * @param appPool 待填充的class pool
+     * @param bootClassPath boot class path
+     * @param cacheDir 缓存目录，为null时直接解析jar
+     * @return 填充是否成功
+     */
+    public static boolean fillLibraryPool(ApplicationDexPool appPool, List<File> bootClassPath,
+                                          File cacheDir) {
+        if (cacheDir == null) {
+            return fillFromJars(appPool, bootClassPath);
+        }
+
+        File cacheFile = new File(cacheDir, CACHE_PREFIX + VERSION + "-"
+                + TitanHashs.classPathHash(bootClassPath) + CACHE_SUFFIX);
+
+        if (cacheFile.exists()) {
+            Map<Integer, byte[]> dexContents = readCache(cacheFile);
+            if (dexContents != null) {
+                appPool.fillLibraryDexs(dexContents);
+                return true;
+            }
+            cacheFile.delete();
+        }
+
+        if (!fillFromJars(appPool, bootClassPath)) {
+            return false;
+        }
+        writeCache(appPool, cacheFile);
+        return true;
+    }
+
+    private static boolean fillFromJars(ApplicationDexPool appPool, List<File> bootClassPath) {
+        for (File libraryFile : bootClassPath) {
+            if (!appPool.fillLibraryJar(libraryFile)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return dex id -> dex内容，缓存无效时返回null
+     */
+    private static Map<Integer, byte[]> readCache(File cacheFile) {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            int dexCount = in.readInt();
+            Map<Integer, byte[]> dexContents = new TreeMap<>();
+            for (int i = 0; i < dexCount; i++) {
+                int dexId = in.readInt();
+                byte[] content = new byte[in.readInt()];
+                in.readFully(content);
+                dexContents.put(dexId, content);
+            }
+            return dexContents;
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static void writeCache(ApplicationDexPool appPool, File cacheFile) {
+        // 跳过ApplicationDexPool构造时添加的基本类型
+        DexClassPoolNode libraryClasses = new DexClassPoolNode();
+        appPool.getLibraryClassPool().forEach(dcn -> {
+            if (!dcn.type.isPrimitiveType()) {
+                libraryClasses.addClass(dcn);
+            }
+        });
+
+        File tmpFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+        try {
+            BestEffortMultiDexSplitter splitter = new BestEffortMultiDexSplitter(
+                    libraryClasses, Collections.emptySet(), false);
+            splitter.split();
+            MultiDexFileBytes dexBytes =
+                    ConcurrentMultiDexWriter.write(splitter.getMultiDexFileNode(), 1);
+            Map<Integer, byte[]> dexContents = new TreeMap<>();
+            dexBytes.forEach((dexId, bytes) -> dexContents.put(dexId, bytes.getDexFileBytes()));
+
+            cacheFile.getParentFile().mkdirs();
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(dexContents.size());
+                for (Map.Entry<Integer, byte[]> entry : dexContents.entrySet()) {
+                    out.writeInt(entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    out.write(entry.getValue());
+                }
+            }
+            if (!tmpFile.renameTo(cacheFile)) {
+                tmpFile.delete();
+            }
+        } catch (IOException | RuntimeException e) {
+            // 缓存只用于加速，写入失败不影响本次结果
+            e.printStackTrace();
+            tmpFile.delete();
+        }
+    }
+
+}
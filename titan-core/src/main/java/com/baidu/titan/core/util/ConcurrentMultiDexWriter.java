@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.util;
+
+import com.baidu.titan.dex.MultiDexFileBytes;
+import com.baidu.titan.dex.node.DexFileNode;
+import com.baidu.titan.dex.node.MultiDexFileNode;
+import com.baidu.titan.dex.visitor.MultiDexFileNodeVisitor;
+import com.baidu.titan.dex.writer.MultiDexFileWriter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 将MultiDexFileNode写为MultiDexFileBytes，每个DexFileNode在独立的线程中编码。
+ *
+ * 各dex的编码互不依赖，MultiDexFileWriter按dex id保存编码结果，因此输出与线程完成的先后顺序无关，
+ * 与单线程写入结果一致。
+ *
+ * @since 2026/10/18
+ */
+public class ConcurrentMultiDexWriter {
+
+    /**
+     * @param mdfn 待写入的dex集合
+     * @param threadCount 写入线程数，小于等于1或者只有一个dex时单线程写入
+     * @return 写入结果
+     */
+    public static MultiDexFileBytes write(MultiDexFileNode mdfn, int threadCount) {
+        MultiDexFileWriter writer = new MultiDexFileWriter();
+        int workerCount = Math.min(threadCount, getDexFileCount(mdfn));
+        if (workerCount <= 1) {
+            mdfn.accept(writer);
+            return writer.getMultiDexFileBytes();
+        }
+
+        ExecutorService executors = Executors.newFixedThreadPool(workerCount);
+        try {
+            mdfn.accept(writer, executors);
+        } finally {
+            executors.shutdown();
+        }
+        return writer.getMultiDexFileBytes();
+    }
+
+    private static int getDexFileCount(MultiDexFileNode mdfn) {
+        int[] count = new int[1];
+        mdfn.accept(new MultiDexFileNodeVisitor() {
+            @Override
+            public void visitDexFile(int dexId, DexFileNode dfn) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+}
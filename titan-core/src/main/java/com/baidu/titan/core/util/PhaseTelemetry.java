@@ -0,0 +1,378 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.util;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 构建各阶段的耗时及内存统计，输出为json，用于跟踪不同版本之间的构建性能变化。
+ *
+ * 每个阶段记录：
+ * wallTimeMs 墙钟时间；
+ * cpuTimeMs 阶段内各java线程CPU时间之和，包括并发阶段的工作线程，不包括GC、JIT等虚拟机内部线程，
+ * 阶段结束前已退出的线程不计入，不支持时为-1；
+ * allocatedBytes 阶段内所有线程分配的内存之和，包括并发阶段的工作线程，
+ * 阶段结束前已退出的线程不计入，不支持时为-1；
+ * peakHeapBytes 各堆内存区的峰值之和。不重置内存区峰值，避免影响同一进程中的其他统计，
+ * 内存区峰值在阶段内上涨时取新的峰值，否则取阶段开始和结束时已用内存的较大值，此时是阶段内峰值的下限；
+ * 同一进程中同时运行的其他任务（如gradle daemon中的其他task）的线程同样会被计入；
+ * classCount 阶段处理的类个数，没有时为-1。
+ *
+ * 另外可以记录不属于某个阶段的计数，如增量插桩复用的类个数，输出到counters中。
+ *
+ * 阶段按顺序依次记录，不支持嵌套，需要在同一个线程中调用begin和end。
+ *
+ * @since 2026/10/18
+ */
+public class PhaseTelemetry {
+
+    /** 插桩统计文件名，输出到插桩工作目录 */
+    public static final String INSTRUMENT_FILE_NAME = "instrument-telemetry.json";
+
+    /** patch生成统计文件名，输出到patch工作目录 */
+    public static final String PATCH_FILE_NAME = "patch-telemetry.json";
+
+    private final String mName;
+
+    private final long mStartTimeMillis = System.currentTimeMillis();
+
+    private final List<PhaseRecord> mPhases = Collections.synchronizedList(new ArrayList<>());
+
+    private final Map<String, Long> mCounters = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    public PhaseTelemetry(String name) {
+        this.mName = name;
+    }
+
+    /**
+     * 单个阶段的统计结果
+     */
+    public static class PhaseRecord {
+
+        public final String name;
+
+        public long wallTimeMs;
+
+        public long cpuTimeMs;
+
+        public long allocatedBytes;
+
+        public long peakHeapBytes;
+
+        public long classCount;
+
+        public PhaseRecord(String name) {
+            this.name = name;
+        }
+
+        public JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("name", name);
+            json.put("wallTimeMs", wallTimeMs);
+            json.put("cpuTimeMs", cpuTimeMs);
+            json.put("allocatedBytes", allocatedBytes);
+            json.put("peakHeapBytes", peakHeapBytes);
+            json.put("classCount", classCount);
+            return json;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: wall %d ms, cpu %d ms, alloc %d KB, peak heap %d KB, classes %d",
+                    name, wallTimeMs, cpuTimeMs, allocatedBytes / 1024, peakHeapBytes / 1024,
+                    classCount);
+        }
+    }
+
+    /**
+     * 正在进行的阶段
+     */
+    public final class Phase {
+
+        private final String mPhaseName;
+
+        private final long mStartNanos;
+
+        /** 阶段开始时各存活线程的CPU时间，key为线程id，不支持时为null */
+        private final Map<Long, Long> mStartCpuNanos;
+
+        /** 阶段开始时各堆内存区的峰值及已用内存 */
+        private final List<HeapPoolUsage> mStartHeapUsages;
+
+        /** 阶段开始时各存活线程已分配的内存，key为线程id，不支持时为null */
+        private final Map<Long, Long> mStartAllocatedBytes;
+
+        private boolean mEnded;
+
+        private Phase(String phaseName) {
+            this.mPhaseName = phaseName;
+            this.mStartHeapUsages = getHeapUsages();
+            this.mStartAllocatedBytes = getAllocatedBytes();
+            this.mStartCpuNanos = getCpuTimeNanos();
+            this.mStartNanos = System.nanoTime();
+        }
+
+        public PhaseRecord end() {
+            return end(-1);
+        }
+
+        /**
+         * 结束当前阶段，重复调用时只记录第一次
+         *
+         * @param classCount 阶段处理的类个数
+         * @return 阶段统计结果
+         */
+        public PhaseRecord end(long classCount) {
+            long wallNanos = System.nanoTime() - mStartNanos;
+            long cpuNanos = sumSince(mStartCpuNanos, getCpuTimeNanos());
+
+            PhaseRecord record = new PhaseRecord(mPhaseName);
+            record.wallTimeMs = wallNanos / 1000000;
+            record.cpuTimeMs = cpuNanos < 0 ? -1 : cpuNanos / 1000000;
+            record.allocatedBytes = sumSince(mStartAllocatedBytes, getAllocatedBytes());
+            record.peakHeapBytes = getHeapPeakSince(mStartHeapUsages);
+            record.classCount = classCount;
+
+            if (!mEnded) {
+                mEnded = true;
+                mPhases.add(record);
+            }
+            return record;
+        }
+    }
+
+    /**
+     * 开始一个阶段
+     *
+     * @param phaseName 阶段名
+     * @return 调用end结束阶段
+     */
+    public Phase begin(String phaseName) {
+        return new Phase(phaseName);
+    }
+
+    /**
+     * 记录计数，同名的计数会被覆盖
+     *
+     * @param name 计数名
+     * @param value 计数值
+     */
+    public void setCounter(String name, long value) {
+        mCounters.put(name, value);
+    }
+
+    public Map<String, Long> getCounters() {
+        synchronized (mCounters) {
+            return new LinkedHashMap<>(mCounters);
+        }
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public List<PhaseRecord> getPhases() {
+        synchronized (mPhases) {
+            return new ArrayList<>(mPhases);
+        }
+    }
+
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("name", mName);
+        json.put("startTime", mStartTimeMillis);
+        json.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+        json.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        JSONArray phases = new JSONArray();
+        long totalWallTimeMs = 0;
+        for (PhaseRecord record : getPhases()) {
+            phases.put(record.toJson());
+            totalWallTimeMs += record.wallTimeMs;
+        }
+        json.put("totalWallTimeMs", totalWallTimeMs);
+        json.put("phases", phases);
+        JSONObject counters = new JSONObject();
+        getCounters().forEach(counters::put);
+        json.put("counters", counters);
+        return json;
+    }
+
+    /**
+     * 输出为json文件，统计信息不影响构建结果，写入失败时只打印异常
+     *
+     * @param file 输出文件
+     * @return 是否写入成功
+     */
+    public boolean writeTo(File file) {
+        File parent = file.getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8)) {
+            writer.write(toJson().toString(2));
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(mName).append(" telemetry");
+        for (PhaseRecord record : getPhases()) {
+            sb.append("\n    ").append(record);
+        }
+        getCounters().forEach((name, value) ->
+                sb.append("\n    ").append(name).append(": ").append(value));
+        return sb.toString();
+    }
+
+    /**
+     * @return 各存活线程的CPU时间，key为线程id，不支持时返回null
+     */
+    private static Map<Long, Long> getCpuTimeNanos() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!threadBean.isThreadCpuTimeSupported() || !threadBean.isThreadCpuTimeEnabled()) {
+            return null;
+        }
+        long[] threadIds = threadBean.getAllThreadIds();
+        Map<Long, Long> result = new HashMap<>();
+        for (long threadId : threadIds) {
+            // 获取过程中退出的线程返回-1
+            long cpuTime = threadBean.getThreadCpuTime(threadId);
+            if (cpuTime >= 0) {
+                result.put(threadId, cpuTime);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return 各存活线程已分配的内存，key为线程id，不支持时返回null
+     */
+    private static Map<Long, Long> getAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreadBean =
+                    (com.sun.management.ThreadMXBean) threadBean;
+            if (sunThreadBean.isThreadAllocatedMemorySupported()
+                    && sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+                long[] threadIds = sunThreadBean.getAllThreadIds();
+                long[] allocatedBytes = sunThreadBean.getThreadAllocatedBytes(threadIds);
+                Map<Long, Long> result = new HashMap<>();
+                for (int i = 0; i < threadIds.length; i++) {
+                    // 获取过程中退出的线程返回-1
+                    if (allocatedBytes[i] >= 0) {
+                        result.put(threadIds[i], allocatedBytes[i]);
+                    }
+                }
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按线程累加阶段开始后的增量，阶段内新建的线程从0开始计算
+     *
+     * @param start 阶段开始时各线程的值
+     * @param end 阶段结束时各线程的值
+     * @return 增量之和，不支持时返回-1
+     */
+    private static long sumSince(Map<Long, Long> start, Map<Long, Long> end) {
+        if (start == null || end == null) {
+            return -1;
+        }
+        long sum = 0;
+        for (Map.Entry<Long, Long> entry : end.entrySet()) {
+            Long startValue = start.get(entry.getKey());
+            sum += entry.getValue() - (startValue == null ? 0 : startValue);
+        }
+        return sum;
+    }
+
+    /**
+     * 单个堆内存区的峰值及已用内存
+     */
+    private static class HeapPoolUsage {
+
+        final MemoryPoolMXBean pool;
+
+        final long peakUsed;
+
+        final long used;
+
+        HeapPoolUsage(MemoryPoolMXBean pool) {
+            this.pool = pool;
+            MemoryUsage peakUsage = pool.getPeakUsage();
+            MemoryUsage usage = pool.getUsage();
+            this.peakUsed = peakUsage == null ? 0 : peakUsage.getUsed();
+            this.used = usage == null ? 0 : usage.getUsed();
+        }
+    }
+
+    private static List<HeapPoolUsage> getHeapUsages() {
+        List<HeapPoolUsage> usages = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                usages.add(new HeapPoolUsage(pool));
+            }
+        }
+        return usages;
+    }
+
+    /**
+     * 不重置内存区峰值，按阶段开始时记录的峰值判断峰值是否出现在阶段内
+     */
+    private static long getHeapPeakSince(List<HeapPoolUsage> startUsages) {
+        long peak = 0;
+        for (HeapPoolUsage start : startUsages) {
+            if (!start.pool.isValid()) {
+                continue;
+            }
+            HeapPoolUsage end = new HeapPoolUsage(start.pool);
+            if (end.peakUsed > start.peakUsed) {
+                peak += end.peakUsed;
+            } else {
+                peak += Math.max(start.used, end.used);
+            }
+        }
+        return peak;
+    }
+
+}
@@ -18,6 +18,12 @@ package com.baidu.titan.core.util;
 
 import com.baidu.titan.dex.DexType;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
 /**
  * Titan相关的Hash函数工具类
  *
@@ -45,4 +51,32 @@ public class TitanHashs {
         return hash;
     }
 
+    /**
+     * 计算class path的hash，用于判断boot class path是否变化。
+     *
+     * 只使用各文件的路径、长度及修改时间，不读取文件内容，每次构建的开销与文件大小无关。
+     *
+     * @param classPath class path中的文件
+     * @return 十六进制的SHA-256
+     */
+    public static String classPathHash(List<File> classPath) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        if (classPath != null) {
+            for (File file : classPath) {
+                String entry = file.getAbsolutePath() + ";" + file.length() + ";" + file.lastModified() + "\n";
+                digest.update(entry.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
 }
@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.tests;
+
+import com.baidu.titan.core.component.BinaryManifestReader;
+import com.baidu.titan.core.util.Utils;
+
+import org.dom4j.Document;
+import org.dom4j.Element;
+import org.dom4j.io.SAXReader;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * BinaryManifestReader的测试，在测试中生成二进制AndroidManifest.xml，
+ * 与解析Apktool输出的AndroidManifest.xml（XPath）的结果比较
+ *
+ * @since 2026/10/18
+ */
+public class BinaryManifestReaderTest {
+
+    private static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+
+    private static final int ATTR_NAME_RES_ID = 0x01010003;
+
+    private static final String[] COMPONENT_TYPES = {"activity", "service", "receiver", "provider"};
+
+    /** Apktool输出的AndroidManifest.xml，与fixture生成的二进制manifest内容相同 */
+    private static final String MANIFEST_XML =
+            "<manifest xmlns:android=\"" + ANDROID_NS + "\" package=\"com.example\">\n"
+            + "  <application android:name=\"com.example.App\">\n"
+            + "    <activity android:name=\"com.example.MainActivity\">\n"
+            + "      <intent-filter>\n"
+            + "        <activity android:name=\"com.example.Nested\"/>\n"
+            + "      </intent-filter>\n"
+            + "    </activity>\n"
+            + "    <activity android:name=\"com.example.DetailActivity\"/>\n"
+            + "    <service android:name=\"com.example.Svc\"/>\n"
+            + "    <receiver android:name=\"com.example.Rcv\"/>\n"
+            + "    <provider android:name=\"com.example.Prov\"/>\n"
+            + "    <meta-data android:name=\"com.example.Meta\"/>\n"
+            + "  </application>\n"
+            + "</manifest>\n";
+
+    @Rule
+    public TemporaryFolder mTempFolder = new TemporaryFolder();
+
+    @Test
+    public void testUtf16() throws Exception {
+        assertSameAsXPath(newFixture(false, false, true));
+    }
+
+    @Test
+    public void testUtf8() throws Exception {
+        assertSameAsXPath(newFixture(true, false, true));
+    }
+
+    @Test
+    public void testStrippedAttributeName() throws Exception {
+        assertSameAsXPath(newFixture(false, true, true));
+        assertSameAsXPath(newFixture(true, true, true));
+    }
+
+    @Test
+    public void testNoResourceMap() throws Exception {
+        assertSameAsXPath(newFixture(false, false, false));
+        assertSameAsXPath(newFixture(true, false, false));
+    }
+
+    @Test
+    public void testRelativeClassName() throws Exception {
+        ManifestBuilder builder = new ManifestBuilder(true, false, true);
+        builder.startElement("manifest", null, "package", "com.example");
+        builder.startElement("application", ANDROID_NS, "name", ".App");
+        builder.startElement("activity", ANDROID_NS, "name", ".SecondActivity");
+        builder.endElement("activity");
+        builder.startElement("service", ANDROID_NS, "name", "com.other.Svc");
+        builder.endElement("service");
+        builder.endElement("application");
+        builder.endElement("manifest");
+
+        Map<String, List<String>> components = read(builder.build());
+        Assert.assertEquals(Arrays.asList("Lcom/example/SecondActivity;"),
+                components.get("activity"));
+        Assert.assertEquals(Arrays.asList("Lcom/other/Svc;"), components.get("service"));
+    }
+
+    @Test
+    public void testNoManifest() throws Exception {
+        File apkFile = mTempFolder.newFile("empty.apk");
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(apkFile))) {
+            zos.putNextEntry(new ZipEntry("classes.dex"));
+            zos.closeEntry();
+        }
+        Assert.assertFalse(BinaryManifestReader.fillComponentsInfo(apkFile, new HashMap<>()));
+    }
+
+    /**
+     * 生成与MANIFEST_XML内容相同的二进制manifest
+     *
+     * @param utf8 字符串池是否使用utf-8编码
+     * @param stripName 是否移除android:name的属性名，模拟资源混淆
+     * @param resourceMap 是否包含resource map
+     */
+    private static byte[] newFixture(boolean utf8, boolean stripName, boolean resourceMap) {
+        ManifestBuilder builder = new ManifestBuilder(utf8, stripName, resourceMap);
+        builder.startElement("manifest", null, "package", "com.example");
+        builder.startElement("application", ANDROID_NS, "name", "com.example.App");
+        builder.startElement("activity", ANDROID_NS, "name", "com.example.MainActivity");
+        builder.startElement("intent-filter", null, null, null);
+        builder.startElement("activity", ANDROID_NS, "name", "com.example.Nested");
+        builder.endElement("activity");
+        builder.endElement("intent-filter");
+        builder.endElement("activity");
+        builder.startElement("activity", ANDROID_NS, "name", "com.example.DetailActivity");
+        builder.endElement("activity");
+        builder.startElement("service", ANDROID_NS, "name", "com.example.Svc");
+        builder.endElement("service");
+        builder.startElement("receiver", ANDROID_NS, "name", "com.example.Rcv");
+        builder.endElement("receiver");
+        builder.startElement("provider", ANDROID_NS, "name", "com.example.Prov");
+        builder.endElement("provider");
+        builder.startElement("meta-data", ANDROID_NS, "name", "com.example.Meta");
+        builder.endElement("meta-data");
+        builder.endElement("application");
+        builder.endElement("manifest");
+        return builder.build();
+    }
+
+    private void assertSameAsXPath(byte[] manifestBytes) throws Exception {
+        Map<String, List<String>> expected = readByXPath(MANIFEST_XML);
+        Map<String, List<String>> actual = read(manifestBytes);
+        for (String componentType : COMPONENT_TYPES) {
+            Assert.assertEquals(componentType,
+                    expected.get(componentType), actual.get(componentType));
+        }
+        Assert.assertEquals(Arrays.asList("Lcom/example/MainActivity;",
+                "Lcom/example/DetailActivity;"), actual.get("activity"));
+    }
+
+    private Map<String, List<String>> read(byte[] manifestBytes) throws IOException {
+        File apkFile = mTempFolder.newFile();
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(apkFile))) {
+            zos.putNextEntry(new ZipEntry("AndroidManifest.xml"));
+            zos.write(manifestBytes);
+            zos.closeEntry();
+        }
+        Map<String, List<String>> components = new HashMap<>();
+        Assert.assertTrue(BinaryManifestReader.fillComponentsInfo(apkFile, components));
+        return components;
+    }
+
+    /**
+     * 与InstrumentMain中解析Apktool输出的AndroidManifest.xml的方式相同
+     */
+    private static Map<String, List<String>> readByXPath(String manifestXml) throws Exception {
+        Document document = new SAXReader().read(new StringReader(manifestXml));
+        Map<String, List<String>> components = new HashMap<>();
+        for (String componentType : COMPONENT_TYPES) {
+            List<String> types = new ArrayList<>();
+            for (Object node : document.selectNodes("/manifest/application/" + componentType)) {
+                String className = ((Element) node).attribute("name").getValue();
+                types.add(Utils.classNameToTypeDesc(className));
+            }
+            components.put(componentType, types);
+        }
+        return components;
+    }
+
+    /**
+     * 按aapt的格式生成二进制xml，属性值只支持字符串
+     */
+    private static class ManifestBuilder {
+
+        private final boolean mUtf8;
+
+        private final boolean mResourceMap;
+
+        private final List<String> mStrings = new ArrayList<>();
+
+        private final ByteArrayOutputStream mChunks = new ByteArrayOutputStream();
+
+        ManifestBuilder(boolean utf8, boolean stripName, boolean resourceMap) {
+            this.mUtf8 = utf8;
+            this.mResourceMap = resourceMap;
+            // 与aapt一致，带资源id的属性名在字符串池最前面，与resource map一一对应
+            mStrings.add(stripName ? "" : "name");
+            writeNamespace();
+        }
+
+        private int stringIndex(String s) {
+            if (s == null) {
+                return -1;
+            }
+            int index = mStrings.indexOf(s);
+            if (index < 0) {
+                index = mStrings.size();
+                mStrings.add(s);
+            }
+            return index;
+        }
+
+        private void writeNamespace() {
+            ByteBuffer chunk = newChunk(0x0100, 16, 24);
+            chunk.putInt(1);
+            chunk.putInt(-1);
+            chunk.putInt(stringIndex("android"));
+            chunk.putInt(stringIndex(ANDROID_NS));
+            write(chunk);
+        }
+
+        void startElement(String name, String attrNs, String attrName, String attrValue) {
+            int attrCount = attrName != null ? 1 : 0;
+            ByteBuffer chunk = newChunk(0x0102, 16, 16 + 20 + attrCount * 20);
+            chunk.putInt(1);
+            chunk.putInt(-1);
+            chunk.putInt(-1);
+            chunk.putInt(stringIndex(name));
+            chunk.putShort((short) 20);
+            chunk.putShort((short) 20);
+            chunk.putShort((short) attrCount);
+            chunk.putShort((short) 0);
+            chunk.putShort((short) 0);
+            chunk.putShort((short) 0);
+            if (attrCount > 0) {
+                int valueIndex = stringIndex(attrValue);
+                chunk.putInt(stringIndex(attrNs));
+                chunk.putInt(ANDROID_NS.equals(attrNs) && "name".equals(attrName)
+                        ? 0 : stringIndex(attrName));
+                chunk.putInt(valueIndex);
+                chunk.putShort((short) 8);
+                chunk.put((byte) 0);
+                // TYPE_STRING
+                chunk.put((byte) 0x03);
+                chunk.putInt(valueIndex);
+            }
+            write(chunk);
+        }
+
+        void endElement(String name) {
+            ByteBuffer chunk = newChunk(0x0103, 16, 24);
+            chunk.putInt(1);
+            chunk.putInt(-1);
+            chunk.putInt(-1);
+            chunk.putInt(stringIndex(name));
+            write(chunk);
+        }
+
+        byte[] build() {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            writeTo(body, stringPool());
+            if (mResourceMap) {
+                ByteBuffer resourceMap = newChunk(0x0180, 8, 12);
+                resourceMap.putInt(ATTR_NAME_RES_ID);
+                writeTo(body, resourceMap);
+            }
+            byte[] chunks = mChunks.toByteArray();
+            body.write(chunks, 0, chunks.length);
+
+            ByteBuffer header = newChunk(0x0003, 8, 8 + body.size());
+            ByteArrayOutputStream file = new ByteArrayOutputStream();
+            file.write(header.array(), 0, 8);
+            byte[] bodyBytes = body.toByteArray();
+            file.write(bodyBytes, 0, bodyBytes.length);
+            return file.toByteArray();
+        }
+
+        private ByteBuffer stringPool() {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            int[] offsets = new int[mStrings.size()];
+            for (int i = 0; i < mStrings.size(); i++) {
+                offsets[i] = data.size();
+                String s = mStrings.get(i);
+                if (mUtf8) {
+                    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                    data.write(s.length());
+                    data.write(bytes.length);
+                    data.write(bytes, 0, bytes.length);
+                    data.write(0);
+                } else {
+                    byte[] bytes = s.getBytes(StandardCharsets.UTF_16LE);
+                    data.write(s.length() & 0xFF);
+                    data.write(s.length() >> 8);
+                    data.write(bytes, 0, bytes.length);
+                    data.write(0);
+                    data.write(0);
+                }
+            }
+            while (data.size() % 4 != 0) {
+                data.write(0);
+            }
+            int headerSize = 28;
+            int stringsStart = headerSize + offsets.length * 4;
+            ByteBuffer chunk = newChunk(0x0001, headerSize, stringsStart + data.size());
+            chunk.putInt(offsets.length);
+            chunk.putInt(0);
+            chunk.putInt(mUtf8 ? 1 << 8 : 0);
+            chunk.putInt(stringsStart);
+            chunk.putInt(0);
+            for (int offset : offsets) {
+                chunk.putInt(offset);
+            }
+            chunk.put(data.toByteArray());
+            return chunk;
+        }
+
+        private static ByteBuffer newChunk(int type, int headerSize, int size) {
+            ByteBuffer chunk = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+            chunk.putShort((short) type);
+            chunk.putShort((short) headerSize);
+            chunk.putInt(size);
+            return chunk;
+        }
+
+        private void write(ByteBuffer chunk) {
+            writeTo(mChunks, chunk);
+        }
+
+        private static void writeTo(ByteArrayOutputStream out, ByteBuffer chunk) {
+            out.write(chunk.array(), 0, chunk.capacity());
+        }
+    }
+
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.tests;
+
+import com.baidu.titan.core.TitanDexItemFactory;
+import com.baidu.titan.core.patch.PatchArgument;
+import com.baidu.titan.core.patch.PatchPolicy;
+import com.baidu.titan.core.patch.full.generator.RedirectToBuddyInterceptorGenerator;
+import com.baidu.titan.core.patch.light.LightPatch;
+import com.baidu.titan.core.pool.DexClassPoolFiller;
+import com.baidu.titan.dex.DexConst;
+import com.baidu.titan.dex.DexRegisterList;
+import com.baidu.titan.dex.node.DexClassNode;
+import com.baidu.titan.dex.node.DexClassPoolNode;
+import com.baidu.titan.dex.node.DexCodeNode;
+import com.baidu.titan.dex.node.DexMethodNode;
+import com.baidu.titan.dex.node.DexNamedProtoNode;
+import com.baidu.titan.dex.node.MultiDexFileNode;
+import com.baidu.titan.dex.reader.MultiDexFileReader;
+import com.baidu.titan.dex.visitor.DexCodeVisitor;
+import com.baidu.titan.dex.visitor.DexLabel;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * LightPatch及FullPatch生成的interceptor中，hasCommonIntercept返回true的method id
+ * 需要与invokeCommon中派发的method id完全一致，否则插桩代码会跳过被修复的方法或者多余地创建参数数组
+ *
+ * @since 2026/10/18
+ */
+public class CommonInterceptDispatchTest {
+
+    private static final File INPUT_DIR =
+            new File("src/test/smali/lightpatch/t009-unchanged-class/input");
+
+    private static final String CLASS_TYPE = "Lcom/baidu/titan/sample/UnchangeClass;";
+
+    /** 修改的方法，前三个通过invokeCommon派发，invoke(I)V通过invokeI派发 */
+    private static final String[] CHANGED_METHODS = {
+            ".method invoke(C)V",
+            ".method invoke(D)V",
+            ".method static invokeStatic(S)V",
+            ".method invoke(I)V"
+    };
+
+    private static final Pattern REGISTERS_PATTERN = Pattern.compile("\\.registers (\\d+)");
+
+    @Test
+    public void testLightPatch() throws Exception {
+        File tmpDir = new File(System.getProperty("java.io.tmpdir"),
+                "titan-test-common-intercept/light");
+        File newDir = new File(tmpDir, "new");
+        newDir.mkdirs();
+
+        String smali = new String(Files.readAllBytes(
+                new File(INPUT_DIR, "new/UnchangeClass.smali").toPath()), StandardCharsets.UTF_8);
+        for (String method : CHANGED_METHODS) {
+            smali = changeMethodCode(smali, method);
+        }
+        Files.write(new File(newDir, "UnchangeClass.smali").toPath(),
+                smali.getBytes(StandardCharsets.UTF_8));
+
+        PatchArgument argument = new PatchArgument();
+        argument.setPatchPolicy(PatchPolicy.PATCH_POLICY_LIGHT_ONLY);
+        argument.setBootClassPath(TestUtil.getBootClassPath());
+        argument.oldProject.setOldOrgDexs(TestUtil.readSmali(new File(INPUT_DIR, "old"), tmpDir));
+        argument.oldProject.setOldInstrumentedDexs(
+                TestUtil.readSmali(new File(INPUT_DIR, "old-instrumented"), tmpDir));
+        argument.newProject.setNewOrgDexs(TestUtil.readSmali(newDir, tmpDir));
+
+        LightPatch lp = new LightPatch(argument);
+        lp.analyze();
+        lp.doPatch();
+
+        DexClassPoolNode patchPool = new DexClassPoolNode();
+        lp.getOutputs().accept(new DexClassPoolFiller(patchPool));
+
+        List<DexClassNode> interceptors = new ArrayList<>();
+        patchPool.forEach(dcn -> {
+            if (findMethod(dcn, "hasCommonIntercept") != null) {
+                interceptors.add(dcn);
+            }
+        });
+        Assert.assertEquals(1, interceptors.size());
+        // invoke(I)V通过invokeI派发，不在invokeCommon中
+        Assert.assertEquals(3, assertSameMethodIds(interceptors.get(0)).size());
+    }
+
+    @Test
+    public void testFullPatch() throws Exception {
+        File tmpDir = new File(System.getProperty("java.io.tmpdir"),
+                "titan-test-common-intercept/full");
+        tmpDir.mkdirs();
+
+        TitanDexItemFactory factory = new TitanDexItemFactory();
+        MultiDexFileReader mdfr = new MultiDexFileReader(factory);
+        TestUtil.readSmali(new File(INPUT_DIR, "old-instrumented"), tmpDir)
+                .forEach((dexId, dexFileBytes) ->
+                        mdfr.addDexContent(dexId, dexFileBytes.getDexFileBytes()));
+        MultiDexFileNode mdfn = new MultiDexFileNode();
+        mdfr.accept(mdfn.asVisitor());
+        DexClassPoolNode instrumentedPool = new DexClassPoolNode();
+        mdfn.accept(new DexClassPoolFiller(instrumentedPool));
+
+        DexClassNode[] instrumentedClass = new DexClassNode[1];
+        instrumentedPool.forEach(dcn -> {
+            if (CLASS_TYPE.equals(dcn.type.toTypeDescriptor())) {
+                instrumentedClass[0] = dcn;
+            }
+        });
+        Assert.assertNotNull(instrumentedClass[0]);
+
+        RedirectToBuddyInterceptorGenerator generator = new RedirectToBuddyInterceptorGenerator(
+                instrumentedClass[0].type,
+                factory.createType("Lcom/baidu/titan/sample/UnchangeClass$iter;"),
+                factory.createType("Lcom/baidu/titan/sample/UnchangeClass$buddy;"),
+                factory.createType("Lcom/baidu/titan/sample/UnchangeClass$genesis;"),
+                factory,
+                instrumentedClass[0]);
+        for (DexMethodNode dmn : instrumentedClass[0].getMethods()) {
+            String name = dmn.name.toString();
+            if (!name.equals("<init>") && !name.equals("<clinit>")) {
+                generator.addInterceptMethod(
+                        new DexNamedProtoNode(dmn.name, dmn.parameters, dmn.returnType));
+            }
+        }
+
+        DexClassNode interceptor = generator.generate();
+        Assert.assertFalse(assertSameMethodIds(interceptor).isEmpty());
+    }
+
+    /**
+     * @return invokeCommon中派发的method id
+     */
+    private static Set<Integer> assertSameMethodIds(DexClassNode interceptor) {
+        Set<Integer> interceptIds = getDispatchedIds(findMethod(interceptor, "hasCommonIntercept"));
+        Set<Integer> dispatchIds = getDispatchedIds(findMethod(interceptor, "invokeCommon"));
+        Assert.assertEquals(dispatchIds, interceptIds);
+        return dispatchIds;
+    }
+
+    private static DexMethodNode findMethod(DexClassNode dcn, String name) {
+        for (DexMethodNode dmn : dcn.getMethods()) {
+            if (dmn.name.toString().equals(name)) {
+                return dmn;
+            }
+        }
+        return null;
+    }
+
+    private static Set<Integer> getDispatchedIds(DexMethodNode dmn) {
+        Assert.assertNotNull(dmn);
+        DispatchRecorder recorder = new DispatchRecorder();
+        dmn.getCode().accept(recorder);
+        Assert.assertNotNull(dmn.name.toString(), recorder.keys);
+        return recorder.getDispatchedIds();
+    }
+
+    /**
+     * 修改方法代码，在return-void之前增加一条指令
+     */
+    private static String changeMethodCode(String smali, String methodHeader) {
+        int start = smali.indexOf(methodHeader + "\n");
+        Assert.assertTrue(methodHeader, start >= 0);
+        int end = smali.indexOf(".end method", start);
+        String method = smali.substring(start, end);
+
+        Matcher matcher = REGISTERS_PATTERN.matcher(method);
+        Assert.assertTrue(methodHeader, matcher.find());
+        int registers = Integer.parseInt(matcher.group(1));
+        // 增加一个寄存器，参数寄存器后移，v0可以作为局部寄存器使用
+        String changed = matcher.replaceFirst(".registers " + (registers + 1))
+                .replace("    return-void", "    const/4 v0, 0x1\n\n    return-void");
+        return smali.substring(0, start) + changed + smali.substring(end);
+    }
+
+    /**
+     * 记录switch指令，紧跟在switch之后的label为未命中时的目标，跳转到该label的key不属于派发的method id
+     */
+    private static class DispatchRecorder extends DexCodeVisitor {
+
+        int[] keys;
+
+        DexLabel[] targets;
+
+        DexLabel fallThroughLabel;
+
+        boolean afterSwitch;
+
+        DispatchRecorder() {
+            super(new DexCodeNode().asVisitor());
+        }
+
+        @Override
+        public void visitSwitch(int op, DexRegisterList regs, int[] keys, DexLabel[] targets) {
+            Assert.assertNull("more than one switch", this.keys);
+            this.keys = keys;
+            this.targets = targets;
+            this.afterSwitch = true;
+            super.visitSwitch(op, regs, keys, targets);
+        }
+
+        @Override
+        public void visitLabel(DexLabel label) {
+            if (afterSwitch) {
+                fallThroughLabel = label;
+                afterSwitch = false;
+            }
+            super.visitLabel(label);
+        }
+
+        @Override
+        public void visitConstInsn(int op, DexRegisterList regs, DexConst dexConst) {
+            afterSwitch = false;
+            super.visitConstInsn(op, regs, dexConst);
+        }
+
+        @Override
+        public void visitSimpleInsn(int op, DexRegisterList regs) {
+            afterSwitch = false;
+            super.visitSimpleInsn(op, regs);
+        }
+
+        @Override
+        public void visitTargetInsn(int op, DexRegisterList regs, DexLabel label) {
+            afterSwitch = false;
+            super.visitTargetInsn(op, regs, label);
+        }
+
+        Set<Integer> getDispatchedIds() {
+            Set<Integer> ids = new TreeSet<>();
+            for (int i = 0; i < keys.length; i++) {
+                if (targets[i] != fallThroughLabel) {
+                    ids.add(keys[i]);
+                }
+            }
+            return ids;
+        }
+    }
+
+}
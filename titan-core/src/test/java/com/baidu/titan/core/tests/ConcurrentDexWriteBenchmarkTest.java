@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.tests;
+
+import com.baidu.titan.core.util.ConcurrentMultiDexWriter;
+import com.baidu.titan.core.util.ZipUtil;
+import com.baidu.titan.dex.DexItemFactory;
+import com.baidu.titan.dex.MultiDexFileBytes;
+import com.baidu.titan.dex.node.MultiDexFileNode;
+import com.baidu.titan.dex.reader.MultiDexFileReader;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 对比单线程与并发写入dex的耗时，并校验两者输出一致。
+ *
+ * 通过 -Dtitan.benchmark.apk=xxx.apk 指定输入apk，建议使用10个以上dex的apk
+ *
+ * @since 2026/10/18
+ */
+public class ConcurrentDexWriteBenchmarkTest {
+
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void benchmark() throws Exception {
+        String apkPath = System.getProperty("titan.benchmark.apk");
+        Assume.assumeTrue("titan.benchmark.apk unset", apkPath != null);
+
+        MultiDexFileReader reader = new MultiDexFileReader(new DexItemFactory());
+        Map<Integer, byte[]> dexContents = ZipUtil.getDexContentsFromApk(new File(apkPath));
+        dexContents.forEach(reader::addDexContent);
+        MultiDexFileNode mdfn = new MultiDexFileNode();
+        reader.accept(mdfn.asVisitor());
+
+        int threadCount = Runtime.getRuntime().availableProcessors();
+
+        // warm up
+        Map<Integer, byte[]> serialOut = toMap(ConcurrentMultiDexWriter.write(mdfn, 1));
+        Map<Integer, byte[]> concurrentOut = toMap(ConcurrentMultiDexWriter.write(mdfn, threadCount));
+
+        Assert.assertEquals(serialOut.keySet(), concurrentOut.keySet());
+        serialOut.forEach((dexId, bytes) ->
+                Assert.assertArrayEquals("dex " + dexId, bytes, concurrentOut.get(dexId)));
+
+        long serialCost = 0;
+        long concurrentCost = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long begin = System.nanoTime();
+            ConcurrentMultiDexWriter.write(mdfn, 1);
+            serialCost += System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            ConcurrentMultiDexWriter.write(mdfn, threadCount);
+            concurrentCost += System.nanoTime() - begin;
+        }
+
+        System.out.println(String.format("dex count = %d, threads = %d", dexContents.size(),
+                threadCount));
+        System.out.println(String.format("serial avg %d ms, concurrent avg %d ms, speedup %.2fx",
+                serialCost / ROUNDS / 1000000,
+                concurrentCost / ROUNDS / 1000000,
+                (double) serialCost / concurrentCost));
+    }
+
+    private static Map<Integer, byte[]> toMap(MultiDexFileBytes multiDexFileBytes) {
+        Map<Integer, byte[]> result = new TreeMap<>();
+        multiDexFileBytes.forEach((dexId, bytes) -> result.put(dexId, bytes.getDexFileBytes()));
+        return result;
+    }
+
+}
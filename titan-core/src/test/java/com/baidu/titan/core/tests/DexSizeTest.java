@@ -16,9 +16,11 @@
 
 package com.baidu.titan.core.tests;
 
+import com.baidu.titan.core.instrument.InstrumentMain;
 import com.baidu.titan.core.util.ZipUtil;
 import com.baidu.titan.dex.DexConstant;
 import com.baidu.titan.dex.DexItemFactory;
+import com.baidu.titan.dex.MultiDexFileBytes;
 import com.baidu.titan.dex.reader.MultiDexFileReader;
 import com.baidu.titan.dex.visitor.DexAnnotationVisitor;
 import com.baidu.titan.dex.visitor.DexAnnotationVisitorInfo;
@@ -32,6 +34,8 @@ import com.baidu.titan.dex.visitor.DexMethodVisitorInfo;
 import com.baidu.titan.dex.visitor.MultiDexFileVisitor;
 import com.baidu.titan.dex.writer.MultiDexFileWriter;
 
+import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
 import java.io.File;
@@ -44,9 +48,61 @@ import java.util.Map;
 
 public class DexSizeTest {
 
+    private static final int PAGE_SIZE = 4 * 1024;
+
     public DexSizeTest() {
     }
 
+    /**
+     * 对比内联invokeCommon与外置桩方法两种插桩方式的dex体积，
+     * 按4KB页估算冷启动时插桩代码带来的page-in数量。
+     *
+     * 通过 -Dtitan.benchmark.apk=xxx.apk 指定输入apk
+     */
+    @Test
+    public void testInterceptStubSize() throws Exception {
+        String apkPath = System.getProperty("titan.benchmark.apk");
+        Assume.assumeTrue("titan.benchmark.apk unset", apkPath != null);
+
+        MultiDexFileBytes orgDexs = MultiDexFileBytes.createFromZipFile(new File(apkPath));
+        File workDir = new File(System.getProperty("java.io.tmpdir"),
+                "titan-test-stub-size/" + System.nanoTime());
+        workDir.mkdirs();
+
+        long orgSize = getDexSize(orgDexs);
+        long inlineSize = getDexSize(instrument(orgDexs, workDir, false));
+        long stubSize = getDexSize(instrument(orgDexs, workDir, true));
+
+        System.out.println(String.format("origin %d bytes, %d pages", orgSize, toPages(orgSize)));
+        System.out.println(String.format("inline %d bytes, %d pages, +%d bytes",
+                inlineSize, toPages(inlineSize), inlineSize - orgSize));
+        System.out.println(String.format("stub   %d bytes, %d pages, +%d bytes",
+                stubSize, toPages(stubSize), stubSize - orgSize));
+        System.out.println(String.format("stub saves %d bytes (%.1f%% of instrument overhead),"
+                        + " %d pages",
+                inlineSize - stubSize,
+                100.0 * (inlineSize - stubSize) / Math.max(1, inlineSize - orgSize),
+                toPages(inlineSize) - toPages(stubSize)));
+        Assert.assertTrue(stubSize <= inlineSize);
+    }
+
+    private static MultiDexFileBytes instrument(MultiDexFileBytes orgDexs, File workDir,
+                                                boolean interceptStub) {
+        InstrumentMain.Argument argument = TestUtil.newInstrumentArgument(orgDexs, workDir);
+        argument.setInterceptStub(interceptStub);
+        return new InstrumentMain(argument).doInstrument();
+    }
+
+    private static long getDexSize(MultiDexFileBytes dexs) {
+        long[] size = new long[1];
+        dexs.forEach((dexId, bytes) -> size[0] += bytes.getDexFileBytes().length);
+        return size[0];
+    }
+
+    private static long toPages(long size) {
+        return (size + PAGE_SIZE - 1) / PAGE_SIZE;
+    }
+
     @Test
     public void test() throws Exception {
         File apkFile = new File("/Users/zhangdi07/dev/titan/size/release.apk");
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.tests;
+
+import com.baidu.titan.core.patch.light.diff.DexNodeFingerprint;
+import com.baidu.titan.core.pool.DexClassPoolFiller;
+import com.baidu.titan.core.util.ZipUtil;
+import com.baidu.titan.dex.DexAccessFlags;
+import com.baidu.titan.dex.DexFileVersion;
+import com.baidu.titan.dex.DexItemFactory;
+import com.baidu.titan.dex.node.DexClassNode;
+import com.baidu.titan.dex.node.DexClassPoolNode;
+import com.baidu.titan.dex.node.MultiDexFileNode;
+import com.baidu.titan.dex.reader.MultiDexFileReader;
+import com.baidu.titan.dex.visitor.DexClassVisitor;
+import com.baidu.titan.dex.visitor.DexClassVisitorInfo;
+import com.baidu.titan.dex.writer.DexFileWriter;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 对比diff快速对比时逐字节序列化与结构指纹两种方式的耗时和GC情况。
+ *
+ * 同一个apk读取两份互相独立的class node，逐个类对比，所有类都应判定为未修改。
+ * 指纹会保存在class node上，每一轮都重新读取class node。
+ *
+ * 通过 -Dtitan.benchmark.apk=xxx.apk 指定输入apk
+ *
+ * @since 2026/10/18
+ */
+public class DiffFingerprintBenchmarkTest {
+
+    private static final int ROUNDS = 3;
+
+    @Test
+    public void benchmark() throws Exception {
+        String apkPath = System.getProperty("titan.benchmark.apk");
+        Assume.assumeTrue("titan.benchmark.apk unset", apkPath != null);
+
+        DexItemFactory factory = new DexItemFactory();
+        File apk = new File(apkPath);
+        List<DexClassNode[]> pairs = readPairs(factory, apk);
+
+        // warm up，同时校验结果
+        Set<DexNodeFingerprint> distinct = new HashSet<>();
+        for (DexClassNode[] pair : pairs) {
+            DexNodeFingerprint oldFingerprint = fingerprint(pair[0]);
+            Assert.assertEquals(pair[0].type.toTypeDescriptor(),
+                    oldFingerprint, fingerprint(pair[1]));
+            distinct.add(oldFingerprint);
+            Assert.assertTrue(compareBytes(pair[0], pair[1]));
+        }
+        Assert.assertEquals(pairs.size(), distinct.size());
+
+        Stat bytesStat = new Stat();
+        Stat fingerprintStat = new Stat();
+        for (int i = 0; i < ROUNDS; i++) {
+            pairs = readPairs(factory, apk);
+            bytesStat.begin();
+            for (DexClassNode[] pair : pairs) {
+                compareBytes(pair[0], pair[1]);
+            }
+            bytesStat.end();
+
+            fingerprintStat.begin();
+            for (DexClassNode[] pair : pairs) {
+                fingerprint(pair[0]).equals(fingerprint(pair[1]));
+            }
+            fingerprintStat.end();
+        }
+
+        System.out.println(String.format("class count = %d", pairs.size()));
+        System.out.println("bytes       " + bytesStat);
+        System.out.println("fingerprint " + fingerprintStat);
+        System.out.println(String.format("speedup %.2fx",
+                (double) bytesStat.mCostNanos / Math.max(1, fingerprintStat.mCostNanos)));
+    }
+
+    private static List<DexClassNode[]> readPairs(DexItemFactory factory, File apk)
+            throws Exception {
+        DexClassPoolNode oldPool = readPool(factory, apk);
+        DexClassPoolNode newPool = readPool(factory, apk);
+        List<DexClassNode[]> pairs = new ArrayList<>();
+        oldPool.forEach(dcn -> pairs.add(new DexClassNode[] {dcn, newPool.getClass(dcn.type)}));
+        return pairs;
+    }
+
+    private static DexClassPoolNode readPool(DexItemFactory factory, File apk) throws Exception {
+        MultiDexFileReader reader = new MultiDexFileReader(factory);
+        Map<Integer, byte[]> dexContents = ZipUtil.getDexContentsFromApk(apk);
+        dexContents.forEach(reader::addDexContent);
+        MultiDexFileNode mdfn = new MultiDexFileNode();
+        reader.accept(mdfn.asVisitor());
+        DexClassPoolNode pool = new DexClassPoolNode();
+        mdfn.accept(new DexClassPoolFiller(pool));
+        return pool;
+    }
+
+    private static DexNodeFingerprint fingerprint(DexClassNode dcn) {
+        return DexNodeFingerprint.ofClass(dcn, DexNodeFingerprint.Mode.CLASS,
+                () -> toBytes(dcn));
+    }
+
+    private static boolean compareBytes(DexClassNode oldClass, DexClassNode newClass) {
+        return Arrays.equals(toBytes(oldClass), toBytes(newClass));
+    }
+
+    private static byte[] toBytes(DexClassNode dcn) {
+        DexFileWriter dfw = new DexFileWriter();
+        dfw.visitBegin();
+        dfw.visitDexVersion(DexFileVersion.LATEST_VERSION);
+        DexClassVisitor dcv = dfw.visitClass(
+                new DexClassVisitorInfo(
+                        dcn.type,
+                        dcn.superType,
+                        dcn.interfaces,
+                        new DexAccessFlags(dcn.accessFlags)));
+        dcn.accept(dcv);
+        dfw.visitEnd();
+        return dfw.toByteArray();
+    }
+
+    private static class Stat {
+
+        long mCostNanos;
+
+        long mGcCount;
+
+        long mGcMillis;
+
+        long mAllocatedBytes;
+
+        private long mBeginNanos;
+
+        private long mBeginGcCount;
+
+        private long mBeginGcMillis;
+
+        private long mBeginAllocatedBytes;
+
+        void begin() {
+            mBeginGcCount = gcCount();
+            mBeginGcMillis = gcMillis();
+            mBeginAllocatedBytes = allocatedBytes();
+            mBeginNanos = System.nanoTime();
+        }
+
+        void end() {
+            mCostNanos += System.nanoTime() - mBeginNanos;
+            mGcCount += gcCount() - mBeginGcCount;
+            mGcMillis += gcMillis() - mBeginGcMillis;
+            mAllocatedBytes += allocatedBytes() - mBeginAllocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("avg %d ms, gc %d times / %d ms, allocated %d MB",
+                    mCostNanos / ROUNDS / 1000000,
+                    mGcCount,
+                    mGcMillis,
+                    mAllocatedBytes / ROUNDS / 1024 / 1024);
+        }
+
+        private static long gcCount() {
+            long count = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0, gc.getCollectionCount());
+            }
+            return count;
+        }
+
+        private static long gcMillis() {
+            long millis = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                millis += Math.max(0, gc.getCollectionTime());
+            }
+            return millis;
+        }
+
+        private static long allocatedBytes() {
+            ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+                return ((com.sun.management.ThreadMXBean) threadMXBean)
+                        .getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+            return 0;
+        }
+
+    }
+
+}
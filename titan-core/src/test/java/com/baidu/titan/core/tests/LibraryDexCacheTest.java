@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.tests;
+
+import com.baidu.titan.core.TitanDexItemFactory;
+import com.baidu.titan.core.pool.ApplicationDexPool;
+import com.baidu.titan.core.pool.LibraryDexCache;
+import com.baidu.titan.dex.DexType;
+import com.baidu.titan.dex.DexTypeList;
+import com.baidu.titan.dex.extensions.DexSubClassHierarchyFiller;
+import com.baidu.titan.dex.node.DexClassNode;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * boot class path的dex缓存测试，从缓存读取的library class pool需要与解析jar的结果一致，
+ * 包括每个方法、字段以及重新计算的类层级
+ *
+ * @since 2026/10/18
+ */
+public class LibraryDexCacheTest {
+
+    @Test
+    public void testDexCache() {
+        List<File> bootClassPath = TestUtil.getBootClassPath();
+        File cacheDir = new File(System.getProperty("java.io.tmpdir"),
+                "titan-test-library-dex-cache/" + System.nanoTime());
+
+        ApplicationDexPool jarPool = new ApplicationDexPool(new TitanDexItemFactory());
+        Assert.assertTrue(LibraryDexCache.fillLibraryPool(jarPool, bootClassPath, cacheDir));
+        jarPool.fillClassHierarchy();
+
+        ApplicationDexPool cachePool = new ApplicationDexPool(new TitanDexItemFactory());
+        Assert.assertTrue(LibraryDexCache.fillLibraryPool(cachePool, bootClassPath, cacheDir));
+        cachePool.fillClassHierarchy();
+
+        Map<String, String> jarClasses = describe(jarPool);
+        Map<String, String> cacheClasses = describe(cachePool);
+        Assert.assertEquals(jarClasses.keySet(), cacheClasses.keySet());
+        jarClasses.forEach((type, desc) ->
+                Assert.assertEquals(type, desc, cacheClasses.get(type)));
+    }
+
+    private static Map<String, String> describe(ApplicationDexPool appPool) {
+        Map<String, String> result = new TreeMap<>();
+        appPool.getLibraryClassPool().forEach(dcn -> result.put(dcn.type.toTypeDescriptor(),
+                describe(dcn)));
+        return result;
+    }
+
+    private static String describe(DexClassNode dcn) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(dcn.accessFlags.getFlags()).append(' ');
+        sb.append(dcn.superType == null ? "null" : dcn.superType.toTypeDescriptor());
+        sb.append("\ninterfaces=").append(describe(dcn.interfaces));
+
+        TreeSet<String> methods = new TreeSet<>();
+        dcn.getMethods().forEach(dmn -> methods.add(dmn.name + "(" + describe(dmn.parameters)
+                + ")" + dmn.returnType.toTypeDescriptor() + " " + dmn.accessFlags.getFlags()));
+        sb.append("\nmethods=").append(methods);
+
+        TreeSet<String> fields = new TreeSet<>();
+        dcn.getFields().forEach(dfn -> fields.add(dfn.name + ":" + dfn.type.toTypeDescriptor()
+                + " " + dfn.accessFlags.getFlags()));
+        sb.append("\nfields=").append(fields);
+
+        TreeSet<String> subClasses = new TreeSet<>();
+        DexSubClassHierarchyFiller.forEachSubClass(dcn,
+                sub -> subClasses.add(sub.type.toTypeDescriptor()));
+        sb.append("\nsubClasses=").append(subClasses);
+        return sb.toString();
+    }
+
+    private static String describe(DexTypeList types) {
+        StringBuilder sb = new StringBuilder();
+        if (types != null) {
+            for (DexType type : types.types()) {
+                sb.append(type.toTypeDescriptor());
+            }
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.tests;
+
+import com.baidu.titan.core.TitanDexItemFactory;
+import com.baidu.titan.core.patch.light.MethodResolutionCache;
+import com.baidu.titan.dex.DexAccessFlags;
+import com.baidu.titan.dex.DexConst;
+import com.baidu.titan.dex.DexType;
+import com.baidu.titan.dex.DexTypeList;
+import com.baidu.titan.dex.linker.DexClassLoader;
+import com.baidu.titan.dex.node.DexClassNode;
+import com.baidu.titan.dex.node.DexMethodNode;
+import com.baidu.titan.dex.visitor.DexMethodVisitorInfo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 方法解析缓存的命中、未命中计数，未解析到的方法同样需要缓存，不再重复查找
+ *
+ * @since 2026/10/18
+ */
+public class MethodResolutionCacheTest {
+
+    @Test
+    public void testHitAndMiss() {
+        TitanDexItemFactory factory = new TitanDexItemFactory();
+        DexClassNode dcn = new DexClassNode(
+                factory.createType("Lcom/baidu/titan/test/Foo;"),
+                new DexAccessFlags(DexAccessFlags.ACC_PUBLIC),
+                factory.objectClass.type,
+                DexTypeList.empty());
+        DexMethodNode foo = new DexMethodNode(new DexMethodVisitorInfo(
+                dcn.type,
+                factory.createString("foo"),
+                DexTypeList.empty(),
+                factory.voidClass.primitiveType,
+                new DexAccessFlags(DexAccessFlags.ACC_PUBLIC)));
+        dcn.addMethod(foo);
+
+        // 记录查找类的次数
+        int[] findCount = new int[1];
+        DexClassLoader classLoader = new DexClassLoader() {
+            @Override
+            public DexClassNode findClass(DexType type) {
+                findCount[0]++;
+                return dcn.type.equals(type) ? dcn : null;
+            }
+        };
+        MethodResolutionCache cache = new MethodResolutionCache(factory, classLoader);
+        DexConst.ConstMethodRef fooRef = DexConst.ConstMethodRef.make(
+                dcn.type, factory.createString("foo"), factory.voidClass.primitiveType,
+                DexTypeList.empty());
+        DexConst.ConstMethodRef barRef = DexConst.ConstMethodRef.make(
+                dcn.type, factory.createString("bar"), factory.voidClass.primitiveType,
+                DexTypeList.empty());
+
+        Assert.assertSame(foo, cache.findVirtualMethod(fooRef));
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+
+        Assert.assertSame(foo, cache.findVirtualMethod(fooRef));
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+
+        // 未解析到的方法缓存为Optional.empty()，第二次命中且不再查找类
+        Assert.assertNull(cache.findVirtualMethod(barRef));
+        Assert.assertEquals(2, cache.getMissCount());
+        int count = findCount[0];
+        Assert.assertNull(cache.findVirtualMethod(barRef));
+        Assert.assertEquals(count, findCount[0]);
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+
+        // 不同的invoke类型使用不同的key，foo不是direct方法
+        Assert.assertNull(cache.findDirectMethod(fooRef));
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(3, cache.getMissCount());
+        Assert.assertEquals(0.4, cache.getHitRate(), 1e-9);
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.tests;
+
+import com.baidu.titan.core.util.PhaseTelemetry;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 构建阶段统计测试
+ *
+ * @since 2026/10/18
+ */
+public class PhaseTelemetryTest {
+
+    private static final int WORKER_ALLOCATED_BYTES = 8 * 1024 * 1024;
+
+    private static final long WORKER_CPU_MS = 200;
+
+    @Rule
+    public TemporaryFolder mTempFolder = new TemporaryFolder();
+
+    @Test
+    public void testPhases() throws Exception {
+        PhaseTelemetry telemetry = new PhaseTelemetry("test");
+
+        PhaseTelemetry.Phase phase = telemetry.begin("sleep");
+        Thread.sleep(20);
+        PhaseTelemetry.PhaseRecord record = phase.end(10);
+        Assert.assertEquals("sleep", record.name);
+        Assert.assertTrue(record.wallTimeMs >= 20);
+        Assert.assertEquals(10, record.classCount);
+
+        // 重复end只记录一次
+        phase.end(20);
+
+        telemetry.begin("alloc").end();
+
+        Assert.assertEquals(2, telemetry.getPhases().size());
+        Assert.assertEquals("sleep", telemetry.getPhases().get(0).name);
+        Assert.assertEquals(10, telemetry.getPhases().get(0).classCount);
+        Assert.assertEquals("alloc", telemetry.getPhases().get(1).name);
+        Assert.assertEquals(-1, telemetry.getPhases().get(1).classCount);
+    }
+
+    @Test
+    public void testWorkerThreadAllocation() throws Exception {
+        PhaseTelemetry telemetry = new PhaseTelemetry("test");
+        CountDownLatch allocated = new CountDownLatch(1);
+        CountDownLatch phaseEnded = new CountDownLatch(1);
+        byte[][] holder = new byte[1][];
+
+        PhaseTelemetry.Phase phase = telemetry.begin("worker");
+        // 工作线程在阶段结束后才退出，分配的内存需要计入
+        Thread worker = new Thread(() -> {
+            holder[0] = new byte[WORKER_ALLOCATED_BYTES];
+            allocated.countDown();
+            try {
+                phaseEnded.await();
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        });
+        worker.start();
+        allocated.await();
+        PhaseTelemetry.PhaseRecord record = phase.end();
+        phaseEnded.countDown();
+        worker.join();
+
+        Assert.assertNotNull(holder[0]);
+        if (record.allocatedBytes >= 0) {
+            Assert.assertTrue(String.valueOf(record.allocatedBytes),
+                    record.allocatedBytes >= WORKER_ALLOCATED_BYTES);
+        }
+    }
+
+    @Test
+    public void testWorkerThreadCpuTime() throws Exception {
+        PhaseTelemetry telemetry = new PhaseTelemetry("test");
+        CountDownLatch spun = new CountDownLatch(1);
+        CountDownLatch phaseEnded = new CountDownLatch(1);
+
+        PhaseTelemetry.Phase phase = telemetry.begin("worker");
+        // 调用线程只等待，CPU时间来自工作线程
+        Thread worker = new Thread(() -> {
+            long endNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WORKER_CPU_MS);
+            long sum = 0;
+            while (System.nanoTime() < endNanos) {
+                sum++;
+            }
+            spun.countDown();
+            try {
+                phaseEnded.await();
+            } catch (InterruptedException e) {
+                // ignore
+            }
+            Assert.assertTrue(sum > 0);
+        });
+        worker.start();
+        spun.await();
+        PhaseTelemetry.PhaseRecord record = phase.end();
+        phaseEnded.countDown();
+        worker.join();
+
+        if (record.cpuTimeMs >= 0) {
+            Assert.assertTrue(String.valueOf(record.cpuTimeMs),
+                    record.cpuTimeMs >= WORKER_CPU_MS / 2);
+        }
+    }
+
+    @Test
+    public void testHeapPeakNotReset() throws Exception {
+        Map<String, Long> peaksBefore = new HashMap<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                peaksBefore.put(pool.getName(), pool.getPeakUsage().getUsed());
+            }
+        }
+
+        PhaseTelemetry telemetry = new PhaseTelemetry("test");
+        PhaseTelemetry.PhaseRecord record = telemetry.begin("peak").end();
+        Assert.assertTrue(record.peakHeapBytes > 0);
+
+        // 统计不能重置进程中的内存区峰值
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            Long peakBefore = peaksBefore.get(pool.getName());
+            if (peakBefore != null && pool.isValid()) {
+                Assert.assertTrue(pool.getName(),
+                        pool.getPeakUsage().getUsed() >= peakBefore);
+            }
+        }
+    }
+
+    @Test
+    public void testWriteTo() throws Exception {
+        PhaseTelemetry telemetry = new PhaseTelemetry("test");
+        telemetry.begin("first").end(1);
+        telemetry.begin("second").end(2);
+
+        File file = new File(mTempFolder.getRoot(), "sub/" + PhaseTelemetry.PATCH_FILE_NAME);
+        Assert.assertTrue(telemetry.writeTo(file));
+
+        JSONObject json = new JSONObject(
+                new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        Assert.assertEquals("test", json.getString("name"));
+        JSONArray phases = json.getJSONArray("phases");
+        Assert.assertEquals(2, phases.length());
+        Assert.assertEquals("first", phases.getJSONObject(0).getString("name"));
+        Assert.assertEquals(2, phases.getJSONObject(1).getLong("classCount"));
+        Assert.assertTrue(json.getLong("totalWallTimeMs") >= 0);
+    }
+
+    @Test
+    public void testCounters() throws Exception {
+        PhaseTelemetry telemetry = new PhaseTelemetry("test");
+        telemetry.setCounter("reused", 1);
+        telemetry.setCounter("stubs", 2);
+        // 同名计数覆盖
+        telemetry.setCounter("reused", 3);
+
+        Assert.assertEquals(2, telemetry.getCounters().size());
+        Assert.assertEquals(Long.valueOf(3), telemetry.getCounters().get("reused"));
+
+        JSONObject counters = telemetry.toJson().getJSONObject("counters");
+        Assert.assertEquals(3, counters.getLong("reused"));
+        Assert.assertEquals(2, counters.getLong("stubs"));
+        Assert.assertTrue(telemetry.toString().contains("stubs: 2"));
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.tests;
+
+import com.baidu.titan.core.TitanDexItemFactory;
+import com.baidu.titan.core.pool.ApplicationDexPool;
+import com.baidu.titan.core.pool.LibraryDexCache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 对比LightPatch中三个ApplicationDexPool各自持有library class与共享library class时的堆占用
+ *
+ * @since 2026/10/18
+ */
+public class SharedLibraryPoolHeapTest {
+
+    private static final int POOL_COUNT = 3;
+
+    @Test
+    public void testHeapUsage() {
+        List<File> bootClassPath = TestUtil.getBootClassPath();
+
+        long baseline = usedHeap();
+        List<ApplicationDexPool> separatePools = new ArrayList<>();
+        for (int i = 0; i < POOL_COUNT; i++) {
+            ApplicationDexPool appPool = new ApplicationDexPool(new TitanDexItemFactory());
+            Assert.assertTrue(LibraryDexCache.fillLibraryPool(appPool, bootClassPath, null));
+            appPool.fillClassHierarchy();
+            separatePools.add(appPool);
+        }
+        long separateHeap = usedHeap() - baseline;
+        separatePools.clear();
+
+        baseline = usedHeap();
+        ApplicationDexPool libraryPool = ApplicationDexPool.createSharedLibraryPool(
+                new TitanDexItemFactory(), bootClassPath, null);
+        Assert.assertNotNull(libraryPool);
+        List<ApplicationDexPool> sharedPools = new ArrayList<>();
+        for (int i = 0; i < POOL_COUNT; i++) {
+            ApplicationDexPool appPool = new ApplicationDexPool(libraryPool);
+            appPool.fillClassHierarchy();
+            sharedPools.add(appPool);
+        }
+        long sharedHeap = usedHeap() - baseline;
+
+        System.out.println(String.format("separate library pools %d MB, shared library pool %d MB,"
+                        + " saved %d MB", separateHeap >> 20, sharedHeap >> 20,
+                (separateHeap - sharedHeap) >> 20));
+        Assert.assertTrue(sharedHeap < separateHeap);
+        Assert.assertEquals(POOL_COUNT, sharedPools.size());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.tests;
+
+import com.baidu.titan.core.patch.common.SwitchInsnHelper;
+import com.baidu.titan.dex.DexRegister;
+import com.baidu.titan.dex.DexRegisterList;
+import com.baidu.titan.dex.Dops;
+import com.baidu.titan.dex.node.DexCodeNode;
+import com.baidu.titan.dex.visitor.DexCodeVisitor;
+import com.baidu.titan.dex.visitor.DexLabel;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * switch指令选择测试，覆盖packed-switch及sparse-switch两种生成结果
+ *
+ * @since 2026/10/18
+ */
+public class SwitchInsnHelperTest {
+
+    private static final DexRegisterList REGS =
+            DexRegisterList.make(DexRegister.makeParameterReg(1));
+
+    @Test
+    public void testSparseSwitch() {
+        // case数不足
+        Assert.assertFalse(SwitchInsnHelper.shouldUsePackedSwitch(new int[] {0x10001}));
+        Assert.assertFalse(SwitchInsnHelper.shouldUsePackedSwitch(new int[] {0x10001, 0x10002}));
+        // 不够密集
+        Assert.assertFalse(SwitchInsnHelper.shouldUsePackedSwitch(new int[] {1, 2, 10}));
+        // type hash code跨越整个int范围
+        Assert.assertFalse(SwitchInsnHelper.shouldUsePackedSwitch(
+                new int[] {Integer.MIN_VALUE, 0, Integer.MAX_VALUE}));
+        // 无序
+        Assert.assertFalse(SwitchInsnHelper.shouldUsePackedSwitch(new int[] {3, 2, 1}));
+
+        int[] keys = {0x64, 0xc8, 0x12c};
+        DexLabel[] targets = newLabels(keys.length);
+        RecordCodeVisitor recorder = new RecordCodeVisitor();
+        SwitchInsnHelper.visitSwitch(recorder, REGS, keys, targets);
+
+        Assert.assertEquals(Dops.SPARSE_SWITCH, recorder.op);
+        Assert.assertArrayEquals(keys, recorder.keys);
+        Assert.assertArrayEquals(targets, recorder.targets);
+        Assert.assertNull(recorder.label);
+    }
+
+    @Test
+    public void testPackedSwitch() {
+        int[] keys = {0x10001, 0x10002, 0x10003, 0x10004, 0x10005};
+        DexLabel[] targets = newLabels(keys.length);
+        RecordCodeVisitor recorder = new RecordCodeVisitor();
+        SwitchInsnHelper.visitSwitch(recorder, REGS, keys, targets);
+
+        Assert.assertEquals(Dops.PACKED_SWITCH, recorder.op);
+        Assert.assertArrayEquals(keys, recorder.keys);
+        Assert.assertArrayEquals(targets, recorder.targets);
+        Assert.assertNull(recorder.label);
+    }
+
+    @Test
+    public void testPackedSwitchWithHoles() {
+        int[] keys = {1, 2, 4, 6};
+        DexLabel[] targets = newLabels(keys.length);
+        RecordCodeVisitor recorder = new RecordCodeVisitor();
+        SwitchInsnHelper.visitSwitch(recorder, REGS, keys, targets);
+
+        Assert.assertEquals(Dops.PACKED_SWITCH, recorder.op);
+        Assert.assertArrayEquals(new int[] {1, 2, 3, 4, 5, 6}, recorder.keys);
+        // 缺失的key跳转到switch之后的label
+        Assert.assertNotNull(recorder.label);
+        Assert.assertArrayEquals(new DexLabel[] {targets[0], targets[1], recorder.label,
+                targets[2], recorder.label, targets[3]}, recorder.targets);
+    }
+
+    private static DexLabel[] newLabels(int count) {
+        DexLabel[] labels = new DexLabel[count];
+        for (int i = 0; i < count; i++) {
+            labels[i] = new DexLabel();
+        }
+        return labels;
+    }
+
+    private static class RecordCodeVisitor extends DexCodeVisitor {
+
+        int op = -1;
+
+        int[] keys;
+
+        DexLabel[] targets;
+
+        DexLabel label;
+
+        RecordCodeVisitor() {
+            super(new DexCodeNode().asVisitor());
+        }
+
+        @Override
+        public void visitSwitch(int op, DexRegisterList regs, int[] keys, DexLabel[] targets) {
+            Assert.assertEquals(-1, this.op);
+            this.op = op;
+            this.keys = keys;
+            this.targets = targets;
+            super.visitSwitch(op, regs, keys, targets);
+        }
+
+        @Override
+        public void visitLabel(DexLabel label) {
+            // 只能紧跟在switch之后
+            Assert.assertNotEquals(-1, this.op);
+            this.label = label;
+            super.visitLabel(label);
+        }
+    }
+
+}
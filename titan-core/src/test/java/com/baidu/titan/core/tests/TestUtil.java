@@ -16,6 +16,13 @@
 
 package com.baidu.titan.core.tests;
 
+import com.baidu.titan.core.instrument.InstrumentMain;
+import com.baidu.titan.core.instrument.InstrumentType;
+import com.baidu.titan.dex.MultiDexFileBytes;
+import com.baidu.titan.dex.smali.SmaliReader;
+
+import org.junit.Assert;
+
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
@@ -25,7 +32,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.TreeMap;
 
 /**
  * 测试工具类
@@ -52,6 +61,53 @@ public class TestUtil {
         return bootClassPath;
     }
 
+    /**
+     * 将smali目录编译为dex
+     */
+    public static MultiDexFileBytes readSmali(File smaliDir, File tmpDir) {
+        SmaliReader smaliReader = new SmaliReader(
+                SmaliReader.SmaliPath.createFromDir(smaliDir), tmpDir);
+        return MultiDexFileBytes.createFromOrderedDexBytes(smaliReader.toDexFileBytes());
+    }
+
+    /**
+     * 创建方法插桩的参数，调用方在此基础上设置需要对比的参数
+     */
+    public static InstrumentMain.Argument newInstrumentArgument(MultiDexFileBytes orgDexs,
+                                                                File workDir) {
+        InstrumentMain.Argument argument = new InstrumentMain.Argument();
+        argument.setInstrumentType(InstrumentType.METHOD);
+        argument.setBootClassPath(getBootClassPath());
+        argument.setWorkDir(workDir);
+        argument.setOldDexs(orgDexs);
+        return argument;
+    }
+
+    /**
+     * 执行插桩
+     *
+     * @return dex id -> dex内容
+     */
+    public static Map<Integer, byte[]> instrument(InstrumentMain.Argument argument) {
+        return toBytesMap(new InstrumentMain(argument).doInstrument());
+    }
+
+    public static Map<Integer, byte[]> toBytesMap(MultiDexFileBytes dexs) {
+        Map<Integer, byte[]> result = new TreeMap<>();
+        dexs.forEach((dexId, bytes) -> result.put(dexId, bytes.getDexFileBytes()));
+        return result;
+    }
+
+    /**
+     * 两份dex输出需要逐字节一致
+     */
+    public static void assertSameDexs(String name, Map<Integer, byte[]> expect,
+                                      Map<Integer, byte[]> actual) {
+        Assert.assertEquals(name, expect.keySet(), actual.keySet());
+        expect.forEach((dexId, bytes) ->
+                Assert.assertArrayEquals(name + " dex " + dexId, bytes, actual.get(dexId)));
+    }
+
     public static boolean noDifferent(File src, File expect) throws IOException {
         if (src == null || !src.exists() || expect == null || !expect.exists()) {
             throw new IllegalArgumentException();
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.core.tests;
+
+import com.baidu.titan.core.TitanDexItemFactory;
+import com.baidu.titan.dex.DexString;
+import com.baidu.titan.dex.DexType;
+import com.baidu.titan.dex.DexTypeList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 多线程共用TitanDexItemFactory时，并发插桩阶段用到的创建入口需要返回唯一的池化实例
+ *
+ * @since 2026/10/18
+ */
+public class TitanDexItemFactoryTest {
+
+    private static final int THREAD_COUNT = 8;
+
+    private static final int TYPE_COUNT = 2000;
+
+    /**
+     * 单个线程创建的实例
+     */
+    private static class Created {
+
+        final DexString[] strings = new DexString[TYPE_COUNT];
+
+        final DexType[] types = new DexType[TYPE_COUNT];
+
+        final DexType[] arrayTypes = new DexType[TYPE_COUNT];
+
+        final DexTypeList[] typeLists = new DexTypeList[TYPE_COUNT];
+
+        final DexTypeList[] variableTypeLists = new DexTypeList[TYPE_COUNT];
+    }
+
+    @Test
+    public void testConcurrentCreate() throws Exception {
+        TitanDexItemFactory factory = new TitanDexItemFactory();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            List<Future<Created>> futures = new ArrayList<>();
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                futures.add(executor.submit(createAll(factory, start)));
+            }
+            start.countDown();
+
+            Created first = futures.get(0).get();
+            for (int i = 1; i < THREAD_COUNT; i++) {
+                Created other = futures.get(i).get();
+                for (int j = 0; j < TYPE_COUNT; j++) {
+                    Assert.assertSame(first.strings[j], other.strings[j]);
+                    Assert.assertSame(first.types[j], other.types[j]);
+                    Assert.assertSame(first.arrayTypes[j], other.arrayTypes[j]);
+                    Assert.assertSame(first.typeLists[j], other.typeLists[j]);
+                    Assert.assertSame(factory.intern(first.variableTypeLists[j]),
+                            factory.intern(other.variableTypeLists[j]));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Callable<Created> createAll(TitanDexItemFactory factory, CountDownLatch start) {
+        return () -> {
+            start.await();
+            Created created = new Created();
+            for (int i = 0; i < TYPE_COUNT; i++) {
+                String typeDesc = "Lcom/baidu/titan/test/Type" + i + ";";
+                created.strings[i] = factory.createString("name" + i);
+                created.types[i] = factory.createType(typeDesc);
+                created.arrayTypes[i] = factory.createArrayType(created.types[i]);
+                created.typeLists[i] = factory.intern(
+                        factory.createTypes(new DexType[] {created.types[i]}));
+                created.variableTypeLists[i] = factory.createTypesVariable(
+                        factory.createType(typeDesc), created.arrayTypes[i]);
+            }
+            return created;
+        };
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.instrument.tests;
+
+import com.baidu.titan.core.instrument.InstrumentMain;
+import com.baidu.titan.core.tests.TestUtil;
+import com.baidu.titan.dex.MultiDexFileBytes;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 增量插桩测试，复用缓存的插桩输出需要与全量插桩逐字节一致，
+ * 类、父类或接口变化时只有变化的类及其子类、实现类重新插桩
+ *
+ * @since 2026/10/18
+ */
+public class IncrementalInstrumentTest {
+
+    private static final String PACKAGE = "Lcom/baidu/titan/sample/incremental/";
+
+    private static final String BASE = PACKAGE + "Base;";
+
+    private static final String DERIVED = PACKAGE + "Derived;";
+
+    private static final String CALLBACK = PACKAGE + "Callback;";
+
+    private static final String CALLBACK_IMPL = PACKAGE + "CallbackImpl;";
+
+    private static final String OTHER = PACKAGE + "Other;";
+
+    @Test
+    public void testSmaliCases() throws Exception {
+        File instrumentTestDir = new File("src/test/smali/instrument");
+        File[] testDirs = instrumentTestDir.listFiles((dir, name) -> name.startsWith("t"));
+        Arrays.sort(testDirs);
+
+        for (File testDir : testDirs) {
+            File tmpDir = new File(System.getProperty("java.io.tmpdir"),
+                    "titan-test-incremental/" + testDir.getName());
+            tmpDir.mkdirs();
+            MultiDexFileBytes orgDexs = TestUtil.readSmali(new File(testDir, "input"), tmpDir);
+
+            File cacheDir = new File(tmpDir, "instrument-cache-" + System.nanoTime());
+
+            Map<Integer, byte[]> fullOut = instrument(orgDexs, tmpDir, null);
+            // 第一次写入缓存，第二次复用缓存
+            Map<Integer, byte[]> coldOut = instrument(orgDexs, tmpDir, cacheDir);
+            Map<Integer, byte[]> warmOut = instrument(orgDexs, tmpDir, cacheDir);
+
+            String name = testDir.getName();
+            TestUtil.assertSameDexs(name, fullOut, coldOut);
+            TestUtil.assertSameDexs(name, fullOut, warmOut);
+        }
+    }
+
+    @Test
+    public void testUnchanged() throws Exception {
+        assertReinstrumented("unchanged", Collections.emptyMap(), new String[0]);
+    }
+
+    @Test
+    public void testClassBodyChanged() throws Exception {
+        assertReinstrumented("class-body", Collections.singletonMap(OTHER, 2),
+                new String[] {OTHER});
+    }
+
+    @Test
+    public void testSuperClassChanged() throws Exception {
+        assertReinstrumented("super-class", Collections.singletonMap(BASE, 2),
+                new String[] {BASE, DERIVED});
+    }
+
+    @Test
+    public void testInterfaceChanged() throws Exception {
+        assertReinstrumented("interface", Collections.singletonMap(CALLBACK, 2),
+                new String[] {CALLBACK, CALLBACK_IMPL});
+    }
+
+    /**
+     * 先用原始类写入缓存，修改部分类后再次增量插桩
+     *
+     * @param changedClasses 修改的类及修改后的版本号
+     * @param expectReinstrumented 期望重新插桩的类
+     */
+    private static void assertReinstrumented(String name, Map<String, Integer> changedClasses,
+                                             String[] expectReinstrumented) throws IOException {
+        File tmpDir = new File(System.getProperty("java.io.tmpdir"),
+                "titan-test-incremental/" + name + "-" + System.nanoTime());
+        File cacheDir = new File(tmpDir, "instrument-cache");
+
+        MultiDexFileBytes oldDexs = readSmali(new File(tmpDir, "old"), Collections.emptyMap());
+        InstrumentMain cold = newInstrumentMain(oldDexs, tmpDir, cacheDir);
+        cold.doInstrument();
+        Assert.assertEquals(name, 5, cold.getIncrementalCache().getReinstrumentedTypes().size());
+
+        MultiDexFileBytes newDexs = readSmali(new File(tmpDir, "new"), changedClasses);
+        InstrumentMain warm = newInstrumentMain(newDexs, tmpDir, cacheDir);
+        Map<Integer, byte[]> warmOut = TestUtil.toBytesMap(warm.doInstrument());
+        Assert.assertEquals(name, new TreeSet<>(Arrays.asList(expectReinstrumented)),
+                warm.getIncrementalCache().getReinstrumentedTypes());
+
+        Map<Integer, byte[]> fullOut = instrument(newDexs, tmpDir, null);
+        TestUtil.assertSameDexs(name, fullOut, warmOut);
+    }
+
+    /**
+     * 生成测试用的类：Derived继承Base，CallbackImpl实现Callback，Other与其他类无关
+     *
+     * @param versions 类的版本号，版本号不同时方法体不同，默认为1
+     */
+    private static MultiDexFileBytes readSmali(File dir, Map<String, Integer> versions)
+            throws IOException {
+        Map<String, String> smalis = new HashMap<>();
+        smalis.put(BASE, ".class public L" + typeName(BASE) + ";\n"
+                + ".super Ljava/lang/Object;\n"
+                + constructor("Ljava/lang/Object;")
+                + method("public", "getValue", versions, BASE));
+        smalis.put(DERIVED, ".class public L" + typeName(DERIVED) + ";\n"
+                + ".super " + BASE + "\n"
+                + constructor(BASE)
+                + method("public", "getDerivedValue", versions, DERIVED));
+        smalis.put(CALLBACK, ".class public interface abstract L" + typeName(CALLBACK) + ";\n"
+                + ".super Ljava/lang/Object;\n"
+                + ".method public abstract onCallback()I\n"
+                + ".end method\n"
+                + (versions.containsKey(CALLBACK)
+                        ? ".method public abstract onCallbackV" + versions.get(CALLBACK) + "()I\n"
+                        + ".end method\n" : ""));
+        smalis.put(CALLBACK_IMPL, ".class public L" + typeName(CALLBACK_IMPL) + ";\n"
+                + ".super Ljava/lang/Object;\n"
+                + ".implements " + CALLBACK + "\n"
+                + constructor("Ljava/lang/Object;")
+                + method("public", "onCallback", versions, CALLBACK_IMPL));
+        smalis.put(OTHER, ".class public L" + typeName(OTHER) + ";\n"
+                + ".super Ljava/lang/Object;\n"
+                + constructor("Ljava/lang/Object;")
+                + method("public static", "getOtherValue", versions, OTHER));
+
+        File inputDir = new File(dir, "input");
+        inputDir.mkdirs();
+        for (Map.Entry<String, String> smali : smalis.entrySet()) {
+            String typeName = typeName(smali.getKey());
+            File smaliFile = new File(inputDir,
+                    typeName.substring(typeName.lastIndexOf('/') + 1) + ".smali");
+            Files.write(smaliFile.toPath(), smali.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+        return TestUtil.readSmali(inputDir, dir);
+    }
+
+    private static String typeName(String typeDesc) {
+        return typeDesc.substring(1, typeDesc.length() - 1);
+    }
+
+    private static String constructor(String superType) {
+        return ".method public constructor <init>()V\n"
+                + "    .registers 1\n"
+                + "    invoke-direct { p0 }, " + superType + "-><init>()V\n"
+                + "    return-void\n"
+                + ".end method\n";
+    }
+
+    private static String method(String access, String name, Map<String, Integer> versions,
+                                 String type) {
+        int version = versions.containsKey(type) ? versions.get(type) : 1;
+        return ".method " + access + " " + name + "()I\n"
+                + "    .registers 2\n"
+                + "    const/4 v0, " + version + "\n"
+                + "    return v0\n"
+                + ".end method\n";
+    }
+
+    private static InstrumentMain newInstrumentMain(MultiDexFileBytes orgDexs, File workDir,
+                                                    File cacheDir) {
+        InstrumentMain.Argument argument = TestUtil.newInstrumentArgument(orgDexs, workDir);
+        argument.setIncrementalCacheDir(cacheDir);
+        return new InstrumentMain(argument);
+    }
+
+    private static Map<Integer, byte[]> instrument(MultiDexFileBytes orgDexs, File workDir,
+                                                   File cacheDir) {
+        return TestUtil.toBytesMap(newInstrumentMain(orgDexs, workDir, cacheDir).doInstrument());
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.instrument.tests;
+
+import com.baidu.titan.core.instrument.InterceptStubGenerator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 桩方法的frame（3个local + 参数）不能超过256个寄存器，超出时插桩方法回退到内联的invokeCommon
+ *
+ * @since 2026/10/18
+ */
+public class InterceptStubGeneratorTest {
+
+    @Test
+    public void testStubFrameLimit() {
+        Assert.assertTrue(InterceptStubGenerator.canGenerateStub(3));
+        Assert.assertTrue(InterceptStubGenerator.canGenerateStub(253));
+        // invoke-range本身允许255个寄存器，但桩方法的frame会超过256
+        Assert.assertFalse(InterceptStubGenerator.canGenerateStub(254));
+        Assert.assertFalse(InterceptStubGenerator.canGenerateStub(255));
+    }
+
+}
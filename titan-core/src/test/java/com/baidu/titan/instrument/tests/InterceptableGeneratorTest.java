@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.instrument.tests;
+
+import com.baidu.titan.core.TitanDexItemFactory;
+import com.baidu.titan.core.instrument.InterceptableGenerator;
+import com.baidu.titan.dex.DexAccessFlags;
+import com.baidu.titan.dex.DexType;
+import com.baidu.titan.dex.DexTypeList;
+import com.baidu.titan.dex.node.DexClassNode;
+import com.baidu.titan.jvm.reader.JvmClassFileReader;
+import com.baidu.titan.sdk.runtime.InteceptParameters;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * InterceptableGenerator与titan-sdk/runtime/build.gradle中的javapoet生成逻辑是两份实现，
+ * 使用runtime默认的titan_paras生成时，两者的类、字段及方法声明需要一致
+ *
+ * @since 2026/10/18
+ */
+public class InterceptableGeneratorTest {
+
+    private static final int CLASS_FLAGS_MASK = DexAccessFlags.ACC_PUBLIC
+            | DexAccessFlags.ACC_FINAL | DexAccessFlags.ACC_INTERFACE
+            | DexAccessFlags.ACC_ABSTRACT;
+
+    private static final int METHOD_FLAGS_MASK = DexAccessFlags.ACC_PUBLIC
+            | DexAccessFlags.ACC_PRIVATE | DexAccessFlags.ACC_PROTECTED
+            | DexAccessFlags.ACC_STATIC | DexAccessFlags.ACC_FINAL
+            | DexAccessFlags.ACC_ABSTRACT;
+
+    private static final int FIELD_FLAGS_MASK = DexAccessFlags.ACC_PUBLIC
+            | DexAccessFlags.ACC_PRIVATE | DexAccessFlags.ACC_PROTECTED
+            | DexAccessFlags.ACC_STATIC | DexAccessFlags.ACC_FINAL
+            | DexAccessFlags.ACC_VOLATILE;
+
+    @Test
+    public void testMatchesRuntime() throws IOException {
+        TitanDexItemFactory factory = new TitanDexItemFactory();
+        List<DexClassNode> generated = new InterceptableGenerator(factory,
+                InteceptParameters.SPECIAL_PARAMETERS).generate();
+        Assert.assertEquals(3, generated.size());
+
+        for (DexClassNode dcn : generated) {
+            DexClassNode runtimeClass = readRuntimeClass(dcn.type, factory);
+            String name = dcn.type.toTypeDescriptor();
+            Assert.assertEquals(name, describe(runtimeClass), describe(dcn));
+        }
+    }
+
+    private static DexClassNode readRuntimeClass(DexType type, TitanDexItemFactory factory)
+            throws IOException {
+        String typeDesc = type.toTypeDescriptor();
+        String resource = typeDesc.substring(1, typeDesc.length() - 1) + ".class";
+        try (InputStream in = InterceptableGeneratorTest.class.getClassLoader()
+                .getResourceAsStream(resource)) {
+            Assert.assertNotNull(resource + " not found in titan-sdk runtime", in);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[16 * 1024];
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                baos.write(buffer, 0, len);
+            }
+            return new JvmClassFileReader(baos.toByteArray(), factory).read();
+        }
+    }
+
+    private static String describe(DexClassNode dcn) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(dcn.accessFlags.getFlags() & CLASS_FLAGS_MASK).append(' ');
+        sb.append(dcn.superType.toTypeDescriptor());
+        sb.append("\ninterfaces=").append(describe(dcn.interfaces));
+
+        TreeSet<String> fields = new TreeSet<>();
+        dcn.getFields().forEach(dfn -> fields.add(dfn.name + ":" + dfn.type.toTypeDescriptor()
+                + " " + (dfn.accessFlags.getFlags() & FIELD_FLAGS_MASK)));
+        sb.append("\nfields=").append(fields);
+
+        TreeSet<String> methods = new TreeSet<>();
+        dcn.getMethods().forEach(dmn -> methods.add(dmn.name + "(" + describe(dmn.parameters)
+                + ")" + dmn.returnType.toTypeDescriptor()
+                + " " + (dmn.accessFlags.getFlags() & METHOD_FLAGS_MASK)));
+        sb.append("\nmethods=").append(methods);
+        return sb.toString();
+    }
+
+    private static String describe(DexTypeList types) {
+        StringBuilder sb = new StringBuilder();
+        if (types != null) {
+            for (DexType type : types.types()) {
+                sb.append(type.toTypeDescriptor());
+            }
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.instrument.tests;
+
+import com.baidu.titan.core.TitanDexItemFactory;
+import com.baidu.titan.core.instrument.InstrumentMain;
+import com.baidu.titan.core.pool.ApplicationDexPool;
+import com.baidu.titan.core.tests.TestUtil;
+import com.baidu.titan.dex.MultiDexFileBytes;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 按需解析library class的插桩输出需要与全部解析时逐字节一致
+ *
+ * @since 2026/10/18
+ */
+public class LazyLibraryInstrumentTest {
+
+    @Test
+    public void testSmaliCases() throws Exception {
+        File instrumentTestDir = new File("src/test/smali/instrument");
+        File[] testDirs = instrumentTestDir.listFiles((dir, name) -> name.startsWith("t"));
+        Arrays.sort(testDirs);
+
+        for (File testDir : testDirs) {
+            File tmpDir = new File(System.getProperty("java.io.tmpdir"),
+                    "titan-test-lazy-library/" + testDir.getName());
+            tmpDir.mkdirs();
+            MultiDexFileBytes orgDexs = TestUtil.readSmali(new File(testDir, "input"), tmpDir);
+
+            Map<Integer, byte[]> eagerOut = instrument(orgDexs, tmpDir, false);
+            Map<Integer, byte[]> lazyOut = instrument(orgDexs, tmpDir, true);
+            TestUtil.assertSameDexs(testDir.getName(), eagerOut, lazyOut);
+        }
+    }
+
+    /**
+     * close之后jar已经关闭，不能再解析新的library class
+     */
+    @Test
+    public void testClose() {
+        TitanDexItemFactory factory = new TitanDexItemFactory();
+        ApplicationDexPool appPool = new ApplicationDexPool(factory);
+        Assert.assertTrue(appPool.fillLibraryLazily(TestUtil.getBootClassPath()));
+        Assert.assertNotNull(appPool.findClassFromAll(factory.createType("Ljava/lang/Object;")));
+
+        appPool.close();
+        // 已经解析的类不受影响
+        Assert.assertNotNull(appPool.findClassFromAll(factory.createType("Ljava/lang/Object;")));
+        try {
+            appPool.findClassFromAll(factory.createType("Ljava/lang/String;"));
+            Assert.fail("jar should be closed");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private static Map<Integer, byte[]> instrument(MultiDexFileBytes orgDexs, File workDir,
+                                                   boolean lazy) {
+        InstrumentMain.Argument argument = TestUtil.newInstrumentArgument(orgDexs, workDir);
+        argument.setLazyLibraryLoading(lazy);
+        return TestUtil.instrument(argument);
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.instrument.tests;
+
+import com.baidu.titan.core.instrument.InstrumentMain;
+import com.baidu.titan.core.tests.TestUtil;
+import com.baidu.titan.dex.MultiDexFileBytes;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 并发插桩确定性测试，并发插桩的输出需要与单线程插桩逐字节一致
+ *
+ * @since 2026/10/18
+ */
+public class ParallelInstrumentTest {
+
+    private static final int PARALLELISM = 8;
+
+    @Test
+    public void testSmaliCases() throws Exception {
+        File instrumentTestDir = new File("src/test/smali/instrument");
+        File[] testDirs = instrumentTestDir.listFiles((dir, name) -> name.startsWith("t"));
+        Arrays.sort(testDirs);
+
+        for (File testDir : testDirs) {
+            File tmpDir = new File(System.getProperty("java.io.tmpdir"),
+                    "titan-test-parallel/" + testDir.getName());
+            tmpDir.mkdirs();
+            MultiDexFileBytes orgDexs = TestUtil.readSmali(new File(testDir, "input"), tmpDir);
+            assertSameOutput(testDir.getName(), orgDexs, tmpDir);
+        }
+    }
+
+    @Test
+    public void testSampleProduct() throws Exception {
+        File rootDir = new File(".").getAbsoluteFile().getParentFile();
+        File orgDexDir = new File(rootDir, "titan-sample/titan-product/org-dex");
+        if (!orgDexDir.exists()) {
+            System.out.println("skip, " + orgDexDir + " not exist");
+            return;
+        }
+        File tmpDir = new File(System.getProperty("java.io.tmpdir"), "titan-test-parallel/sample");
+        tmpDir.mkdirs();
+        assertSameOutput("sample", MultiDexFileBytes.createFromDirectory(orgDexDir), tmpDir);
+    }
+
+    private static void assertSameOutput(String name, MultiDexFileBytes orgDexs, File workDir) {
+        Map<Integer, byte[]> serialOut = instrument(orgDexs, workDir, 1);
+        Map<Integer, byte[]> parallelOut = instrument(orgDexs, workDir, PARALLELISM);
+        TestUtil.assertSameDexs(name, serialOut, parallelOut);
+    }
+
+    private static Map<Integer, byte[]> instrument(MultiDexFileBytes orgDexs, File workDir,
+                                                   int parallelism) {
+        InstrumentMain.Argument argument = TestUtil.newInstrumentArgument(orgDexs, workDir);
+        argument.setInstrumentParallelism(parallelism);
+        return TestUtil.instrument(argument);
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.instrument.tests;
+
+import com.baidu.titan.core.TitanDexItemFactory;
+import com.baidu.titan.core.instrument.InterceptableGenerator;
+import com.baidu.titan.core.instrument.SpecialParameterAnalyzer;
+import com.baidu.titan.dex.DexAccessFlags;
+import com.baidu.titan.dex.DexType;
+import com.baidu.titan.dex.DexTypeList;
+import com.baidu.titan.dex.node.DexClassNode;
+import com.baidu.titan.dex.node.DexFieldNode;
+import com.baidu.titan.dex.node.DexMethodNode;
+import com.baidu.titan.dex.visitor.DexMethodVisitorInfo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * 按应用统计选择invokeXX参数列表，生成的Interceptable需要能还原出相同的参数列表
+ *
+ * @since 2026/10/18
+ */
+public class SpecialParameterAnalyzerTest {
+
+    @Test
+    public void testSelectAndGenerate() {
+        TitanDexItemFactory factory = new TitanDexItemFactory();
+        DexType stringType = factory.createType("Ljava/lang/String;");
+        DexType intType = factory.integerClass.primitiveType;
+        DexType longType = factory.longClass.primitiveType;
+
+        DexClassNode dcn = new DexClassNode(
+                factory.createType("Lcom/baidu/titan/test/Foo;"),
+                new DexAccessFlags(DexAccessFlags.ACC_PUBLIC),
+                factory.objectClass.type,
+                DexTypeList.empty());
+        // JI x3, LL x2, [I x2 (按L统计), V x1
+        addMethod(factory, dcn, "a", longType, intType);
+        addMethod(factory, dcn, "b", longType, intType);
+        addMethod(factory, dcn, "c", longType, intType);
+        addMethod(factory, dcn, "d", stringType, stringType);
+        addMethod(factory, dcn, "e", stringType, stringType);
+        addMethod(factory, dcn, "f", factory.createArrayType(intType));
+        addMethod(factory, dcn, "g", stringType);
+        addMethod(factory, dcn, "h");
+
+        SpecialParameterAnalyzer analyzer = new SpecialParameterAnalyzer(3);
+        analyzer.visitClass(dcn);
+        analyzer.classPoolVisitEnd();
+
+        String[] specialParas = analyzer.getSpecialParameters();
+        Assert.assertArrayEquals(new String[] {"JI", "L", "LL"}, specialParas);
+        Assert.assertEquals(7, analyzer.getCoveredMethodCount(specialParas));
+        Assert.assertEquals(8, analyzer.getMethodCount());
+
+        List<DexClassNode> classes = new InterceptableGenerator(factory, specialParas).generate();
+        Assert.assertEquals(3, classes.size());
+        DexClassNode interceptable = classes.get(0);
+        Assert.assertEquals(factory.interceptableClass.type, interceptable.type);
+        Assert.assertEquals(new HashSet<>(Arrays.asList(specialParas)),
+                SpecialParameterAnalyzer.readFromInterceptable(interceptable));
+    }
+
+    /**
+     * patch异步加载时，等待的线程需要能读到加载线程设置的delegate
+     */
+    @Test
+    public void testDelegateFieldVolatile() {
+        TitanDexItemFactory factory = new TitanDexItemFactory();
+        List<DexClassNode> classes =
+                new InterceptableGenerator(factory, new String[] {"JI", "L"}).generate();
+
+        DexFieldNode delegateField = null;
+        for (DexClassNode dcn : classes) {
+            if (dcn.type.equals(factory.delegateInterceptorClass.type)) {
+                for (DexFieldNode dfn : dcn.getFields()) {
+                    if (dfn.name.equals(factory.delegateInterceptorClass.interceptorField.getName())) {
+                        delegateField = dfn;
+                    }
+                }
+            }
+        }
+        Assert.assertNotNull(delegateField);
+        Assert.assertTrue(delegateField.accessFlags.containsOneOf(DexAccessFlags.ACC_VOLATILE));
+    }
+
+    private static void addMethod(TitanDexItemFactory factory, DexClassNode dcn, String name,
+                                  DexType... parameters) {
+        dcn.addMethod(new DexMethodNode(new DexMethodVisitorInfo(
+                dcn.type,
+                factory.createString(name),
+                factory.createTypesVariable(parameters),
+                factory.voidClass.primitiveType,
+                new DexAccessFlags(DexAccessFlags.ACC_PUBLIC))));
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.patch.light.test;
+
+import com.baidu.titan.core.TitanDexItemFactory;
+import com.baidu.titan.core.patch.light.diff.ClassPoolDiffMarker;
+import com.baidu.titan.core.patch.light.diff.DiffContext;
+import com.baidu.titan.core.patch.light.diff.DiffMode;
+import com.baidu.titan.core.patch.light.plum.AnonymousClassDiffMarker;
+import com.baidu.titan.core.patch.light.plum.AnonymousClassMarker;
+import com.baidu.titan.core.pool.ApplicationDexPool;
+import com.baidu.titan.core.tests.TestUtil;
+import com.baidu.titan.dex.node.DexClassNode;
+import com.baidu.titan.sdk.common.TitanConstant;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+/**
+ * 匿名内部类匹配测试，覆盖改名、重载及无法匹配的情况
+ *
+ * @since 2026/10/18
+ */
+public class AnonymousClassDiffMarkerTest {
+
+    private static final String OUTER = "Lcom/baidu/titan/sample/Outer;";
+
+    /**
+     * new中在前面插入了一个匿名内部类，原有的类按内容匹配到顺延后的类名，插入的类为新增
+     */
+    @Test
+    public void testRenamed() {
+        DiffContext diffContext = diff("renamed");
+
+        assertMapped(diffContext, "Lcom/baidu/titan/sample/Outer$1;",
+                "Lcom/baidu/titan/sample/Outer$2;");
+        assertMapped(diffContext, "Lcom/baidu/titan/sample/Outer$2;",
+                "Lcom/baidu/titan/sample/Outer$3;");
+        assertAdded(diffContext, "Lcom/baidu/titan/sample/Outer$1;");
+        assertOuterRewrite(diffContext);
+    }
+
+    /**
+     * 两个类只有重载方法的参数类型不同，需要按完整的方法签名匹配
+     */
+    @Test
+    public void testOverloaded() {
+        DiffContext diffContext = diff("overloaded");
+
+        assertMapped(diffContext, "Lcom/baidu/titan/sample/Outer$1;",
+                "Lcom/baidu/titan/sample/Outer$2;");
+        assertMapped(diffContext, "Lcom/baidu/titan/sample/Outer$2;",
+                "Lcom/baidu/titan/sample/Outer$1;");
+        assertOuterRewrite(diffContext);
+    }
+
+    /**
+     * 接口不同的类不会被匹配，old中的类保持未标记，new中的类为新增
+     */
+    @Test
+    public void testUnmatched() {
+        DiffContext diffContext = diff("unmatched");
+
+        DexClassNode oldDcn = findOld(diffContext, "Lcom/baidu/titan/sample/Outer$1;");
+        DiffMode oldDiffMode = ClassPoolDiffMarker.getClassDiffMode(oldDcn);
+        Assert.assertFalse(oldDiffMode.isUnChanged());
+        Assert.assertFalse(oldDiffMode.isChanged());
+        Assert.assertFalse(AnonymousClassDiffMarker.hasMapClass(oldDcn));
+
+        assertAdded(diffContext, "Lcom/baidu/titan/sample/Outer$1;");
+        assertOuterRewrite(diffContext);
+    }
+
+    private static DiffContext diff(String caseName) {
+        File caseDir = new File("src/test/smali/anonymous-match", caseName);
+        File tmpDir = new File(System.getProperty("java.io.tmpdir"),
+                "titan-test-anonymous-match");
+        tmpDir.mkdirs();
+
+        TitanDexItemFactory factory = new TitanDexItemFactory();
+        ApplicationDexPool oldPool = new ApplicationDexPool(factory);
+        oldPool.fillProgramDexs(TestUtil.readSmali(new File(caseDir, "old"), tmpDir));
+        ApplicationDexPool newPool = new ApplicationDexPool(factory);
+        newPool.fillProgramDexs(TestUtil.readSmali(new File(caseDir, "new"), tmpDir));
+
+        new AnonymousClassMarker(oldPool, factory).mark();
+        new AnonymousClassMarker(newPool, factory).mark();
+
+        DiffContext diffContext = new DiffContext(newPool, oldPool,
+                new ApplicationDexPool(factory), factory, false, null,
+                TitanConstant.PATCH_LOAD_POLICY_BOOT);
+        new AnonymousClassDiffMarker().diff(diffContext, findOld(diffContext, OUTER),
+                findNew(diffContext, OUTER));
+        return diffContext;
+    }
+
+    private static void assertMapped(DiffContext diffContext, String oldType, String newType) {
+        DexClassNode oldDcn = findOld(diffContext, oldType);
+        DexClassNode newDcn = findNew(diffContext, newType);
+        Assert.assertTrue(oldType, ClassPoolDiffMarker.getClassDiffMode(oldDcn).isChanged());
+        Assert.assertTrue(newType, ClassPoolDiffMarker.getClassDiffMode(newDcn).isChanged());
+        Assert.assertEquals(newDcn.type,
+                AnonymousClassDiffMarker.getRewriteType(diffContext, oldDcn));
+        Assert.assertEquals(oldDcn.type,
+                AnonymousClassDiffMarker.getRewriteType(diffContext, newDcn));
+    }
+
+    private static void assertAdded(DiffContext diffContext, String newType) {
+        DexClassNode newDcn = findNew(diffContext, newType);
+        Assert.assertTrue(newType, ClassPoolDiffMarker.getClassDiffMode(newDcn).isAdded());
+        Assert.assertTrue(newType, AnonymousClassDiffMarker.shouldRename(newDcn));
+        Assert.assertFalse(newType, AnonymousClassDiffMarker.hasMapClass(newDcn));
+    }
+
+    private static void assertOuterRewrite(DiffContext diffContext) {
+        Assert.assertTrue(AnonymousClassDiffMarker.shouldRewrite(findOld(diffContext, OUTER)));
+        Assert.assertTrue(AnonymousClassDiffMarker.shouldRewrite(findNew(diffContext, OUTER)));
+    }
+
+    private static DexClassNode findOld(DiffContext diffContext, String typeDesc) {
+        return diffContext.oldOrgAppPool.findClassFromAll(
+                diffContext.dexItemFactory.createType(typeDesc));
+    }
+
+    private static DexClassNode findNew(DiffContext diffContext, String typeDesc) {
+        return diffContext.newOrgAppPool.findClassFromAll(
+                diffContext.dexItemFactory.createType(typeDesc));
+    }
+
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.patch.light.test;
+
+import com.baidu.titan.core.TitanDexItemFactory;
+import com.baidu.titan.core.instrument.SpecialParameterAnalyzer;
+import com.baidu.titan.core.patch.PatchArgument;
+import com.baidu.titan.core.patch.PatchPolicy;
+import com.baidu.titan.core.patch.light.BaseFingerprintStore;
+import com.baidu.titan.core.patch.light.LightPatch;
+import com.baidu.titan.core.patch.light.diff.DexNodeFingerprint;
+import com.baidu.titan.core.pool.DexClassPoolFiller;
+import com.baidu.titan.core.tests.TestUtil;
+import com.baidu.titan.dex.DexAccessFlags;
+import com.baidu.titan.dex.DexItemFactory;
+import com.baidu.titan.dex.DexType;
+import com.baidu.titan.dex.MultiDexFileBytes;
+import com.baidu.titan.dex.node.DexClassNode;
+import com.baidu.titan.dex.node.DexClassPoolNode;
+import com.baidu.titan.dex.node.DexFieldNode;
+import com.baidu.titan.dex.node.MultiDexFileNode;
+import com.baidu.titan.dex.reader.MultiDexFileReader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * base持久化指纹及插桩信息测试，使用持久化信息或插桩信息生成的patch需要与解析old-instrumented dex的结果一致
+ *
+ * @since 2026/10/18
+ */
+public class BaseFingerprintStoreTest {
+
+    @Test
+    public void testReadWrite() throws IOException {
+        File storeDir = new File(System.getProperty("java.io.tmpdir"),
+                "titan-test-base-fingerprint/" + System.nanoTime());
+        byte[] baseKey = new byte[] {1, 2, 3};
+        File storeFile = BaseFingerprintStore.getStoreFile(storeDir, baseKey);
+
+        List<BaseFingerprintStore.ClassRecord> records = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            BaseFingerprintStore.ClassRecord record =
+                    new BaseFingerprintStore.ClassRecord("Lcom/baidu/titan/test/Foo" + i + ";");
+            record.instrumented = i % 2 == 0;
+            record.accessFlags = i;
+            record.fingerprint = DexNodeFingerprint.valueOf(i, -i);
+            record.fieldFlags.put("field" + i + ":I", i + 1);
+            BaseFingerprintStore.MethodRecord methodRecord =
+                    new BaseFingerprintStore.MethodRecord(record.typeDesc + "->foo()V");
+            methodRecord.accessFlags = record.instrumented ? i : null;
+            methodRecord.methodId = record.instrumented ? i : null;
+            methodRecord.fingerprint = DexNodeFingerprint.valueOf(-i, i);
+            record.methods.add(methodRecord);
+            records.add(record);
+        }
+        BaseFingerprintStore.write(storeFile, baseKey, Collections.singleton("LL"), records);
+
+        Assert.assertNull(BaseFingerprintStore.load(storeFile, new byte[] {3, 2, 1}));
+
+        BaseFingerprintStore store = BaseFingerprintStore.load(storeFile, baseKey);
+        Assert.assertNotNull(store);
+        Assert.assertEquals(Collections.singleton("LL"), store.getSpecialInterceptParas());
+        Assert.assertEquals(records.size(), store.getClassCount());
+        Assert.assertNull(store.findClass("Lcom/baidu/titan/test/Bar;"));
+        for (BaseFingerprintStore.ClassRecord expect : records) {
+            BaseFingerprintStore.ClassRecord actual = store.findClass(expect.typeDesc);
+            Assert.assertNotNull(expect.typeDesc, actual);
+            Assert.assertEquals(expect.instrumented, actual.instrumented);
+            Assert.assertEquals(expect.accessFlags, actual.accessFlags);
+            Assert.assertEquals(expect.fingerprint, actual.fingerprint);
+            Assert.assertEquals(expect.fieldFlags, actual.fieldFlags);
+            Assert.assertEquals(1, actual.methods.size());
+            BaseFingerprintStore.MethodRecord expectMethod = expect.methods.get(0);
+            BaseFingerprintStore.MethodRecord actualMethod = actual.methods.get(0);
+            Assert.assertEquals(expectMethod.signature, actualMethod.signature);
+            Assert.assertEquals(expectMethod.accessFlags, actualMethod.accessFlags);
+            Assert.assertEquals(expectMethod.methodId, actualMethod.methodId);
+            Assert.assertEquals(expectMethod.fingerprint, actualMethod.fingerprint);
+        }
+    }
+
+    @Test
+    public void testCorruptStore() throws IOException {
+        File storeDir = new File(System.getProperty("java.io.tmpdir"),
+                "titan-test-base-fingerprint/" + System.nanoTime());
+        byte[] baseKey = new byte[] {1, 2, 3};
+        File storeFile = BaseFingerprintStore.getStoreFile(storeDir, baseKey);
+        BaseFingerprintStore.write(storeFile, baseKey, null, Collections.singletonList(
+                new BaseFingerprintStore.ClassRecord("Lcom/baidu/titan/test/Foo;")));
+
+        // 只保留magic和version，读取base key时越界
+        byte[] content = Files.readAllBytes(storeFile.toPath());
+        Files.write(storeFile.toPath(), Arrays.copyOf(content, 10));
+        try {
+            BaseFingerprintStore.load(storeFile, baseKey);
+            Assert.fail("corrupt store should not be readable");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFieldKey() {
+        TitanDexItemFactory factory = new TitanDexItemFactory();
+        DexType owner = factory.createType("Lcom/baidu/titan/test/Foo;");
+        DexFieldNode intField = new DexFieldNode(factory.createString("value"),
+                factory.integerClass.primitiveType, owner,
+                new DexAccessFlags(DexAccessFlags.ACC_PRIVATE));
+        DexFieldNode longField = new DexFieldNode(factory.createString("value"),
+                factory.longClass.primitiveType, owner,
+                new DexAccessFlags(DexAccessFlags.ACC_PUBLIC));
+        // dex允许同名不同类型的字段，access flags需要分别记录
+        Assert.assertNotEquals(BaseFingerprintStore.getFieldKey(intField),
+                BaseFingerprintStore.getFieldKey(longField));
+    }
+
+    @Test
+    public void testSmaliCases() throws IOException {
+        File lightPatchTestDir = new File("src/test/smali/lightpatch");
+        File outRootDir = new File("build/test/out/lightpatch-base-fingerprint");
+        File[] testDirs = lightPatchTestDir.listFiles((dir, name) -> name.startsWith("t"));
+        Arrays.sort(testDirs);
+
+        File tmpDir = new File(System.getProperty("java.io.tmpdir"), "titan-test-base-fingerprint");
+        tmpDir.mkdirs();
+
+        for (File testDir : testDirs) {
+            File inputTestDir = new File(testDir, "input");
+            File storeDir = new File(tmpDir, testDir.getName() + "-" + System.nanoTime());
+
+            // 第一次生成持久化信息，第二次使用持久化信息
+            for (int round = 0; round < 2; round++) {
+                File outDir = new File(outRootDir, testDir.getName() + "-" + round);
+                outDir.mkdirs();
+
+                PatchArgument argument = new PatchArgument();
+                argument.setPatchPolicy(PatchPolicy.PATCH_POLICY_LIGHT_ONLY);
+                argument.setBootClassPath(TestUtil.getBootClassPath());
+                argument.setBaseFingerprintDir(storeDir);
+
+                argument.oldProject.setOldOrgDexs(
+                        TestUtil.readSmali(new File(inputTestDir, "old"), tmpDir));
+                argument.oldProject.setOldInstrumentedDexs(
+                        TestUtil.readSmali(new File(inputTestDir, "old-instrumented"), tmpDir));
+                argument.newProject.setNewOrgDexs(
+                        TestUtil.readSmali(new File(inputTestDir, "new"), tmpDir));
+
+                LightPatch lp = new LightPatch(argument);
+                lp.analyze();
+                lp.doPatch();
+                lp.getOutputs().smaliToDir(outDir);
+
+                Assert.assertTrue(testDir.getName() + " round " + round,
+                        TestUtil.noDifferent(outDir, new File(testDir, "expect")));
+            }
+            Assert.assertEquals(1, storeDir.listFiles().length);
+        }
+    }
+
+    @Test
+    public void testInstrumentInfo() throws IOException {
+        File lightPatchTestDir = new File("src/test/smali/lightpatch");
+        File outRootDir = new File("build/test/out/lightpatch-instrument-info");
+        File[] testDirs = lightPatchTestDir.listFiles((dir, name) -> name.startsWith("t"));
+        Arrays.sort(testDirs);
+
+        File tmpDir = new File(System.getProperty("java.io.tmpdir"), "titan-test-instrument-info");
+        tmpDir.mkdirs();
+
+        for (File testDir : testDirs) {
+            File inputTestDir = new File(testDir, "input");
+            File outDir = new File(outRootDir, testDir.getName());
+            outDir.mkdirs();
+
+            MultiDexFileBytes oldOrgDexs = 
+                    TestUtil.readSmali(new File(inputTestDir, "old"), tmpDir);
+            MultiDexFileBytes oldInstrumentedDexs =
+                    TestUtil.readSmali(new File(inputTestDir, "old-instrumented"), tmpDir);
+
+            // 模拟插桩时输出插桩信息
+            File infoFile = BaseFingerprintStore.getInstrumentInfoFile(
+                    new File(tmpDir, testDir.getName() + "-" + System.nanoTime()));
+            DexClassPoolNode instrumentedPool = readPool(oldInstrumentedDexs);
+            DexClassNode interceptableClass = instrumentedPool.getClass(
+                    new TitanDexItemFactory().interceptableClass.type);
+            BaseFingerprintStore.writeInstrumentInfo(infoFile, oldOrgDexs, oldInstrumentedDexs,
+                    instrumentedPool, interceptableClass == null ? null
+                            : SpecialParameterAnalyzer.readFromInterceptable(interceptableClass));
+            Assert.assertTrue(infoFile.exists());
+
+            PatchArgument argument = new PatchArgument();
+            argument.setPatchPolicy(PatchPolicy.PATCH_POLICY_LIGHT_ONLY);
+            argument.setBootClassPath(TestUtil.getBootClassPath());
+
+            argument.oldProject.setOldOrgDexs(oldOrgDexs);
+            argument.oldProject.setOldInstrumentedDexs(oldInstrumentedDexs);
+            argument.oldProject.setInstrumentInfoFile(infoFile);
+            argument.newProject.setNewOrgDexs(
+                    TestUtil.readSmali(new File(inputTestDir, "new"), tmpDir));
+
+            LightPatch lp = new LightPatch(argument);
+            lp.analyze();
+            lp.doPatch();
+            lp.getOutputs().smaliToDir(outDir);
+
+            Assert.assertTrue(testDir.getName(),
+                    TestUtil.noDifferent(outDir, new File(testDir, "expect")));
+        }
+    }
+
+    private static DexClassPoolNode readPool(MultiDexFileBytes dexs) {
+        MultiDexFileReader reader = new MultiDexFileReader(new DexItemFactory());
+        dexs.forEach((dexId, bytes) -> reader.addDexContent(dexId, bytes.getDexFileBytes()));
+        MultiDexFileNode mdfn = new MultiDexFileNode();
+        reader.accept(mdfn.asVisitor());
+        DexClassPoolNode pool = new DexClassPoolNode();
+        mdfn.accept(new DexClassPoolFiller(pool));
+        return pool;
+    }
+
+}
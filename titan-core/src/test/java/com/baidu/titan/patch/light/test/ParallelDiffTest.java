@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.patch.light.test;
+
+import com.baidu.titan.core.patch.PatchArgument;
+import com.baidu.titan.core.patch.PatchPolicy;
+import com.baidu.titan.core.patch.light.LightPatch;
+import com.baidu.titan.core.tests.TestUtil;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 并发diff及并发生成的确定性测试，生成的patch需要与单线程的预期结果一致
+ *
+ * @since 2026/10/18
+ */
+public class ParallelDiffTest {
+
+    private static final int PARALLELISM = 8;
+
+    @Test
+    public void testSmaliCases() throws IOException {
+        File lightPatchTestDir = new File("src/test/smali/lightpatch");
+        File outRootDir = new File("build/test/out/lightpatch-parallel");
+        File[] testDirs = lightPatchTestDir.listFiles((dir, name) -> name.startsWith("t"));
+        Arrays.sort(testDirs);
+
+        File tmpDir = new File(System.getProperty("java.io.tmpdir"), "titan-test-parallel-diff");
+        tmpDir.mkdirs();
+
+        for (File testDir : testDirs) {
+            File inputTestDir = new File(testDir, "input");
+            File outDir = new File(outRootDir, testDir.getName());
+            outDir.mkdirs();
+
+            PatchArgument argument = new PatchArgument();
+            argument.setPatchPolicy(PatchPolicy.PATCH_POLICY_LIGHT_ONLY);
+            argument.setBootClassPath(TestUtil.getBootClassPath());
+            argument.setDiffParallelism(PARALLELISM);
+            argument.setGenerateParallelism(PARALLELISM);
+
+            argument.oldProject.setOldOrgDexs(
+                    TestUtil.readSmali(new File(inputTestDir, "old"), tmpDir));
+            argument.oldProject.setOldInstrumentedDexs(
+                    TestUtil.readSmali(new File(inputTestDir, "old-instrumented"), tmpDir));
+            argument.newProject.setNewOrgDexs(
+                    TestUtil.readSmali(new File(inputTestDir, "new"), tmpDir));
+
+            LightPatch lp = new LightPatch(argument);
+            lp.analyze();
+            lp.doPatch();
+            lp.getOutputs().smaliToDir(outDir);
+
+            Assert.assertTrue(testDir.getName(),
+                    TestUtil.noDifferent(outDir, new File(testDir, "expect")));
+        }
+    }
+
+}
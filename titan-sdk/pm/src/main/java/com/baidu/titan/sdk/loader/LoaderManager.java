@@ -44,7 +44,9 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStreamReader;
 import java.lang.reflect.Field;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -88,7 +90,8 @@ public class LoaderManager {
 
     private PatchInstallInfo mPatchInstallInfo;
 
-    private volatile Future<Integer> mLoadFuture;
+    /** 异步加载时修复类的就绪状态 */
+    private final PatchLoadReadiness mLoadReadiness = new PatchLoadReadiness();
     /** patch加载状态 */
     private volatile int mLoadState = LOAD_STATE_ERROR_NOPATCH;
 
@@ -269,13 +272,18 @@ public class LoaderManager {
                     .createFromPatch(installInfo.getPatchFile());
             setInterceptorDelegate(patchClassInfo);
             ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor();
-            mLoadFuture = singleThreadExecutor.submit(new Callable<Integer>() {
+            singleThreadExecutor.submit(new Callable<Integer>() {
 
                 @Override
                 public Integer call() throws Exception {
-                    int loadState = loadPatch(false, installInfo);
-                    mLoadState = loadState;
-                    return loadState;
+                    mLoadReadiness.onLoadStart();
+                    try {
+                        int loadState = loadPatch(false, installInfo);
+                        mLoadState = loadState;
+                        return loadState;
+                    } finally {
+                        mLoadReadiness.onLoadFinish();
+                    }
                 }
             });
             singleThreadExecutor.shutdown();
@@ -293,52 +301,18 @@ public class LoaderManager {
         return mLoadState;
     }
 
-    /**
-     * 等待patch被加载
-     */
-    private void waitLoad() {
-        if (mLoadFuture == null) {
-            return;
-        }
-
-        synchronized (this) {
-            if (mLoadFuture != null) {
-                try {
-                    mLoadFuture.get();
-                    mLoadFuture = null;
-                    return;
-                } catch (Exception e) {
-                    return;
-                }
-            }
-        }
-    }
-
     /**
      * patch加载前，给需要设置delegate的类添加delegate类
      *
      * @param patchClassInfo patch中修复的类信息
      */
     private void setInterceptorDelegate(final PatchClassInfo patchClassInfo) {
-        ClassClinitInterceptable classClinitStub = new ClassClinitInterceptorDelegate() {
-            @Override
-            public boolean waitLoad(int hashCode, String typeDesc) {
-                if (patchClassInfo.lazyClassNames.contains(typeDesc)) {
-                    LoaderManager.this.waitLoad();
-                }
-                return false;
-            }
-        };
+        ClassClinitInterceptable classClinitStub =
+                new LazyClassClinitDelegate(mLoadReadiness, patchClassInfo.lazyClassNames);
         ClassClinitInterceptorStorage.$ic = classClinitStub;
 
         for (final String className : patchClassInfo.instantClassNames) {
-            Interceptable delegate = new InterceptableDelegate() {
-                @Override
-                public boolean waitLoad() {
-                    LoaderManager.this.waitLoad();
-                    return true;
-                }
-            };
+            Interceptable delegate = new InstantClassDelegate(mLoadReadiness);
 
             try {
                 Class fixClass = Class.forName(className);
@@ -356,7 +330,66 @@ public class LoaderManager {
     }
 
     /**
-     * 进行签名校验和使用classloader加载patch
+     * 立即加载的修复类使用的delegate，apply中调用onApplied后就绪。
+     * apply中需要调用$staticInit的类，在$staticInit执行之后才调用onApplied
+     */
+    private static final class InstantClassDelegate extends InterceptableDelegate {
+
+        private final PatchLoadReadiness mReadiness;
+
+        private final PatchLoadReadiness.Signal mSignal;
+
+        InstantClassDelegate(PatchLoadReadiness readiness) {
+            this.mReadiness = readiness;
+            this.mSignal = readiness.newSignal();
+        }
+
+        @Override
+        public boolean waitLoad() {
+            return mReadiness.await(mSignal);
+        }
+
+        @Override
+        public void onApplied() {
+            mSignal.ready();
+        }
+    }
+
+    /**
+     * 懒加载的修复类在初始化时使用的delegate，apply中设置ClassClinitInterceptor并调用onApplied后就绪，
+     * 未修复的类不等待
+     */
+    private static final class LazyClassClinitDelegate extends ClassClinitInterceptorDelegate {
+
+        private final PatchLoadReadiness mReadiness;
+
+        private final PatchLoadReadiness.Signal mSignal;
+
+        private final Set<String> mLazyClassNames;
+
+        LazyClassClinitDelegate(PatchLoadReadiness readiness, Set<String> lazyClassNames) {
+            this.mReadiness = readiness;
+            this.mSignal = readiness.newSignal();
+            this.mLazyClassNames = lazyClassNames;
+        }
+
+        @Override
+        public boolean waitLoad(int hashCode, String typeDesc) {
+            if (mSignal.isReady() || !mLazyClassNames.contains(typeDesc)) {
+                return false;
+            }
+            return mReadiness.await(mSignal);
+        }
+
+        @Override
+        public void onApplied() {
+            mSignal.ready();
+        }
+    }
+
+    /**
+     * 进行签名校验和使用classloader加载patch，签名校验在工作线程中与classloader的创建并行执行，
+     * 校验通过后才创建Loader对象并apply
      *
      * @param loadInTime 是否是实时加载
      * @param installInfo
@@ -365,19 +398,21 @@ public class LoaderManager {
     private int loadPatch(boolean loadInTime, PatchInstallInfo installInfo) {
         long lastTime;
         long currentTime = System.currentTimeMillis();
-        SignatureVerifier sigVerifier = getSignatureVerifier(mContext, mPatchInstallInfo);
-        /** titan 签名校验*/
-        int verifyResult = sigVerifier.verifySignature();
-
-        lastTime = currentTime;
-        currentTime = System.currentTimeMillis();
-        LoaderTimeStat timeStat = LoaderTimeStat.getInstance();
-        timeStat.verifySignature = System.currentTimeMillis() - lastTime;
-
-        if (verifyResult != PatchVerifier.VERIFY_OK) {
-            return LOAD_STATE_ERROR_SIGNATURE_VERIFY_FAIL;
-        }
+        final LoaderTimeStat timeStat = LoaderTimeStat.getInstance();
+        final SignatureVerifier sigVerifier = getSignatureVerifier(mContext, mPatchInstallInfo);
+        /** titan 签名校验，与classloader的创建并行执行*/
+        ExecutorService verifyExecutor = Executors.newSingleThreadExecutor();
+        Future<Integer> verifyFuture = verifyExecutor.submit(new Callable<Integer>() {
 
+            @Override
+            public Integer call() throws Exception {
+                long startTime = System.currentTimeMillis();
+                int verifyResult = sigVerifier.verifySignature();
+                timeStat.verifySignature = System.currentTimeMillis() - startTime;
+                return verifyResult;
+            }
+        });
+        verifyExecutor.shutdown();
 
         String dexListPath = installInfo.getDexPath();
 
@@ -385,39 +420,48 @@ public class LoaderManager {
         currentTime = System.currentTimeMillis();
         timeStat.getDexPath = currentTime - lastTime;
 
-
+        // 只创建classloader并加载Loader类，不执行patch中的代码
+        Class<?> loaderClass = null;
         try {
             DelegateClassLoader dcl = new DelegateClassLoader(dexListPath,
                     installInfo.getDexOptDir().getAbsolutePath(),
                     null,
                     Object.class.getClassLoader(),
                     LoaderManager.class.getClassLoader());
-//            DexClassLoader dcl = new DexClassLoader(dexListPath, installInfo.getDexOptDir().getAbsolutePath(),
-//                    null, LoaderManager.class.getClassLoader());
 
             lastTime = currentTime;
             currentTime = System.currentTimeMillis();
             timeStat.newClassLoader = currentTime - lastTime;
 
-//            int verifyResult  = verifyFuture.get();
-
-//            singleThreadExecutor.shutdown();
-//
-//            if (verifyResult != PatchVerifier.VERIFY_OK) {
-//                return LOAD_STATE_ERROR_SIGNATURE_VERIFY_FAIL;
-//            }
-
+            loaderClass = dcl.loadClass(PATCH_LOADER);
 
             lastTime = currentTime;
             currentTime = System.currentTimeMillis();
-            timeStat.waitVerify = currentTime - lastTime;
+            timeStat.loadLoader = currentTime - lastTime;
+        } catch (Throwable e) {
+            Log.e(TAG, "[load] uncatched exception", e);
+        } finally {
+            // 加载失败时同样推进时间点，避免失败步骤的耗时计入waitVerify
+            currentTime = System.currentTimeMillis();
+        }
 
-            Class<?> loaderClass = dcl.loadClass(PATCH_LOADER);
+        // 创建Loader对象会执行patch中的代码，必须在签名校验通过之后
+        int verifyResult = getVerifyResult(verifyFuture);
 
-            lastTime = currentTime;
-            currentTime = System.currentTimeMillis();
-            timeStat.loadLoader = currentTime - lastTime;
+        lastTime = currentTime;
+        currentTime = System.currentTimeMillis();
+        timeStat.waitVerify = currentTime - lastTime;
+
+        if (verifyResult != PatchVerifier.VERIFY_OK) {
+            return LOAD_STATE_ERROR_SIGNATURE_VERIFY_FAIL;
+        }
+        timeStat.verifyOverlap = Math.max(0, timeStat.verifySignature - timeStat.waitVerify);
+
+        if (loaderClass == null) {
+            return LOAD_STATE_ERROR_LOAD_FAIL;
+        }
 
+        try {
             BaseLoader loader = (BaseLoader) loaderClass.newInstance();
 
             lastTime = currentTime;
@@ -441,6 +485,24 @@ public class LoaderManager {
         }
     }
 
+    /**
+     * 等待签名校验完成
+     *
+     * @param verifyFuture 签名校验任务
+     * @return 签名校验结果，校验过程出现异常或等待被中断时返回PatchVerifier.VERIFY_ERROR_EXCEPTION
+     */
+    private static int getVerifyResult(Future<Integer> verifyFuture) {
+        try {
+            return verifyFuture.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.e(TAG, "[load] wait verify interrupted", e);
+        } catch (ExecutionException e) {
+            Log.e(TAG, "[load] verify signature exception", e.getCause());
+        }
+        return PatchVerifier.VERIFY_ERROR_EXCEPTION;
+    }
+
     /**
      * 根据android build version获取签名校验器
      *
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.sdk.loader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 异步加载patch时，修复类的就绪状态。
+ *
+ * 每个修复类的delegate持有一个Signal，patch apply中该类的interceptor设置完成后调用delegate的onApplied触发，
+ * 需要调用$staticInit的类在$staticInit执行之后才触发。访问修复类的线程只等待该类的Signal，不等待整个patch加载结束，
+ * 就绪之后的调用只读取一次volatile状态。
+ *
+ * 旧版本patch的apply中不会调用onApplied，这些类的Signal在加载结束（包括加载失败）时统一触发。
+ *
+ * @since 2026/10/18
+ */
+final class PatchLoadReadiness {
+
+    /**
+     * 单个修复类的就绪信号
+     */
+    static final class Signal {
+
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+
+        /**
+         * 通知等待该类的线程
+         */
+        void ready() {
+            mLatch.countDown();
+        }
+
+        /**
+         * @return 修复类是否已经可以使用
+         */
+        boolean isReady() {
+            return mLatch.getCount() == 0;
+        }
+    }
+
+    private volatile boolean mFinished;
+
+    private volatile Thread mLoaderThread;
+
+    /** 加载结束前创建的Signal，加载结束时统一触发 */
+    private final List<Signal> mSignals = new ArrayList<Signal>();
+
+    /**
+     * 创建一个修复类的就绪信号，加载已经结束时返回的Signal直接就绪
+     */
+    Signal newSignal() {
+        Signal signal = new Signal();
+        synchronized (mSignals) {
+            if (mFinished) {
+                signal.ready();
+            } else {
+                mSignals.add(signal);
+            }
+        }
+        return signal;
+    }
+
+    /**
+     * 在加载线程中开始加载前调用
+     */
+    void onLoadStart() {
+        mLoaderThread = Thread.currentThread();
+    }
+
+    /**
+     * 加载结束时调用，包括加载失败，唤醒所有等待的线程
+     */
+    void onLoadFinish() {
+        synchronized (mSignals) {
+            mFinished = true;
+            mLoaderThread = null;
+            for (Signal signal : mSignals) {
+                signal.ready();
+            }
+            mSignals.clear();
+        }
+    }
+
+    /**
+     * 等待修复类就绪，加载结束时也会返回
+     *
+     * @param signal 修复类的就绪信号
+     * @return 是否执行了等待操作
+     */
+    boolean await(Signal signal) {
+        if (signal.isReady()) {
+            return false;
+        }
+        // 加载过程中由加载线程自身触发，等待会导致死锁
+        if (Thread.currentThread() == mLoaderThread) {
+            return false;
+        }
+
+        try {
+            signal.mLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return true;
+    }
+
+}
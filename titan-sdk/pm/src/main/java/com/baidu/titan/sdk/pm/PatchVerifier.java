@@ -47,6 +47,12 @@ public class PatchVerifier {
 
     public static final int VERIFY_OK = 0;
 
+    /**
+     * 校验过程出现异常或被中断，没有得到校验结果。
+     * 与其他校验失败一样使用安装状态码，安装时可直接作为安装结果返回
+     */
+    public static final int VERIFY_ERROR_EXCEPTION = PatchManager.INSTALL_STATE_VERIFY_ERROR_OTHER;
+
     public PatchVerifier(Context context, File patch, String curId, JSONObject logJson) {
         this.mPatchFile = patch;
         this.mCurId = curId;
@@ -43,6 +43,7 @@ public class LoaderTimeStat {
     private static final String TITAN_NEW_LOADER = "titanNewLoader";
     private static final String TITAN_APPLY = "titanApply";
     private static final String TITAN_VERIFY_SIGNATURE = "titanVerifySignature";
+    private static final String TITAN_VERIFY_OVERLAP = "titanVerifyOverlap";
 
     /** 单例*/
     private static LoaderTimeStat sInstance;
@@ -71,6 +72,8 @@ public class LoaderTimeStat {
     public long apply;
     /** titan 签名校验*/
     public long verifySignature;
+    /** titan 签名校验与classloader创建并行节省的时间*/
+    public long verifyOverlap;
 
     /**
      * private constructor
@@ -110,6 +113,7 @@ public class LoaderTimeStat {
             jobj.put("newLoader", newLoader);
             jobj.put("apply", apply);
             jobj.put("verifySignature", verifySignature);
+            jobj.put("verifyOverlap", verifyOverlap);
         } catch (JSONException e) {
             e.printStackTrace();
         }
@@ -135,6 +139,7 @@ public class LoaderTimeStat {
         map.put(TITAN_NEW_LOADER, String.valueOf(newLoader));
         map.put(TITAN_APPLY, String.valueOf(apply));
         map.put(TITAN_VERIFY_SIGNATURE, String.valueOf(verifySignature));
+        map.put(TITAN_VERIFY_OVERLAP, String.valueOf(verifyOverlap));
 
         return map;
     }
@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.sdk.loader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步加载patch时修复类就绪状态的测试，模拟启动阶段多个线程同时访问修复类
+ *
+ * @since 2026/10/18
+ */
+public class PatchLoadReadinessTest {
+
+    private static final int CLASS_COUNT = 200;
+
+    private static final int WAITER_COUNT = 32;
+
+    /** 加载线程通知每个类就绪的间隔 */
+    private static final long INSTALL_INTERVAL_MS = 1;
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private static PatchLoadReadiness.Signal[] newSignals(PatchLoadReadiness readiness) {
+        PatchLoadReadiness.Signal[] signals = new PatchLoadReadiness.Signal[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            signals[i] = readiness.newSignal();
+        }
+        return signals;
+    }
+
+    /**
+     * 模拟apply逐个类调用onApplied，install为false时模拟加载失败或旧版本patch，不通知任何类
+     */
+    private static Thread startLoader(final PatchLoadReadiness readiness,
+                                      final PatchLoadReadiness.Signal[] signals,
+                                      final boolean install,
+                                      final CountDownLatch start) {
+        Thread loader = new Thread("titan-patch-loader") {
+            @Override
+            public void run() {
+                readiness.onLoadStart();
+                try {
+                    start.await();
+                    for (PatchLoadReadiness.Signal signal : signals) {
+                        Thread.sleep(INSTALL_INTERVAL_MS);
+                        if (install) {
+                            signal.ready();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // ignore
+                } finally {
+                    readiness.onLoadFinish();
+                }
+            }
+        };
+        loader.start();
+        return loader;
+    }
+
+    /**
+     * 在加载线程中通知installSignals就绪，然后阻塞到release，之后结束加载
+     */
+    private static Thread startBlockedLoader(final PatchLoadReadiness readiness,
+                                             final PatchLoadReadiness.Signal[] installSignals,
+                                             final CountDownLatch installed,
+                                             final CountDownLatch release) {
+        Thread loader = new Thread("titan-patch-loader") {
+            @Override
+            public void run() {
+                readiness.onLoadStart();
+                try {
+                    for (PatchLoadReadiness.Signal signal : installSignals) {
+                        signal.ready();
+                    }
+                    installed.countDown();
+                    release.await();
+                } catch (InterruptedException e) {
+                    // ignore
+                } finally {
+                    readiness.onLoadFinish();
+                }
+            }
+        };
+        loader.start();
+        return loader;
+    }
+
+    private static Thread startWaiter(final PatchLoadReadiness readiness,
+                                      final PatchLoadReadiness.Signal signal,
+                                      final CountDownLatch done) {
+        Thread waiter = new Thread("titan-waiter") {
+            @Override
+            public void run() {
+                readiness.await(signal);
+                done.countDown();
+            }
+        };
+        waiter.start();
+        return waiter;
+    }
+
+    private static boolean isFinished(PatchLoadReadiness readiness) {
+        return readiness.newSignal().isReady();
+    }
+
+    @Test
+    public void testConcurrentWaiters() throws Exception {
+        final PatchLoadReadiness readiness = new PatchLoadReadiness();
+        final PatchLoadReadiness.Signal[] signals = newSignals(readiness);
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(WAITER_COUNT);
+        final AtomicInteger notReady = new AtomicInteger();
+        final AtomicInteger releasedBeforeFinish = new AtomicInteger();
+
+        for (int i = 0; i < WAITER_COUNT; i++) {
+            final long seed = i;
+            new Thread("titan-waiter-" + i) {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    try {
+                        start.await();
+                        for (int j = 0; j < 8; j++) {
+                            // 偏向前面的类，这些类在加载结束之前就绪
+                            PatchLoadReadiness.Signal signal =
+                                    signals[random.nextInt(CLASS_COUNT / 4)];
+                            readiness.await(signal);
+                            if (!signal.isReady()) {
+                                notReady.incrementAndGet();
+                            }
+                            if (!isFinished(readiness)) {
+                                releasedBeforeFinish.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        notReady.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        Thread loader = startLoader(readiness, signals, true, start);
+        start.countDown();
+
+        Assert.assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        loader.join();
+        Assert.assertEquals(0, notReady.get());
+        Assert.assertTrue(releasedBeforeFinish.get() > 0);
+    }
+
+    @Test
+    public void testReadyClassNotBlocked() throws Exception {
+        final PatchLoadReadiness readiness = new PatchLoadReadiness();
+        PatchLoadReadiness.Signal ready = readiness.newSignal();
+        CountDownLatch installed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread loader = startBlockedLoader(readiness, new PatchLoadReadiness.Signal[] {ready},
+                installed, release);
+        Assert.assertTrue(installed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        // 已就绪的类不等待加载结束
+        Assert.assertFalse(readiness.await(ready));
+        Assert.assertFalse(isFinished(readiness));
+        release.countDown();
+        loader.join();
+    }
+
+    @Test
+    public void testWaiterReleasedBeforeLoadFinish() throws Exception {
+        final PatchLoadReadiness readiness = new PatchLoadReadiness();
+        final PatchLoadReadiness.Signal signal = readiness.newSignal();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        Thread loader = new Thread("titan-patch-loader") {
+            @Override
+            public void run() {
+                readiness.onLoadStart();
+                try {
+                    started.countDown();
+                    release.await();
+                    // 例如$staticInit执行之后调用onApplied
+                    signal.ready();
+                    // 其他类的apply还没有完成
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+                } catch (InterruptedException e) {
+                    // ignore
+                } finally {
+                    readiness.onLoadFinish();
+                }
+            }
+        };
+        loader.start();
+        Assert.assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        // 就绪之前等待，就绪后不等待加载结束
+        startWaiter(readiness, signal, done);
+        Assert.assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+        release.countDown();
+        Assert.assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Assert.assertFalse(isFinished(readiness));
+
+        loader.interrupt();
+        loader.join();
+    }
+
+    @Test
+    public void testNotAppliedClassWaitsLoadFinish() throws Exception {
+        final PatchLoadReadiness readiness = new PatchLoadReadiness();
+        PatchLoadReadiness.Signal notApplied = readiness.newSignal();
+        CountDownLatch installed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        // 旧版本patch的apply中不调用onApplied
+        Thread loader = startBlockedLoader(readiness, new PatchLoadReadiness.Signal[0],
+                installed, release);
+        Assert.assertTrue(installed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        startWaiter(readiness, notApplied, done);
+        Assert.assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+        release.countDown();
+        Assert.assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        loader.join();
+        Assert.assertTrue(notApplied.isReady());
+    }
+
+    @Test
+    public void testLoadFailReleasesWaiters() throws Exception {
+        final PatchLoadReadiness readiness = new PatchLoadReadiness();
+        final PatchLoadReadiness.Signal[] signals = newSignals(readiness);
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(WAITER_COUNT);
+
+        for (int i = 0; i < WAITER_COUNT; i++) {
+            startWaiter(readiness, signals[i], done);
+        }
+
+        // 加载失败时没有通知任何类
+        Thread loader = startLoader(readiness, signals, false, start);
+        start.countDown();
+
+        Assert.assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        loader.join();
+        Assert.assertTrue(isFinished(readiness));
+        // 加载结束后不再等待
+        for (PatchLoadReadiness.Signal signal : signals) {
+            Assert.assertFalse(readiness.await(signal));
+        }
+    }
+
+    @Test
+    public void testInterruptedWaiter() throws Exception {
+        final PatchLoadReadiness readiness = new PatchLoadReadiness();
+        final PatchLoadReadiness.Signal signal = readiness.newSignal();
+        final CountDownLatch installed = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger interrupted = new AtomicInteger(-1);
+
+        Thread loader = startBlockedLoader(readiness, new PatchLoadReadiness.Signal[0],
+                installed, release);
+        Assert.assertTrue(installed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        Thread waiter = new Thread("titan-waiter") {
+            @Override
+            public void run() {
+                readiness.await(signal);
+                interrupted.set(isInterrupted() ? 1 : 0);
+            }
+        };
+        waiter.start();
+        waiter.interrupt();
+        waiter.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+
+        Assert.assertFalse(waiter.isAlive());
+        Assert.assertEquals(1, interrupted.get());
+        Assert.assertFalse(isFinished(readiness));
+        release.countDown();
+        loader.join();
+    }
+
+    @Test
+    public void testLoaderThreadNotBlocked() throws Exception {
+        final PatchLoadReadiness readiness = new PatchLoadReadiness();
+        final PatchLoadReadiness.Signal signal = readiness.newSignal();
+        final AtomicInteger waited = new AtomicInteger(-1);
+        final AtomicInteger readyInApply = new AtomicInteger(-1);
+
+        Thread loader = new Thread("titan-patch-loader") {
+            @Override
+            public void run() {
+                readiness.onLoadStart();
+                try {
+                    // apply过程中加载线程自身触发修复类初始化
+                    waited.set(readiness.await(signal) ? 1 : 0);
+                    readyInApply.set(signal.isReady() ? 1 : 0);
+                } finally {
+                    readiness.onLoadFinish();
+                }
+            }
+        };
+        loader.start();
+        loader.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+
+        Assert.assertFalse(loader.isAlive());
+        Assert.assertEquals(0, waited.get());
+        Assert.assertEquals(0, readyInApply.get());
+    }
+
+    @Test
+    public void testSignalAfterLoadFinish() {
+        PatchLoadReadiness readiness = new PatchLoadReadiness();
+        readiness.onLoadFinish();
+        Assert.assertTrue(readiness.newSignal().isReady());
+    }
+
+}
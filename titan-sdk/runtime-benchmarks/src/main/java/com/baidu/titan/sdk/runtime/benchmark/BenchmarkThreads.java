@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.sdk.runtime.benchmark;
+
+/**
+ * benchmark的线程数
+ *
+ * 只有cpu核数不少于线程数时，多线程的结果才反映锁竞争；核数较少时各线程轮流执行，
+ * 结果约为单线程耗时乘以线程数，只能说明单线程路径的开销
+ *
+ * @since 2026/10/18
+ */
+final class BenchmarkThreads {
+
+    /** 多线程同时调用的线程数，与常见的启动阶段并发初始化线程数相当 */
+    static final int CONTENDED = 4;
+
+    /** 更多线程同时调用的线程数 */
+    static final int HIGHLY_CONTENDED = 16;
+
+    private BenchmarkThreads() {
+    }
+
+}
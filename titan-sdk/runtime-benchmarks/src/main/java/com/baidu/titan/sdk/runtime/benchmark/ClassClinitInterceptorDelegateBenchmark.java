@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.sdk.runtime.benchmark;
+
+import com.baidu.titan.sdk.runtime.ClassClinitInterceptable;
+import com.baidu.titan.sdk.runtime.ClassClinitInterceptorDelegate;
+import com.baidu.titan.sdk.runtime.InterceptResult;
+import com.baidu.titan.sdk.runtime.SimpleClassClinitInterceptor;
+import com.baidu.titan.sdk.runtime.TitanRuntime;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步加载patch完成后，类初始化经过ClassClinitInterceptorDelegate调用patch中clinit拦截器的耗时，
+ * direct*为直接调用clinit拦截器，作为对比。
+ *
+ * *Hit为类的clinit被patch修复，*Miss为未修复的类。
+ *
+ * @since 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClassClinitInterceptorDelegateBenchmark {
+
+    private static final String PATCHED_TYPE = "Lcom/baidu/titan/sample/Patched;";
+
+    private static final String UNPATCHED_TYPE = "Lcom/baidu/titan/sample/Unpatched;";
+
+    /**
+     * 与patch中生成的clinit拦截器相同，先按type hash code分派，再比较类名
+     */
+    static class PatchClinitInterceptor extends SimpleClassClinitInterceptor {
+
+        private static final int PATCHED_TYPE_HASH = PATCHED_TYPE.hashCode();
+
+        @Override
+        public InterceptResult invokeClinit(int hashCode, String typeDesc) {
+            if (hashCode == PATCHED_TYPE_HASH && PATCHED_TYPE.equals(typeDesc)) {
+                return TitanRuntime.getThreadInterceptResult();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 加载完成后的delegate，不再等待
+     */
+    static class LoadedDelegate extends ClassClinitInterceptorDelegate {
+
+        LoadedDelegate(ClassClinitInterceptable interceptor) {
+            this.delegate = interceptor;
+        }
+
+        @Override
+        public boolean waitLoad(int hashCode, String typeDesc) {
+            return false;
+        }
+    }
+
+    private final ClassClinitInterceptable mPatchInterceptor = new PatchClinitInterceptor();
+
+    private final ClassClinitInterceptable mDelegate = new LoadedDelegate(mPatchInterceptor);
+
+    private final String mPatchedType = new String(PATCHED_TYPE);
+
+    private final int mPatchedHash = mPatchedType.hashCode();
+
+    private final String mUnpatchedType = new String(UNPATCHED_TYPE);
+
+    private final int mUnpatchedHash = mUnpatchedType.hashCode();
+
+    @Benchmark
+    public InterceptResult directHit() {
+        return mPatchInterceptor.invokeClinit(mPatchedHash, mPatchedType);
+    }
+
+    @Benchmark
+    public InterceptResult delegateHit() {
+        return mDelegate.invokeClinit(mPatchedHash, mPatchedType);
+    }
+
+    @Benchmark
+    @Threads(BenchmarkThreads.CONTENDED)
+    public InterceptResult delegateHitContended() {
+        return mDelegate.invokeClinit(mPatchedHash, mPatchedType);
+    }
+
+    @Benchmark
+    public InterceptResult delegateMiss() {
+        return mDelegate.invokeClinit(mUnpatchedHash, mUnpatchedType);
+    }
+
+    @Benchmark
+    @Threads(BenchmarkThreads.CONTENDED)
+    public InterceptResult delegateMissContended() {
+        return mDelegate.invokeClinit(mUnpatchedHash, mUnpatchedType);
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.sdk.runtime.benchmark;
+
+import com.baidu.titan.sdk.runtime.InterceptResult;
+import com.baidu.titan.sdk.runtime.TitanRuntime;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InterceptResult的获取方式：TitanRuntime.getThreadInterceptResult的线程复用，
+ * InterceptResult.obtain/recycle的对象池，以及直接new作为对比。locked*为改为无锁回收之前的实现。
+ *
+ * *Overflow每次取出两个对象再回收，超出线程缓存的部分经过共享池。
+ * *Contended、*HighlyContended为多线程同时调用，cpu核数少于线程数时不反映锁竞争，
+ * 此时locked*与无锁实现的对比只说明单线程路径的差别，见BenchmarkThreads。
+ *
+ * @since 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InterceptResultBenchmark {
+
+    @Benchmark
+    public InterceptResult threadInterceptResult() {
+        return TitanRuntime.getThreadInterceptResult();
+    }
+
+    @Benchmark
+    @Threads(BenchmarkThreads.CONTENDED)
+    public InterceptResult threadInterceptResultContended() {
+        return TitanRuntime.getThreadInterceptResult();
+    }
+
+    @Benchmark
+    public InterceptResult obtainRecycle() {
+        return doObtainRecycle();
+    }
+
+    @Benchmark
+    @Threads(BenchmarkThreads.CONTENDED)
+    public InterceptResult obtainRecycleContended() {
+        return doObtainRecycle();
+    }
+
+    @Benchmark
+    @Threads(BenchmarkThreads.HIGHLY_CONTENDED)
+    public InterceptResult obtainRecycleHighlyContended() {
+        return doObtainRecycle();
+    }
+
+    @Benchmark
+    public InterceptResult obtainRecycleOverflow() {
+        return doObtainRecycleOverflow();
+    }
+
+    @Benchmark
+    @Threads(BenchmarkThreads.CONTENDED)
+    public InterceptResult obtainRecycleOverflowContended() {
+        return doObtainRecycleOverflow();
+    }
+
+    @Benchmark
+    @Threads(BenchmarkThreads.HIGHLY_CONTENDED)
+    public InterceptResult obtainRecycleOverflowHighlyContended() {
+        return doObtainRecycleOverflow();
+    }
+
+    @Benchmark
+    public InterceptResult lockedObtainRecycle() {
+        return doLockedObtainRecycle();
+    }
+
+    @Benchmark
+    @Threads(BenchmarkThreads.CONTENDED)
+    public InterceptResult lockedObtainRecycleContended() {
+        return doLockedObtainRecycle();
+    }
+
+    @Benchmark
+    @Threads(BenchmarkThreads.HIGHLY_CONTENDED)
+    public InterceptResult lockedObtainRecycleHighlyContended() {
+        return doLockedObtainRecycle();
+    }
+
+    @Benchmark
+    public InterceptResult allocate() {
+        return new InterceptResult();
+    }
+
+    private static InterceptResult doObtainRecycle() {
+        InterceptResult result = InterceptResult.obtain();
+        result.recycle();
+        return result;
+    }
+
+    private static InterceptResult doObtainRecycleOverflow() {
+        InterceptResult first = InterceptResult.obtain();
+        InterceptResult second = InterceptResult.obtain();
+        second.recycle();
+        first.recycle();
+        return first;
+    }
+
+    private static InterceptResult doLockedObtainRecycle() {
+        InterceptResult result = LockedInterceptResultPool.obtain();
+        LockedInterceptResultPool.recycle(result);
+        return result;
+    }
+
+}
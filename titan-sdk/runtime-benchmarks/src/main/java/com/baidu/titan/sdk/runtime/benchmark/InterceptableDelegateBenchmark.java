@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.sdk.runtime.benchmark;
+
+import com.baidu.titan.sdk.runtime.InterceptResult;
+import com.baidu.titan.sdk.runtime.Interceptable;
+import com.baidu.titan.sdk.runtime.InterceptableDelegate;
+import com.baidu.titan.sdk.runtime.SimpleInterceptor;
+import com.baidu.titan.sdk.runtime.TitanRuntime;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步加载patch完成后，插桩代码经过InterceptableDelegate调用patch拦截器的耗时，
+ * direct*为直接调用patch拦截器，作为对比。
+ *
+ * *Hit为方法被patch修复，*Miss为同一个类中未修复的方法。
+ *
+ * @since 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InterceptableDelegateBenchmark {
+
+    private static final int PATCHED_METHOD_ID = 0x10001;
+
+    private static final int UNPATCHED_METHOD_ID = 0x10002;
+
+    /**
+     * 与patch中生成的拦截器相同，按method id分派，只拦截修复的方法
+     */
+    static class PatchInterceptor extends SimpleInterceptor {
+
+        @Override
+        public InterceptResult invokeL(int methodId, Object thisObj, Object arg0) {
+            if (methodId == PATCHED_METHOD_ID) {
+                InterceptResult result = TitanRuntime.getThreadInterceptResult();
+                result.objValue = arg0;
+                return result;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 加载完成后的delegate，不再等待
+     */
+    static class LoadedDelegate extends InterceptableDelegate {
+
+        LoadedDelegate(Interceptable interceptor) {
+            this.delegate = interceptor;
+        }
+
+        @Override
+        public boolean waitLoad() {
+            return false;
+        }
+    }
+
+    private final Interceptable mPatchInterceptor = new PatchInterceptor();
+
+    private final Interceptable mDelegate = new LoadedDelegate(mPatchInterceptor);
+
+    private final Object mThis = new Object();
+
+    private final Object mArg = new Object();
+
+    @Benchmark
+    public InterceptResult directHit() {
+        return mPatchInterceptor.invokeL(PATCHED_METHOD_ID, mThis, mArg);
+    }
+
+    @Benchmark
+    public InterceptResult delegateHit() {
+        return mDelegate.invokeL(PATCHED_METHOD_ID, mThis, mArg);
+    }
+
+    @Benchmark
+    @Threads(BenchmarkThreads.CONTENDED)
+    public InterceptResult delegateHitContended() {
+        return mDelegate.invokeL(PATCHED_METHOD_ID, mThis, mArg);
+    }
+
+    @Benchmark
+    public InterceptResult directMiss() {
+        return mPatchInterceptor.invokeL(UNPATCHED_METHOD_ID, mThis, mArg);
+    }
+
+    @Benchmark
+    public InterceptResult delegateMiss() {
+        return mDelegate.invokeL(UNPATCHED_METHOD_ID, mThis, mArg);
+    }
+
+    @Benchmark
+    @Threads(BenchmarkThreads.CONTENDED)
+    public InterceptResult delegateMissContended() {
+        return mDelegate.invokeL(UNPATCHED_METHOD_ID, mThis, mArg);
+    }
+
+}
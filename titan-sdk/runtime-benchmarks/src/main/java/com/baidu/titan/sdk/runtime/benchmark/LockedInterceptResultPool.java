@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.sdk.runtime.benchmark;
+
+import com.baidu.titan.sdk.runtime.InterceptResult;
+
+/**
+ * 改为无锁回收之前InterceptResult.obtain/recycle的实现，作为对比基线：
+ * 所有线程通过同一个锁访问最多50个对象的池。原实现使用InterceptResult的next字段链接，
+ * 该字段已经删除，这里用数组代替，同样不产生额外的对象分配
+ *
+ * @since 2026/10/18
+ */
+final class LockedInterceptResultPool {
+
+    private static final int MAX_POOL_SIZE = 50;
+
+    private static final Object sPoolSync = new Object();
+
+    private static final InterceptResult[] sPool = new InterceptResult[MAX_POOL_SIZE];
+
+    private static int sPoolSize = 0;
+
+    private LockedInterceptResultPool() {
+    }
+
+    static InterceptResult obtain() {
+        synchronized (sPoolSync) {
+            if (sPoolSize > 0) {
+                InterceptResult r = sPool[--sPoolSize];
+                sPool[sPoolSize] = null;
+                return r;
+            }
+        }
+        return new InterceptResult();
+    }
+
+    static void recycle(InterceptResult result) {
+        result.objValue = null;
+        result.interceptor = null;
+
+        synchronized (sPoolSync) {
+            if (sPoolSize < MAX_POOL_SIZE) {
+                sPool[sPoolSize++] = result;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.sdk.runtime.benchmark;
+
+import com.baidu.titan.sdk.runtime.TitanRuntime;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TitanRuntime反射调用的单次耗时，cached*为当前实现，uncached*为加入ReflectionCache之前的实现。
+ *
+ * 访问的成员都声明在父类中，与patch代码访问父类private成员的情况一致，未缓存时每次调用都会产生一次查找失败。
+ * *Contended为多线程同时调用。
+ *
+ * @since 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReflectionBenchmark {
+
+    static class Base {
+
+        private int baseField = 1;
+
+        private int baseMethod(int value) {
+            return value + baseField;
+        }
+
+        private static int baseStaticMethod(int value) {
+            return value + 1;
+        }
+    }
+
+    static class Target extends Base {
+
+        private Target(int value) {
+        }
+    }
+
+    private static final Class[] INT_TYPES = new Class[] {int.class};
+
+    private final Target mTarget = new Target(0);
+
+    private final Object[] mArgs = new Object[] {1};
+
+    @Benchmark
+    public Object cachedGetField() {
+        return TitanRuntime.getField(mTarget, Target.class, "baseField");
+    }
+
+    @Benchmark
+    @Threads(BenchmarkThreads.CONTENDED)
+    public Object cachedGetFieldContended() {
+        return TitanRuntime.getField(mTarget, Target.class, "baseField");
+    }
+
+    @Benchmark
+    public Object uncachedGetField() throws Exception {
+        return UncachedReflection.getField(mTarget, Target.class, "baseField");
+    }
+
+    @Benchmark
+    public Object cachedInvokeInstanceMethod() throws Throwable {
+        return TitanRuntime.invokeInstanceMethod(mTarget, mArgs, INT_TYPES, "baseMethod");
+    }
+
+    @Benchmark
+    @Threads(BenchmarkThreads.CONTENDED)
+    public Object cachedInvokeInstanceMethodContended() throws Throwable {
+        return TitanRuntime.invokeInstanceMethod(mTarget, mArgs, INT_TYPES, "baseMethod");
+    }
+
+    @Benchmark
+    public Object uncachedInvokeInstanceMethod() throws Exception {
+        return UncachedReflection.invokeInstanceMethod(mTarget, mArgs, INT_TYPES, "baseMethod");
+    }
+
+    @Benchmark
+    public Object cachedInvokeStaticMethod() throws Throwable {
+        return TitanRuntime.invokeStaticMethod(Target.class, mArgs, INT_TYPES, "baseStaticMethod");
+    }
+
+    @Benchmark
+    public Object uncachedInvokeStaticMethod() throws Exception {
+        return UncachedReflection.invokeStaticMethod(
+                Target.class, mArgs, INT_TYPES, "baseStaticMethod");
+    }
+
+    @Benchmark
+    public Object cachedNewForClass() throws Throwable {
+        return TitanRuntime.newForClass(mArgs, INT_TYPES, Target.class);
+    }
+
+    @Benchmark
+    public Object uncachedNewForClass() throws Exception {
+        return UncachedReflection.newForClass(mArgs, INT_TYPES, Target.class);
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.sdk.runtime.benchmark;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * 加入ReflectionCache之前TitanRuntime的反射查找方式，作为对比基线：
+ * 每次调用都沿父类查找成员，未找到时构造异常，并重新setAccessible
+ *
+ * @since 2026/10/18
+ */
+final class UncachedReflection {
+
+    private UncachedReflection() {
+    }
+
+    static Object getField(Object targetObject, Class targetClass, String fieldName)
+            throws IllegalAccessException {
+        Field field = getFieldByName(targetClass, fieldName);
+        field.setAccessible(true);
+        return field.get(targetObject);
+    }
+
+    static Object invokeInstanceMethod(Object receiver, Object[] params, Class[] parameterTypes,
+                                       String methodName) throws Exception {
+        Method method = getMethodByName(receiver.getClass(), methodName, parameterTypes);
+        method.setAccessible(true);
+        return method.invoke(receiver, params);
+    }
+
+    static Object invokeStaticMethod(Class receiverClass, Object[] params, Class[] parameterTypes,
+                                     String methodName) throws Exception {
+        Method method = getMethodByName(receiverClass, methodName, parameterTypes);
+        method.setAccessible(true);
+        return method.invoke(null, params);
+    }
+
+    static <T> T newForClass(Object[] params, Class[] paramTypes, Class<T> targetClass)
+            throws Exception {
+        Constructor<T> constructor = targetClass.getDeclaredConstructor(paramTypes);
+        constructor.setAccessible(true);
+        return constructor.newInstance(params);
+    }
+
+    private static Field getFieldByName(Class<?> aClass, String name) {
+        Class<?> currentClass = aClass;
+        while (currentClass != null) {
+            try {
+                return currentClass.getDeclaredField(name);
+            } catch (NoSuchFieldException e) {
+                // ignored.
+            }
+            currentClass = currentClass.getSuperclass();
+        }
+        return null;
+    }
+
+    private static Method getMethodByName(Class<?> aClass, String name, Class[] paramTypes) {
+        Class<?> currentClass = aClass;
+        while (currentClass != null) {
+            try {
+                return currentClass.getDeclaredMethod(name, paramTypes);
+            } catch (NoSuchMethodException e) {
+                // ignored.
+            }
+            currentClass = currentClass.getSuperclass();
+        }
+        return null;
+    }
+
+}
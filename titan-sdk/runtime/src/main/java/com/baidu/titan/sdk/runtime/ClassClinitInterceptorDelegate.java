@@ -33,6 +33,12 @@ public abstract class ClassClinitInterceptorDelegate implements ClassClinitInter
      */
     public abstract boolean waitLoad(int hashCode, String typeDesc);
 
+    /**
+     * patch apply中设置delegate之后调用，通知等待的线程
+     */
+    public void onApplied() {
+    }
+
     @Override
     public InterceptResult invokeClinit(int hashCode, String typeDesc) {
         if (delegate == null) {
@@ -19,6 +19,8 @@ package com.baidu.titan.sdk.runtime;
 
 import com.baidu.titan.sdk.runtime.annotation.DisableIntercept;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 /**
  * 用于表示方法返回值，为了提高性能，这里包含了所有基本类型，和Object引用类型
  *
@@ -52,21 +54,40 @@ public class InterceptResult {
 
     private static final int MAX_POOL_SIZE = 50;
 
-    private InterceptResult next;
-
-    private static final Object sPoolSync = new Object();
-
-    private static InterceptResult sPool;
-
-    private static int sPoolSize = 0;
+    /** 从共享池取出或放入时最多尝试的槽位数，超过后直接分配或丢弃 */
+    private static final int MAX_POOL_PROBES = 4;
+
+    /**
+     * 每个线程缓存一个回收的对象，同一线程内obtain/recycle成对调用时不访问共享池
+     */
+    private static final ThreadLocal<InterceptResult[]> sThreadCache =
+            new ThreadLocal<InterceptResult[]>() {
+                @Override
+                protected InterceptResult[] initialValue() {
+                    return new InterceptResult[1];
+                }
+            };
+
+    /**
+     * 线程缓存已满时使用的共享池，各槽位通过CAS存取，不使用锁；
+     * 槽位之间没有链接关系，对象被其他线程取出再放回时不会产生ABA问题
+     */
+    private static final AtomicReferenceArray<InterceptResult> sPool =
+            new AtomicReferenceArray<>(MAX_POOL_SIZE);
 
     public static InterceptResult obtain() {
-        synchronized (sPoolSync) {
-            if (sPool != null) {
-                InterceptResult r = sPool;
-                sPool = r.next;
-                r.next = null;
-                sPoolSize--;
+        InterceptResult[] threadCache = sThreadCache.get();
+        InterceptResult r = threadCache[0];
+        if (r != null) {
+            threadCache[0] = null;
+            return r;
+        }
+
+        int start = poolProbeStart();
+        for (int i = 0; i < MAX_POOL_PROBES; i++) {
+            int index = (start + i) % MAX_POOL_SIZE;
+            r = sPool.get(index);
+            if (r != null && sPool.compareAndSet(index, r, null)) {
                 return r;
             }
         }
@@ -79,13 +100,27 @@ public class InterceptResult {
         this.interceptor = null;
 
         // recycle
-        synchronized (sPoolSync) {
-            if (sPoolSize < MAX_POOL_SIZE) {
-                this.next = sPool;
-                sPool = this;
-                sPoolSize++;
+        InterceptResult[] threadCache = sThreadCache.get();
+        if (threadCache[0] == null) {
+            threadCache[0] = this;
+            return;
+        }
+
+        int start = poolProbeStart();
+        for (int i = 0; i < MAX_POOL_PROBES; i++) {
+            int index = (start + i) % MAX_POOL_SIZE;
+            if (sPool.get(index) == null && sPool.compareAndSet(index, null, this)) {
+                return;
             }
         }
+        // 共享池附近的槽位已满，丢弃
+    }
+
+    /**
+     * 不同线程从不同的槽位开始查找，减少CAS冲突
+     */
+    private static int poolProbeStart() {
+        return (int) (Thread.currentThread().getId() % MAX_POOL_SIZE);
     }
 
 }
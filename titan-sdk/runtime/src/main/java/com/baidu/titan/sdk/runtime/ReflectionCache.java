@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) Baidu Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.titan.sdk.runtime;
+
+import com.baidu.titan.sdk.runtime.annotation.DisableIntercept;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import static com.baidu.titan.sdk.runtime.Log.logging;
+
+/**
+ * TitanRuntime反射调用的成员查找缓存，以(class, 成员名, 参数类型)为key。
+ *
+ * 查找结果在放入缓存前已经setAccessible，之后的调用不再遍历类继承关系，也不再构造查找失败的异常；
+ * 未找到的成员同样缓存。缓存的生命周期与进程一致，只用于patch代码访问的成员，数量有限。
+ *
+ * @since 2026/10/18
+ */
+@DisableIntercept
+final class ReflectionCache {
+
+    private static final int KIND_FIELD = 1;
+
+    private static final int KIND_METHOD = 2;
+
+    private static final int KIND_CONSTRUCTOR = 3;
+
+    private static final Class[] EMPTY_TYPES = new Class[0];
+
+    /** ConcurrentHashMap不支持null value，未找到的成员用NOT_FOUND表示 */
+    private static final Object NOT_FOUND = new Object();
+
+    private static final ConcurrentHashMap<MemberKey, Object> sMembers =
+            new ConcurrentHashMap<>();
+
+    private ReflectionCache() {
+    }
+
+    /**
+     * 从targetClass开始沿父类查找字段
+     *
+     * @return 已setAccessible的字段，未找到时返回null
+     */
+    static Field getField(Class<?> targetClass, String name) {
+        MemberKey key = new MemberKey(KIND_FIELD, targetClass, name, EMPTY_TYPES);
+        Object member = sMembers.get(key);
+        if (member == null) {
+            member = cache(key, findField(targetClass, name));
+        }
+        return member == NOT_FOUND ? null : (Field) member;
+    }
+
+    /**
+     * 从targetClass开始沿父类查找方法
+     *
+     * @return 已setAccessible的方法，未找到时返回null
+     */
+    static Method getMethod(Class<?> targetClass, String name, Class[] paramTypes) {
+        MemberKey key = new MemberKey(KIND_METHOD, targetClass, name, nonNull(paramTypes));
+        Object member = sMembers.get(key);
+        if (member == null) {
+            member = cache(key, findMethod(targetClass, name, key.mParamTypes));
+        }
+        return member == NOT_FOUND ? null : (Method) member;
+    }
+
+    /**
+     * 查找targetClass声明的构造方法
+     *
+     * @return 已setAccessible的构造方法，未找到时返回null
+     */
+    static Constructor<?> getConstructor(Class<?> targetClass, Class[] paramTypes) {
+        MemberKey key =
+                new MemberKey(KIND_CONSTRUCTOR, targetClass, "<init>", nonNull(paramTypes));
+        Object member = sMembers.get(key);
+        if (member == null) {
+            member = cache(key, findConstructor(targetClass, key.mParamTypes));
+        }
+        return member == NOT_FOUND ? null : (Constructor<?>) member;
+    }
+
+    private static Class[] nonNull(Class[] paramTypes) {
+        return paramTypes == null ? EMPTY_TYPES : paramTypes;
+    }
+
+    /**
+     * 并发时同一个key可能被重复查找，结果相同，保留先写入的结果
+     */
+    private static Object cache(MemberKey key, AccessibleObject member) {
+        Object value = member;
+        if (member == null) {
+            value = NOT_FOUND;
+        } else {
+            member.setAccessible(true);
+        }
+        Object prev = sMembers.putIfAbsent(key.copyParamTypes(), value);
+        return prev != null ? prev : value;
+    }
+
+    private static Field findField(Class<?> aClass, String name) {
+
+        if (logging != null && logging.isLoggable(Level.FINE)) {
+            logging.log(Level.FINE, String.format("getFieldByName:%s in %s", name, aClass.getName()));
+        }
+
+        Class<?> currentClass = aClass;
+        while (currentClass != null) {
+            try {
+                return currentClass.getDeclaredField(name);
+            } catch (NoSuchFieldException e) {
+                // ignored.
+            }
+            currentClass = currentClass.getSuperclass();
+        }
+        return null;
+    }
+
+    private static Method findMethod(Class<?> aClass, String name, Class[] paramTypes) {
+
+        Class<?> currentClass = aClass;
+        while (currentClass != null) {
+            try {
+                return currentClass.getDeclaredMethod(name, paramTypes);
+            } catch (NoSuchMethodException e) {
+                // ignored.
+            }
+            currentClass = currentClass.getSuperclass();
+            if (currentClass != null && logging != null && logging.isLoggable(Level.FINE)) {
+                logging.log(Level.FINE, String.format(
+                        "getMethodByName:Looking in %s now", currentClass.getName()));
+            }
+
+        }
+        return null;
+    }
+
+    private static Constructor<?> findConstructor(Class<?> aClass, Class[] paramTypes) {
+        try {
+            return aClass.getDeclaredConstructor(paramTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 查找时直接引用调用方传入的参数类型数组，放入缓存时再复制，避免调用方修改数组影响缓存
+     */
+    private static final class MemberKey {
+
+        private final int mKind;
+
+        private final Class<?> mOwner;
+
+        private final String mName;
+
+        private final Class[] mParamTypes;
+
+        private final int mHashCode;
+
+        MemberKey(int kind, Class<?> owner, String name, Class[] paramTypes) {
+            this.mKind = kind;
+            this.mOwner = owner;
+            this.mName = name;
+            this.mParamTypes = paramTypes;
+            int hash = kind;
+            hash = 31 * hash + owner.hashCode();
+            hash = 31 * hash + name.hashCode();
+            hash = 31 * hash + Arrays.hashCode(paramTypes);
+            this.mHashCode = hash;
+        }
+
+        MemberKey copyParamTypes() {
+            if (mParamTypes.length == 0) {
+                return this;
+            }
+            return new MemberKey(mKind, mOwner, mName, mParamTypes.clone());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MemberKey)) {
+                return false;
+            }
+            MemberKey other = (MemberKey) o;
+            return mHashCode == other.mHashCode
+                    && mKind == other.mKind
+                    && mOwner == other.mOwner
+                    && mName.equals(other.mName)
+                    && Arrays.equals(mParamTypes, other.mParamTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+
+}
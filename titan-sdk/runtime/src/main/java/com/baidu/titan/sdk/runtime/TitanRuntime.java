@@ -26,6 +26,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -166,11 +167,10 @@ public class TitanRuntime {
 
     
     private static Field getField(Class target, String name) {
-        Field declareField = getFieldByName(target, name);
+        Field declareField = ReflectionCache.getField(target, name);
         if (declareField == null) {
             throw new RuntimeException(new NoSuchElementException(name));
         }
-        declareField.setAccessible(true);
         return declareField;
     }
 
@@ -183,11 +183,11 @@ public class TitanRuntime {
             logging.log(Level.FINE, String.format("protectedMethod:%s on %s", methodName, receiver));
         }
         try {
-            Method toDispatchTo = getMethodByName(receiver.getClass(), methodName, parameterTypes);
+            Method toDispatchTo =
+                    ReflectionCache.getMethod(receiver.getClass(), methodName, parameterTypes);
             if (toDispatchTo == null) {
                 throw new RuntimeException(new NoSuchMethodException(methodName));
             }
-            toDispatchTo.setAccessible(true);
             return toDispatchTo.invoke(receiver, params);
         } catch (InvocationTargetException e) {
             // The called method threw an exception, rethrow
@@ -209,12 +209,12 @@ public class TitanRuntime {
                     String.format("protectedStaticMethod:%s on %s", methodName, receiverClass.getName()));
         }
         try {
-            Method toDispatchTo = getMethodByName(receiverClass, methodName, parameterTypes);
+            Method toDispatchTo =
+                    ReflectionCache.getMethod(receiverClass, methodName, parameterTypes);
             if (toDispatchTo == null) {
                 throw new RuntimeException(new NoSuchMethodException(
                         methodName + " in class " + receiverClass.getName()));
             }
-            toDispatchTo.setAccessible(true);
             return toDispatchTo.invoke(null /* target */, params);
         } catch (InvocationTargetException e) {
             // The called method threw an exception, rethrow
@@ -227,14 +227,13 @@ public class TitanRuntime {
 
     public static <T> T newForClass(Object[] params, Class[] paramTypes, Class<T> targetClass)
             throws Throwable {
-        Constructor declaredConstructor;
-        try {
-            declaredConstructor = targetClass.getDeclaredConstructor(paramTypes);
-        } catch (NoSuchMethodException e) {
+        Constructor declaredConstructor = ReflectionCache.getConstructor(targetClass, paramTypes);
+        if (declaredConstructor == null) {
+            NoSuchMethodException e = new NoSuchMethodException(
+                    targetClass.getName() + ".<init>" + Arrays.toString(paramTypes));
             logging.log(Level.SEVERE, "Exception while resolving constructor", e);
             throw new RuntimeException(e);
         }
-        declaredConstructor.setAccessible(true);
         try {
             return targetClass.cast(declaredConstructor.newInstance(params));
         } catch (InvocationTargetException e) {
@@ -249,47 +248,6 @@ public class TitanRuntime {
         }
     }
 
-    private static Field getFieldByName(Class<?> aClass, String name) {
-
-        if (logging!= null && logging.isLoggable(Level.FINE)) {
-            logging.log(Level.FINE, String.format("getFieldByName:%s in %s", name, aClass.getName()));
-        }
-
-        Class<?> currentClass = aClass;
-        while (currentClass != null) {
-            try {
-                return currentClass.getDeclaredField(name);
-            } catch (NoSuchFieldException e) {
-                // ignored.
-            }
-            currentClass = currentClass.getSuperclass();
-        }
-        return null;
-    }
-
-    private static Method getMethodByName(Class<?> aClass, String name, Class[] paramTypes) {
-
-        if (aClass == null) {
-            return null;
-        }
-
-        Class<?> currentClass = aClass;
-        while (currentClass != null) {
-            try {
-                return currentClass.getDeclaredMethod(name, paramTypes);
-            } catch (NoSuchMethodException e) {
-                // ignored.
-            }
-            currentClass = currentClass.getSuperclass();
-            if (currentClass!= null && logging!=null && logging.isLoggable(Level.FINE)) {
-                logging.log(Level.FINE, String.format(
-                        "getMethodByName:Looking in %s now", currentClass.getName()));
-            }
-
-        }
-        return null;
-    }
-
     public static void trace(String s) {
         if (logging != null) {
             logging.log(Level.FINE, s);